@@ -26,20 +26,78 @@ import javax.crypto.spec.SecretKeySpec;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static javax.crypto.Cipher.DECRYPT_MODE;
 import static javax.crypto.Cipher.ENCRYPT_MODE;
 
 // format inspired from sops from mozilla but without sops object to keep it properties friendly
+// note: the key derivation (PBKDF2) is the costly part so derived keys are cached per salt (tag) and batch() shares a salt
 public class AES256GCMCodec implements Codec {
     private final char[] masterPassword;
     private final SecureRandom secureRandom;
+    private final Map<String, byte[]> keys;
+    private volatile boolean closed;
 
     public AES256GCMCodec(final SimpleCodecConfiguration configuration) {
         this.masterPassword = configuration.getMasterPassword().toCharArray();
         this.secureRandom = new SecureRandom();
+
+        final int keyCacheSize = configuration.getKeyCacheSize();
+        this.keys = keyCacheSize <= 0 ? null : new LinkedHashMap<>(keyCacheSize, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, byte[]> eldest) {
+                if (size() > keyCacheSize) {
+                    Arrays.fill(eldest.getValue(), (byte) 0);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Codec encrypting all values with the same salt (tag), i.e. the key is derived once for the whole batch,
+     * but each value still gets its own IV. Output format is unchanged so any reader can decrypt the values.
+     *
+     * @return a codec sharing the salt for all its encryptions.
+     */
+    @Override
+    public Codec batch() {
+        final var salt = new byte[16];
+        secureRandom.nextBytes(salt);
+        return new Codec() {
+            @Override
+            public boolean isEncrypted(final String value) {
+                return AES256GCMCodec.this.isEncrypted(value);
+            }
+
+            @Override
+            public String encrypt(final String input) {
+                return AES256GCMCodec.this.encrypt(input, salt);
+            }
+
+            @Override
+            public String decrypt(final String value) {
+                return AES256GCMCodec.this.decrypt(value);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (keys != null) {
+            synchronized (keys) {
+                keys.values().forEach(it -> Arrays.fill(it, (byte) 0));
+                keys.clear();
+            }
+        }
+        Arrays.fill(masterPassword, '\0');
     }
 
     @Override
@@ -51,7 +109,10 @@ public class AES256GCMCodec implements Codec {
     public String encrypt(final String input) {
         final var salt = new byte[16];
         secureRandom.nextBytes(salt);
+        return encrypt(input, salt);
+    }
 
+    private String encrypt(final String input, final byte[] salt) {
         final var iv = new byte[12];
         secureRandom.nextBytes(iv);
 
@@ -113,7 +174,37 @@ public class AES256GCMCodec implements Codec {
     }
 
     private SecretKeySpec secretKey(final byte[] salt) throws InvalidKeySpecException, NoSuchAlgorithmException {
-        return new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
-                .generateSecret(new PBEKeySpec(masterPassword, salt, 65_535, 256)).getEncoded(), "AES");
+        if (closed) {
+            throw new IllegalStateException("Codec closed");
+        }
+        if (keys == null) {
+            return new SecretKeySpec(derive(salt), "AES");
+        }
+
+        final var cacheKey = Base64.getEncoder().encodeToString(salt);
+        synchronized (keys) {
+            final var existing = keys.get(cacheKey);
+            if (existing != null) {
+                return new SecretKeySpec(existing, "AES");
+            }
+        }
+
+        final var key = derive(salt); // outside the lock, it is the slow part
+        synchronized (keys) {
+            if (closed) {
+                throw new IllegalStateException("Codec closed");
+            }
+            keys.putIfAbsent(cacheKey, key);
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private byte[] derive(final byte[] salt) throws InvalidKeySpecException, NoSuchAlgorithmException {
+        final var spec = new PBEKeySpec(masterPassword, salt, 65_535, 256);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
     }
 }
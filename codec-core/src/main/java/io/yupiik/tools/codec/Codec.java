@@ -15,10 +15,28 @@
  */
 package io.yupiik.tools.codec;
 
-public interface Codec {
+public interface Codec extends AutoCloseable {
     boolean isEncrypted(String value);
 
     String encrypt(String input);
 
     String decrypt(String value);
+
+    /**
+     * Codec to use to encrypt a set of values (a file for example), enables to share costly state between the values.
+     * Default is this codec.
+     *
+     * @return the codec to use for the batch.
+     */
+    default Codec batch() {
+        return this;
+    }
+
+    /**
+     * Releases (wipes) the key material held by the codec if any.
+     */
+    @Override
+    default void close() {
+        // no-op
+    }
 }
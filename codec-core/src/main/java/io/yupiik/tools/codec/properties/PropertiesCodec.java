@@ -45,6 +45,7 @@ public class PropertiesCodec {
      */
     public Properties crypt(final Collection<String> keys, final Properties from, final Properties alreadyCiphered) {
         final Properties to = new Properties();
+        final var batch = codec.batch(); // all new values share the same key derivation
         to.putAll((keys == null ? from.stringPropertyNames() : keys).stream().collect(toMap(identity(), e -> {
             final var value = from.getProperty(e, "");
             if (!value.isBlank() && codec.isEncrypted(value)) {
@@ -58,7 +59,7 @@ public class PropertiesCodec {
                 }
             }
 
-            return codec.encrypt(value);
+            return batch.encrypt(value);
         })));
         return to;
     }
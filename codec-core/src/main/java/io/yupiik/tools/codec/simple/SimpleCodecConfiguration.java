@@ -28,4 +28,10 @@ import static lombok.AccessLevel.PRIVATE;
 @AllArgsConstructor(access = PRIVATE)
 public class SimpleCodecConfiguration {
     private String masterPassword;
+
+    /**
+     * How many derived keys (per salt) AES256GCMCodec keeps in memory, 0 disables the cache.
+     */
+    @Builder.Default
+    private int keyCacheSize = 16;
 }
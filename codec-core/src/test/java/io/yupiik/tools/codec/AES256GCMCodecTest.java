@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AES256GCMCodecTest {
@@ -36,4 +37,49 @@ class AES256GCMCodecTest {
         assertFalse(codec.isEncrypted("foo"));
         assertEquals("foo", codec.decrypt(encrypted));
     }
+
+    @Test
+    void batchSharesSaltButNotIv() {
+        try (final var codec = new AES256GCMCodec(SimpleCodecConfiguration.builder()
+                .masterPassword("123456")
+                .build())) {
+            final var batch = codec.batch();
+            final var first = batch.encrypt("foo");
+            final var second = batch.encrypt("bar");
+            assertEquals(tag(first), tag(second));
+            assertNotEquals(iv(first), iv(second));
+            assertNotEquals(tag(first), tag(codec.batch().encrypt("foo")));
+
+            assertEquals("foo", codec.decrypt(first));
+            assertEquals("bar", codec.decrypt(second));
+
+            // no cache, same format so it is still readable
+            try (final var uncached = new AES256GCMCodec(SimpleCodecConfiguration.builder()
+                    .masterPassword("123456")
+                    .keyCacheSize(0)
+                    .build())) {
+                assertEquals("foo", uncached.decrypt(first));
+                assertEquals("bar", uncached.decrypt(second));
+            }
+        }
+    }
+
+    @Test
+    void closedCodecCanNotBeUsed() {
+        final var codec = new AES256GCMCodec(SimpleCodecConfiguration.builder()
+                .masterPassword("123456")
+                .build());
+        final var encrypted = codec.encrypt("foo");
+        codec.close();
+        assertThrows(IllegalStateException.class, () -> codec.decrypt(encrypted));
+        assertThrows(IllegalStateException.class, () -> codec.encrypt("foo"));
+    }
+
+    private static String iv(final String value) {
+        return value.substring(value.indexOf(",iv:"), value.indexOf(",tag:"));
+    }
+
+    private static String tag(final String value) {
+        return value.substring(value.indexOf(",tag:"), value.indexOf(",type:"));
+    }
 }
@@ -47,7 +47,7 @@ public class ActionExecutor {
         }
     }
 
-    private Class<? extends Runnable> findActionClass(final String name) throws ClassNotFoundException {
+    Class<? extends Runnable> findActionClass(final String name) throws ClassNotFoundException {
         switch (name) {
             case "maven-plugin":
                 return MojoDocumentationGeneration.class;
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.bind.JsonbConfig;
+import jakarta.json.bind.config.PropertyOrderStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Collects the duration of the minisite build phases and of each rendered page.
+ * It is thread safe since pages can be rendered concurrently.
+ */
+public class BuildTimings {
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, PageTiming> pages = new ConcurrentHashMap<>();
+    private final ThreadLocal<PageTiming> current = new ThreadLocal<>();
+
+    public void phase(final String name, final Runnable task) {
+        phase(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> T phase(final String name, final Supplier<T> task) {
+        final long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            final double duration = toMillis(System.nanoTime() - start);
+            synchronized (phases) {
+                phases.add(new Phase(name, duration));
+            }
+        }
+    }
+
+    public PageTiming page(final String path) {
+        return pages.computeIfAbsent(path, PageTiming::new);
+    }
+
+    /**
+     * Binds a page to the current thread to attribute it nested durations (asciidoc conversion).
+     *
+     * @param page the page being rendered or {@code null} to unbind it.
+     */
+    public void setCurrentPage(final PageTiming page) {
+        if (page == null) {
+            current.remove();
+        } else {
+            current.set(page);
+        }
+    }
+
+    public void addRender(final long nanos) {
+        final PageTiming page = current.get();
+        if (page != null) {
+            synchronized (page) {
+                page.setRender(page.getRender() + toMillis(nanos));
+            }
+        }
+    }
+
+    public Report toReport() {
+        final List<Phase> phasesCopy;
+        synchronized (phases) {
+            phasesCopy = new ArrayList<>(phases);
+        }
+        return new Report(phasesCopy, pages.values().stream()
+                .sorted(comparing(PageTiming::getTotal).reversed().thenComparing(PageTiming::getPath))
+                .collect(toList()));
+    }
+
+    /**
+     * Writes {@code timings.json} (phases and pages) and {@code timings.csv} (pages) in {@code directory}
+     * and logs the phases and {@code topN} slowest pages.
+     *
+     * @param directory where to write the reports.
+     * @param topN      how many pages to log.
+     * @param logger    where to log the summary.
+     */
+    public void report(final Path directory, final int topN, final Consumer<String> logger) {
+        final Report report = toReport();
+        try {
+            Files.createDirectories(directory);
+            try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig()
+                    .withFormatting(true)
+                    .withPropertyOrderStrategy(PropertyOrderStrategy.LEXICOGRAPHICAL));
+                 final BufferedWriter writer = Files.newBufferedWriter(directory.resolve("timings.json"))) {
+                jsonb.toJson(report, writer);
+            }
+            try (final BufferedWriter writer = Files.newBufferedWriter(directory.resolve("timings.csv"))) {
+                writer.write("path;parse_ms;render_ms;template_ms;write_ms;total_ms;size\n");
+                for (final PageTiming page : report.getPages()) {
+                    writer.write(page.getPath() + ';' + format(page.getParse()) + ';' + format(page.getRender()) + ';' +
+                            format(page.getTemplate()) + ';' + format(page.getWrite()) + ';' + format(page.getTotal()) + ';' +
+                            page.getSize() + '\n');
+                }
+            }
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        logger.accept("Minisite phases: " + report.getPhases().stream()
+                .map(it -> it.getName() + '=' + format(it.getDuration()) + "ms")
+                .collect(joining(", ")));
+        if (topN > 0 && !report.getPages().isEmpty()) {
+            logger.accept("Slowest pages:\n" + report.getPages().stream()
+                    .limit(topN)
+                    .map(it -> "  " + it.getPath() + ": " + format(it.getTotal()) + "ms (" +
+                            "parse=" + format(it.getParse()) + "ms, render=" + format(it.getRender()) + "ms, " +
+                            "template=" + format(it.getTemplate()) + "ms, write=" + format(it.getWrite()) + "ms, " +
+                            "size=" + it.getSize() + "b)")
+                    .collect(joining("\n")));
+        }
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    public static double toMillis(final long nanos) {
+        return nanos / 1_000_000.;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Report {
+        private List<Phase> phases;
+        private List<PageTiming> pages;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Phase {
+        private String name;
+        private double duration;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class PageTiming {
+        private String path;
+        private double parse;
+        private double render; // asciidoc conversion
+        private double template; // substitutions and layout
+        private double write;
+        private long size;
+
+        public PageTiming(final String path) {
+            this.path = path;
+        }
+
+        public double getTotal() {
+            return parse + render + template + write;
+        }
+    }
+}
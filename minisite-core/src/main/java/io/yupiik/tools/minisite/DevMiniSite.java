@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite;
+
+import io.yupiik.tools.minisite.language.Asciidoc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static java.util.function.Function.identity;
+
+/**
+ * Minisite flavor for development servers.
+ * After a first full rendering, pages (once read) and templates are kept in memory and a changed page is only re-rendered - in memory -
+ * when it is requested.
+ * Any change which can impact other pages (templates, assets, partials, blog posts, title or {@code minisite-*} attributes,
+ * added or deleted pages) triggers a full rendering.
+ */
+public class DevMiniSite extends MiniSite {
+    private final MiniSiteConfiguration configuration;
+    private final Map<Path, Page> pagesPerSource = new HashMap<>();
+    private final Map<String, Path> sourcePerPath = new HashMap<>();
+    private final Map<String, byte[]> rendered = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private Function<Page, String> template;
+    private Function<Page, String> footerNavTemplate;
+    private String leftMenu;
+    private String titleTemplate;
+    private String contentTemplate;
+
+    public DevMiniSite(final MiniSiteConfiguration configuration) {
+        super(configuration);
+        this.configuration = configuration;
+    }
+
+    @Override
+    public synchronized void doRender(final Asciidoc.AsciidocInstance asciidoctor, final Object options) {
+        pagesPerSource.clear();
+        sourcePerPath.clear();
+        rendered.clear();
+        dirty.clear();
+        leftMenu = null;
+        super.doRender(asciidoctor, options);
+
+        final Path templates = getTemplatesDir();
+        titleTemplate = findPageTemplate(templates, "page-title");
+        contentTemplate = findPageTemplate(templates, "page-content");
+    }
+
+    /**
+     * Updates the in memory model for the changed files and marks changed pages as needing a rendering.
+     *
+     * @param asciidoctor asciidoc instance.
+     * @param options     rendering options.
+     * @param files       the changed files (as reported by the watcher), empty if unknown which leads to a full rendering.
+     * @return the changed pages (relative paths), an empty list if no page changed or {@code null} if a full rendering was done.
+     */
+    public synchronized Collection<String> refresh(final Asciidoc.AsciidocInstance asciidoctor, final Object options,
+                                                   final Collection<Path> files) {
+        if (files.isEmpty()) {
+            doRender(asciidoctor, options);
+            return null;
+        }
+
+        final List<Path> changed = new ArrayList<>(files.size());
+        for (final Path file : files) {
+            final Path normalized = file.toAbsolutePath().normalize();
+            if (!Files.isDirectory(normalized)) { // a new folder comes with its files
+                changed.add(normalized);
+            }
+        }
+
+        final Path content = configuration.getSource().resolve("content").toAbsolutePath().normalize();
+        final List<Page> pages = new ArrayList<>(changed.size());
+        try {
+            for (final Path file : changed) {
+                final Page previous = pagesPerSource.get(file);
+                if (previous == null || !Files.exists(file) || isBlogPage(previous)) {
+                    doRender(asciidoctor, options);
+                    return null;
+                }
+                final Page page = toPage(content, file, asciidoctor, options);
+                if (isBlogPage(page) || page.getAttributes().containsKey("minisite-skip") || !isSameNavigation(previous, page)) {
+                    doRender(asciidoctor, options);
+                    return null;
+                }
+                pages.add(page);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final List<String> paths = new ArrayList<>(pages.size());
+        for (final Page page : pages) {
+            rendered.remove(page.getRelativePath());
+            dirty.add(page.getRelativePath());
+            paths.add(page.getRelativePath());
+        }
+        return paths;
+    }
+
+    /**
+     * @param path the relative path of the page (as in the website, starting with a slash).
+     * @return {@code true} if the page changed and must be rendered with {@link #get(String, Asciidoc.AsciidocInstance, Object)}.
+     */
+    public synchronized boolean isDirty(final String path) {
+        return dirty.contains(path);
+    }
+
+    /**
+     * @param path the relative path of the page (as in the website, starting with a slash).
+     * @return the in memory version of the page if already rendered or read, {@code null} otherwise (dirty page or page not yet read).
+     */
+    public synchronized byte[] get(final String path) {
+        return rendered.get(path);
+    }
+
+    /**
+     * @param path the relative path of the page (as in the website, starting with a slash).
+     * @param file the page on the disk.
+     * @return the page, read from the disk only once after a full rendering, {@code null} if it does not exist.
+     * @throws IOException if the page can't be read.
+     */
+    public synchronized byte[] read(final String path, final Path file) throws IOException {
+        final byte[] inMemory = rendered.get(path);
+        if (inMemory != null || !Files.exists(file)) {
+            return inMemory;
+        }
+        final byte[] content = Files.readAllBytes(file);
+        rendered.put(path, content);
+        return content;
+    }
+
+    /**
+     * @param path        the relative path of the page (as in the website, starting with a slash).
+     * @param asciidoctor asciidoc instance.
+     * @param options     rendering options.
+     * @return the in memory version of the page or {@code null} if it is the one on the disk.
+     */
+    public synchronized byte[] get(final String path, final Asciidoc.AsciidocInstance asciidoctor, final Object options) {
+        if (dirty.remove(path)) {
+            final Page page = pagesPerSource.get(sourcePerPath.get(path));
+            String html = renderPage(
+                    page, configuration.getTarget().resolve(path.substring(1)), asciidoctor, options, true, identity(), null,
+                    footerNavTemplate, titleTemplate, contentTemplate, template);
+            if (leftMenu != null) {
+                html = html.replace("<minisite-menu-placeholder/>", leftMenu);
+            }
+            rendered.put(path, html.getBytes(StandardCharsets.UTF_8));
+        }
+        return rendered.get(path);
+    }
+
+    @Override
+    protected Page toPage(final Path content, final Path file, final Asciidoc.AsciidocInstance asciidoctor, final Object options) throws IOException {
+        final Page page = super.toPage(content, file, asciidoctor, options);
+        final Path key = file.toAbsolutePath().normalize();
+        pagesPerSource.put(key, page);
+        sourcePerPath.put(page.getRelativePath(), key);
+        return page;
+    }
+
+    @Override
+    public Function<Page, String> createTemplate(final Object options, final Asciidoc.AsciidocInstance asciidoctor, final boolean hasBlog) {
+        template = super.createTemplate(options, asciidoctor, hasBlog);
+        return template;
+    }
+
+    @Override
+    protected Function<Page, String> loadNavTemplates() {
+        footerNavTemplate = super.loadNavTemplates();
+        return footerNavTemplate;
+    }
+
+    @Override
+    protected String leftMenu(final Map<Page, Path> files) {
+        leftMenu = super.leftMenu(files);
+        return leftMenu;
+    }
+
+    private boolean isSameNavigation(final Page previous, final Page page) {
+        return Objects.equals(previous.getTitle(), page.getTitle()) &&
+                Objects.equals(previous.getRelativePath(), page.getRelativePath()) &&
+                minisiteAttributes(previous).equals(minisiteAttributes(page));
+    }
+
+    private Map<String, String> minisiteAttributes(final Page page) {
+        final Map<String, String> attributes = new TreeMap<>();
+        page.getAttributes().forEach((k, v) -> {
+            if (k.startsWith("minisite-")) {
+                attributes.put(k, v);
+            }
+        });
+        return attributes;
+    }
+}
@@ -16,8 +16,12 @@
 package io.yupiik.tools.minisite;
 
 import io.yupiik.tools.minisite.language.Asciidoc;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -25,8 +29,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
@@ -42,21 +44,30 @@ import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -70,9 +81,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
@@ -82,6 +91,7 @@ public class MiniSite implements Runnable {
     private final Gravatar gravatar = new Gravatar();
     private final Pattern linkTitleReplacement = Pattern.compile("[\"\n]");
     private final Urlifier urlifier = new Urlifier();
+    private BuildTimings timings = new BuildTimings();
 
     public MiniSite(final MiniSiteConfiguration configuration) {
         this.configuration = configuration;
@@ -90,7 +100,7 @@ public class MiniSite implements Runnable {
 
     @Override
     public void run() {
-        executePreActions();
+        timings.phase("pre-actions", this::executePreActions);
         if (configuration.isSkipRendering()) {
             configuration.getAsciidoctorConfiguration().info().accept("Rendering (and upload) skipped");
             return;
@@ -126,7 +136,10 @@ public class MiniSite implements Runnable {
                 .orElseGet(Thread.currentThread()::getContextClassLoader);
         try {
             thread.setContextClassLoader(classLoader);
-            configuration.getPreActions().forEach(it -> executor.execute(it, configuration.getSource(), configuration.getTarget()));
+            new PreActionScheduler(
+                    executor, configuration.getPreActionsThreads(), configuration.getPreActionsState(),
+                    configuration.getAsciidoctorConfiguration().info())
+                    .execute(configuration.getPreActions(), configuration.getSource(), configuration.getTarget());
         } finally {
             if (URLClassLoader.class.isInstance(classLoader) && actionClassLoader != null) {
                 try {
@@ -149,41 +162,68 @@ public class MiniSite implements Runnable {
         final String titleTemplate = findPageTemplate(templates, "page-title");
         final String contentTemplate = findPageTemplate(templates, "page-content");
         return template -> {
+            final BuildTimings.PageTiming timing = timings.page('/' + configuration.getTarget().relativize(html).toString().replace(File.separatorChar, '/'));
+            timings.setCurrentPage(timing);
             try {
-                final Map<String, String> attrs = new HashMap<>(Map.of("minisite-passthrough", "true"));
-                attrs.putAll(page.attributes);
-                final String title = ofNullable(page.title)
-                        .map(t -> new TemplateSubstitutor(key -> {
-                            if ("title".equals(key)) {
-                                return t;
-                            }
-                            return getDefaultInterpolation(key, page, asciidoctor, options, null);
-                        }).replace(titleTemplate))
-                        .orElse("");
-                final String body = new TemplateSubstitutor(key -> {
-                    if ("title".equals(key)) {
-                        return title;
-                    }
-                    return getDefaultInterpolation(key, page, asciidoctor, options, k -> {
-                        switch (k) {
-                            case "pageFooterNav":
-                                return footerNavTemplate.apply(page);
-                            default:
-                                return getDefaultInterpolation(k, page, asciidoctor, options, customInterpolations);
-                        }
-                    });
-                }).replace(contentTemplate);
-                final String content = template.apply(new Page(
-                        '/' + configuration.getTarget().relativize(html).toString().replace(File.separatorChar, '/'),
-                        ofNullable(page.title).orElseGet(() -> getTitle(options)),
-                        attrs, body));
-                Files.writeString(html, postProcessor.apply(withLeftMenuIfConfigured || !configuration.isTemplateAddLeftMenu() ? content : dropLeftMenu(content)));
+                final long start = System.nanoTime();
+                final byte[] bytes = renderPage(
+                        page, html, asciidoctor, options, withLeftMenuIfConfigured, postProcessor, customInterpolations, footerNavTemplate,
+                        titleTemplate, contentTemplate, template)
+                        .getBytes(StandardCharsets.UTF_8);
+                final long beforeWrite = System.nanoTime();
+                Files.write(html, bytes);
+                final long end = System.nanoTime();
+                synchronized (timing) {
+                    timing.setTemplate(timing.getTemplate() + BuildTimings.toMillis(beforeWrite - start) - timing.getRender());
+                    timing.setWrite(timing.getWrite() + BuildTimings.toMillis(end - beforeWrite));
+                    timing.setSize(bytes.length);
+                }
             } catch (final IOException e) {
                 throw new IllegalStateException(e);
+            } finally {
+                timings.setCurrentPage(null);
             }
         };
     }
 
+    protected String renderPage(final Page page, final Path html,
+                                final Asciidoc.AsciidocInstance asciidoctor, final Object options,
+                                final boolean withLeftMenuIfConfigured,
+                                final Function<String, String> postProcessor,
+                                final Function<String, String> customInterpolations,
+                                final Function<Page, String> footerNavTemplate,
+                                final String titleTemplate, final String contentTemplate,
+                                final Function<Page, String> template) {
+        final Map<String, String> attrs = new HashMap<>(Map.of("minisite-passthrough", "true"));
+        attrs.putAll(page.attributes);
+        final String title = ofNullable(page.title)
+                .map(t -> new TemplateSubstitutor(key -> {
+                    if ("title".equals(key)) {
+                        return t;
+                    }
+                    return getDefaultInterpolation(key, page, asciidoctor, options, null);
+                }).replace(titleTemplate))
+                .orElse("");
+        final String body = new TemplateSubstitutor(key -> {
+            if ("title".equals(key)) {
+                return title;
+            }
+            return getDefaultInterpolation(key, page, asciidoctor, options, k -> {
+                switch (k) {
+                    case "pageFooterNav":
+                        return footerNavTemplate.apply(page);
+                    default:
+                        return getDefaultInterpolation(k, page, asciidoctor, options, customInterpolations);
+                }
+            });
+        }).replace(contentTemplate);
+        final String content = template.apply(new Page(
+                '/' + configuration.getTarget().relativize(html).toString().replace(File.separatorChar, '/'),
+                ofNullable(page.title).orElseGet(() -> getTitle(options)),
+                attrs, body));
+        return postProcessor.apply(withLeftMenuIfConfigured || !configuration.isTemplateAddLeftMenu() ? content : dropLeftMenu(content));
+    }
+
     protected String findPageTemplate(final Path templates, final String name) {
         return requireNonNull(findTemplate(templates, name + (name.endsWith(".adoc") ? "" : ".html")), "can't find " + name + " template")
                 .collect(joining("\n"));
@@ -563,22 +603,88 @@ public class MiniSite implements Runnable {
                 .sorted(comparing(p -> Integer.parseInt(String.valueOf(p.getKey().attributes.get("minisite-index")).trim())));
     }
 
-    protected String generateSiteMap(final Map<Page, Path> pages) {
+    /**
+     * Writes the sitemap in streaming mode. If there are more urls than allowed in a single sitemap
+     * (50,000 per the protocol), {@code sitemap.xml} becomes a sitemap index referencing {@code sitemap-<n>.xml} chunks.
+     *
+     * @param pages the pages to reference.
+     */
+    protected void generateSiteMap(final Map<Page, Path> pages) {
         final String now = LocalDate.now().toString();
         final Path output = configuration.getTarget();
-        return pages.entrySet().stream()
+        final List<Map.Entry<Page, Path>> sorted = pages.entrySet().stream()
                 .sorted(comparing(p -> p.getKey().title == null ? "" : p.getKey().title))
-                .map(it -> "" +
-                        "    <url>\n" +
-                        "        <loc>" + configuration.getSiteBase() + '/' + output.relativize(it.getValue()) + "</loc>\n" +
-                        "        <lastmod>" + ofNullable(it.getKey().attributes.get("minisite-lastmod")).map(String::valueOf).orElse(now) + "</lastmod>\n" +
-                        "    </url>\n")
-                .collect(joining("",
-                        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                                "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" " +
-                                "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
-                                "xsi:schemaLocation=\"http://www.sitemaps.org/schemas/sitemap/0.9 http://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd\">\n",
-                        "</urlset>\n"));
+                .collect(toList());
+        final int maxUrls = configuration.getSiteMapMaxUrls() <= 0 ? 50_000 : configuration.getSiteMapMaxUrls();
+        if (sorted.size() <= maxUrls) {
+            deleteStaleSiteMaps(output, 0);
+            writeUrlSet(output.resolve("sitemap.xml"), sorted, now);
+            configuration.getAsciidoctorConfiguration().debug().accept("Generated sitemap.xml");
+            return;
+        }
+
+        final int chunks = (int) Math.ceil(sorted.size() * 1. / maxUrls);
+        deleteStaleSiteMaps(output, chunks);
+        for (int i = 0; i < chunks; i++) {
+            writeUrlSet(output.resolve("sitemap-" + (i + 1) + ".xml"), sorted.subList(i * maxUrls, Math.min(sorted.size(), (i + 1) * maxUrls)), now);
+        }
+        writeXml(output.resolve("sitemap.xml"), xml -> {
+            xml.writeStartElement("sitemapindex");
+            xml.writeDefaultNamespace("http://www.sitemaps.org/schemas/sitemap/0.9");
+            for (int i = 1; i <= chunks; i++) {
+                xml.writeCharacters("\n    ");
+                xml.writeStartElement("sitemap");
+                writeXmlElement(xml, "\n        ", "loc", configuration.getSiteBase() + "/sitemap-" + i + ".xml");
+                writeXmlElement(xml, "\n        ", "lastmod", now);
+                xml.writeCharacters("\n    ");
+                xml.writeEndElement();
+            }
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        });
+        configuration.getAsciidoctorConfiguration().debug().accept("Generated sitemap.xml index with " + chunks + " sitemaps");
+    }
+
+    // a previous rendering can have generated more chunks, they would still be published but not referenced anymore
+    private void deleteStaleSiteMaps(final Path output, final int chunks) {
+        final Pattern chunk = Pattern.compile("sitemap-(\\d+)\\.xml");
+        try (final Stream<Path> files = Files.list(output)) {
+            final List<Path> stale = files
+                    .filter(it -> {
+                        final Matcher matcher = chunk.matcher(it.getFileName().toString());
+                        return matcher.matches() && Integer.parseInt(matcher.group(1)) > chunks;
+                    })
+                    .collect(toList());
+            for (final Path file : stale) {
+                Files.delete(file);
+                configuration.getAsciidoctorConfiguration().debug().accept("Deleted stale " + file);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeUrlSet(final Path target, final List<Map.Entry<Page, Path>> pages, final String now) {
+        final Path output = configuration.getTarget();
+        writeXml(target, xml -> {
+            xml.writeStartElement("urlset");
+            xml.writeDefaultNamespace("http://www.sitemaps.org/schemas/sitemap/0.9");
+            xml.writeNamespace("xsi", "http://www.w3.org/2001/XMLSchema-instance");
+            xml.writeAttribute("xsi", "http://www.w3.org/2001/XMLSchema-instance", "schemaLocation",
+                    "http://www.sitemaps.org/schemas/sitemap/0.9 http://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd");
+            for (final Map.Entry<Page, Path> it : pages) {
+                xml.writeCharacters("\n    ");
+                xml.writeStartElement("url");
+                writeXmlElement(xml, "\n        ", "loc", configuration.getSiteBase() + '/' + output.relativize(it.getValue()).toString().replace(File.separatorChar, '/'));
+                writeXmlElement(xml, "\n        ", "lastmod", ofNullable(it.getKey().attributes.get("minisite-lastmod")).map(String::valueOf).orElse(now));
+                xml.writeCharacters("\n    ");
+                xml.writeEndElement();
+            }
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        });
     }
 
     public void doRender(final Asciidoc.AsciidocInstance asciidoctor, final Object options) {
@@ -594,7 +700,7 @@ public class MiniSite implements Runnable {
                 throw new IllegalStateException(e);
             }
         }
-        final Collection<Page> pages = findPages(asciidoctor, options);
+        final Collection<Page> pages = timings.phase("find-pages", () -> findPages(asciidoctor, options));
         Function<Page, String> template = null;
         boolean hasBlog = false;
         List<String> categories = emptyList();
@@ -604,54 +710,85 @@ public class MiniSite implements Runnable {
             final Function<Page, String> footerNavTemplate = loadNavTemplates();
             pages.forEach(page -> pageToRender.add(onVisitedFile(page, asciidoctor, options, files, now, blog, footerNavTemplate)));
             hasBlog = (!blog.isEmpty() && configuration.isGenerateBlog());
-            template = createTemplate(options, asciidoctor, hasBlog);
+            final boolean withBlog = hasBlog;
+            template = timings.phase("template", () -> createTemplate(options, asciidoctor, withBlog));
             final Function<Page, String> tpl = template;
-            pageToRender.forEach(it -> it.accept(tpl));
+            timings.phase("pages", () -> pageToRender.forEach(it -> it.accept(tpl)));
             if (hasBlog) {
-                categories = generateBlog(blog, asciidoctor, options, template);
+                final Function<Page, String> blogTemplate = template;
+                categories = timings.phase("blog", () -> generateBlog(blog, asciidoctor, options, blogTemplate));
             }
         }
         if (configuration.isGenerateIndex()) {
             if (template == null) {
                 template = createTemplate(options, asciidoctor, false);
             }
-            try {
-                Files.write(output.resolve("index.html"), generateIndex(files, template, hasBlog, categories, options).getBytes(StandardCharsets.UTF_8));
-                configuration.getAsciidoctorConfiguration().debug().accept("Generated index.html");
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
+            final Function<Page, String> indexTemplate = template;
+            final boolean indexHasBlog = hasBlog;
+            final List<String> indexCategories = categories;
+            timings.phase("index", () -> {
+                try {
+                    Files.write(output.resolve("index.html"), generateIndex(files, indexTemplate, indexHasBlog, indexCategories, options).getBytes(StandardCharsets.UTF_8));
+                    configuration.getAsciidoctorConfiguration().debug().accept("Generated index.html");
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
         }
         if (configuration.isGenerateSiteMap()) { // ignore blog virtual pages since we want to index the content
-            try {
-                Files.write(output.resolve("sitemap.xml"), generateSiteMap(files).getBytes(StandardCharsets.UTF_8));
-                configuration.getAsciidoctorConfiguration().debug().accept("Generated sitemap.xml");
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
+            timings.phase("sitemap", () -> generateSiteMap(files));
         }
         if (configuration.isTemplateAddLeftMenu()) {
-            final String leftMenu = leftMenu(files);
-            try {
-                Files.walkFileTree(output, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                        if (file.getFileName().toString().endsWith(".html")) {
-                            final List<String> lines = Files.readAllLines(file);
-                            final int toReplace = lines.indexOf("<minisite-menu-placeholder/>");
-                            if (toReplace >= 0) {
-                                configuration.getAsciidoctorConfiguration().debug().accept("Replacing left menu in " + file);
-                                lines.set(toReplace, leftMenu);
-                                Files.write(file, lines);
-                            }
+            timings.phase("left-menu", () -> injectLeftMenu(files, output));
+        }
+        timings.phase("assets", this::copyAssets);
+        if (hasSearch()) {
+            timings.phase("search-index", this::indexSearch);
+        }
+        if (configuration.getRssFeedFile() != null) {
+            timings.phase("rss", () -> {
+                final Path out = output.resolve(configuration.getRssFeedFile());
+                try {
+                    Files.createDirectories(out.getParent());
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                generateRssFeed(out, files, options);
+            });
+        }
+
+        configuration.getAsciidoctorConfiguration().info().accept("Rendered minisite '" + configuration.getSource().getFileName() + "'");
+        if (configuration.getTimingReport() != null) {
+            timings.report(configuration.getTimingReport(), configuration.getTimingReportTopN(), configuration.getAsciidoctorConfiguration().info());
+        }
+        timings = new BuildTimings(); // next rendering (serve mode) starts from scratch
+    }
+
+    protected void injectLeftMenu(final Map<Page, Path> files, final Path output) {
+        final String leftMenu = leftMenu(files);
+        try {
+            Files.walkFileTree(output, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    if (file.getFileName().toString().endsWith(".html")) {
+                        final List<String> lines = Files.readAllLines(file);
+                        final int toReplace = lines.indexOf("<minisite-menu-placeholder/>");
+                        if (toReplace >= 0) {
+                            configuration.getAsciidoctorConfiguration().debug().accept("Replacing left menu in " + file);
+                            lines.set(toReplace, leftMenu);
+                            Files.write(file, lines);
                         }
-                        return super.visitFile(file, attrs);
                     }
-                });
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
+                    return super.visitFile(file, attrs);
+                }
+            });
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
         }
+    }
+
+    protected void copyAssets() {
+        final Path output = configuration.getTarget();
         if (configuration.isUseDefaultAssets()) {
             Stream.of(
                             "yupiik-tools-maven-plugin/minisite/assets/css/theme.css",
@@ -689,51 +826,36 @@ public class MiniSite implements Runnable {
                 throw new IllegalStateException(e);
             }
         }
+    }
 
-        if (hasSearch()) {
-            final Predicate<String> ignoredPages = configuration.getNotIndexedPages() == null || configuration.getNotIndexedPages().isEmpty() ?
-                    s -> false :
-                    configuration.getNotIndexedPages().stream()
-                            .map(it -> {
-                                if (it.startsWith("regex:")) {
-                                    return Pattern.compile(it.substring("regex:".length())).asMatchPredicate();
-                                }
-                                if (it.startsWith("prefix:")) {
-                                    final String value = it.substring("prefix:".length());
-                                    return (Predicate<String>) s -> s.startsWith(value);
-                                }
-                                return (Predicate<String>) it::equals;
-                            })
-                            .reduce(s -> false, Predicate::or);
-            final IndexService indexer = new IndexService();
-            indexer.write(indexer.index(output, configuration.getSiteBase(), path -> {
-                final String location = configuration.getTarget().relativize(path).toString().replace(File.separatorChar, '/');
-                final String name = path.getFileName().toString();
-                if ((location.startsWith("blog/") && (name.startsWith("page-") || name.equals("index.html"))) || ignoredPages.test(name)) {
-                    return false;
-                }
-                return true;
-            }), output.resolve(configuration.getSearchIndexName()));
-        }
-        if (configuration.getRssFeedFile() != null) {
-            final Path out = output.resolve(configuration.getRssFeedFile());
-            try {
-                Files.createDirectories(out.getParent());
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
-            try (final BufferedWriter rss = Files.newBufferedWriter(out, UTF_8)) {
-                final String rssContent = generateRssFeed(files, options);
-                rss.write(rssContent);
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+    protected void indexSearch() {
+        final Path output = configuration.getTarget();
+        final Predicate<String> ignoredPages = configuration.getNotIndexedPages() == null || configuration.getNotIndexedPages().isEmpty() ?
+                s -> false :
+                configuration.getNotIndexedPages().stream()
+                        .map(it -> {
+                            if (it.startsWith("regex:")) {
+                                return Pattern.compile(it.substring("regex:".length())).asMatchPredicate();
+                            }
+                            if (it.startsWith("prefix:")) {
+                                final String value = it.substring("prefix:".length());
+                                return (Predicate<String>) s -> s.startsWith(value);
+                            }
+                            return (Predicate<String>) it::equals;
+                        })
+                        .reduce(s -> false, Predicate::or);
+        final IndexService indexer = new IndexService();
+        indexer.write(indexer.index(output, configuration.getSiteBase(), path -> {
+            final String location = configuration.getTarget().relativize(path).toString().replace(File.separatorChar, '/');
+            final String name = path.getFileName().toString();
+            if ((location.startsWith("blog/") && (name.startsWith("page-") || name.equals("index.html"))) || ignoredPages.test(name)) {
+                return false;
             }
-        }
-
-        configuration.getAsciidoctorConfiguration().info().accept("Rendered minisite '" + configuration.getSource().getFileName() + "'");
+            return true;
+        }), output.resolve(configuration.getSearchIndexName()));
     }
 
-    private String generateRssFeed(final Map<Page, Path> files, final Object options) {
+    protected void generateRssFeed(final Path out, final Map<Page, Path> files, final Object options) {
         final List<Map.Entry<Page, OffsetDateTime>> all = files.keySet().stream()
                 .filter(it -> {
                     final String name = files.get(it).getFileName().toString();
@@ -743,71 +865,122 @@ public class MiniSite implements Runnable {
                 .sorted(Map.Entry.<Page, OffsetDateTime>comparingByValue().reversed())
                 .collect(toList());
 
-        final Function<String, String> escaper = findXmlEscaper();
         final DateTimeFormatter formatter = DateTimeFormatter.RFC_1123_DATE_TIME;
         final String baseSite = configuration.getSiteBase() + (!configuration.getSiteBase().endsWith("/") ? "/" : "");
-        final String items = all.stream()
-                .map(Map.Entry::getKey)
-                .map(it -> {
-                    final String title = getTitle(it);
-                    return "" +
-                            "   <item>\n" +
-                            "    <title>" + escaper.apply(title) + "</title>\n" +
-                            "    <description>" + escaper.apply(ofNullable(it.attributes.get("minisite-blog-summary")).map(String::valueOf).orElse(title)) + "</description>\n" +
-                            "    <link>" + baseSite + it.relativePath.substring(1) + "</link>\n" +
-                            "    <guid isPermaLink=\"false\">" + it.relativePath + "</guid>\n" +
-                            "    <pubDate>" + readPublishedDate(it).format(formatter) + "</pubDate>\n" +
-                            "   </item>";
-                })
-                .collect(joining("\n", "", "\n"));
         final String lastDate = all.stream().limit(1).findFirst().map(Map.Entry::getValue).orElseGet(OffsetDateTime::now).format(formatter);
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
-                "<rss version=\"2.0\" xmlns:atom=\"http://www.w3.org/2005/Atom\">\n" +
-                "  <channel>\n" +
-                "   <atom:link href=\"" + baseSite + configuration.getRssFeedFile() + "\" rel=\"self\" type=\"application/rss+xml\" />\n" +
-                "   <title>" + escaper.apply(getTitle(options)) + "</title>\n" +
-                "   <description>" + escaper.apply(getIndexSubTitle(false)) + "</description>\n" +
-                "   <link>" + baseSite + configuration.getRssFeedFile() + "</link>\n" +
-                "   <lastBuildDate>" + lastDate + "</lastBuildDate>\n" +
-                "   <pubDate>" + lastDate + "</pubDate>\n" +
-                "   <ttl>1800</ttl>\n" +
-                items +
-                "  </channel>\n" +
-                "</rss>\n";
-    }
-
-    private Function<String, String> findXmlEscaper() {
-        try { // todo: absorb it there to avoid the need of the dep
-            final Class<?> clazz = Thread.currentThread().getContextClassLoader().loadClass("org.apache.commons.lang3.StringEscapeUtils");
-            final Method escapeXml11 = clazz.getMethod("escapeXml11", String.class);
-            if (!escapeXml11.isAccessible()) {
-                escapeXml11.setAccessible(true);
+        writeXml(out, xml -> {
+            xml.writeStartElement("rss");
+            xml.writeAttribute("version", "2.0");
+            xml.writeNamespace("atom", "http://www.w3.org/2005/Atom");
+            xml.writeCharacters("\n  ");
+            xml.writeStartElement("channel");
+            xml.writeCharacters("\n   ");
+            xml.writeEmptyElement("atom", "link", "http://www.w3.org/2005/Atom");
+            xml.writeAttribute("href", baseSite + configuration.getRssFeedFile());
+            xml.writeAttribute("rel", "self");
+            xml.writeAttribute("type", "application/rss+xml");
+            writeXmlElement(xml, "\n   ", "title", getTitle(options));
+            writeXmlElement(xml, "\n   ", "description", getIndexSubTitle(false));
+            writeXmlElement(xml, "\n   ", "link", baseSite + configuration.getRssFeedFile());
+            writeXmlElement(xml, "\n   ", "lastBuildDate", lastDate);
+            writeXmlElement(xml, "\n   ", "pubDate", lastDate);
+            writeXmlElement(xml, "\n   ", "ttl", "1800");
+            for (final Map.Entry<Page, OffsetDateTime> item : all) {
+                final Page it = item.getKey();
+                final String title = getTitle(it);
+                xml.writeCharacters("\n   ");
+                xml.writeStartElement("item");
+                writeXmlElement(xml, "\n    ", "title", title);
+                writeXmlElement(xml, "\n    ", "description", ofNullable(it.attributes.get("minisite-blog-summary")).map(String::valueOf).orElse(title));
+                writeXmlElement(xml, "\n    ", "link", baseSite + it.relativePath.substring(1));
+                xml.writeCharacters("\n    ");
+                xml.writeStartElement("guid");
+                xml.writeAttribute("isPermaLink", "false");
+                xml.writeCharacters(it.relativePath);
+                xml.writeEndElement();
+                writeXmlElement(xml, "\n    ", "pubDate", item.getValue().format(formatter));
+                xml.writeCharacters("\n   ");
+                xml.writeEndElement();
             }
-            return s -> {
-                try {
-                    return String.valueOf(escapeXml11.invoke(null, s));
-                } catch (final IllegalAccessException e) {
-                    throw new IllegalStateException(e);
-                } catch (final InvocationTargetException e) {
-                    throw new IllegalStateException(e.getTargetException());
-                }
-            };
-        } catch (final Exception cnfe) {
-            configuration.getAsciidoctorConfiguration().info()
-                    .accept("Can't load StringEscapeUtils " +
-                            "(ensure you added commons-lang3 if you use rss feature with unsafe characters in titles/descriptions).");
-            return this::xmlEscape;
+            xml.writeCharacters("\n  ");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        });
+    }
+
+    /**
+     * Streams a XML document to a file, the callback only writes the root element (the XML declaration is handled there).
+     *
+     * @param out    the target file.
+     * @param writer the document writer.
+     */
+    protected void writeXml(final Path out, final XmlWriter writer) {
+        try (final BufferedWriter buffer = Files.newBufferedWriter(out, UTF_8)) {
+            final XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(buffer);
+            try {
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeCharacters("\n");
+                writer.write(xml);
+                xml.writeEndDocument();
+                xml.flush();
+            } finally {
+                xml.close();
+            }
+        } catch (final IOException | XMLStreamException e) {
+            throw new IllegalStateException(e);
         }
     }
 
+    private void writeXmlElement(final XMLStreamWriter xml, final String indent, final String name, final String value) throws XMLStreamException {
+        xml.writeCharacters(indent);
+        xml.writeStartElement(name);
+        xml.writeCharacters(stripInvalidXmlChars(value));
+        xml.writeEndElement();
+    }
+
+    /**
+     * Escapes a text for XML content.
+     * Sitemap and RSS feed are written with a streaming writer which escapes values itself,
+     * this is kept for subclasses and templates building XML as text.
+     *
+     * @param text the text to escape.
+     * @return the escaped text.
+     */
     protected String xmlEscape(final String text) {
-        return text
+        return stripInvalidXmlChars(text)
                 // https://www.htmlhelp.com/reference/html40/entities/special.html
                 .replace("&", "&#x26;")
                 .replace("<", "&#x3C;")
                 .replace(">", "&#x3E;");
     }
 
+    protected Function<String, String> findXmlEscaper() {
+        return this::xmlEscape;
+    }
+
+    protected String stripInvalidXmlChars(final String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = null;
+        for (int i = 0; i < text.length(); ) {
+            // an unpaired surrogate is returned as is by codePointAt so it is in the invalid range
+            final int c = text.codePointAt(i);
+            final int length = Character.charCount(c);
+            final boolean valid = c == '\t' || c == '\n' || c == '\r' ||
+                    (c >= 0x20 && c <= 0xD7FF) || (c >= 0xE000 && c <= 0xFFFD) || (c >= 0x10000 && c <= 0x10FFFF);
+            if (!valid && out == null) {
+                out = new StringBuilder(text.length()).append(text, 0, i);
+            } else if (valid && out != null) {
+                out.appendCodePoint(c);
+            }
+            i += length;
+        }
+        return out == null ? text : out.toString();
+    }
+
     protected Consumer<Function<Page, String>> onVisitedFile(final Page page, final Asciidoc.AsciidocInstance asciidoctor, final Object options,
                                                              final Map<Page, Path> files, final OffsetDateTime now, final List<BlogPage> blog,
                                                              final Function<Page, String> footerNavTemplate) {
@@ -881,49 +1054,147 @@ public class MiniSite implements Runnable {
         final String blogItemTemplate = findPageTemplate(templateDir, "blog-list-item.adoc");
         final String blogTemplate = findPageTemplate(templateDir, "blog-list.adoc");
 
-        paginateBlogPages((number, total) -> "Blog Page " + number + "/" + total, "", blog, asciidoctor, options, template, baseBlog, blogItemTemplate, blogTemplate);
-        final List<String> allCategories = new ArrayList<>(paginatePer("category", "categories", blog, asciidoctor, options, template, baseBlog, blogItemTemplate, blogTemplate));
-        paginatePer("author", "authors", blog, asciidoctor, options, template, baseBlog, blogItemTemplate, blogTemplate);
+        // single pass: group per category/author and render the list item of each post once (reused by all listings)
+        final Map<BlogPage, String> items = new IdentityHashMap<>(blog.size());
+        final Map<String, List<BlogPage>> perCategory = new TreeMap<>();
+        final Map<String, List<BlogPage>> perAuthor = new TreeMap<>();
+        for (final BlogPage post : blog) {
+            items.put(post, renderBlogItem(post, blogItemTemplate, asciidoctor, options));
+            groupBy(post, "minisite-blog-categories", perCategory);
+            groupBy(post, "minisite-blog-authors", perAuthor);
+        }
+
+        final List<Consumer<Asciidoc.AsciidocInstance>> tasks = new ArrayList<>();
+        paginateBlogPages((number, total) -> "Blog Page " + number + "/" + total, "", blog, asciidoctor, options, template, baseBlog, items, blogTemplate, tasks);
+        paginatePer("category", "categories", perCategory, asciidoctor, options, template, baseBlog, items, blogTemplate, tasks);
+        paginatePer("author", "authors", perAuthor, asciidoctor, options, template, baseBlog, items, blogTemplate, tasks);
 
         // render all blog pages
-        blog.forEach(bp -> {
-            final Path out = configuration.getTarget().resolve(bp.page.relativePath.substring(1));
-            final int idx = blog.indexOf(bp);
-            render(new Page( // add links to other posts
-                            bp.page.relativePath,
-                            bp.page.title,
-                            bp.page.attributes,
-                            (configuration.isInjectBlogMeta() ? injectBlogMeta(bp) : bp.page.content) + "\n"),
-                    out, asciidoctor, options, false, this::markPageAsBlog, key -> {
-                        switch (key) {
-                            case "hasPreviousLinkClass":
-                                return "has-previous-link-" + (idx > 0);
-                            case "hasNextLinkClass":
-                                return "has-next-link-" + (idx < (blog.size() - 1));
-                            case "previousLinkHref":
-                                return configuration.getSiteBase() + blog.get(idx - 1).page.relativePath;
-                            case "nextLinkHref":
-                                return configuration.getSiteBase() + blog.get(idx + 1).page.relativePath;
-                            case "blogHomeLinkHref":
-                                return configuration.getSiteBase() + "/blog/index.html";
-                            case "categoriesList":
-                                return getCategoriesList(bp);
-                            case "authorsList":
-                                return getAuthorsList(bp);
-                            case "navigationLinks":
-                                return getNavigationLinks(blog, idx);
-                            case "defaultEndOfContent":
-                                return "\n" +
-                                        getAuthorsList(bp) + '\n' +
-                                        getCategoriesList(bp) + '\n' +
-                                        getNavigationLinks(blog, idx);
-                            default:
-                                return null;
-                        }
-                    }, p -> "").accept(template);
-            configuration.getAsciidoctorConfiguration().debug().accept("Rendered " + bp.page.relativePath + " to " + out);
+        for (int i = 0; i < blog.size(); i++) {
+            final int idx = i;
+            final BlogPage bp = blog.get(idx);
+            tasks.add(instance -> {
+                final Path out = configuration.getTarget().resolve(bp.page.relativePath.substring(1));
+                render(new Page( // add links to other posts
+                                bp.page.relativePath,
+                                bp.page.title,
+                                bp.page.attributes,
+                                (configuration.isInjectBlogMeta() ? injectBlogMeta(bp) : bp.page.content) + "\n"),
+                        out, instance, options, false, this::markPageAsBlog, key -> {
+                            switch (key) {
+                                case "hasPreviousLinkClass":
+                                    return "has-previous-link-" + (idx > 0);
+                                case "hasNextLinkClass":
+                                    return "has-next-link-" + (idx < (blog.size() - 1));
+                                case "previousLinkHref":
+                                    return configuration.getSiteBase() + blog.get(idx - 1).page.relativePath;
+                                case "nextLinkHref":
+                                    return configuration.getSiteBase() + blog.get(idx + 1).page.relativePath;
+                                case "blogHomeLinkHref":
+                                    return configuration.getSiteBase() + "/blog/index.html";
+                                case "categoriesList":
+                                    return getCategoriesList(bp);
+                                case "authorsList":
+                                    return getAuthorsList(bp);
+                                case "navigationLinks":
+                                    return getNavigationLinks(blog, idx);
+                                case "defaultEndOfContent":
+                                    return "\n" +
+                                            getAuthorsList(bp) + '\n' +
+                                            getCategoriesList(bp) + '\n' +
+                                            getNavigationLinks(blog, idx);
+                                default:
+                                    return null;
+                            }
+                        }, p -> "").accept(template);
+                configuration.getAsciidoctorConfiguration().debug().accept("Rendered " + bp.page.relativePath + " to " + out);
+            });
+        }
+
+        execute(tasks, asciidoctor, configuration.getBlogRenderingThreads());
+        return new ArrayList<>(perCategory.keySet());
+    }
+
+    /**
+     * Runs the rendering tasks either in the current thread or in a dedicated pool if {@code threads > 1}.
+     * An asciidoc instance is not thread safe so each worker borrows its own instance from the configured {@link Asciidoc},
+     * the current thread also executes tasks with its instance.
+     *
+     * @param tasks       the tasks to execute.
+     * @param asciidoctor the instance of the current thread.
+     * @param threads     the max number of threads to use.
+     */
+    protected void execute(final List<Consumer<Asciidoc.AsciidocInstance>> tasks, final Asciidoc.AsciidocInstance asciidoctor,
+                           final int threads) {
+        final int poolSize = Math.min(threads, tasks.size());
+        if (poolSize <= 1) {
+            tasks.forEach(task -> task.accept(asciidoctor));
+            return;
+        }
+
+        final Queue<Consumer<Asciidoc.AsciidocInstance>> queue = new ConcurrentLinkedQueue<>(tasks);
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(poolSize - 1, r -> {
+            final Thread thread = new Thread(r, "yupiik-minisite-render-" + counter.incrementAndGet());
+            thread.setContextClassLoader(loader);
+            return thread;
         });
-        return allCategories;
+        try {
+            final List<Future<?>> futures = IntStream.range(1, poolSize)
+                    .mapToObj(i -> pool.submit(() -> configuration.getAsciidoc().withInstance(configuration.getAsciidoctorConfiguration(), instance -> {
+                        drain(queue, instance);
+                        return null;
+                    })))
+                    .collect(toList());
+            drain(queue, asciidoctor);
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void drain(final Queue<Consumer<Asciidoc.AsciidocInstance>> queue, final Asciidoc.AsciidocInstance instance) {
+        Consumer<Asciidoc.AsciidocInstance> task;
+        while ((task = queue.poll()) != null) {
+            try {
+                task.accept(instance);
+            } catch (final RuntimeException re) { // fail fast
+                queue.clear();
+                throw re;
+            }
+        }
+    }
+
+    protected String renderBlogItem(final BlogPage post, final String itemTemplate,
+                                    final Asciidoc.AsciidocInstance asciidoctor, final Object options) {
+        return new TemplateSubstitutor(itemKey -> {
+            if ("title".equals(itemKey)) {
+                return post.page.title;
+            }
+            return getDefaultInterpolation(itemKey, post.page, asciidoctor, options, null);
+        }).replace(itemTemplate);
+    }
+
+    private void groupBy(final BlogPage post, final String attribute, final Map<String, List<BlogPage>> aggregator) {
+        final String value = post.page.attributes.get(attribute);
+        if (value == null) {
+            return;
+        }
+        parseCsv(value).distinct().forEach(key -> aggregator.computeIfAbsent(key, k -> new ArrayList<>()).add(post));
     }
 
     private String getHtmlList(final String urlMarker, final Function<String, String> prefixText,
@@ -1003,29 +1274,25 @@ public class MiniSite implements Runnable {
     }
 
     protected Collection<String> paginatePer(final String singular, final String plural,
-                                             final List<BlogPage> blog,
+                                             final Map<String, List<BlogPage>> perCriteria,
                                              final Asciidoc.AsciidocInstance asciidoctor, final Object options,
                                              final Function<Page, String> template,
-                                             final Path baseBlog, final String itemTemplate, final String contentTemplate) {
+                                             final Path baseBlog, final Map<BlogPage, String> items, final String contentTemplate,
+                                             final Collection<Consumer<Asciidoc.AsciidocInstance>> tasks) {
         // per category pagination /category/<name>/page-<x>.html
-        final Map<String, List<BlogPage>> perCriteria = blog.stream()
-                .filter(it -> it.page.attributes.containsKey("minisite-blog-" + plural))
-                .flatMap(it -> parseCsv(String.valueOf(it.page.attributes.get("minisite-blog-" + plural)))
-                        .map(c -> new AbstractMap.SimpleImmutableEntry<>(c, it)))
-                .collect(groupingBy(Map.Entry::getKey, mapping(Map.Entry::getValue, toList())));
         perCriteria.forEach((key, posts) -> {
             final String humanName = toHumanName(key);
             final String urlName = toUrlName(key);
             paginateBlogPages(
                     (current, total) -> "Blog " + humanName + " (page " + current + "/" + total + ")",
                     singular + "/" + urlName + '/',
-                    posts, asciidoctor, options, template, baseBlog, itemTemplate, contentTemplate);
+                    posts, asciidoctor, options, template, baseBlog, items, contentTemplate, tasks);
         });
-        if (perCriteria.values().stream().mapToLong(Collection::size).sum() == 0) {
+        if (perCriteria.isEmpty()) {
             return perCriteria.keySet();
         }
         // /category/index.html
-        render(
+        tasks.add(instance -> render(
                 new Page(
                         '/' + configuration.getTarget().relativize(baseBlog).toString().replace(File.separatorChar, '/') +
                                 "/" + singular + "/index.html",
@@ -1035,9 +1302,9 @@ public class MiniSite implements Runnable {
                                 perCriteria.keySet().stream()
                                         .map(it -> "* link:" + toUrlName(it) + "/page-1.html[" + toHumanName(it) + ']')
                                         .collect(joining("\n"))),
-                baseBlog.resolve(singular + "/index.html"), asciidoctor, options,
+                baseBlog.resolve(singular + "/index.html"), instance, options,
                 false,
-                this::markPageAsBlog, null, p -> "").accept(template);
+                this::markPageAsBlog, null, p -> "").accept(template));
         return perCriteria.keySet();
     }
 
@@ -1068,7 +1335,8 @@ public class MiniSite implements Runnable {
                                      final Object options,
                                      final Function<Page, String> template,
                                      final Path baseBlog,
-                                     final String itemTemplate, final String contentTemplate) {
+                                     final Map<BlogPage, String> items, final String contentTemplate,
+                                     final Collection<Consumer<Asciidoc.AsciidocInstance>> tasks) {
         if (blogPages.isEmpty()) {
             return;
         }
@@ -1081,7 +1349,7 @@ public class MiniSite implements Runnable {
         }
         final int pageSize = configuration.getBlogPageSize() <= 0 ? 10 : configuration.getBlogPageSize();
         final List<List<BlogPage>> pages = splitByPage(blogPages, pageSize);
-        IntStream.rangeClosed(1, pages.size()).forEach(page -> {
+        IntStream.rangeClosed(1, pages.size()).forEach(page -> tasks.add(instance -> {
             final Path output = baseBlog.resolve(pageRelativeFolder + "page-" + page + ".html");
             render(
                     new Page(
@@ -1094,12 +1362,7 @@ public class MiniSite implements Runnable {
                                         return prefix.apply(page, pages.size());
                                     case "items":
                                         return pages.get(page - 1).stream()
-                                                .map(it -> new TemplateSubstitutor(itemKey -> {
-                                                    if ("title".equals(itemKey)) {
-                                                        return it.page.title;
-                                                    }
-                                                    return getDefaultInterpolation(itemKey, it.page, asciidoctor, options, null);
-                                                }).replace(itemTemplate))
+                                                .map(items::get)
                                                 .collect(joining("\n", "\n", "\n"));
                                     case "links":
                                         return "\n" +
@@ -1111,9 +1374,9 @@ public class MiniSite implements Runnable {
                                         throw new IllegalArgumentException("Unknown key '" + key + "'");
                                 }
                             }).replace(contentTemplate)),
-                    output, asciidoctor, options, false,
+                    output, instance, options, false,
                     this::markPageAsBlog, null, p -> "").accept(template);
-        });
+        }));
 
         final Path indexRedirect = baseBlog.resolve(pageRelativeFolder + "index.html");
         if (!Files.exists(indexRedirect)) {
@@ -1135,7 +1398,7 @@ public class MiniSite implements Runnable {
     protected List<List<BlogPage>> splitByPage(final List<BlogPage> sortedPages, final int pageSize) {
         final int totalPages = (int) Math.ceil(sortedPages.size() * 1. / pageSize);
         return IntStream.rangeClosed(1, totalPages)
-                .mapToObj(page -> sortedPages.subList(configuration.getBlogPageSize() * (page - 1), Math.min(configuration.getBlogPageSize() * page, sortedPages.size())))
+                .mapToObj(page -> sortedPages.subList(pageSize * (page - 1), Math.min(pageSize * page, sortedPages.size())))
                 .collect(toList());
     }
 
@@ -1306,18 +1569,7 @@ public class MiniSite implements Runnable {
                     if (content.relativize(file).toString().startsWith("_partials")) {
                         return FileVisitResult.CONTINUE;
                     }
-                    final String contentString = Files.readString(file);
-                    final Asciidoc.AsciidocInstance.Header header = asciidoctor.header(contentString, options);
-                    final Path out = ofNullable(header.getAttributes().get("minisite-path"))
-                            .map(it -> configuration.getTarget().resolve(it))
-                            .orElseGet(() -> configuration.getTarget().resolve(content.relativize(file)).getParent().resolve(
-                                    filename.substring(0, filename.length() - ".adoc".length()) + ".html"));
-                    final Page page = new Page(
-                            '/' + configuration.getTarget().relativize(out).toString().replace(File.separatorChar, '/'),
-                            header.getTitle(),
-                            header.getAttributes(),
-                            contentString);
-                    pages.add(page);
+                    pages.add(toPage(content, file, asciidoctor, options));
                     return super.visitFile(file, attrs);
                 }
             });
@@ -1327,6 +1579,25 @@ public class MiniSite implements Runnable {
         }
     }
 
+    protected Page toPage(final Path content, final Path file, final Asciidoc.AsciidocInstance asciidoctor, final Object options) throws IOException {
+        final String filename = file.getFileName().toString();
+        final long start = System.nanoTime();
+        final String contentString = Files.readString(file);
+        final Asciidoc.AsciidocInstance.Header header = asciidoctor.header(contentString, options);
+        final long parseDuration = System.nanoTime() - start;
+        final Path out = ofNullable(header.getAttributes().get("minisite-path"))
+                .map(it -> configuration.getTarget().resolve(it))
+                .orElseGet(() -> configuration.getTarget().resolve(content.relativize(file)).getParent().resolve(
+                        filename.substring(0, filename.length() - ".adoc".length()) + ".html"));
+        final Page page = new Page(
+                '/' + configuration.getTarget().relativize(out).toString().replace(File.separatorChar, '/'),
+                header.getTitle(),
+                header.getAttributes(),
+                contentString);
+        timings.page(page.relativePath).setParse(BuildTimings.toMillis(parseDuration));
+        return page;
+    }
+
     protected String renderText(final String text, final Object options) {
         if (text.startsWith("adoc:")) {
             return configuration.getAsciidoc().withInstance(
@@ -1375,7 +1646,12 @@ public class MiniSite implements Runnable {
     }
 
     protected String renderAdoc(final Page page, final Asciidoc.AsciidocInstance asciidoctor, final Object options) {
-        return asciidoctor.convert(page.content, options);
+        final long start = System.nanoTime();
+        try {
+            return asciidoctor.convert(page.content, options);
+        } finally {
+            timings.addRender(System.nanoTime() - start);
+        }
     }
 
     protected String readTemplates(final Path layout, final List<String> templatePrefixes) {
@@ -1419,12 +1695,18 @@ public class MiniSite implements Runnable {
         return configuration.getAsciidoc().createOptions(configuration);
     }
 
+    @FunctionalInterface
+    protected interface XmlWriter {
+        void write(XMLStreamWriter writer) throws XMLStreamException;
+    }
+
     @RequiredArgsConstructor
     public static class BlogPage {
         private final Page page;
         private final OffsetDateTime publishedDate;
     }
 
+    @Getter
     @RequiredArgsConstructor
     public static class Page {
         private final String relativePath;
@@ -72,12 +72,18 @@ public class MiniSiteConfiguration {
     private List<String> notIndexedPages;
     private boolean generateBlog;
     private int blogPageSize;
+    private int blogRenderingThreads;
     private boolean generateIndex;
     private boolean generateSiteMap;
+    private int siteMapMaxUrls;
     private List<String> templatePrefixes;
     private boolean templateAddLeftMenu;
     private List<String> templateSuffixes;
     private List<PreAction> preActions;
+    private int preActionsThreads;
+    private Path preActionsState;
+    private Path timingReport;
+    private int timingReportTopN;
     private boolean skipRendering;
     private String customGems;
     private String projectVersion;
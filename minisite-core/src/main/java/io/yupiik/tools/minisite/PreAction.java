@@ -17,10 +17,13 @@ package io.yupiik.tools.minisite;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
 public class PreAction {
     private String type; // alias or class name (Runnable)
     private Map<String, String> configuration; // action config, for a runnable it is passed as constructor arg
+    private List<String> inputs; // optional, files or folders the action reads, inferred for built-in actions if not set
+    private List<String> outputs; // optional, files or folders the action writes, inferred for built-in actions if not set
 }
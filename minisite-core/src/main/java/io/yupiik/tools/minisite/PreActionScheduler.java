@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite;
+
+import io.yupiik.maven.service.action.builtin.CopyFile;
+import io.yupiik.maven.service.action.builtin.JsonSchema2AdocGenerator;
+import io.yupiik.maven.service.action.builtin.JsonSchemaGenerator;
+import io.yupiik.maven.service.action.builtin.MojoDocumentationGeneration;
+import io.yupiik.tools.minisite.action.builtin.DownloadAndUnzip;
+import io.yupiik.tools.minisite.action.builtin.OpenMetricsToAsciidoc;
+import io.yupiik.tools.minisite.action.builtin.ReplaceInFile;
+import io.yupiik.tools.minisite.action.builtin.SimpleConfigurationGenerator;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Executes pre-actions respecting the dependencies between them.
+ * Dependencies are computed from the files each action reads ({@code inputs}) and writes ({@code outputs}),
+ * either declared on the {@link PreAction} or inferred from the configuration of built-in actions.
+ * An action without any known input/output is a barrier: it waits for all previous actions and all next actions wait for it.
+ * <p>
+ * If a state file is set, an action with only local file inputs is skipped when its configuration and inputs
+ * did not change since the last execution and its outputs were not modified (size and last modified time) since.
+ */
+@RequiredArgsConstructor
+public class PreActionScheduler {
+    private final ActionExecutor executor;
+    private final int threads;
+    private final Path state;
+    private final Consumer<String> logger;
+
+    public void execute(final List<PreAction> actions, final Path source, final Path output) {
+        final List<Node> nodes = createGraph(actions);
+        final Properties previousState = loadState();
+        final Map<String, String> newState = new ConcurrentHashMap<>();
+
+        final int poolSize = Math.min(threads, nodes.size());
+        if (poolSize <= 1) {
+            nodes.forEach(node -> run(node, source, output, previousState, newState));
+            saveState(newState);
+            return;
+        }
+
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(poolSize, r -> {
+            final Thread thread = new Thread(r, "yupiik-minisite-preaction-" + counter.incrementAndGet());
+            thread.setContextClassLoader(loader);
+            return thread;
+        });
+        try {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>(nodes.size());
+            for (final Node node : nodes) {
+                futures.add(CompletableFuture
+                        .allOf(node.dependencies.stream().map(it -> futures.get(it.index)).toArray(CompletableFuture[]::new))
+                        .thenRunAsync(() -> run(node, source, output, previousState, newState), pool));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (final CompletionException ce) {
+                final Throwable cause = ce.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        } finally {
+            pool.shutdownNow();
+            saveState(newState); // keep successful executions even if one failed
+        }
+    }
+
+    protected List<Node> createGraph(final List<PreAction> actions) {
+        final List<Node> nodes = new ArrayList<>(actions.size());
+        for (final PreAction action : actions) {
+            final Node node = createNode(nodes.size(), action);
+            for (final Node previous : nodes) {
+                if (node.dependsOn(previous)) {
+                    node.dependencies.add(previous);
+                }
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void run(final Node node, final Path source, final Path output,
+                     final Properties previousState, final Map<String, String> newState) {
+        final String key = node.configurationFingerprint();
+        // without any declared input there is nothing to compare so the action always runs (and fails if misconfigured)
+        final boolean tracked = node.skippable && !node.inputs.isEmpty() && state != null;
+        if (tracked) {
+            final String fingerprint = node.fingerprint();
+            if (fingerprint != null && fingerprint.equals(previousState.getProperty(key))) {
+                logger.accept("Skipping pre-action #" + node.index + " (" + node.action.getType() + "), it is up to date");
+                newState.put(key, fingerprint);
+                return;
+            }
+        }
+
+        executor.execute(node.action, source, output);
+        if (tracked) { // computed after the execution for in place actions (replace-in-file)
+            final String fingerprint = node.fingerprint();
+            if (fingerprint != null) {
+                newState.put(key, fingerprint);
+            }
+        }
+    }
+
+    private Properties loadState() {
+        final Properties properties = new Properties();
+        if (state != null && Files.exists(state)) {
+            try (final Reader reader = Files.newBufferedReader(state, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (final IOException e) {
+                logger.accept("Can't read pre-actions state, ignoring it: " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    private void saveState(final Map<String, String> newState) {
+        if (state == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        properties.putAll(newState);
+        try {
+            if (state.getParent() != null) {
+                Files.createDirectories(state.getParent());
+            }
+            try (final Writer writer = Files.newBufferedWriter(state, StandardCharsets.UTF_8)) {
+                properties.store(writer, "yupiik minisite pre-actions state");
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Node createNode(final int index, final PreAction action) {
+        requireNonNull(action.getType(), "Missing type for action: " + action);
+        final Map<String, String> configuration = action.getConfiguration() == null ? new TreeMap<>() : action.getConfiguration();
+        final Class<?> type;
+        try {
+            type = executor.findActionClass(action.getType().trim());
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        // explicit declarations win
+        if (action.getInputs() != null || action.getOutputs() != null) {
+            return new Node(index, action, toPaths(action.getInputs()), toPaths(action.getOutputs()), false, action.getInputs() != null);
+        }
+
+        if (type == CopyFile.class) {
+            return new Node(index, action, paths(configuration, "from"), paths(configuration, "to"), false, true);
+        }
+        if (type == ReplaceInFile.class) {
+            return new Node(index, action, paths(configuration, "source"), paths(configuration, "source"), false, true);
+        }
+        if (type == JsonSchema2AdocGenerator.class) {
+            return new Node(index, action, paths(configuration, "schema"), paths(configuration, "output"), false, true);
+        }
+        if (type == OpenMetricsToAsciidoc.class) {
+            return new Node(index, action, paths(configuration, "source"), paths(configuration, "to"), false, true);
+        }
+        if (type == MojoDocumentationGeneration.class) { // pluginXml can be a resource, only skip when it is a file
+            final List<Path> inputs = paths(configuration, "pluginXml");
+            return new Node(index, action, inputs, paths(configuration, "toBase"), false, !inputs.isEmpty() && inputs.stream().allMatch(Files::exists));
+        }
+        // inputs are classes or remote, no way to know if it changed so never skip them
+        if (type == JsonSchemaGenerator.class) {
+            return new Node(index, action, emptyList(), paths(configuration, "to"), false, false);
+        }
+        if (type == SimpleConfigurationGenerator.class) {
+            return new Node(index, action, emptyList(), paths(configuration, "output"), false, false);
+        }
+        if (type == DownloadAndUnzip.class) {
+            return new Node(index, action, emptyList(), paths(configuration, "target"), false, false);
+        }
+        return new Node(index, action, emptyList(), emptyList(), true, false);
+    }
+
+    private List<Path> paths(final Map<String, String> configuration, final String key) {
+        final String value = configuration.get(key);
+        return value == null || value.trim().isEmpty() ? emptyList() : singletonList(toPath(value));
+    }
+
+    private List<Path> toPaths(final List<String> values) {
+        return values == null ? emptyList() : values.stream().map(this::toPath).collect(toList());
+    }
+
+    private Path toPath(final String value) {
+        return Paths.get(value.trim()).toAbsolutePath().normalize();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    protected static class Node {
+        private final int index;
+        private final PreAction action;
+        private final List<Path> inputs;
+        private final List<Path> outputs;
+        private final boolean barrier;
+        private final boolean skippable;
+        private final List<Node> dependencies = new ArrayList<>();
+
+        private boolean dependsOn(final Node previous) {
+            return barrier || previous.barrier ||
+                    overlaps(previous.outputs, inputs) || // read after write
+                    overlaps(previous.outputs, outputs) || // write after write
+                    overlaps(previous.inputs, outputs); // write after read
+        }
+
+        private boolean overlaps(final Collection<Path> first, final Collection<Path> second) {
+            return first.stream().anyMatch(a -> second.stream().anyMatch(b -> a.startsWith(b) || b.startsWith(a)));
+        }
+
+        private String configurationFingerprint() {
+            final MessageDigest digest = newDigest();
+            update(digest, action.getType().trim());
+            if (action.getConfiguration() != null) {
+                new TreeMap<>(action.getConfiguration()).forEach((k, v) -> {
+                    update(digest, k);
+                    update(digest, v);
+                });
+            }
+            outputs.forEach(it -> update(digest, it.toString()));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        }
+
+        // inputs content and outputs size/last modified time (an edited or deleted output must be regenerated)
+        private String fingerprint() {
+            final String inputs = inputsFingerprint();
+            final String outputs = outputsFingerprint();
+            return inputs == null || outputs == null ? null : inputs + '|' + outputs;
+        }
+
+        private String outputsFingerprint() {
+            final MessageDigest digest = newDigest();
+            try {
+                for (final Path output : outputs) {
+                    if (!Files.exists(output)) {
+                        return null;
+                    }
+                    final List<Path> files;
+                    try (final Stream<Path> walk = Files.walk(output)) {
+                        files = walk.filter(Files::isRegularFile).sorted().collect(toList());
+                    }
+                    for (final Path file : files) {
+                        update(digest, file.toString());
+                        update(digest, Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis());
+                    }
+                }
+            } catch (final IOException e) {
+                return null;
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        }
+
+        private String inputsFingerprint() {
+            final MessageDigest digest = newDigest();
+            try {
+                for (final Path input : inputs) {
+                    if (!Files.exists(input)) {
+                        return null;
+                    }
+                    final List<Path> files;
+                    try (final Stream<Path> walk = Files.walk(input)) {
+                        files = walk.filter(Files::isRegularFile).sorted().collect(toList());
+                    }
+                    for (final Path file : files) {
+                        update(digest, file.toString());
+                        final byte[] buffer = new byte[8192];
+                        try (final InputStream stream = Files.newInputStream(file)) {
+                            int read;
+                            while ((read = stream.read(buffer)) >= 0) {
+                                digest.update(buffer, 0, read);
+                            }
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                return null; // will just not skip the action
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        }
+
+        private static void update(final MessageDigest digest, final String value) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -15,19 +15,30 @@
  */
 package io.yupiik.tools.minisite.action.builtin;
 
+import lombok.extern.java.Log;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.FileVisitResult;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.zip.ZipEntry;
@@ -36,18 +47,27 @@ import java.util.zip.ZipInputStream;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 
+@Log
 public class DownloadAndUnzip implements Runnable {
     private final String url;
     private final String subpath;
     private final String target;
-    private final String workdir;
+    private final Path cache;
+    private final String sha256;
+    private final boolean offline;
     private final Properties headers;
 
     public DownloadAndUnzip(final Map<String, String> configuration) {
         this.url = requireNonNull(configuration.get("url"), "No 'url'.");
         this.subpath = configuration.getOrDefault("subpath", "");
         this.target = requireNonNull(configuration.get("target"), "No 'target'");
-        this.workdir = configuration.get("workdir");
+        this.cache = ofNullable(configuration.get("cache"))
+                .map(String::trim)
+                .filter(it -> !it.isEmpty())
+                .map(Paths::get)
+                .orElse(null);
+        this.sha256 = ofNullable(configuration.get("sha256")).map(String::trim).filter(it -> !it.isEmpty()).orElse(null);
+        this.offline = Boolean.parseBoolean(configuration.getOrDefault("offline", "false"));
         this.headers = ofNullable(configuration.get("headers"))
                 .map(h -> {
                     final Properties props = new Properties();
@@ -59,83 +79,294 @@ public class DownloadAndUnzip implements Runnable {
                     return props;
                 })
                 .orElseGet(Properties::new);
+        if (configuration.containsKey("workdir")) {
+            log.warning(() -> "'workdir' is deprecated and ignored for '" + url + "', archives are streamed or stored in 'cache'");
+        }
     }
 
     @Override
     public void run() {
-        final HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
-        final HttpRequest.Builder builder = HttpRequest.newBuilder()
-                .GET()
-                .uri(URI.create(url));
-        headers.stringPropertyNames().forEach(key -> builder.header(key, headers.getProperty(key)));
-
-        final boolean deleteWorkDir = workdir == null || !Files.exists(Paths.get(workdir));
-        final Path work = ofNullable(workdir)
-                .map(Paths::get)
-                .orElseGet(() -> {
-                    try {
-                        return Files.createTempDirectory("ypkmst");
-                    } catch (final IOException e) {
-                        throw new IllegalStateException(e);
-                    }
-                });
         try {
-            final Path zip = Files.createDirectories(work).resolve("download-" + url.hashCode() + ".zip");
-            Files.deleteIfExists(zip);
-            try {
-                final HttpResponse<Path> response = http.send(
-                        builder.build(),
-                        HttpResponse.BodyHandlers.ofFile(zip));
-                if (response.statusCode() < 200 || response.statusCode() > 399) {
-                    throw new IllegalStateException(response.toString());
-                }
-
-                final Path baseOutput = Paths.get(target);
-                try (final ZipInputStream jar = new ZipInputStream(Files.newInputStream(zip))) {
-                    ZipEntry entry;
-                    while ((entry = jar.getNextEntry()) != null) {
-                        if (!entry.getName().startsWith(subpath) || entry.isDirectory()) {
-                            continue;
-                        }
-                        final Path out = baseOutput.resolve(entry.getName().substring(subpath.length()));
-                        if (out.getParent() != null) {
-                            Files.createDirectories(out.getParent());
-                        }
-                        Files.copy(jar, out, StandardCopyOption.REPLACE_EXISTING);
-                    }
+            if (cache == null) {
+                if (sha256 == null) {
+                    streamAndExtract();
+                } else {
+                    downloadVerifyAndExtract();
                 }
-            } finally {
-                Files.deleteIfExists(zip);
+            } else {
+                extract(ensureCached());
             }
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IllegalStateException(e);
-        } finally {
-            if (deleteWorkDir) {
-                delete(work);
+        }
+    }
+
+    // no cache: unzip while downloading, no temporary file
+    private void streamAndExtract() throws IOException, InterruptedException {
+        final HttpResponse<InputStream> response = send(newRequest().build());
+        try (final DigestInputStream body = new DigestInputStream(response.body(), newDigest())) {
+            if (!isSuccess(response.statusCode())) {
+                throw new IllegalStateException(response.toString());
+            }
+            try (final ZipInputStream zip = new ZipInputStream(body)) {
+                extract(zip);
+                body.transferTo(OutputStream.nullOutputStream()); // ensure the whole payload is hashed
             }
+            verifyChecksum(hex(body.getMessageDigest().digest()));
         }
     }
 
-    private void delete(final Path work) {
+    // checksum must be validated before touching the target so the archive is downloaded in a temporary file first
+    private void downloadVerifyAndExtract() throws IOException, InterruptedException {
+        final Path tmp = Files.createTempFile("yupiik-download-", ".zip");
         try {
-            Files.walkFileTree(work, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                    Files.delete(file);
-                    return super.visitFile(file, attrs);
+            final HttpResponse<InputStream> response = send(newRequest().build());
+            try (final DigestInputStream body = new DigestInputStream(response.body(), newDigest())) {
+                if (!isSuccess(response.statusCode())) {
+                    throw new IllegalStateException(response.toString());
+                }
+                Files.copy(body, tmp, StandardCopyOption.REPLACE_EXISTING);
+                verifyChecksum(hex(body.getMessageDigest().digest()));
+            }
+            extract(tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Cache layout is {@code <cache>/<sha256(url and headers)>.zip} with a {@code .properties} sibling storing
+     * the validators ({@code ETag}, {@code Last-Modified}) and the archive checksum.
+     * If the expected checksum matches the cached archive or we are offline the network is not hit at all,
+     * else the cached archive is revalidated with a conditional request.
+     * Both files are written in temporary files then atomically moved and the pair is validated (checksum) when read
+     * so concurrent builds sharing the cache or a crash between both moves never lead to use a corrupted archive.
+     *
+     * @return the cached archive.
+     */
+    private Path ensureCached() throws IOException, InterruptedException {
+        final String key = cacheKey();
+        final Path archive = Files.createDirectories(cache).resolve(key + ".zip");
+        final Path metadataFile = cache.resolve(key + ".properties");
+        final Properties metadata = new Properties();
+        if (Files.exists(archive) && Files.exists(metadataFile)) {
+            try (final Reader reader = Files.newBufferedReader(metadataFile, StandardCharsets.UTF_8)) {
+                metadata.load(reader);
+            }
+        }
+        final boolean cached = metadata.getProperty("sha256") != null && metadata.getProperty("sha256").equals(checksum(archive));
+        if (cached) {
+            if (offline || (sha256 != null && sha256.equalsIgnoreCase(metadata.getProperty("sha256")))) {
+                log.info(() -> "Reusing cached '" + url + "'");
+                return archive;
+            }
+        } else if (offline) {
+            throw new IllegalStateException("Offline mode and '" + url + "' not in cache (" + cache + ")");
+        }
+
+        final HttpRequest.Builder builder = newRequest();
+        if (cached) {
+            ofNullable(metadata.getProperty("etag")).ifPresent(v -> builder.header("If-None-Match", v));
+            ofNullable(metadata.getProperty("last-modified")).ifPresent(v -> builder.header("If-Modified-Since", v));
+        }
+
+        final HttpResponse<InputStream> response;
+        try {
+            response = send(builder.build());
+        } catch (final IOException ioe) {
+            if (cached) { // network issue, reuse what we have
+                log.warning(() -> "Can't revalidate '" + url + "', reusing cached version: " + ioe.getMessage());
+                return archive;
+            }
+            throw ioe;
+        }
+        Path tmp = null;
+        Path metadataTmp = null;
+        try (final DigestInputStream body = new DigestInputStream(response.body(), newDigest())) {
+            if (response.statusCode() == 304 && cached) {
+                log.info(() -> "'" + url + "' not modified, using cached version");
+                return archive;
+            }
+            if (!isSuccess(response.statusCode())) {
+                throw new IllegalStateException(response.toString());
+            }
+            tmp = Files.createTempFile(cache, key, ".zip.tmp");
+            Files.copy(body, tmp, StandardCopyOption.REPLACE_EXISTING);
+            final String checksum = hex(body.getMessageDigest().digest());
+            verifyChecksum(checksum);
+
+            final Properties newMetadata = new Properties();
+            newMetadata.setProperty("url", url);
+            newMetadata.setProperty("sha256", checksum);
+            response.headers().firstValue("ETag").ifPresent(v -> newMetadata.setProperty("etag", v));
+            response.headers().firstValue("Last-Modified").ifPresent(v -> newMetadata.setProperty("last-modified", v));
+            metadataTmp = Files.createTempFile(cache, key, ".properties.tmp");
+            try (final Writer writer = Files.newBufferedWriter(metadataTmp, StandardCharsets.UTF_8)) {
+                newMetadata.store(writer, "yupiik download cache");
+            }
+
+            // metadata first: if we crash before the archive move, the checksum does not match and the pair is ignored
+            Files.move(metadataTmp, metadataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return archive;
+        } finally {
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+            if (metadataTmp != null) {
+                Files.deleteIfExists(metadataTmp);
+            }
+        }
+    }
+
+    private void extract(final Path archive) throws IOException {
+        try (final ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            extract(zip);
+        }
+    }
+
+    private void extract(final ZipInputStream zip) throws IOException {
+        final Path baseOutput = Paths.get(target);
+        ZipEntry entry;
+        int written = 0;
+        int unchanged = 0;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.getName().startsWith(subpath) || entry.isDirectory()) {
+                continue;
+            }
+            final Path out = baseOutput.resolve(entry.getName().substring(subpath.length()));
+            if (Files.exists(out)) { // avoid to touch unchanged files, it keeps timestamps stable for next steps
+                if (!writeIfChanged(zip, out, entry.getSize())) {
+                    unchanged++;
+                    continue;
+                }
+            } else {
+                if (out.getParent() != null) {
+                    Files.createDirectories(out.getParent());
                 }
+                Files.copy(zip, out);
+            }
+            written++;
+        }
+        final int writtenCount = written;
+        final int unchangedCount = unchanged;
+        log.info(() -> "Extracted '" + url + "' to '" + target + "' (" + writtenCount + " written, " + unchangedCount + " unchanged)");
+    }
 
-                @Override
-                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
-                    Files.delete(dir);
-                    return super.postVisitDirectory(dir, exc);
+    // compares the entry with the existing file while streaming, on the first difference the common prefix is taken from
+    // the existing file and the remaining of the entry is appended
+    private boolean writeIfChanged(final InputStream entry, final Path out, final long size) throws IOException {
+        if (size >= 0 && size != Files.size(out)) {
+            Files.copy(entry, out, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+
+        final byte[] buffer = new byte[8192];
+        final byte[] existing = new byte[8192];
+        long position = 0;
+        try (final InputStream current = Files.newInputStream(out)) {
+            int read;
+            while ((read = entry.readNBytes(buffer, 0, buffer.length)) > 0) {
+                final int existingRead = current.readNBytes(existing, 0, read);
+                if (existingRead != read || !Arrays.equals(buffer, 0, read, existing, 0, read)) {
+                    final Path tmp = Files.createTempFile(out.getParent(), out.getFileName().toString(), ".tmp");
+                    try {
+                        try (final OutputStream output = Files.newOutputStream(tmp);
+                             final InputStream prefix = Files.newInputStream(out)) {
+                            long remaining = position;
+                            while (remaining > 0) {
+                                final int chunk = prefix.readNBytes(existing, 0, (int) Math.min(existing.length, remaining));
+                                if (chunk <= 0) {
+                                    throw new IllegalStateException("'" + out + "' was modified during the extraction");
+                                }
+                                output.write(existing, 0, chunk);
+                                remaining -= chunk;
+                            }
+                            output.write(buffer, 0, read);
+                            entry.transferTo(output);
+                        }
+                        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+                    } finally {
+                        Files.deleteIfExists(tmp);
+                    }
+                    return true;
                 }
-            });
-        } catch (final IOException e) {
-            // no-op
+                position += read;
+            }
+            if (current.read() < 0) {
+                return false;
+            }
+        }
+        try (final FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE)) { // entry is a prefix of the file
+            channel.truncate(position);
+        }
+        return true;
+    }
+
+    // headers can change the served content (authentication, Accept) so they are part of the key
+    private String cacheKey() {
+        final MessageDigest digest = newDigest();
+        digest.update(url.getBytes(StandardCharsets.UTF_8));
+        headers.stringPropertyNames().stream().sorted().forEach(name -> {
+            digest.update((byte) '\n');
+            digest.update(name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(headers.getProperty(name).getBytes(StandardCharsets.UTF_8));
+        });
+        return hex(digest.digest());
+    }
+
+    private HttpRequest.Builder newRequest() {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .GET()
+                .uri(URI.create(url));
+        headers.stringPropertyNames().forEach(key -> builder.header(key, headers.getProperty(key)));
+        return builder;
+    }
+
+    private HttpResponse<InputStream> send(final HttpRequest request) throws IOException, InterruptedException {
+        return HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.ALWAYS)
+                .build()
+                .send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private String checksum(final Path archive) throws IOException {
+        if (!Files.exists(archive)) {
+            return null;
+        }
+        try (final DigestInputStream stream = new DigestInputStream(Files.newInputStream(archive), newDigest())) {
+            stream.transferTo(OutputStream.nullOutputStream());
+            return hex(stream.getMessageDigest().digest());
+        }
+    }
+
+    private void verifyChecksum(final String actual) {
+        if (sha256 != null && !sha256.equalsIgnoreCase(actual)) {
+            throw new IllegalStateException("Invalid checksum for '" + url + "', expected " + sha256 + " but got " + actual);
+        }
+    }
+
+    private boolean isSuccess(final int status) {
+        return status >= 200 && status <= 399;
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder out = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return out.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite;
+
+import io.yupiik.tools.minisite.test.MiniSiteConfigurationBuilderProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MiniSiteConfigurationBuilderProvider
+class DevMiniSiteTest {
+    @Test
+    void renderChangedPageInMemory(@TempDir final Path source, final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder) throws IOException {
+        final var page = Files.createDirectories(source.resolve("content")).resolve("page.adoc");
+        Files.writeString(page, "= Page 1\n:minisite-index: 2\n\nContent.\n", UTF_8);
+        Files.writeString(source.resolve("content/other.adoc"), "= Other\n:minisite-index: 1\n\nOther content.\n", UTF_8);
+
+        final var configuration = builder.source(source).build();
+        final var miniSite = new DevMiniSite(configuration);
+        final var options = miniSite.createOptions();
+
+        configuration.getAsciidoc().withInstance(configuration.getAsciidoctorConfiguration(), a -> {
+            miniSite.doRender(a, options);
+            assertNull(miniSite.refresh(a, options, Set.of())); // unknown change, full rendering
+            assertNull(miniSite.get("/page.html", a, options)); // served from disk
+            assertFalse(miniSite.isDirty("/page.html"));
+            return null;
+        });
+        final var output = configuration.getTarget().resolve("page.html");
+        assertTrue(Files.readString(output).contains("Content."));
+
+        // disk is only read once
+        final var fromDisk = miniSite.read("/page.html", output);
+        assertTrue(new String(fromDisk, UTF_8).contains("Content."));
+        Files.writeString(output, "overwritten", UTF_8);
+        assertArrayEquals(fromDisk, miniSite.read("/page.html", output));
+        assertArrayEquals(fromDisk, miniSite.get("/page.html"));
+
+        // content only change, re-rendered in memory
+        Files.writeString(page, "= Page 1\n:minisite-index: 2\n\nUpdated content.\n", UTF_8);
+        configuration.getAsciidoc().withInstance(configuration.getAsciidoctorConfiguration(), a -> {
+            assertEquals(List.of("/page.html"), miniSite.refresh(a, options, Set.of(page)));
+            assertTrue(miniSite.isDirty("/page.html"));
+            assertNull(miniSite.get("/page.html"));
+            final var html = new String(miniSite.get("/page.html", a, options), UTF_8);
+            assertFalse(miniSite.isDirty("/page.html"));
+            assertEquals(html, new String(miniSite.get("/page.html"), UTF_8)); // no asciidoctor instance needed anymore
+            assertTrue(html.contains("Updated content."), html);
+            assertTrue(html.contains("Other"), html); // left menu
+            assertFalse(html.contains("<minisite-menu-placeholder/>"), html);
+            return null;
+        });
+        assertEquals("overwritten", Files.readString(output)); // disk not touched
+
+        // title change impacts other pages (menu, index), full rendering
+        Files.writeString(page, "= Page One\n:minisite-index: 2\n\nUpdated content.\n", UTF_8);
+        final var changed = configuration.getAsciidoc().withInstance(configuration.getAsciidoctorConfiguration(), a -> {
+            final Collection<String> refresh = miniSite.refresh(a, options, Set.of(page));
+            assertNull(miniSite.get("/page.html", a, options));
+            return refresh;
+        });
+        assertNull(changed);
+        assertTrue(Files.readString(configuration.getTarget().resolve("other.html")).contains("Page One"));
+    }
+}
@@ -15,15 +15,28 @@
  */
 package io.yupiik.tools.minisite;
 
+import io.yupiik.tools.common.asciidoctor.AsciidoctorConfiguration;
+import io.yupiik.tools.minisite.language.Asciidoc;
 import io.yupiik.tools.minisite.test.MiniSiteConfigurationBuilderProvider;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @MiniSiteConfigurationBuilderProvider
 class MiniSiteTest {
@@ -165,15 +178,58 @@ class MiniSiteTest {
         // todo: assert home, authors, category etc page contents
     }
 
+    @Test
+    void blogParallelRendering(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder, final MiniSiteConfigurationBuilderProvider.Asserts asserts) {
+        final var delegate = builder.build().getAsciidoc();
+        final var borrowers = ConcurrentHashMap.<String>newKeySet();
+        new MiniSite(builder
+                .source(Paths.get("target/test-classes/sites/MiniSiteTest/blog")) // reuse blog for this test
+                .blogRenderingThreads(4)
+                .asciidoc(new Asciidoc() {
+                    @Override
+                    public Object createOptions(final MiniSiteConfiguration configuration) {
+                        return delegate.createOptions(configuration);
+                    }
+
+                    @Override
+                    public <T> T withInstance(final AsciidoctorConfiguration configuration, final Function<AsciidocInstance, T> task) {
+                        borrowers.add(Thread.currentThread().getName());
+                        return delegate.withInstance(configuration, task);
+                    }
+                })
+                .build()).run();
+        assertTrue(borrowers.stream().anyMatch(it -> it.startsWith("yupiik-minisite-render-")), borrowers::toString); // no shared instance
+        asserts.assertThat(files -> assertEquals(
+                List.of(
+                        "blog/author/index.html", "blog/author/romain-manni-bucau/index.html", "blog/author/romain-manni-bucau/page-1.html",
+                        "blog/category/index.html",
+                        "blog/category/others/index.html", "blog/category/others/page-1.html",
+                        "blog/category/simple/index.html", "blog/category/simple/page-1.html",
+                        "blog/index.html", "blog/page-1.html", "blog/page-2.html",
+                        "blog1.html", "blog2.html", "blog3.html",
+                        "css/theme.css", "images/logo.svg", "index.html", "js/minisite.js", "search.json", "sitemap.xml"),
+                files.keySet().stream().sorted().collect(toList())));
+        asserts.assertContains("blog/page-2.html", "<span class=\"card-title-text\">My Third Post</span>");
+        asserts.assertContains("blog3.html", "<li class=\"blog-link-previous\"><p><a href=\"/blog1.html\">Previous</a></p></li>");
+    }
+
+    @Test
+    void stripInvalidXmlChars(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder) {
+        final var miniSite = new MiniSite(builder.build());
+        assertEquals("valid", miniSite.stripInvalidXmlChars("valid"));
+        // control char and unpaired surrogates are dropped, surrogate pairs (emoji) are kept
+        assertEquals("ab\uD83D\uDE00cd", miniSite.stripInvalidXmlChars("a\u0001b\uD83D\uDE00\uD800c\uDC00d"));
+    }
+
     @Test
     void rss(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder, final MiniSiteConfigurationBuilderProvider.Asserts asserts) {
         new MiniSite(builder.rssFeedFile("rss.xml").siteBase("https://foo.test.yupiik.com").build()).run();
         asserts.assertThat(files -> assertEquals(
                 "" +
-                        "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+                        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
                         "<rss version=\"2.0\" xmlns:atom=\"http://www.w3.org/2005/Atom\">\n" +
                         "  <channel>\n" +
-                        "   <atom:link href=\"https://foo.test.yupiik.com/rss.xml\" rel=\"self\" type=\"application/rss+xml\" />\n" +
+                        "   <atom:link href=\"https://foo.test.yupiik.com/rss.xml\" rel=\"self\" type=\"application/rss+xml\"/>\n" +
                         "   <title>Test Site</title>\n" +
                         "   <description>Index sub title</description>\n" +
                         "   <link>https://foo.test.yupiik.com/rss.xml</link>\n" +
@@ -200,6 +256,120 @@ class MiniSiteTest {
                 files.get("rss.xml")));
     }
 
+    @Test
+    void timingReport(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder, final MiniSiteConfigurationBuilderProvider.Asserts asserts) throws IOException {
+        final Path report = Paths.get("target/test-minisite-work/MiniSiteTest/timingReport/report");
+        final List<String> logs = new ArrayList<>();
+        final MiniSiteConfiguration configuration = builder
+                .source(Paths.get("target/test-classes/sites/MiniSiteTest/blog")) // reuse blog for this test
+                .timingReport(report)
+                .timingReportTopN(2)
+                .build();
+        final AsciidoctorConfiguration delegate = configuration.getAsciidoctorConfiguration();
+        configuration.setAsciidoctorConfiguration(new AsciidoctorConfiguration() {
+            @Override
+            public Path gems() {
+                return delegate.gems();
+            }
+
+            @Override
+            public String customGems() {
+                return delegate.customGems();
+            }
+
+            @Override
+            public List<String> requires() {
+                return delegate.requires();
+            }
+
+            @Override
+            public Consumer<String> info() {
+                return logs::add;
+            }
+
+            @Override
+            public Consumer<String> debug() {
+                return delegate.debug();
+            }
+
+            @Override
+            public Consumer<String> warn() {
+                return delegate.warn();
+            }
+
+            @Override
+            public Consumer<String> error() {
+                return delegate.error();
+            }
+        });
+        new MiniSite(configuration).run();
+
+        final String json = Files.readString(report.resolve("timings.json"));
+        Stream.of("find-pages", "pages", "blog", "index", "sitemap", "\"path\":\"/blog1.html\"", "\"render\":", "\"size\":")
+                .forEach(it -> assertTrue(json.contains(it), () -> it + "\n" + json));
+        final List<String> csv = Files.readAllLines(report.resolve("timings.csv"));
+        assertEquals("path;parse_ms;render_ms;template_ms;write_ms;total_ms;size", csv.get(0));
+        assertTrue(csv.stream().anyMatch(it -> it.startsWith("/blog/page-1.html;")), csv::toString);
+        assertTrue(logs.stream().anyMatch(it -> it.startsWith("Minisite phases: pre-actions=")), logs::toString);
+        assertTrue(logs.stream().anyMatch(it -> it.startsWith("Slowest pages:\n") && it.split("\n").length == 3), logs::toString);
+        asserts.assertThat(files -> assertTrue(files.containsKey("blog1.html")));
+    }
+
+    @Test
+    void siteMapIndex(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder, final MiniSiteConfigurationBuilderProvider.Asserts asserts) {
+        new MiniSite(builder
+                .source(Paths.get("target/test-classes/sites/MiniSiteTest/blog")) // reuse blog for this test
+                .siteBase("https://foo.test.yupiik.com")
+                .siteMapMaxUrls(2)
+                .build()).run();
+        asserts.assertThat(files -> {
+            assertEquals(
+                    List.of("sitemap-1.xml", "sitemap-2.xml", "sitemap.xml"),
+                    files.keySet().stream().filter(it -> it.startsWith("sitemap")).sorted().collect(toList()));
+            final String now = LocalDate.now().toString();
+            assertEquals("" +
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+                    "    <sitemap>\n" +
+                    "        <loc>https://foo.test.yupiik.com/sitemap-1.xml</loc>\n" +
+                    "        <lastmod>" + now + "</lastmod>\n" +
+                    "    </sitemap>\n" +
+                    "    <sitemap>\n" +
+                    "        <loc>https://foo.test.yupiik.com/sitemap-2.xml</loc>\n" +
+                    "        <lastmod>" + now + "</lastmod>\n" +
+                    "    </sitemap>\n" +
+                    "</sitemapindex>\n", files.get("sitemap.xml"));
+            assertEquals("" +
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" " +
+                    "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+                    "xsi:schemaLocation=\"http://www.sitemaps.org/schemas/sitemap/0.9 http://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd\">\n" +
+                    "    <url>\n" +
+                    "        <loc>https://foo.test.yupiik.com/blog2.html</loc>\n" +
+                    "        <lastmod>" + now + "</lastmod>\n" +
+                    "    </url>\n" +
+                    "</urlset>\n", files.get("sitemap-2.xml"));
+        });
+    }
+
+    @Test
+    void staleSiteMapsAreDeleted(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder) {
+        final var configuration = builder
+                .source(Paths.get("target/test-classes/sites/MiniSiteTest/blog")) // reuse blog for this test
+                .siteBase("https://foo.test.yupiik.com")
+                .siteMapMaxUrls(2)
+                .build();
+        new MiniSite(configuration).run();
+        assertTrue(Files.exists(configuration.getTarget().resolve("sitemap-2.xml")));
+
+        // less pages than the limit now, previous chunks are removed
+        configuration.setSiteMapMaxUrls(0);
+        new MiniSite(configuration).run();
+        assertTrue(Files.exists(configuration.getTarget().resolve("sitemap.xml")));
+        assertFalse(Files.exists(configuration.getTarget().resolve("sitemap-1.xml")));
+        assertFalse(Files.exists(configuration.getTarget().resolve("sitemap-2.xml")));
+    }
+
     @Test
     void blogReadingTime(final MiniSiteConfiguration.MiniSiteConfigurationBuilder builder, final MiniSiteConfigurationBuilderProvider.Asserts asserts) {
         new MiniSite(builder
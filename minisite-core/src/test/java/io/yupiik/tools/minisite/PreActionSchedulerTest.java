@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreActionSchedulerTest {
+    @Test
+    void dependencies(@TempDir final Path tmp) throws IOException {
+        final var a = Files.writeString(tmp.resolve("a.txt"), "a", UTF_8);
+        final var actions = List.of(
+                copy(tmp.resolve("b.txt"), tmp.resolve("c.txt")),
+                copy(a, tmp.resolve("b.txt")));
+        final var graph = new PreActionScheduler(new ActionExecutor(), 4, null, s -> {
+        }).createGraph(List.of(actions.get(1), actions.get(0), copy(a, tmp.resolve("d.txt"))));
+        assertEquals(3, graph.size());
+        assertTrue(graph.get(0).getDependencies().isEmpty());
+        assertEquals(List.of(graph.get(0)), graph.get(1).getDependencies());
+        assertEquals(List.of(), graph.get(2).getDependencies()); // a.txt is only read
+
+        new PreActionScheduler(new ActionExecutor(), 4, null, s -> {
+        }).execute(List.of(actions.get(1), actions.get(0)), tmp, tmp);
+        assertEquals("a", Files.readString(tmp.resolve("c.txt")));
+    }
+
+    @Test
+    void skipUpToDate(@TempDir final Path tmp) throws IOException {
+        final var state = tmp.resolve("state.properties");
+        final var a = Files.writeString(tmp.resolve("a.txt"), "a", UTF_8);
+        final var actions = List.of(copy(a, tmp.resolve("b.txt")));
+
+        final var logs = new ArrayList<String>();
+        final var scheduler = new PreActionScheduler(new ActionExecutor(), 1, state, logs::add);
+        scheduler.execute(actions, tmp, tmp);
+        assertTrue(logs.isEmpty(), logs::toString);
+        assertTrue(Files.exists(state));
+
+        scheduler.execute(actions, tmp, tmp);
+        assertEquals(List.of("Skipping pre-action #0 (copy), it is up to date"), logs);
+
+        logs.clear();
+        Files.writeString(a, "updated", UTF_8);
+        scheduler.execute(actions, tmp, tmp);
+        assertTrue(logs.isEmpty(), logs::toString);
+        assertEquals("updated", Files.readString(tmp.resolve("b.txt")));
+
+        // edited output is regenerated
+        Files.writeString(tmp.resolve("b.txt"), "edited output", UTF_8);
+        scheduler.execute(actions, tmp, tmp);
+        assertTrue(logs.isEmpty(), logs::toString);
+        assertEquals("updated", Files.readString(tmp.resolve("b.txt")));
+    }
+
+    @Test
+    void alwaysRunWithoutInputs(@TempDir final Path tmp) throws IOException {
+        final var state = tmp.resolve("state.properties");
+        final var a = Files.writeString(tmp.resolve("a.txt"), "a", UTF_8);
+        final var b = tmp.resolve("b.txt");
+        final var action = copy(a, b);
+        action.setInputs(List.of());
+        action.setOutputs(List.of(b.toString()));
+
+        final var logs = new ArrayList<String>();
+        final var scheduler = new PreActionScheduler(new ActionExecutor(), 1, state, logs::add);
+        scheduler.execute(List.of(action), tmp, tmp);
+        Files.writeString(b, "changed", UTF_8);
+        scheduler.execute(List.of(action), tmp, tmp);
+        assertTrue(logs.isEmpty(), logs::toString);
+        assertEquals("a", Files.readString(b));
+    }
+
+    private PreAction copy(final Path from, final Path to) {
+        final var action = new PreAction();
+        action.setType("copy");
+        action.setConfiguration(Map.of("from", from.toString(), "to", to.toString()));
+        return action;
+    }
+}
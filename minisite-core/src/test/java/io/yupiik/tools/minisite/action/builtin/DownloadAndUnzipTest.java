@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.minisite.action.builtin;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownloadAndUnzipTest {
+    @Test
+    void streaming(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var target = tmp.resolve("out");
+            new DownloadAndUnzip(Map.of(
+                    "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                    "subpath", "root/",
+                    "target", target.toString()))
+                    .run();
+            assertEquals("first", Files.readString(target.resolve("a.txt")));
+            assertEquals("second", Files.readString(target.resolve("sub/b.txt")));
+            assertFalse(Files.exists(target.resolve("ignored.txt")));
+            assertEquals(List.of("null"), requests);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void cache(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var target = tmp.resolve("out");
+            final var action = new DownloadAndUnzip(Map.of(
+                    "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                    "subpath", "root/",
+                    "cache", tmp.resolve("cache").toString(),
+                    "target", target.toString()));
+            action.run();
+            assertEquals("first", Files.readString(target.resolve("a.txt")));
+
+            // unchanged files are not rewritten
+            final var oldTime = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(target.resolve("a.txt"), oldTime);
+            action.run();
+            assertEquals(List.of("null", "\"v1\""), requests); // second request is conditional and gets a 304
+            assertEquals(oldTime, Files.getLastModifiedTime(target.resolve("a.txt")));
+        } finally {
+            server.stop(0);
+        }
+
+        // server is down, offline reuse
+        final var target = tmp.resolve("offline");
+        new DownloadAndUnzip(Map.of(
+                "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                "subpath", "root/",
+                "cache", tmp.resolve("cache").toString(),
+                "offline", "true",
+                "target", target.toString()))
+                .run();
+        assertEquals("second", Files.readString(target.resolve("sub/b.txt")));
+    }
+
+    @Test
+    void checksumIsVerifiedBeforeExtraction(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var target = Files.createDirectories(tmp.resolve("out"));
+            Files.writeString(target.resolve("a.txt"), "keep");
+            assertThrows(IllegalStateException.class, () -> new DownloadAndUnzip(Map.of(
+                    "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                    "subpath", "root/",
+                    "sha256", "0000",
+                    "target", target.toString()))
+                    .run());
+            assertEquals("keep", Files.readString(target.resolve("a.txt")));
+            assertFalse(Files.exists(target.resolve("sub/b.txt")));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void existingFilesAreUpdated(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var target = Files.createDirectories(tmp.resolve("out"));
+            Files.createDirectories(target.resolve("sub"));
+            Files.writeString(target.resolve("a.txt"), "firsX"); // same size, different content
+            Files.writeString(target.resolve("sub/b.txt"), "second and more"); // entry is a prefix
+            new DownloadAndUnzip(Map.of(
+                    "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                    "subpath", "root/",
+                    "target", target.toString()))
+                    .run();
+            assertEquals("first", Files.readString(target.resolve("a.txt")));
+            assertEquals("second", Files.readString(target.resolve("sub/b.txt")));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void headersArePartOfTheCacheKey(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var cache = tmp.resolve("cache");
+            for (final var header : List.of("Accept: application/zip", "Accept: application/octet-stream")) {
+                new DownloadAndUnzip(Map.of(
+                        "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                        "subpath", "root/",
+                        "cache", cache.toString(),
+                        "headers", header,
+                        "target", tmp.resolve("out").toString()))
+                        .run();
+            }
+            assertEquals(List.of("null", "null"), requests); // no conditional request, different entries
+            try (final var files = Files.list(cache)) {
+                assertEquals(4, files.count());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void inconsistentCacheIsIgnored(@TempDir final Path tmp) throws IOException {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var server = start(requests);
+        try {
+            final var cache = tmp.resolve("cache");
+            final var target = tmp.resolve("out");
+            final var action = new DownloadAndUnzip(Map.of(
+                    "url", "http://localhost:" + server.getAddress().getPort() + "/archive.zip",
+                    "subpath", "root/",
+                    "cache", cache.toString(),
+                    "target", target.toString()));
+            action.run();
+
+            // simulate a partial write (archive does not match its metadata anymore), it must be downloaded again
+            try (final var files = Files.list(cache)) {
+                final var archive = files.filter(it -> it.getFileName().toString().endsWith(".zip")).findFirst().orElseThrow();
+                Files.write(archive, new byte[]{1, 2});
+            }
+            Files.delete(target.resolve("a.txt"));
+            action.run();
+            assertEquals(List.of("null", "null"), requests);
+            assertEquals("first", Files.readString(target.resolve("a.txt")));
+            try (final var files = Files.list(cache)) {
+                assertEquals(2, files.count()); // no leftover temporary file
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private HttpServer start(final List<String> requests) throws IOException {
+        final var zip = new ByteArrayOutputStream();
+        try (final var out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("root/a.txt"));
+            out.write("first".getBytes(UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("root/sub/b.txt"));
+            out.write("second".getBytes(UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("ignored.txt"));
+            out.write("ignored".getBytes(UTF_8));
+            out.closeEntry();
+        }
+        final var bytes = zip.toByteArray();
+
+        final var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/archive.zip", exchange -> {
+            final var etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            requests.add(String.valueOf(etag));
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CLI startup (+ rendering) duration:
+ * <ul>
+ *     <li>cold: a new JVM without the application class data sharing archive,</li>
+ *     <li>cds: a new JVM using the archive,</li>
+ *     <li>warm: in an already started JVM (JRuby already booted), it is the lower bound.</li>
+ * </ul>
+ * Usage: {@code java StartupBenchmark.java <fatjar> <archive> <iterations> <cli args...>}.
+ */
+public final class StartupBenchmark {
+    private StartupBenchmark() {
+        // no-op
+    }
+
+    public static void main(final String... args) throws Exception {
+        if (args.length < 4) {
+            throw new IllegalArgumentException("Usage: StartupBenchmark <fatjar> <archive> <iterations> <cli args...>");
+        }
+        final Path jar = Path.of(args[0]);
+        final Path archive = Path.of(args[1]);
+        final int iterations = Integer.parseInt(args[2]);
+        final String[] cli = Arrays.copyOfRange(args, 3, args.length);
+
+        final long[] cold = fork(jar, null, iterations, cli);
+        final long[] cds = Files.exists(archive) ? fork(jar, archive, iterations, cli) : null;
+        final long[] warm = inProcess(jar, iterations, cli);
+
+        System.out.println("Startup benchmark (" + iterations + " iterations, median/min/max in ms):");
+        print("cold", cold);
+        if (cds == null) {
+            System.out.println("- cds : no archive (" + archive + "), build it with -Pcds");
+        } else {
+            print("cds ", cds);
+        }
+        print("warm", warm);
+    }
+
+    private static long[] fork(final Path jar, final Path archive, final int iterations, final String... cli) throws Exception {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xshare:auto");
+        }
+        final String opts = System.getenv("YUPIIK_TOOLS_OPTS"); // as the launcher script
+        if (opts != null && !opts.isBlank()) {
+            command.addAll(Arrays.asList(opts.trim().split("\\s+")));
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(Arrays.asList(cli));
+
+        final long[] durations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            final long start = System.nanoTime();
+            final Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Command failed: " + command);
+            }
+            durations[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        return durations;
+    }
+
+    private static long[] inProcess(final Path jar, final int iterations, final String... cli) throws Exception {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader old = thread.getContextClassLoader();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, ClassLoader.getPlatformClassLoader())) {
+            thread.setContextClassLoader(loader);
+            final Method main = loader.loadClass("io.yupiik.tools.cli.launcher.Main").getMethod("main", String[].class);
+            main.invoke(null, (Object) cli); // boot, not measured
+
+            final long[] durations = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                final long start = System.nanoTime();
+                main.invoke(null, (Object) cli);
+                durations[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            return durations;
+        } finally {
+            thread.setContextClassLoader(old);
+        }
+    }
+
+    private static void print(final String name, final long[] durations) {
+        final long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        System.out.println("- " + name + ": " + sorted[sorted.length / 2] + " / " + sorted[0] + " / " + sorted[sorted.length - 1]);
+    }
+}
@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+#
+# Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#  http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing,
+# software distributed under the License is distributed on an
+# "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+# KIND, either express or implied.  See the License for the
+# specific language governing permissions and limitations
+# under the License.
+#
+
+#
+# Launches yupiik-tools CLI using the class data sharing archive (built with -Pcds) when it exists next to the jar.
+# JAVA_HOME selects the JVM (it must be the one used to build the archive),
+# YUPIIK_TOOLS_OPTS can add JVM options, for example YUPIIK_TOOLS_OPTS=-XX:TieredStopAtLevel=1 (C1 only)
+# can speed up short runs (small renderings) but slows down big minisites so it is not the default.
+#
+
+base="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+default_jar="$base/${project.build.finalName}-fatjar.jar"
+jar="${YUPIIK_TOOLS_JAR:-$default_jar}"
+archive="${jar%.jar}.jsa"
+
+java="java"
+if [ -n "$JAVA_HOME" ]; then
+  java="$JAVA_HOME/bin/java"
+fi
+
+cds=""
+if [ -f "$archive" ]; then
+  # auto: if the archive does not match (other JVM, moved jar) it is just ignored
+  cds="-XX:SharedArchiveFile=$archive -Xshare:auto"
+fi
+
+# shellcheck disable=SC2086
+exec "$java" $cds $YUPIIK_TOOLS_OPTS -jar "$jar" "$@"
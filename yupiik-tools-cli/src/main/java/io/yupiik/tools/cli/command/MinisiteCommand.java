@@ -57,6 +57,7 @@ public final class MinisiteCommand {
                                 @Option(value = "useDefaultAssets", description = "Should default assets be used for the site rendering.") @Default("true") final boolean useDefaultAssets,
                                 @Option(value = "generateIndex", description = "Should index be generated (or is it written manually).") @Default("true") final boolean generateIndex,
                                 @Option(value = "generateSiteMap", description = "Should sitemap be generated.") @Default("true") final boolean generateSiteMap,
+                                @Option(value = "siteMapMaxUrls", description = "Max number of urls per sitemap, a sitemap index is generated if there are more pages.") @Default("50000") final int siteMapMaxUrls,
                                 @Option(value = "skipRendering", description = "Should rendering be done.") @Default("false") final boolean skipRendering,
                                 @Option(value = "skipIndexTitleDocumentationText", description = "Should Documentation title suffix be skipped.") @Default("false") final boolean skipIndexTitleDocumentationText,
                                 @Option(value = "addIndexRegistrationPerCategory", description = "Should blog categories pages be added to home page.") @Default("true") final boolean addIndexRegistrationPerCategory,
@@ -68,6 +69,7 @@ public final class MinisiteCommand {
                                 @Option(value = "generateBlog", description = "Should blog be generated.") @Default("true") final boolean generateBlog,
                                 @Option(value = "reverseBlogOrder", description = "Should blog index pages be sorted by reversed publication date.") @Default("true") final boolean reverseBlogOrder,
                                 @Option(value = "blogPageSize", description = "Site page size when blog is enabled.") @Default("10") final int blogPageSize,
+                                @Option(value = "blogRenderingThreads", description = "Number of threads used to render blog pages.") @Default("1") final int blogRenderingThreads,
                                 @Option(value = "templateDirs", description = "Asciidoctor template directory.") final List<File> templateDirs,
                                 @Option(value = "notIndexedPages", description = "When search is enabled the files to not index.") final List<String> notIndexedPages,
                                 @Option(value = "attributes", description = "Asciidoctor attributes (using properties syntax).") final Map<String, Object> attributes,
@@ -78,12 +80,20 @@ public final class MinisiteCommand {
                                 @Option(value = "customGems", description = "Custom JRuby gems path.") final String customGems,
                                 @Option(value = "requires", description = "Custom ruby requires (asciidoctor dependencies).") @Default("auto") final List<String> requires,
                                 @Option(value = "preActions", description = "PreAction to execute in properties format (type and configuration as keys, configuration value being properties again).") final List<PreAction> preActions,
+                                @Option(value = "preActionsThreads", description = "How many threads can be used to execute independent pre-actions.") @Default("1") final int preActionsThreads,
+                                @Option(value = "preActionsState", description = "File storing pre-actions inputs fingerprints to skip up to date actions, unset to always execute them.") final String preActionsState,
+                                @Option(value = "timingReport", description = "Folder where timings.json and timings.csv (phases and pages durations) are written, unset to disable it.") final String timingReport,
+                                @Option(value = "timingReportTopN", description = "How many of the slowest pages are logged when timingReport is set.") @Default("10") final int timingReportTopN,
                                 @Option(value = "useYupiikAsciidoc", description = "Should Yupiik Asciidoc renderer be used instead of JRuby Asciidoctor one.") final boolean useYupiikAsciidoc,
                                 @Out final PrintStream stdout,
                                 @Err final PrintStream stderr,
                                 final AsciidoctorProvider asciidoctorProvider) {
         new MiniSite(MiniSiteConfiguration.builder()
                 .preActions(preActions)
+                .preActionsThreads(preActionsThreads)
+                .preActionsState(preActionsState == null || preActionsState.isBlank() ? null : Path.of(preActionsState))
+                .timingReport(timingReport == null || timingReport.isBlank() ? null : Path.of(timingReport))
+                .timingReportTopN(timingReportTopN)
                 .customGems(customGems)
                 .requires(List.of("auto").equals(requires) ? null : requires)
                 .projectVersion(version)
@@ -107,6 +117,7 @@ public final class MinisiteCommand {
                 .indexSubTitle(indexSubTitle)
                 .copyright(copyright)
                 .blogPageSize(blogPageSize)
+                .blogRenderingThreads(blogRenderingThreads)
                 .generateBlog(generateBlog)
                 .linkedInCompany(linkedInCompany)
                 .customHead(customHead)
@@ -118,6 +129,7 @@ public final class MinisiteCommand {
                 .notIndexedPages(notIndexedPages)
                 .generateIndex(generateIndex)
                 .generateSiteMap(generateSiteMap)
+                .siteMapMaxUrls(siteMapMaxUrls)
                 .templatePrefixes(templatePrefixes)
                 .templateAddLeftMenu(templateAddLeftMenu)
                 .templateSuffixes(templateSuffixes)
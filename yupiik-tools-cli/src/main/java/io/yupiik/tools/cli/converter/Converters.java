@@ -27,10 +27,12 @@ import java.nio.charset.Charset;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toUnmodifiableMap;
 
@@ -57,6 +59,12 @@ public interface Converters {
                     .map(p -> p.stringPropertyNames().stream()
                             .collect(toUnmodifiableMap(identity(), p::getProperty)))
                     .orElseGet(Map::of));
+            ofNullable(properties.getProperty("inputs"))
+                    .map(it -> Stream.of(it.split(",")).map(String::trim).filter(v -> !v.isEmpty()).collect(toList()))
+                    .ifPresent(preAction::setInputs);
+            ofNullable(properties.getProperty("outputs"))
+                    .map(it -> Stream.of(it.split(",")).map(String::trim).filter(v -> !v.isEmpty()).collect(toList()))
+                    .ifPresent(preAction::setOutputs);
             return preAction;
         }
     }
@@ -34,12 +34,10 @@ public final class Main {
 
             @Override
             public <T> T findService(final Class<T> type) {
-                var value = instances.get(type);
-                if (type == AsciidoctorProvider.class) {
-                    value = new AsciidoctorProvider();
-                    instances.put(type, value);
+                if (type == AsciidoctorProvider.class) { // reuse it to not boot JRuby twice
+                    return type.cast(instances.computeIfAbsent(type, k -> new AsciidoctorProvider()));
                 }
-                return type.cast(value);
+                return type.cast(instances.get(type));
             }
         };
 
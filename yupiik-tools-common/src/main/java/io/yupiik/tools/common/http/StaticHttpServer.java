@@ -17,18 +17,36 @@ package io.yupiik.tools.common.http;
 
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+@Setter
 @RequiredArgsConstructor
 public class StaticHttpServer implements Runnable {
     private final Consumer<String> logInfo;
@@ -38,6 +56,33 @@ public class StaticHttpServer implements Runnable {
     private final String indexName;
     private final Runnable afterStart;
 
+    /**
+     * Number of threads handling requests.
+     */
+    private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Max number of files kept in memory.
+     */
+    private int cacheMaxEntries = 512;
+
+    /**
+     * Files bigger than this size are streamed from the disk instead of being cached.
+     */
+    private long cacheMaxFileSize = 256 * 1024;
+
+    /**
+     * Should text resources be gzipped when the client supports it.
+     */
+    private boolean gzip = true;
+
+    private final Map<Path, CachedFile> cache = new LinkedHashMap<>(16, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Path, CachedFile> eldest) {
+            return size() > cacheMaxEntries;
+        }
+    };
+
     @Override
     public void run() {
         final HttpServer server;
@@ -46,61 +91,289 @@ public class StaticHttpServer implements Runnable {
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            final Thread thread = new Thread(r, getClass().getName() + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
         final HttpContext ctx = server.createContext("/");
-        ctx.setHandler(new HttpHandler() {
-            @Override
-            public void handle(final HttpExchange exchange) throws IOException {
-                Path file = resolveFile(exchange.getRequestURI());
-                if (Files.isDirectory(file)) {
-                    file = file.resolve(indexName);
-                }
-                if (!Files.exists(file)) {
-                    exchange.sendResponseHeaders(404, 0);
-                    exchange.close();
-                }
-                final byte[] bytes = Files.readAllBytes(file);
-                exchange.getResponseHeaders().add("Content-Type", findType(file.getFileName().toString()));
-                exchange.sendResponseHeaders(200, bytes.length);
-                exchange.getResponseBody().write(bytes);
+        ctx.setHandler(exchange -> {
+            try {
+                handle(exchange);
+            } catch (final IOException | RuntimeException e) {
+                logError.accept("Can't serve '" + exchange.getRequestURI() + "'", e);
+                throw e;
+            } finally {
                 exchange.close();
             }
-
-            private String findType(final String name) {
-                if (name.endsWith(".html")) {
-                    return "text/html";
-                }
-                if (name.endsWith(".css")) {
-                    return "text/css";
-                }
-                if (name.endsWith(".js")) {
-                    return "application/javascript";
-                }
-                if (name.endsWith(".svg")) {
-                    return "image/svg+xml";
-                }
-                if (name.endsWith(".png")) {
-                    return "image/png";
-                }
-                if (name.endsWith(".jpg")) {
-                    return "image/jpg";
-                }
-                return "application/octect-stream";
-            }
-
-            private Path resolveFile(final URI requestURI) {
-                final String path = requestURI.getPath().substring(1);
-                if (path.isEmpty() || "/".equals(path)) {
-                    return docBase.resolve(indexName);
-                }
-                return docBase.resolve(path);
-            }
         });
+        onStart(server);
         server.start();
         logInfo.accept("Started server at 'http://localhost:" + port + "'");
         try {
             afterStart.run();
         } finally {
             server.stop(0);
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Enables to register custom contexts before the server starts.
+     *
+     * @param server the server.
+     */
+    protected void onStart(final HttpServer server) {
+        // no-op
+    }
+
+    /**
+     * Enables to serve a custom content (in memory for example) instead of the file.
+     *
+     * @param file the file matching the request (in {@code docBase}).
+     * @return the bytes to serve or {@code null} to serve the file itself.
+     * @throws IOException if the content can't be computed.
+     */
+    protected byte[] load(final Path file) throws IOException {
+        return null;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String method = exchange.getRequestMethod();
+        final boolean head = "HEAD".equalsIgnoreCase(method);
+        if (!head && !"GET".equalsIgnoreCase(method)) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        Path file = resolveFile(exchange.getRequestURI());
+        if (file == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        if (Files.isDirectory(file)) {
+            file = file.resolve(indexName);
+        }
+
+        final String type = findType(file.getFileName().toString());
+        final boolean compress = gzip && isText(type) && acceptsGzip(exchange);
+        exchange.getResponseHeaders().add("Content-Type", type);
+        if (isText(type)) {
+            exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        }
+
+        final byte[] custom = load(file);
+        if (custom != null) { // dynamic content, no validator
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            send(exchange, head, compress ? gzip(custom) : custom, compress);
+            return;
+        }
+
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final IOException ioe) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final String etag = "\"" + Long.toHexString(attributes.size()) + '-' + Long.toHexString(lastModified) + "\"";
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.getResponseHeaders().add("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC)));
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache"); // always revalidate, content changes while editing
+        if (isNotModified(exchange, etag, lastModified)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        if (compress) {
+            final Path precompressed = file.resolveSibling(file.getFileName() + ".gz");
+            if (Files.isRegularFile(precompressed) && Files.getLastModifiedTime(precompressed).toMillis() >= lastModified) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                stream(exchange, head, precompressed, Files.size(precompressed));
+                return;
+            }
+        }
+
+        if (attributes.size() <= cacheMaxFileSize) {
+            final CachedFile cached = getCached(file, etag);
+            send(exchange, head, compress ? cached.gzipped() : cached.content, compress);
+            return;
+        }
+
+        if (compress) { // big text file, compress on the fly
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, head ? -1 : 0);
+            if (!head) {
+                try (final InputStream in = Files.newInputStream(file);
+                     final OutputStream out = new GZIPOutputStream(exchange.getResponseBody(), 8192)) {
+                    in.transferTo(out);
+                }
+            }
+            return;
+        }
+        stream(exchange, head, file, attributes.size());
+    }
+
+    private CachedFile getCached(final Path file, final String etag) throws IOException {
+        synchronized (cache) {
+            final CachedFile cached = cache.get(file);
+            if (cached != null && cached.etag.equals(etag)) {
+                return cached;
+            }
+        }
+        final CachedFile loaded = new CachedFile(etag, Files.readAllBytes(file));
+        synchronized (cache) {
+            cache.put(file, loaded);
+        }
+        return loaded;
+    }
+
+    private void stream(final HttpExchange exchange, final boolean head, final Path file, final long size) throws IOException {
+        exchange.sendResponseHeaders(200, head ? -1 : size);
+        if (!head) {
+            try (final InputStream in = Files.newInputStream(file)) {
+                in.transferTo(exchange.getResponseBody());
+            }
+        }
+    }
+
+    private void send(final HttpExchange exchange, final boolean head, final byte[] bytes, final boolean gzipped) throws IOException {
+        if (gzipped) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        if (head) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private boolean isNotModified(final HttpExchange exchange, final String etag, final long lastModified) {
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return Stream.of(ifNoneMatch.split(","))
+                    .map(String::trim)
+                    .map(it -> it.startsWith("W/") ? it.substring("W/".length()) : it)
+                    .anyMatch(it -> "*".equals(it) || etag.equals(it));
+        }
+        final String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                final long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return lastModified / 1000 <= since / 1000; // header has a second precision
+            } catch (final DateTimeParseException dtpe) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean acceptsGzip(final HttpExchange exchange) {
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private boolean isText(final String type) {
+        return type.startsWith("text/") || type.startsWith("application/javascript") ||
+                type.startsWith("application/json") || type.startsWith("application/xml") || type.startsWith("image/svg+xml");
+    }
+
+    private String findType(final String name) {
+        if (name.endsWith(".html")) {
+            return "text/html; charset=utf-8";
+        }
+        if (name.endsWith(".css")) {
+            return "text/css; charset=utf-8";
+        }
+        if (name.endsWith(".js")) {
+            return "application/javascript; charset=utf-8";
+        }
+        if (name.endsWith(".json")) {
+            return "application/json; charset=utf-8";
+        }
+        if (name.endsWith(".xml")) {
+            return "application/xml; charset=utf-8";
+        }
+        if (name.endsWith(".txt")) {
+            return "text/plain; charset=utf-8";
+        }
+        if (name.endsWith(".svg")) {
+            return "image/svg+xml";
+        }
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (name.endsWith(".ico")) {
+            return "image/x-icon";
+        }
+        if (name.endsWith(".woff2")) {
+            return "font/woff2";
+        }
+        if (name.endsWith(".woff")) {
+            return "font/woff";
+        }
+        return "application/octet-stream";
+    }
+
+    private Path resolveFile(final URI requestURI) {
+        final String path = requestURI.getPath().substring(1);
+        if (path.isEmpty() || "/".equals(path)) {
+            return docBase.resolve(indexName);
+        }
+        final Path base = docBase.toAbsolutePath().normalize();
+        final Path resolved = base.resolve(path).normalize();
+        if (!resolved.startsWith(base)) { // don't serve files outside docBase
+            return null;
+        }
+        return docBase.resolve(base.relativize(resolved));
+    }
+
+    private static byte[] gzip(final byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static class CachedFile {
+        private final String etag;
+        private final byte[] content;
+        private volatile byte[] gzipped;
+
+        private CachedFile(final String etag, final byte[] content) {
+            this.etag = etag;
+            this.content = content;
+        }
+
+        private byte[] gzipped() {
+            if (gzipped == null) {
+                gzipped = gzip(content);
+            }
+            return gzipped;
         }
     }
 
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.common.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Extracts a jar folder once in a shared folder keyed by the jar content and links it where it is needed
+ * (copies it if symbolic links are not supported).
+ * Population is atomic (extraction in a temporary folder then rename) so concurrent builds can share the same cache.
+ * Only the most recently used entries of a jar folder are kept (each new version of a snapshot creates a new entry).
+ */
+public class ExtractionCache {
+    private static final Map<String, String> HASHES = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final Extractor extractor;
+    private final int maxEntries;
+
+    public ExtractionCache(final Path root) {
+        this(root, new Extractor());
+    }
+
+    public ExtractionCache(final Path root, final Extractor extractor) {
+        this(root, extractor, 3);
+    }
+
+    /**
+     * @param root       cache directory.
+     * @param extractor  extractor to populate the cache.
+     * @param maxEntries how many entries to keep per extracted folder, older ones (last access) are deleted, {@code <= 0} keeps all of them.
+     */
+    public ExtractionCache(final Path root, final Extractor extractor, final int maxEntries) {
+        this.root = root;
+        this.extractor = extractor;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param jar    the jar to extract.
+     * @param prefix the jar folder to extract.
+     * @return the cached folder or {@code null} if the jar can't be cached (exploded folder).
+     */
+    public Path get(final File jar, final String prefix) {
+        if (!jar.isFile()) {
+            return null;
+        }
+        final var suffix = '-' + prefix.replaceAll("[^a-zA-Z0-9.-]", "");
+        final var target = root.resolve(hash(jar) + suffix);
+        if (Files.isDirectory(target)) {
+            touch(target);
+            return target;
+        }
+        try {
+            Files.createDirectories(root);
+            final var tmp = Files.createTempDirectory(root, target.getFileName() + ".tmp-");
+            try {
+                extractor.extract(tmp, jar, prefix);
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final FileSystemException fse) {
+                    if (!Files.isDirectory(target)) { // else a concurrent build populated it
+                        throw fse;
+                    }
+                }
+            } finally {
+                if (Files.exists(tmp)) {
+                    delete(tmp);
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        touch(target);
+        evict(suffix, target);
+        return target;
+    }
+
+    /**
+     * Deletes the links of a folder populated by {@link #link(Path, Path)} which point to an evicted entry.
+     *
+     * @param output the folder to check.
+     * @return {@code true} if some links were deleted.
+     */
+    public boolean deleteBrokenLinks(final Path output) {
+        return deleteLinks(output, true);
+    }
+
+    /**
+     * Deletes the links created by {@link #link(Path, Path)} (not the linked files), useful to fallback on a plain extraction
+     * without writing in the cache.
+     *
+     * @param output the folder to clean.
+     */
+    public void unlink(final Path output) {
+        deleteLinks(output, false);
+    }
+
+    /**
+     * Makes each root entry of the cached folder available in output.
+     *
+     * @param cached the folder returned by {@link #get(File, String)}.
+     * @param output where to expose the files.
+     */
+    public void link(final Path cached, final Path output) {
+        try {
+            Files.createDirectories(output);
+            try (final Stream<Path> list = Files.list(cached)) {
+                for (final Path entry : (Iterable<Path>) list::iterator) {
+                    final var target = output.resolve(entry.getFileName().toString());
+                    if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) { // merge, never write in the cache
+                        if (Files.isSymbolicLink(target)) {
+                            final var linked = Files.readSymbolicLink(target);
+                            Files.delete(target);
+                            copy(linked, target);
+                        }
+                        copy(entry, target);
+                        continue;
+                    }
+                    try {
+                        Files.createSymbolicLink(target, entry.toAbsolutePath());
+                    } catch (final IOException | UnsupportedOperationException e) {
+                        copy(entry, target);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean deleteLinks(final Path output, final boolean brokenOnly) {
+        if (!Files.isDirectory(output)) {
+            return false;
+        }
+        boolean deleted = false;
+        try (final Stream<Path> list = Files.list(output)) {
+            for (final Path entry : (Iterable<Path>) list::iterator) {
+                if (Files.isSymbolicLink(entry) && (!brokenOnly || !Files.exists(entry))) {
+                    Files.delete(entry);
+                    deleted = true;
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return deleted;
+    }
+
+    // last modified time is used as last access time
+    private void touch(final Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // no-op: worse case it is evicted earlier
+        }
+    }
+
+    private void evict(final String suffix, final Path current) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        try {
+            final List<Path> entries;
+            try (final Stream<Path> list = Files.list(root)) {
+                entries = list
+                        .filter(it -> !it.equals(current))
+                        .filter(it -> {
+                            final var name = it.getFileName().toString();
+                            return name.endsWith(suffix) && !name.contains(".tmp-") && Files.isDirectory(it);
+                        })
+                        .sorted(Comparator.comparing(this::lastModified).reversed())
+                        .collect(toList());
+            }
+            for (final Path entry : entries.subList(Math.min(entries.size(), maxEntries - 1), entries.size())) {
+                delete(entry);
+            }
+        } catch (final IOException | RuntimeException e) {
+            // no-op: eviction is best effort, a concurrent build can be evicting too
+        }
+    }
+
+    private FileTime lastModified(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (final IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String hash(final File jar) {
+        return HASHES.computeIfAbsent(jar.getAbsolutePath() + '|' + jar.length() + '|' + jar.lastModified(), k -> {
+            try {
+                final var digest = MessageDigest.getInstance("SHA-256");
+                final var buffer = new byte[8192];
+                try (final InputStream stream = Files.newInputStream(jar.toPath())) {
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                final var out = new StringBuilder();
+                for (final byte b : digest.digest()) {
+                    out.append(String.format("%02x", b));
+                }
+                return out.toString();
+            } catch (final NoSuchAlgorithmException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void copy(final Path from, final Path to) throws IOException {
+        if (!Files.isDirectory(from)) {
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        Files.walkFileTree(from, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return super.preVisitDirectory(dir, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                return super.visitFile(file, attrs);
+            }
+        });
+    }
+
+    private static void delete(final Path folder) throws IOException {
+        try (final Stream<Path> walk = Files.walk(folder)) {
+            for (final Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -15,29 +15,57 @@
  */
 package io.yupiik.tools.common.watch;
 
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-@RequiredArgsConstructor
+/**
+ * Watches sources and re-renders when they change.
+ * By default it relies on filesystem events ({@link WatchService}), events are debounced using {@code watchDelay}:
+ * rendering happens once no event was received during this delay.
+ * If native events are not available (or disabled with {@code useNativeEvents}) it falls back on polling,
+ * it is also the case when the JVM implementation is itself polling based (macOS) since it is too slow to be usable.
+ * <p>
+ * The renderer gets the changed paths, an empty set means the change is unknown (first rendering, forced refresh, event overflow)
+ * so a full rendering should be done.
+ *
+ * @param <O> options type.
+ * @param <A> renderer type (asciidoctor).
+ */
 public class Watch<O, A> implements Runnable {
     private final Consumer<String> logInfo;
     private final Consumer<String> logDebug;
@@ -47,56 +75,329 @@ public class Watch<O, A> implements Runnable {
     private final O options;
     private final A asciidoctor;
     private final long watchDelay;
-    private final BiConsumer<O, A> renderer;
+    private final Renderer<O, A> renderer;
     private final Runnable onFirstRender;
 
+    /**
+     * Should {@link WatchService} be used, if {@code false} sources are polled.
+     */
+    @Setter
+    private boolean useNativeEvents = !Boolean.getBoolean("yupiik.watch.polling");
+
+    public Watch(final Consumer<String> logInfo, final Consumer<String> logDebug,
+                 final BiConsumer<String, Throwable> logDebugWithException, final Consumer<String> logError,
+                 final List<Path> sources, final O options, final A asciidoctor, final long watchDelay,
+                 final BiConsumer<O, A> renderer, final Runnable onFirstRender) {
+        this(logInfo, logDebug, logDebugWithException, logError, sources, options, asciidoctor, watchDelay,
+                (o, a, changed) -> renderer.accept(o, a), onFirstRender);
+    }
+
+    public Watch(final Consumer<String> logInfo, final Consumer<String> logDebug,
+                 final BiConsumer<String, Throwable> logDebugWithException, final Consumer<String> logError,
+                 final List<Path> sources, final O options, final A asciidoctor, final long watchDelay,
+                 final Renderer<O, A> renderer, final Runnable onFirstRender) {
+        this.logInfo = logInfo;
+        this.logDebug = logDebug;
+        this.logDebugWithException = logDebugWithException;
+        this.logError = logError;
+        this.sources = sources;
+        this.options = options;
+        this.asciidoctor = asciidoctor;
+        this.watchDelay = watchDelay;
+        this.renderer = renderer;
+        this.onFirstRender = onFirstRender;
+    }
+
     @Override
     public void run() {
         watch(options, asciidoctor);
     }
 
     private void watch(final O options, final A adoc) {
+        final AutoCloseable watcher = start(options, adoc);
+        launchCli(options, adoc);
+        try {
+            watcher.close();
+        } catch (final Exception e) {
+            logDebugWithException.accept("Can't stop watching", e);
+        }
+    }
+
+    /**
+     * Starts watching sources in background (without rendering first).
+     *
+     * @param options options.
+     * @param adoc    renderer.
+     * @return a handle to stop watching.
+     */
+    AutoCloseable start(final O options, final A adoc) {
         final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             @Override
             public Thread newThread(final Runnable worker) {
                 final Thread thread = new Thread(worker, getClass().getName() + "-watch");
                 thread.setPriority(Thread.NORM_PRIORITY);
+                thread.setDaemon(true);
                 return thread;
             }
         });
-        final AtomicLong lastModified = new AtomicLong(findLastUpdated(-1, sources));
+        final WatchService watchService = useNativeEvents ? newWatchService() : null;
+        if (watchService != null) {
+            service.submit(() -> watchEvents(watchService, options, adoc));
+        } else {
+            poll(service, options, adoc);
+        }
+        return () -> {
+            if (watchService != null) {
+                watchService.close();
+            }
+            try {
+                service.shutdownNow();
+                service.awaitTermination(2, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private WatchService newWatchService() {
+        final WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (final IOException | UnsupportedOperationException e) {
+            logDebugWithException.accept("Native file events not available, using polling", e);
+            return null;
+        }
+        if (isPollingWatchService(watchService)) {
+            // the JVM polls itself (every 10s by default) so events would come way after watchDelay, poll ourselves
+            logDebug.accept("JVM watch service is polling based, using polling");
+            try {
+                watchService.close();
+            } catch (final IOException e) {
+                logDebugWithException.accept("Can't close watch service", e);
+            }
+            return null;
+        }
+        return watchService;
+    }
+
+    static boolean isPollingWatchService(final WatchService watchService) {
+        return "sun.nio.fs.PollingWatchService".equals(watchService.getClass().getName()) ||
+                System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("mac");
+    }
+
+    private void watchEvents(final WatchService watchService, final O options, final A adoc) {
+        final Map<WatchKey, Path> keys = new HashMap<>();
+        final Set<Path> fileSources = new HashSet<>();
+        try {
+            registerSources(watchService, keys, fileSources);
+        } catch (final IOException | RuntimeException e) { // unlikely but ensure we still watch
+            logDebugWithException.accept("Can't register native file events, using polling", e);
+            keys.keySet().forEach(WatchKey::cancel);
+            pollLoop(options, adoc);
+            return;
+        }
+
+        final Set<Path> changed = new HashSet<>();
+        boolean overflow = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            final WatchKey key;
+            try {
+                key = changed.isEmpty() && !overflow ? watchService.take() : watchService.poll(watchDelay, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key == null) { // debounce window elapsed without new event
+                if (overflow) {
+                    changed.clear();
+                }
+                render(options, adoc, changed);
+                overflow = false;
+                continue;
+            }
+
+            final Path dir = keys.get(key);
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    overflow = true;
+                    continue;
+                }
+                final Path path = dir.resolve((Path) event.context());
+                if (!fileSources.isEmpty() && fileSources.contains(dir) && !sources.contains(path) && !isInDirectorySource(path)) {
+                    continue;
+                }
+                if (isIgnored(path)) {
+                    continue;
+                }
+                changed.add(path);
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) { // new folder, watch it and its content
+                    try {
+                        registerTree(watchService, keys, path, changed);
+                    } catch (final IOException e) {
+                        logDebugWithException.accept("Can't watch " + path, e);
+                        overflow = true;
+                    }
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+            if (overflow) { // re-register everything, some folders can have been missed
+                try {
+                    registerSources(watchService, keys, fileSources);
+                } catch (final IOException e) {
+                    logDebugWithException.accept("Can't re-register sources", e);
+                }
+            }
+        }
+    }
+
+    private boolean isInDirectorySource(final Path path) {
+        return sources.stream().filter(Files::isDirectory).anyMatch(path::startsWith);
+    }
+
+    private void registerSources(final WatchService watchService, final Map<WatchKey, Path> keys, final Set<Path> fileSources) throws IOException {
+        for (final Path source : sources) {
+            if (Files.isDirectory(source)) {
+                registerTree(watchService, keys, source, null);
+            } else if (source.getParent() != null && Files.isDirectory(source.getParent())) {
+                fileSources.add(source.getParent());
+                keys.put(register(watchService, source.getParent()), source.getParent());
+            }
+        }
+    }
+
+    private void registerTree(final WatchService watchService, final Map<WatchKey, Path> keys,
+                              final Path root, final Set<Path> collector) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                if (isIgnored(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                keys.put(register(watchService, dir), dir);
+                return super.preVisitDirectory(dir, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (collector != null) { // files created with the folder (before it was registered)
+                    collector.add(file);
+                }
+                return super.visitFile(file, attrs);
+            }
+        });
+    }
+
+    private WatchKey register(final WatchService watchService, final Path dir) throws IOException {
+        return dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+
+    private void poll(final ScheduledExecutorService service, final O options, final A adoc) {
+        final AtomicReference<Map<Path, Long>> lastState = new AtomicReference<>(snapshot());
         final AtomicLong checksCount = new AtomicLong(0);
+        final Set<Path> pending = new HashSet<>();
         service.scheduleWithFixedDelay(() -> {
-            final long currentLM = findLastUpdated(-1, sources);
-            final long lastModifiedValue = lastModified.get();
-            if (lastModifiedValue < currentLM) {
-                lastModified.set(currentLM);
+            final Map<Path, Long> current = snapshot();
+            final Set<Path> changed = diff(lastState.get(), current);
+            if (!changed.isEmpty()) {
+                lastState.set(current);
+                pending.addAll(changed);
                 if (checksCount.getAndIncrement() > 0) {
-                    logDebug.accept("Change detected, re-rendering");
-                    renderer.accept(options, adoc);
+                    render(options, adoc, pending);
                     checksCount.set(0);
                 } else {
                     logDebug.accept("Change detected, waiting another iteration to ensure it is fully refreshed");
                 }
             } else if (checksCount.get() > 0) {
-                logDebug.accept("Change detected, re-rendering");
-                renderer.accept(options, adoc);
+                render(options, adoc, pending);
                 checksCount.set(0);
             } else {
                 logDebug.accept("No change");
             }
         }, watchDelay, watchDelay, TimeUnit.MILLISECONDS);
-        launchCli(options, adoc);
+    }
+
+    // used when native registration failed in the watch thread
+    private void pollLoop(final O options, final A adoc) {
+        Map<Path, Long> lastState = snapshot();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(watchDelay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            final Map<Path, Long> current = snapshot();
+            final Set<Path> changed = diff(lastState, current);
+            if (!changed.isEmpty()) {
+                lastState = current;
+                render(options, adoc, changed);
+            }
+        }
+    }
+
+    private void render(final O options, final A adoc, final Set<Path> changed) {
+        logDebug.accept("Change detected, re-rendering");
+        final Set<Path> copy = Set.copyOf(changed);
+        changed.clear();
         try {
-            service.shutdownNow();
-            service.awaitTermination(2, SECONDS);
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
+            renderer.render(options, adoc, copy);
+        } catch (final RuntimeException re) { // keep watching
+            logError.accept("Can't render: " + re.getMessage());
         }
     }
 
+    private Set<Path> diff(final Map<Path, Long> previous, final Map<Path, Long> current) {
+        final Set<Path> changed = new HashSet<>();
+        current.forEach((file, lastModified) -> {
+            if (!Objects.equals(previous.get(file), lastModified)) {
+                changed.add(file);
+            }
+        });
+        previous.keySet().stream().filter(it -> !current.containsKey(it)).forEach(changed::add);
+        return changed;
+    }
+
+    private Map<Path, Long> snapshot() {
+        final Map<Path, Long> state = new HashMap<>();
+        for (final Path source : sources) {
+            if (Files.isDirectory(source)) {
+                try {
+                    Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                            if (isIgnored(dir)) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return super.preVisitDirectory(dir, attrs);
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                            state.put(file, attrs.lastModifiedTime().toMillis());
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                } catch (final IOException e) {
+                    // no-op, will be retried next iteration
+                }
+            } else if (Files.exists(source)) {
+                try {
+                    state.put(source, Files.getLastModifiedTime(source).toMillis());
+                } catch (final IOException e) {
+                    // no-op
+                }
+            }
+        }
+        return state;
+    }
+
     private void launchCli(final O options, final A adoc) {
-        renderer.accept(options, adoc);
+        renderer.render(options, adoc, Set.of());
         onFirstRender.run();
 
         try (final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
@@ -107,7 +408,7 @@ public class Watch<O, A> implements Runnable {
                     case "":
                     case "r":
                     case "refresh":
-                        renderer.accept(options, adoc);
+                        renderer.render(options, adoc, Set.of());
                         break;
                     case "exit":
                     case "quit":
@@ -121,54 +422,18 @@ public class Watch<O, A> implements Runnable {
         }
     }
 
-    private long findLastUpdated(final long value, final List<Path> dirs) {
-        return dirs.stream().mapToLong(it -> findLastUpdated(value, it)).max().orElse(value);
-    }
-
-    private long findLastUpdated(final long value, final Path dir) {
-        if (Files.exists(dir) && Files.isDirectory(dir)) {
-            try {
-                final var max = new AtomicLong(0);
-                Files.walkFileTree(dir, new SimpleFileVisitor<>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
-                        if (isIgnored(dir)) {
-                            return FileVisitResult.SKIP_SUBTREE;
-                        }
-                        return super.preVisitDirectory(dir, attrs);
-                    }
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        try {
-                            final var current = Files.getLastModifiedTime(file).toMillis();
-                            if (current > max.get()) {
-                                max.set(current);
-                            }
-                        } catch (final IOException e) {
-                            throw new IllegalStateException(e);
-                        }
-                        return super.visitFile(file, attrs);
-                    }
-                });
-                final var result = max.get();
-                if (result == 0) {
-                    return value;
-                }
-                return result;
-            } catch (final IOException e) {
-                // no-op, default to value for this iteration
-            }
-        }
-        try {
-            return Files.getLastModifiedTime(dir).toMillis();
-        } catch (final IOException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
     private boolean isIgnored(final Path dir) {
-        final var name = dir.getFileName().toString();
+        final var name = dir.getFileName() == null ? "" : dir.getFileName().toString();
         return ".idea".equals(name) || "target".equals(name) || "node_modules".equals(name);
     }
+
+    @FunctionalInterface
+    public interface Renderer<O, A> {
+        /**
+         * @param options options.
+         * @param adoc    renderer.
+         * @param changed changed paths, empty if unknown (a full rendering is expected).
+         */
+        void render(O options, A adoc, Set<Path> changed);
+    }
 }
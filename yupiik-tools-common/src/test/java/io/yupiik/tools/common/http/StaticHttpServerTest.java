@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.common.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaticHttpServerTest {
+    @Test
+    void conditionalGet(@TempDir final Path docBase) throws IOException {
+        Files.writeString(docBase.resolve("index.html"), "<html>index</html>", UTF_8);
+        serve(docBase, (client, base) -> {
+            final var first = client.send(HttpRequest.newBuilder(base.resolve("/")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, first.statusCode());
+            assertEquals("<html>index</html>", first.body());
+            final var etag = first.headers().firstValue("ETag").orElseThrow();
+            final var lastModified = first.headers().firstValue("Last-Modified").orElseThrow();
+
+            assertEquals(304, client.send(
+                    HttpRequest.newBuilder(base.resolve("/index.html")).header("If-None-Match", etag).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(304, client.send(
+                    HttpRequest.newBuilder(base.resolve("/index.html")).header("If-Modified-Since", lastModified).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(200, client.send(
+                    HttpRequest.newBuilder(base.resolve("/index.html")).header("If-None-Match", "\"other\"").build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(404, client.send(
+                    HttpRequest.newBuilder(base.resolve("/missing.html")).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode());
+        });
+    }
+
+    @Test
+    void gzip(@TempDir final Path docBase) throws IOException {
+        final var css = "body { color: red; }\n".repeat(20_000); // bigger than the cache threshold so streamed
+        Files.writeString(docBase.resolve("big.css"), css, UTF_8);
+        Files.writeString(docBase.resolve("small.js"), "console.log('small');", UTF_8);
+        serve(docBase, (client, base) -> {
+            for (final var file : List.of("big.css", "small.js")) {
+                final var response = client.send(
+                        HttpRequest.newBuilder(base.resolve("/" + file)).header("Accept-Encoding", "gzip").build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                assertEquals(200, response.statusCode());
+                assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElseThrow(), file);
+                try (final var in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                    assertEquals(Files.readString(docBase.resolve(file)), new String(in.readAllBytes(), UTF_8));
+                }
+            }
+
+            final var plain = client.send(HttpRequest.newBuilder(base.resolve("/big.css")).build(), HttpResponse.BodyHandlers.ofString());
+            assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+            assertEquals(css, plain.body());
+        });
+    }
+
+    @Test
+    void load(@TempDir final Path docBase) throws IOException {
+        final var random = new Random(1234);
+        final var files = new ArrayList<Path>();
+        for (int i = 0; i < 20; i++) { // mix of cached and streamed files
+            final var content = new byte[i % 2 == 0 ? 1024 * (i + 1) : 512 * 1024 + i];
+            random.nextBytes(content);
+            files.add(Files.write(docBase.resolve("asset-" + i + ".png"), content));
+        }
+        serve(docBase, (client, base) -> {
+            final var pool = Executors.newFixedThreadPool(16);
+            try {
+                final var requests = new ArrayList<CompletableFuture<Void>>();
+                for (int i = 0; i < 800; i++) {
+                    final var file = files.get(i % files.size());
+                    requests.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            final var response = client.send(
+                                    HttpRequest.newBuilder(base.resolve("/" + file.getFileName())).build(),
+                                    HttpResponse.BodyHandlers.ofByteArray());
+                            assertEquals(200, response.statusCode());
+                            assertArrayEquals(Files.readAllBytes(file), response.body());
+                        } catch (final IOException e) {
+                            throw new IllegalStateException(e);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException(e);
+                        }
+                    }, pool));
+                }
+                CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).get();
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        });
+    }
+
+    private void serve(final Path docBase, final Scenario scenario) throws IOException {
+        final int port;
+        try (final var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        final var errors = new CopyOnWriteArrayList<Throwable>();
+        new StaticHttpServer(s -> {
+        }, (m, e) -> errors.add(e), port, docBase, "index.html", () -> {
+            try {
+                scenario.run(HttpClient.newHttpClient(), URI.create("http://localhost:" + port));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }).run();
+        assertEquals(List.of(), errors, () -> Arrays.toString(errors.toArray()));
+    }
+
+    private interface Scenario {
+        void run(HttpClient client, URI base) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.common.jar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractionCacheTest {
+    @Test
+    void extractOnceAndLink(@TempDir final Path work) throws Exception {
+        final var jar = createJar(work.resolve("lib.jar"), "v1");
+        final var extractions = new AtomicInteger();
+        final var cache = new ExtractionCache(work.resolve("cache"), new Extractor() {
+            @Override
+            public void extract(final Path output, final File self, final String prefix) {
+                extractions.incrementAndGet();
+                super.extract(output, self, prefix);
+            }
+        });
+
+        // concurrent builds
+        final var pool = Executors.newFixedThreadPool(4);
+        final List<Path> cached;
+        try {
+            final List<Future<Path>> futures = pool.invokeAll(IntStream.range(0, 8)
+                    .mapToObj(i -> (Callable<Path>) () -> cache.get(jar, "res/"))
+                    .collect(toList()));
+            cached = futures.stream().map(f -> {
+                try {
+                    return f.get();
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).distinct().collect(toList());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, cached.size());
+        assertTrue(extractions.get() >= 1);
+        try (final var list = Files.list(work.resolve("cache"))) { // no temporary folder left
+            assertEquals(List.of(cached.get(0)), list.collect(toList()));
+        }
+
+        extractions.set(0);
+        assertEquals(cached.get(0), cache.get(jar, "res/"));
+        assertEquals(0, extractions.get());
+
+        final var module1 = work.resolve("module1/workdir");
+        final var module2 = work.resolve("module2/workdir");
+        cache.link(cached.get(0), module1);
+        cache.link(cached.get(0), module2);
+        for (final var module : List.of(module1, module2)) {
+            assertEquals("v1", Files.readString(module.resolve("folder/file.txt")));
+            assertEquals("root", Files.readString(module.resolve("root.txt")));
+        }
+
+        // content changed -> new entry
+        final var updated = createJar(work.resolve("lib2.jar"), "v2");
+        assertNotEquals(cached.get(0), cache.get(updated, "res/"));
+    }
+
+    @Test
+    void evictLeastRecentlyUsed(@TempDir final Path work) throws Exception {
+        final var cache = new ExtractionCache(work.resolve("cache"), new Extractor(), 2);
+        final var v1 = cache.get(createJar(work.resolve("v1.jar"), "v1"), "res/");
+        final var module = work.resolve("module/workdir");
+        cache.link(v1, module);
+        assertFalse(cache.deleteBrokenLinks(module));
+        Files.setLastModifiedTime(v1, FileTime.fromMillis(0)); // not used for a long time
+
+        final var v2 = cache.get(createJar(work.resolve("v2.jar"), "v2"), "res/");
+        final var v3 = cache.get(createJar(work.resolve("v3.jar"), "v3"), "res/");
+        try (final var list = Files.list(work.resolve("cache"))) {
+            assertEquals(List.of(v2, v3), list.sorted(Comparator.comparing(it -> !it.equals(v2))).collect(toList()));
+        }
+
+        // module linked the evicted entry, links are dropped to be recreated
+        assertTrue(cache.deleteBrokenLinks(module));
+        try (final var list = Files.list(module)) {
+            assertEquals(0, list.count());
+        }
+    }
+
+    private File createJar(final Path jar, final String content) throws IOException {
+        try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            write(out, "res/folder/file.txt", content);
+            write(out, "res/root.txt", "root");
+            write(out, "other/ignored.txt", "ignored");
+        }
+        return jar.toFile();
+    }
+
+    private void write(final JarOutputStream out, final String name, final String content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+}
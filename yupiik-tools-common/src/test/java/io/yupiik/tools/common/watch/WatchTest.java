@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.tools.common.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchTest {
+    @Test
+    void nativeEvents(@TempDir final Path work) throws Exception {
+        assertChanges(work, true);
+    }
+
+    @Test
+    void polling(@TempDir final Path work) throws Exception {
+        assertChanges(work, false);
+    }
+
+    private void assertChanges(final Path work, final boolean nativeEvents) throws Exception {
+        final Path existing = Files.writeString(work.resolve("page.adoc"), "= Page");
+        Files.createDirectories(work.resolve("target"));
+
+        final BlockingQueue<Set<Path>> renderings = new LinkedBlockingQueue<>();
+        final Watch<String, String> watch = new Watch<>(
+                s -> {}, s -> {}, (s, e) -> {}, s -> {},
+                List.of(work), "options", "adoc", 250, (o, a, changed) -> renderings.add(changed), () -> {});
+        watch.setUseNativeEvents(nativeEvents);
+        final boolean polling;
+        try (final WatchService service = FileSystems.getDefault().newWatchService()) {
+            polling = !nativeEvents || Watch.isPollingWatchService(service);
+        }
+
+        try (final AutoCloseable ignored = watch.start("options", "adoc")) {
+            // let registration happen and, for polling, ensure the mtime changes (some filesystems have a second precision)
+            Thread.sleep(polling ? 1500 : 500);
+
+            Files.writeString(existing, "= Page\n\nUpdated.");
+            Files.writeString(work.resolve("target/ignored.adoc"), "= Ignored");
+            final Path newDir = Files.createDirectories(work.resolve("sub"));
+            final Path newFile = Files.writeString(newDir.resolve("other.adoc"), "= Other");
+
+            // debounced so all changes should come in a few renderings, wait for all of them
+            final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(polling ? 10 : 20);
+            boolean sawExisting = false;
+            boolean sawNew = false;
+            while (System.currentTimeMillis() < end && !(sawExisting && sawNew)) {
+                final Set<Path> changed = renderings.poll(500, TimeUnit.MILLISECONDS);
+                if (changed == null) {
+                    continue;
+                }
+                assertTrue(changed.stream().noneMatch(it -> it.startsWith(work.resolve("target"))), changed::toString);
+                // an empty set (unknown change) is only acceptable when polling, native events give the exact paths
+                assertTrue(polling || !changed.isEmpty(), "native events should provide changed paths");
+                final boolean unknown = polling && changed.isEmpty();
+                sawExisting |= unknown || changed.contains(existing);
+                sawNew |= unknown || changed.contains(newFile);
+            }
+            assertTrue(sawExisting, "existing file change not detected");
+            assertTrue(sawNew, "new file not detected");
+        }
+    }
+}
@@ -21,9 +21,11 @@ import io.yupiik.asciidoc.parser.resolver.ContentResolver;
 import io.yupiik.asciidoc.renderer.Visitor;
 import io.yupiik.asciidoc.renderer.html.AsciidoctorLikeHtmlRenderer;
 import io.yupiik.asciidoc.renderer.html.ShowerRenderer;
+import io.yupiik.maven.service.UpToDate;
 import io.yupiik.tools.common.http.StaticHttpServer;
 import io.yupiik.tools.common.watch.Watch;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -41,6 +43,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -139,8 +142,80 @@ public class AsciidocMojo extends AbstractMojo {
     @Parameter
     private List<File> assets;
 
+    /**
+     * Where the state of the executions is stored to skip them when their inputs and outputs didn't change (ignored in watch mode).
+     * Inputs are the document, the assets and the base folder (if it does not contain the output).
+     */
+    @Parameter(property = "yupiik.upToDate.directory", defaultValue = "${project.build.directory}/yupiik-up-to-date")
+    private File upToDateDirectory;
+
+    /**
+     * Execute the mojo even if its inputs and outputs didn't change since the last execution.
+     */
+    @Parameter(property = "yupiik.force", defaultValue = "false")
+    private boolean force;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        final var state = watch >= 0 || force || upToDateDirectory == null ? null : upToDate();
+        if (state != null && state.isUpToDate()) {
+            getLog().info("Inputs and outputs didn't change since last execution, skipping (use -Dyupiik.force=true to force it)");
+            return;
+        }
+        doExecute();
+        if (state != null) {
+            try {
+                state.save();
+            } catch (final IllegalStateException ise) { // next execution will just not be skipped
+                getLog().warn(ise.getMessage(), ise);
+            }
+        }
+    }
+
+    private UpToDate upToDate() {
+        final var input = Path.of(this.input).toAbsolutePath().normalize();
+        final var output = Path.of(this.output).toAbsolutePath().normalize();
+        final var includes = base != null ? Path.of(base).toAbsolutePath().normalize() : input.getParent();
+        final var builder = UpToDate.builder()
+                .state(upToDateDirectory.toPath().resolve(mojoExecution == null ?
+                        getClass().getSimpleName() + ".properties" :
+                        mojoExecution.getGoal() + '-' + mojoExecution.getExecutionId() + ".properties"))
+                .version(BaseMojo.loadPluginProperties().getProperty("version"))
+                .debug(getLog()::debug)
+                .input(input)
+                .output(output)
+                .parameter("sectionTag", sectionTag)
+                .parameter("dataUriForAscii2Svg", dataUriForAscii2Svg)
+                .parameter("supportsDataAttributes", supportsDataAttributes)
+                .parameter("skipSectionBody", skipSectionBody)
+                .parameter("skipGlobalContentWrapper", skipGlobalContentWrapper)
+                .parameter("attributes", attributes == null ? null : new TreeMap<>(attributes))
+                .parameter("renderer", renderer);
+        if (includes != null && !output.startsWith(includes)) { // else rendering would change the inputs
+            builder.input(includes);
+        }
+        if (assets != null && output.getParent() != null) { // folders are copied without their own name
+            for (final var asset : assets) {
+                final var src = asset.toPath();
+                builder.input(src);
+                if (Files.isDirectory(src)) {
+                    try (final var files = Files.walk(src)) {
+                        files.filter(Files::isRegularFile).forEach(it -> builder.output(output.getParent().resolve(src.relativize(it))));
+                    } catch (final IOException e) {
+                        throw new IllegalStateException("Can't list '" + src + "'", e);
+                    }
+                } else {
+                    builder.output(output.getParent().resolve(src.getFileName()));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void doExecute() throws MojoExecutionException {
         final var configuration = new AsciidoctorLikeHtmlRenderer.Configuration()
                 .setSupportDataAttributes(supportsDataAttributes)
                 .setSkipSectionBody(skipSectionBody)
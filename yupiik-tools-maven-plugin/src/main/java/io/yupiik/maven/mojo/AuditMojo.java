@@ -15,6 +15,7 @@
  */
 package io.yupiik.maven.mojo;
 
+import io.yupiik.maven.service.UpToDate;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.maven.execution.MavenSession;
@@ -36,6 +37,11 @@ public class AuditMojo extends PDFMojo {
     @Parameter(defaultValue = "${session}", readonly = true)
     private MavenSession session;
 
+    @Override // the report depends on the whole reactor
+    protected UpToDate.UpToDateBuilder upToDate() {
+        return null;
+    }
+
     @Override
     public void doExecute() throws MojoExecutionException {
         final AtomicInteger counter = AtomicInteger.class
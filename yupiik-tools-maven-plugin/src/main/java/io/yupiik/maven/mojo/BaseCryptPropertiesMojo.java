@@ -90,7 +90,9 @@ public abstract class BaseCryptPropertiesMojo extends BaseCryptMojo {
                     .collect(toMap(identity(), inputProps::getProperty)));
 
             final var transformed = new SortedProperties();
-            transform(codec(), transformedSource, transformed);
+            try (final var codec = codec()) {
+                transform(codec, transformedSource, transformed);
+            }
             if (!untouched.isEmpty()) {
                 transformed.putAll(untouched);
             }
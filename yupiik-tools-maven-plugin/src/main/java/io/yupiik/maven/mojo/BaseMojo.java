@@ -15,7 +15,9 @@
  */
 package io.yupiik.maven.mojo;
 
+import io.yupiik.maven.service.UpToDate;
 import io.yupiik.tools.common.asciidoctor.AsciidoctorConfiguration;
+import io.yupiik.tools.common.jar.ExtractionCache;
 import io.yupiik.tools.common.jar.Extractor;
 import lombok.Getter;
 import lombok.Setter;
@@ -23,6 +25,7 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -33,6 +36,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Properties;
@@ -44,12 +48,37 @@ public abstract class BaseMojo extends AbstractMojo implements AsciidoctorConfig
 
     /**
      * Where to extract files needed for the rendering.
+     * Note that pooled asciidoctor instances are not keyed by the default gems path so executions with different
+     * work directories share the same instances (only custom gems, requires and extensions create dedicated instances).
      */
     @Getter
     @Setter
     @Parameter(property = "yupiik.workDir", defaultValue = "${project.build.directory}/yupiik-workdir")
     protected File workDir;
 
+    /**
+     * Where extracted files are cached to be shared by all modules and builds (workDir then just links them).
+     * Entries are keyed by the content of the extracted jar.
+     */
+    @Setter
+    @Parameter(property = "yupiik.extractionCache", defaultValue = "${user.home}/.yupiik/tools/extraction-cache")
+    protected File extractionCache;
+
+    /**
+     * How many extracted versions of each plugin folder are kept in {@code extractionCache}, least recently used ones are deleted
+     * (each snapshot rebuild of the plugin creates a new entry). A negative or zero value keeps all of them.
+     */
+    @Setter
+    @Parameter(property = "yupiik.extractionCache.maxEntries", defaultValue = "3")
+    protected int extractionCacheMaxEntries = 3;
+
+    /**
+     * If {@code false}, files are extracted in each workDir instead of being linked from {@code extractionCache}.
+     */
+    @Setter
+    @Parameter(property = "yupiik.extractionCache.enabled", defaultValue = "true")
+    protected boolean useExtractionCache;
+
     @Getter
     @Parameter(readonly = true, defaultValue = "${project}")
     protected MavenProject project;
@@ -71,30 +100,125 @@ public abstract class BaseMojo extends AbstractMojo implements AsciidoctorConfig
     @Parameter
     protected List<String> requires;
 
+    /**
+     * Where the state of the executions is stored to skip them when their inputs and outputs didn't change.
+     * Only used by mojos declaring their inputs and outputs.
+     */
+    @Setter
+    @Parameter(property = "yupiik.upToDate.directory", defaultValue = "${project.build.directory}/yupiik-up-to-date")
+    protected File upToDateDirectory;
+
+    /**
+     * Execute the mojo even if its inputs and outputs didn't change since the last execution.
+     */
+    @Setter
+    @Parameter(property = "yupiik.force", defaultValue = "false")
+    protected boolean force;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    protected MojoExecution mojoExecution;
+
     @Override
     public final void execute() throws MojoExecutionException {
+        final var upToDate = force || upToDateDirectory == null ? null : upToDate();
+        final var state = upToDate == null ? null : upToDate
+                .state(upToDateDirectory.toPath().resolve(mojoExecution == null ?
+                        getClass().getSimpleName() + ".properties" :
+                        mojoExecution.getGoal() + '-' + mojoExecution.getExecutionId() + ".properties"))
+                .version(loadPluginProperties().getProperty("version"))
+                .debug(getLog()::debug)
+                .build();
+        if (state != null && state.isUpToDate()) {
+            getLog().info("Inputs and outputs didn't change since last execution, skipping (use -Dyupiik.force=true to force it)");
+            return;
+        }
+
         extract(workDir.toPath());
         doExecute();
+
+        if (state != null) {
+            try {
+                state.save();
+            } catch (final IllegalStateException ise) { // next execution will just not be skipped
+                getLog().warn(ise.getMessage(), ise);
+            }
+        }
     }
 
     protected abstract void doExecute() throws MojoExecutionException;
 
-    protected Path extract(final Path output) throws MojoExecutionException {
-        if (Files.exists(output)) {
-            return output.getParent();
+    /**
+     * Declares the inputs, outputs and relevant parameters of the execution, it is skipped if none of them changed since the last one.
+     * Plugin version is automatically part of the fingerprint.
+     *
+     * @return the builder with the inputs/outputs of the execution or {@code null} (default) to always execute the mojo.
+     */
+    protected UpToDate.UpToDateBuilder upToDate() {
+        return null;
+    }
+
+    /**
+     * Adds {@code requires} to the fingerprint, the ones which are local files are inputs since their content can change.
+     *
+     * @param builder the up to date builder.
+     * @return the same builder.
+     */
+    protected UpToDate.UpToDateBuilder withRequires(final UpToDate.UpToDateBuilder builder) {
+        builder.parameter("requires", requires);
+        if (requires != null) {
+            for (final var require : requires) {
+                try {
+                    final var file = Path.of(require);
+                    if (Files.isRegularFile(file)) {
+                        builder.input(file);
+                    }
+                } catch (final InvalidPathException ipe) { // a gem name
+                    // no-op
+                }
+            }
         }
-        mkdirs(output);
+        return builder;
+    }
+
+    static Properties loadPluginProperties() {
         final Properties properties = new Properties();
         try (final InputStream stream = Thread.currentThread().getContextClassLoader()
                 .getResourceAsStream("META-INF/maven/io.yupiik.maven/yupiik-tools-maven-plugin/pom.properties")) {
-            properties.load(stream);
+            if (stream != null) { // not yet packaged (tests)
+                properties.load(stream);
+            }
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
-        final var extractor = new Extractor();
+        return properties;
+    }
+
+    protected Path extract(final Path output) throws MojoExecutionException {
+        final var cache = useExtractionCache && extractionCache != null ?
+                new ExtractionCache(extractionCache.toPath(), new Extractor(), extractionCacheMaxEntries) : null;
+        if (Files.exists(output) && (cache == null || !cache.deleteBrokenLinks(output))) { // else linked entry was evicted
+            return output.getParent();
+        }
+        final Properties properties = loadPluginProperties();
         final File common = resolve(properties.getProperty("groupId"), "slides-core", properties.getProperty("version"));
-        extractor.extract(output, common, "slides-core/");
         final File plugin = resolve(properties.getProperty("groupId"), properties.getProperty("artifactId"), properties.getProperty("version"));
+        if (cache != null) {
+            try {
+                final var cachedCommon = cache.get(common, "slides-core/");
+                final var cachedPlugin = cache.get(plugin, "yupiik-tools-maven-plugin/");
+                if (cachedCommon != null && cachedPlugin != null) {
+                    cache.link(cachedCommon, output);
+                    cache.link(cachedPlugin, output);
+                    return output;
+                }
+            } catch (final RuntimeException re) { // never write in the cache through the links
+                getLog().warn("Can't use extraction cache " + extractionCache + ", extracting in " + output + ": " + re.getMessage());
+                cache.unlink(output);
+            }
+        }
+        mkdirs(output);
+        final var extractor = new Extractor();
+        extractor.extract(output, common, "slides-core/");
         extractor.extract(output, plugin, "yupiik-tools-maven-plugin/");
         return output;
     }
@@ -15,12 +15,17 @@
  */
 package io.yupiik.maven.mojo;
 
+import jakarta.json.JsonBuilderFactory;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
 import jakarta.json.bind.Jsonb;
 import jakarta.json.bind.JsonbBuilder;
 import jakarta.json.bind.JsonbConfig;
 import jakarta.json.bind.annotation.JsonbProperty;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParserFactory;
 import lombok.Data;
-import org.apache.johnzon.mapper.reflection.JohnzonParameterizedType;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -29,16 +34,23 @@ import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Formatter;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static java.util.Comparator.comparing;
@@ -54,6 +66,11 @@ import static java.util.stream.Collectors.toList;
  */
 @Mojo(name = "cucumber2asciidoc", threadSafe = true)
 public class CucumberReport2Asciidoc extends AbstractMojo {
+    private static final Set<String> IGNORED_ATTRIBUTES = Set.of("embeddings", "output");
+
+    private final JsonParserFactory parserFactory = JsonProvider.provider().createParserFactory(Map.of());
+    private final JsonBuilderFactory builderFactory = JsonProvider.provider().createBuilderFactory(Map.of());
+
     @Parameter(property = "yupiik.cucumber.source", defaultValue = "${project.build.directory/cucumber-reports/")
     protected File source;
 
@@ -66,41 +83,113 @@ public class CucumberReport2Asciidoc extends AbstractMojo {
     @Parameter(property = "yupiik.cucumber.suffix")
     protected String suffix;
 
+    /**
+     * How many report files can be converted concurrently.
+     */
+    @Parameter(property = "yupiik.cucumber.threads", defaultValue = "4")
+    protected int threads;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         final var out = target.toPath();
         try (final var jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
-            final var report = generateReport(jsonb);
             if (out.getParent() != null) {
                 Files.createDirectories(out.getParent());
             }
-            Files.writeString(out, "" +
-                    ofNullable(prefix).map(p -> p.strip() + "\n\n").orElse("") +
-                    report +
-                    ofNullable(suffix).map(s -> "\n\n" + s.strip()).orElse(""));
+            final var files = findReports();
+            final var parts = Files.createTempDirectory(out.toAbsolutePath().getParent(), ".cucumber2asciidoc");
+            try {
+                final var outputs = generateReports(jsonb, files, parts);
+                try (final var writer = Files.newBufferedWriter(out)) {
+                    writer.write(ofNullable(prefix).map(p -> p.strip() + "\n\n").orElse(""));
+                    boolean first = true;
+                    for (final var part : outputs) {
+                        if (!first) {
+                            writer.write("\n\n");
+                        }
+                        first = false;
+                        try (final var reader = Files.newBufferedReader(part)) {
+                            reader.transferTo(writer);
+                        }
+                    }
+                    writer.write(ofNullable(suffix).map(s -> "\n\n" + s.strip()).orElse(""));
+                }
+            } finally {
+                try (final var list = Files.list(parts)) {
+                    list.forEach(it -> {
+                        try {
+                            Files.delete(it);
+                        } catch (final IOException e) {
+                            getLog().debug("Can't delete '" + it + "'", e);
+                        }
+                    });
+                }
+                Files.delete(parts);
+            }
         } catch (final Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
     }
 
-    private String generateReport(final Jsonb jsonb) throws IOException {
+    private List<Path> findReports() throws IOException {
         final var src = source.toPath();
         if (Files.isDirectory(src)) {
-            return Files.list(src)
-                    .filter(it -> it.getFileName().toString().endsWith(".json"))
-                    .map(it -> {
-                        try {
-                            return generateReport(jsonb, it);
-                        } catch (final IOException e) {
-                            throw new IllegalStateException(e);
-                        }
-                    })
-                    .collect(joining("\n\n"));
+            try (final var list = Files.list(src)) {
+                return list
+                        .filter(it -> it.getFileName().toString().endsWith(".json"))
+                        .sorted()
+                        .collect(toList());
+            }
+        }
+        return List.of(src);
+    }
+
+    // each report is rendered in its own part file, the parts are then concatenated in the reports order
+    private List<Path> generateReports(final Jsonb jsonb, final List<Path> files, final Path parts) throws IOException {
+        final var outputs = new ArrayList<Path>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            outputs.add(parts.resolve(i + ".adoc"));
+        }
+        if (threads <= 1 || files.size() <= 1) {
+            for (int i = 0; i < files.size(); i++) {
+                generateReport(jsonb, files.get(i), outputs.get(i));
+            }
+            return outputs;
+        }
+
+        final var counter = new AtomicInteger();
+        final var pool = Executors.newFixedThreadPool(Math.min(threads, files.size()), r -> {
+            final var thread = new Thread(r, "yupiik-cucumber-" + counter.incrementAndGet());
+            thread.setContextClassLoader(CucumberReport2Asciidoc.class.getClassLoader());
+            return thread;
+        });
+        try {
+            final var results = new ArrayList<Future<?>>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                final var file = files.get(i);
+                final var output = outputs.get(i);
+                results.add(pool.submit(() -> {
+                    generateReport(jsonb, file, output);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException("Can't convert '" + files.get(i) + "': " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            return outputs;
+        } finally {
+            pool.shutdownNow();
         }
-        return generateReport(jsonb, src);
     }
 
-    private String generateReport(final Jsonb jsonb, final Path file) throws IOException {
+    private void generateReport(final Jsonb jsonb, final Path file, final Path output) throws IOException {
         final var statusColors = Map.of(
                 "passed", "#2CB14A",
                 "skipped", "#C8C8C8",
@@ -162,86 +251,104 @@ public class CucumberReport2Asciidoc extends AbstractMojo {
                 "|====\n" +
                 "";
 
-        final var testRan = "" +
-                "== Test Runs\n" +
+        try (final var writer = Files.newBufferedWriter(output)) {
+            writer.write(statusLine);
+            writer.write('\n');
+            writer.write(summaryLine);
+            writer.write('\n');
+
+            writer.write("" +
+                    "== Test Runs\n" +
+                    "\n" +
+                    "[options=\"header\",cols=\"1,3,1\"]\n" +
+                    "|===\n" +
+                    "|Name|Description|Status\n");
+            final var scenarii = scenariiOf(reports).iterator();
+            while (scenarii.hasNext()) {
+                final var s = scenarii.next();
+                final var status = ofNullable(s.getSteps())
+                        .filter(it -> !it.isEmpty())
+                        .map(it -> it.get(it.size() - 1))
+                        .map(Step::getResult)
+                        .map(Result::getStatus)
+                        .orElse("undefined")
+                        .toLowerCase(Locale.ROOT);
+                writer.write("" +
+                        "|{set:cellbgcolor:inherit} <<" + normalizeId(s.getId()) + "," + s.getName() + ">> " +
+                        "|{set:cellbgcolor:inherit} " + ofNullable(s.getDescription()).orElse("-") + ' ' +
+                        "|{set:cellbgcolor:" + statusColors.get(status) + "} " + status.toUpperCase(Locale.ROOT));
+                if (scenarii.hasNext()) {
+                    writer.write('\n');
+                }
+            }
+            writer.write("\n|===\n");
+            writer.write('\n');
+
+            writer.write("" +
+                    "== Tests details\n" +
+                    "\n");
+            final var details = scenariiOf(reports).iterator();
+            while (details.hasNext()) {
+                writeDetails(details.next(), writer);
+                if (details.hasNext()) {
+                    writer.write("\n\n");
+                }
+            }
+            writer.write('\n');
+        }
+    }
+
+    private void writeDetails(final Scenario s, final Writer writer) throws IOException {
+        writer.write("" +
+                "[#" + normalizeId(s.getId()) + "]\n" +
+                "=== " + s.getName().replace("\n", " ") + "\n" +
                 "\n" +
-                "[options=\"header\",cols=\"1,3,1\"]\n" +
-                "|===\n" +
-                "|Name|Description|Status\n" +
-                scenariiOf(reports)
-                        .map(s -> {
-                            final var status = ofNullable(s.getSteps())
-                                    .filter(it -> !it.isEmpty())
-                                    .map(it -> it.get(it.size() - 1))
-                                    .map(Step::getResult)
-                                    .map(Result::getStatus)
-                                    .orElse("undefined")
-                                    .toLowerCase(Locale.ROOT);
-                            return "" +
-                                    "|{set:cellbgcolor:inherit} <<" + normalizeId(s.getId()) + "," + s.getName() + ">> " +
-                                    "|{set:cellbgcolor:inherit} " + ofNullable(s.getDescription()).orElse("-") + ' ' +
-                                    "|{set:cellbgcolor:" + statusColors.get(status) + "} " + status.toUpperCase(Locale.ROOT);
-                        })
-                        .collect(joining("\n", "", "\n")) +
-                "|===\n";
-
-        final var details = "" +
-                "== Tests details\n" +
+                "==== Description\n" +
+                "\n" +
+                ofNullable(s.getDescription()).filter(it -> !it.isBlank()).orElse("No description.").strip() + '\n' +
                 "\n" +
-                scenariiOf(reports)
-                        .map(s -> "" +
-                                "[#" + normalizeId(s.getId()) + "]\n" +
-                                "=== " + s.getName().replace("\n", " ") + "\n" +
-                                "\n" +
-                                "==== Description\n" +
-                                "\n" +
-                                ofNullable(s.getDescription()).filter(it -> !it.isBlank()).orElse("No description.").strip() + '\n' +
-                                "\n" +
-                                "==== Tags\n" +
-                                "\n" +
-                                ofNullable(s.getTags())
-                                        .filter(t -> !t.isEmpty())
-                                        .map(t -> t.stream()
-                                                .map(it -> ofNullable(it.getName()).orElse("?"))
-                                                .map(it -> it.startsWith("@") ? it.substring(1) : it)
-                                                .sorted()
-                                                .map(it -> "* " + it)
-                                                .collect(joining("\n")))
-                                        .orElse("No tags.") + '\n' +
-                                "\n" +
-                                "==== Steps\n" +
-                                "\n" +
-                                ofNullable(s.getSteps())
-                                        .filter(it -> !it.isEmpty())
-                                        .map(it -> it.stream()
-                                                .map(step -> {
-                                                    final var seconds = TimeUnit.MILLISECONDS.toSeconds(ofNullable(step.getResult()).map(Result::getDuration).orElse(0L));
-                                                    return "===== " + s.getName().replace("\n", " ") + '\n' +
-                                                            "\n" +
-                                                            "Status:: " + ofNullable(step.getResult()).map(Result::getStatus).orElse("undefined") + '\n' +
-                                                            "Duration:: " + seconds + " second" + (seconds == 0 ? "" : "s") + "\n" +
-                                                            "\n" +
-                                                            ofNullable(step.getResult())
-                                                                    .map(Result::getErrorMessage)
-                                                                    .map(e -> "" +
-                                                                            "[source]\n" +
-                                                                            "----\n" +
-                                                                            e.strip() + "\n" +
-                                                                            "----\n")
-                                                                    .orElse("") +
-                                                            "\n";
-                                                })
-                                                .collect(joining("\n\n", "", "\n")))
-                                        .orElse("No step.") + '\n' +
-                                "\n" +
-                                "")
-                        .collect(joining("\n\n", "", "\n"));
-
-        return String.join("\n",
-                statusLine,
-                summaryLine,
-                testRan,
-                details);
+                "==== Tags\n" +
+                "\n" +
+                ofNullable(s.getTags())
+                        .filter(t -> !t.isEmpty())
+                        .map(t -> t.stream()
+                                .map(it -> ofNullable(it.getName()).orElse("?"))
+                                .map(it -> it.startsWith("@") ? it.substring(1) : it)
+                                .sorted()
+                                .map(it -> "* " + it)
+                                .collect(joining("\n")))
+                        .orElse("No tags.") + '\n' +
+                "\n" +
+                "==== Steps\n" +
+                "\n");
+        final var steps = s.getSteps();
+        if (steps == null || steps.isEmpty()) {
+            writer.write("No step.");
+        } else {
+            for (int i = 0; i < steps.size(); i++) {
+                if (i > 0) {
+                    writer.write("\n\n");
+                }
+                final var step = steps.get(i);
+                final var seconds = TimeUnit.MILLISECONDS.toSeconds(ofNullable(step.getResult()).map(Result::getDuration).orElse(0L));
+                writer.write("===== " + s.getName().replace("\n", " ") + '\n' +
+                        "\n" +
+                        "Status:: " + ofNullable(step.getResult()).map(Result::getStatus).orElse("undefined") + '\n' +
+                        "Duration:: " + seconds + " second" + (seconds == 0 ? "" : "s") + "\n" +
+                        "\n" +
+                        ofNullable(step.getResult())
+                                .map(Result::getErrorMessage)
+                                .map(e -> "" +
+                                        "[source]\n" +
+                                        "----\n" +
+                                        e.strip() + "\n" +
+                                        "----\n")
+                                .orElse("") +
+                        "\n");
+            }
+            writer.write('\n');
+        }
+        writer.write("\n\n");
     }
 
     private String normalizeId(final String id) {
@@ -267,9 +374,59 @@ public class CucumberReport2Asciidoc extends AbstractMojo {
                 .flatMap(it -> ofNullable(it.getElements()).stream().flatMap(Collection::stream));
     }
 
-    private List<Report> readReport(Jsonb jsonb, Path file) throws IOException {
-        try (final var reader = Files.newBufferedReader(file)) {
-            return jsonb.fromJson(reader, new JohnzonParameterizedType(List.class, Report.class));
+    // streamed feature per feature to skip embeddings (screenshots, videos, ...) without loading them, they are not rendered
+    private List<Report> readReport(final Jsonb jsonb, final Path file) throws IOException {
+        try (final var parser = parserFactory.createParser(Files.newBufferedReader(file))) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+                throw new IllegalArgumentException("Invalid cucumber report '" + file + "', expected a JSON array");
+            }
+            final var reports = new ArrayList<Report>();
+            JsonParser.Event event;
+            while (parser.hasNext() && (event = parser.next()) != JsonParser.Event.END_ARRAY) {
+                if (event != JsonParser.Event.START_OBJECT) {
+                    throw new IllegalArgumentException("Invalid cucumber report '" + file + "', expected a feature object, got " + event);
+                }
+                reports.add(jsonb.fromJson(readObject(parser).toString(), Report.class));
+            }
+            return reports;
+        }
+    }
+
+    private JsonObject readObject(final JsonParser parser) {
+        final var builder = builderFactory.createObjectBuilder();
+        JsonParser.Event event;
+        while ((event = parser.next()) != JsonParser.Event.END_OBJECT) {
+            if (event != JsonParser.Event.KEY_NAME) {
+                throw new IllegalArgumentException("Unexpected event: " + event);
+            }
+            final var key = parser.getString();
+            final var valueEvent = parser.next();
+            if (IGNORED_ATTRIBUTES.contains(key)) {
+                if (valueEvent == JsonParser.Event.START_OBJECT) {
+                    parser.skipObject();
+                } else if (valueEvent == JsonParser.Event.START_ARRAY) {
+                    parser.skipArray();
+                }
+            } else {
+                builder.add(key, readValue(parser, valueEvent));
+            }
+        }
+        return builder.build();
+    }
+
+    private JsonValue readValue(final JsonParser parser, final JsonParser.Event event) {
+        switch (event) {
+            case START_OBJECT:
+                return readObject(parser);
+            case START_ARRAY:
+                final var builder = builderFactory.createArrayBuilder();
+                JsonParser.Event next;
+                while ((next = parser.next()) != JsonParser.Event.END_ARRAY) {
+                    builder.add(readValue(parser, next));
+                }
+                return builder.build();
+            default:
+                return parser.getValue();
         }
     }
 
@@ -15,12 +15,9 @@
  */
 package io.yupiik.maven.mojo;
 
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
-import jakarta.json.bind.JsonbConfig;
+import io.yupiik.maven.service.github.GithubClient;
 import jakarta.json.bind.annotation.JsonbProperty;
 import lombok.Data;
-import org.apache.johnzon.mapper.reflection.JohnzonParameterizedType;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -31,10 +28,6 @@ import org.apache.maven.settings.Server;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecrypter;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -48,20 +41,15 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toMap;
@@ -90,6 +78,12 @@ public class GenerateBlogReleaseFromGithubMojo extends AbstractMojo {
     @Parameter(property = "yupiik.generate-blog-post-releases.threads", defaultValue = "16")
     protected int threads;
 
+    /**
+     * Where GitHub responses are cached (with their ETag) to use conditional requests, empty to disable the cache.
+     */
+    @Parameter(property = "yupiik.generate-blog-post-releases.githubCache", defaultValue = "${user.home}/.yupiik/tools/github-cache")
+    protected String githubCache;
+
     @Parameter(property = "yupiik.generate-blog-post-releases.workdir", defaultValue = "${project.build.directory}/generate-blog-post-releases-workdir")
     protected String workdir;
 
@@ -109,31 +103,19 @@ public class GenerateBlogReleaseFromGithubMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
-        final var threadPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
-            private final AtomicInteger counter = new AtomicInteger();
-
-            @Override
-            public Thread newThread(final Runnable r) {
-                final var thread = new Thread(r, GenerateBlogReleaseFromGithubMojo.class.getSimpleName() + '-' + counter.incrementAndGet());
-                thread.setContextClassLoader(GenerateBlogReleaseFromGithubMojo.class.getClassLoader());
-                return thread;
-            }
-        });
-        final var httpClientBuilder = HttpClient.newBuilder();
-        if (forceHttpV1) {
-            httpClientBuilder.version(HttpClient.Version.HTTP_1_1);
-        }
-        final var httpClient = httpClientBuilder
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .executor(threadPool)
-                .build();
-        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
+        try (final var github = new GithubClient(GithubClient.Configuration.builder()
+                .name(GenerateBlogReleaseFromGithubMojo.class.getSimpleName())
+                .forceHttpV1(forceHttpV1)
+                .threads(threads)
+                .authorization(useMavenCredentials ? findServer(githubServerId).map(this::toAuthorizationHeaderValue).orElse(null) : null)
+                .cache(githubCache == null || githubCache.isBlank() ? null : Paths.get(githubCache))
+                .build(), getLog())) {
             final var workDir = Files.createDirectories(Paths.get(workdir));
 
             final var promises = githubRepositories.stream()
                     .map(repository -> {
                         try {
-                            return generateBlogPost(repository, httpClient, jsonb);
+                            return generateBlogPost(repository, github);
                         } catch (ExecutionException | InterruptedException e) {
                             throw new RuntimeException(e);
                         }
@@ -151,26 +133,17 @@ public class GenerateBlogReleaseFromGithubMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         } catch (final Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
-        } finally {
-            threadPool.shutdownNow();
-            try {
-                if (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
-                    getLog().warn("Thread pool didn't shut down fast enough, exiting with some hanging threads");
-                }
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
         }
     }
 
-    private String generateBlogPost(final String githubRepository, final HttpClient httpClient, final Jsonb jsonb) throws ExecutionException, InterruptedException {
+    private String generateBlogPost(final String githubRepository, final GithubClient github) throws ExecutionException, InterruptedException {
         DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
         return "== ".concat(githubRepository.substring(githubRepository.indexOf('/') + 1)).concat("\n\n")
 
                 .concat(
 
-                findExistingReleases(httpClient, jsonb, githubRepository, "")
+                findExistingReleases(github, githubRepository)
                     .get()
                     .values().stream().sorted((o1, o2) -> o1.getPublishedAt().compareTo(o2.publishedAt))
                     .map(githubRelease -> {
@@ -188,55 +161,10 @@ public class GenerateBlogReleaseFromGithubMojo extends AbstractMojo {
                     .filter(Objects::nonNull).collect(joining("\n")));
     }
 
-    private CompletableFuture<Map<String, GithubRelease>> findExistingReleases(final HttpClient httpClient, final Jsonb jsonb, final String githubRepository, final String nextUrl) {
-        if (nextUrl == null) {
-            return CompletableFuture.completedFuture(Map.of());
-        }
-        final var url = URI.create(nextUrl.isBlank() ?
-                githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases?per_page=100" :
-                nextUrl);
-        final var reqBuilder = HttpRequest.newBuilder();
-        if (useMavenCredentials)
-            findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        return httpClient.sendAsync(reqBuilder
-                                .GET()
-                                .uri(url)
-                                .header("accept", "application/vnd.github.v3+json")
-                                .build(),
-                        HttpResponse.BodyHandlers.ofString())
-                .thenCompose(r -> {
-                    ensure200(url, r);
-                    final List<GithubRelease> releases = jsonb.fromJson(r.body().trim(), new JohnzonParameterizedType(List.class, GithubRelease.class));
-                    final var releaseNames = releases.stream().collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b));
-                    return findNextLink(r.headers().firstValue("Link").orElse(null))
-                            .map(next -> findExistingReleases(httpClient, jsonb, githubRepository, next)
-                                    .thenApply(added -> Stream.concat(releaseNames.entrySet().stream(), added.entrySet().stream())
-                                            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a))))
-                            .orElseGet(() -> completedFuture(releaseNames));
-                });
-    }
-
-    /**
-     * Example Link value:
-     * <p>
-     * {@code Link: <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=15>; rel="next",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=34>; rel="last",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=1>; rel="first",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=13>; rel="prev"}
-     *
-     * @param link the raw header value.
-     * @return the first next link.
-     */
-    private Optional<String> findNextLink(final String link) {
-        return ofNullable(link)
-                .flatMap(l -> Stream.of(l.split(","))
-                        .map(String::trim)
-                        .filter(it -> it.contains("rel=\"next\""))
-                        .flatMap(next -> Stream.of(next.split(";")))
-                        .map(String::trim)
-                        .filter(it -> it.startsWith("<") && it.endsWith(">"))
-                        .map(it -> it.substring(1, it.length() - 1))
-                        .findFirst());
+    private CompletableFuture<Map<String, GithubRelease>> findExistingReleases(final GithubClient github, final String githubRepository) {
+        final var url = githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases?per_page=100";
+        return supplyAsync(() -> github.list(url, GithubRelease.class)
+                .collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b)), github.getExecutor());
     }
 
     private Optional<Server> findServer(final String id) {
@@ -252,12 +180,6 @@ public class GenerateBlogReleaseFromGithubMojo extends AbstractMojo {
         });
     }
 
-    private void ensure200(final URI url, final HttpResponse<?> response) {
-        if (response.statusCode() != 200) {
-            throw new IllegalArgumentException("Invalid response from " + url + ": " + response + "\n" + response.body());
-        }
-    }
-
     private String toAuthorizationHeaderValue(final Server server) {
         return server.getUsername() == null ?
                 server.getPassword() : // assumed raw header value, enables "Token xxx" cases
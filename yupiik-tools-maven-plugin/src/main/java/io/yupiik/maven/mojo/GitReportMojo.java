@@ -15,6 +15,8 @@
  */
 package io.yupiik.maven.mojo;
 
+import lombok.AllArgsConstructor;
+import lombok.Value;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -22,17 +24,30 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -49,19 +64,19 @@ import static io.yupiik.maven.mojo.GitReportMojo.GitLogFormat.Entry.SHA;
 import static io.yupiik.maven.mojo.GitReportMojo.GitLogFormat.Entry.SPACE;
 import static io.yupiik.maven.mojo.GitReportMojo.GitLogFormat.Entry.STAR;
 import static java.util.Comparator.comparing;
-import static java.util.Comparator.reverseOrder;
 import static java.util.Locale.ROOT;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.StreamSupport.stream;
 
 /**
  * Generates a report from a {@code .git} folder.
  */
 @Mojo(name = "git-report", requiresProject = false, threadSafe = true)
 public class GitReportMojo extends AbstractMojo {
+    private static final int CACHE_VERSION = 1;
+
     /**
      * "Where .git folder to analyze is.
      */
@@ -104,6 +119,19 @@ public class GitReportMojo extends AbstractMojo {
     @Parameter(property = "yupiik.git-report.overwrite", defaultValue = "true")
     protected boolean overwrite;
 
+    /**
+     * Where to cache the commits extracted from the repository, a rerun only walks the commits added since.
+     * Defaults to {@code yupiik-git-report.cache} next to the report (so in the build directory by default).
+     */
+    @Parameter(property = "yupiik.git-report.cache")
+    protected File cache;
+
+    /**
+     * If false the commit history is fully walked at each execution.
+     */
+    @Parameter(property = "yupiik.git-report.useCache", defaultValue = "true")
+    protected boolean useCache = true;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         final var dotGitPath = dotGit.toPath();
@@ -124,7 +152,7 @@ public class GitReportMojo extends AbstractMojo {
             getLog().info("Created '" + output.getParent() + "'");
         }
 
-        final Predicate<RevCommit> filters = this.filters == null ? r -> true : this.filters;
+        final Predicate<Commit> filters = this.filters == null ? r -> true : this.filters;
         final GitLogFormat format = this.logFormat == null ? new GitLogFormat() : this.logFormat;
         if (format.entries == null) { // new instance because maven didn't set it
             format.entries = List.of(
@@ -135,6 +163,11 @@ public class GitReportMojo extends AbstractMojo {
         }
 
         try (final var git = Git.open(dotGitPath.toFile())) {
+            // all renderers share the same commit table, the history is walked once (and only the new commits with the cache)
+            final var cacheFile = cache == null ? output.resolveSibling("yupiik-git-report.cache") : cache.toPath();
+            final var commits = loadCommits(git.getRepository(), useCache ? cacheFile : null).stream()
+                    .filter(filters)
+                    .collect(toList());
             final var asciidoc = "" +
                     // todo: more config, "prefix"?
                     "= " + title + "\n" +
@@ -144,7 +177,7 @@ public class GitReportMojo extends AbstractMojo {
                     .flatMap(Renderer::flatten)
                     .map(r -> {
                         try {
-                            return r.render(git, filters, format);
+                            return r.render(git, commits, format);
                         } catch (final IOException | GitAPIException e) {
                             throw new IllegalStateException(e);
                         }
@@ -160,7 +193,151 @@ public class GitReportMojo extends AbstractMojo {
         }
     }
 
-    public static class GitLogFormat implements Function<RevCommit, String> {
+    private List<Commit> loadCommits(final Repository repository, final Path cacheFile) throws IOException {
+        final var head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new IllegalStateException("No HEAD in '" + repository.getDirectory() + "'");
+        }
+
+        var cached = cacheFile == null ? null : readCache(cacheFile);
+        if (cached != null && head.name().equals(cached.getKey())) {
+            getLog().debug("Commits are up to date in '" + cacheFile + "'");
+            return cached.getValue();
+        }
+
+        try (final var walk = new RevWalk(repository)) {
+            final var headCommit = walk.parseCommit(head);
+            if (cached != null) {
+                // only reuse the cache if HEAD is a descendant of the cached one (no rebase/reset since last run)
+                try (final var check = new RevWalk(repository)) {
+                    final var cachedHead = ObjectId.fromString(cached.getKey());
+                    if (check.isMergedInto(check.parseCommit(cachedHead), check.parseCommit(head))) {
+                        walk.markUninteresting(walk.parseCommit(cachedHead));
+                    } else {
+                        cached = null;
+                    }
+                } catch (final MissingObjectException | IllegalArgumentException e) {
+                    cached = null;
+                }
+            }
+            walk.markStart(headCommit);
+
+            final var commits = new ArrayList<Commit>();
+            for (final var commit : walk) {
+                commits.add(new Commit(commit));
+                commit.disposeBody();
+            }
+            getLog().debug("Walked " + commits.size() + " new commits");
+            if (cached != null) {
+                commits.addAll(cached.getValue());
+                // merged branches can bring commits older than cached ones, keep the order of a full walk (date order)
+                commits.sort(comparing(Commit::getWhen).reversed());
+            }
+            if (cacheFile != null) {
+                writeCache(cacheFile, head.name(), commits);
+            }
+            return commits;
+        }
+    }
+
+    private Map.Entry<String, List<Commit>> readCache(final Path cacheFile) {
+        if (!Files.exists(cacheFile)) {
+            return null;
+        }
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != CACHE_VERSION) {
+                return null;
+            }
+            final var head = readString(in);
+            final int count = in.readInt();
+            final var commits = new ArrayList<Commit>(count);
+            for (int i = 0; i < count; i++) {
+                commits.add(new Commit(
+                        readString(in), readString(in), readString(in), in.readLong(),
+                        readString(in), readString(in), readString(in)));
+            }
+            return Map.entry(head, commits);
+        } catch (final IOException | RuntimeException e) {
+            getLog().warn("Can't read '" + cacheFile + "', ignoring it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(final Path cacheFile, final String head, final List<Commit> commits) {
+        try {
+            if (cacheFile.getParent() != null) {
+                Files.createDirectories(cacheFile.getParent());
+            }
+            final var tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(CACHE_VERSION);
+                writeString(out, head);
+                out.writeInt(commits.size());
+                for (final var commit : commits) {
+                    writeString(out, commit.getId());
+                    writeString(out, commit.getName());
+                    writeString(out, commit.getEmail());
+                    out.writeLong(commit.getWhen());
+                    writeString(out, commit.getZone());
+                    writeString(out, commit.getShortMessage());
+                    writeString(out, commit.getFullMessage());
+                }
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) { // cache is an optimization, don't fail the report
+            getLog().warn("Can't write '" + cacheFile + "': " + e.getMessage());
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // writeUTF is limited to 64k which can be too small for some commit messages
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Compact view of a commit extracted once from the repository and shared by all renderers.
+     */
+    @Value
+    @AllArgsConstructor
+    public static class Commit {
+        String id;
+        String name; // committer
+        String email; // committer
+        long when;
+        String zone;
+        String shortMessage;
+        String fullMessage;
+
+        private Commit(final RevCommit commit) {
+            final var committer = commit.getCommitterIdent();
+            final var base = ofNullable(committer).orElseGet(commit::getAuthorIdent);
+            this.id = commit.getId().name();
+            this.name = committer == null ? null : committer.getName();
+            this.email = committer == null ? null : committer.getEmailAddress();
+            this.when = base.getWhen().getTime();
+            this.zone = base.getTimeZone().toZoneId().getId();
+            this.shortMessage = commit.getShortMessage();
+            this.fullMessage = commit.getFullMessage();
+        }
+    }
+
+    public static class GitLogFormat implements Function<Commit, String> {
         @Parameter(defaultValue = "" +
                 "STAR,SPACE," +
                 "OPEN_BRACKET,BACKQUOTE,SHA,BACKQUOTE,CLOSE_BRACKET," +
@@ -173,99 +350,98 @@ public class GitReportMojo extends AbstractMojo {
         }
 
         @Override
-        public String apply(final RevCommit commit) {
+        public String apply(final Commit commit) {
             return entries.stream().map(it -> it.render(commit)).collect(joining());
         }
 
         public enum Entry {
             STAR {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return "*";
                 }
             },
             BACKQUOTE {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return "`";
                 }
             },
             COLON {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return ":";
                 }
             },
             SPACE {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return " ";
                 }
             },
             OPEN_BRACKET {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return "[";
                 }
             },
             CLOSE_BRACKET {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return "]";
                 }
             },
             OPEN_PARENTHESIS {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return "(";
                 }
             },
             CLOSE_PARENTHESIS {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return ")";
                 }
             },
             SHA {
                 @Override
-                public String render(final RevCommit commit) {
-                    return commit.getId().abbreviate(7).name().strip();
+                public String render(final Commit commit) {
+                    return commit.getId().substring(0, 7);
                 }
             }, DATE {
                 @Override
-                public String render(final RevCommit commit) {
-                    final var base = ofNullable(commit.getCommitterIdent()).orElseGet(commit::getAuthorIdent);
-                    return LocalDateTime.ofInstant(base.getWhen().toInstant(), base.getTimeZone().toZoneId()).toString();
+                public String render(final Commit commit) {
+                    return LocalDateTime.ofInstant(Instant.ofEpochMilli(commit.getWhen()), ZoneId.of(commit.getZone())).toString();
                 }
             }, AUTHOR {
                 @Override
-                public String render(final RevCommit commit) {
-                    return commit.getCommitterIdent().getName();
+                public String render(final Commit commit) {
+                    return commit.getName();
                 }
             }, MAIL {
                 @Override
-                public String render(final RevCommit commit) {
-                    return commit.getCommitterIdent().getEmailAddress();
+                public String render(final Commit commit) {
+                    return commit.getEmail();
                 }
             }, MESSAGE {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return commit.getShortMessage();
                 }
             }, FULL_MESSAGE {
                 @Override
-                public String render(final RevCommit commit) {
+                public String render(final Commit commit) {
                     return commit.getFullMessage();
                 }
             };
 
-            public abstract String render(final RevCommit commit);
+            public abstract String render(final Commit commit);
         }
     }
 
 
-    public static class GitLogFilter implements Predicate<RevCommit> {
-        private Predicate<RevCommit> delegate = r -> true;
+    public static class GitLogFilter implements Predicate<Commit> {
+        private Predicate<Commit> delegate = r -> true;
 
         /**
          * Starting date (yyyyMMdd format), included.
@@ -288,12 +464,11 @@ public class GitReportMojo extends AbstractMojo {
          */
         public void setMailRegex(final String regex) {
             final var pattern = Pattern.compile(regex);
-            delegate = delegate.and(c -> pattern.matcher(c.getCommitterIdent().getEmailAddress()).matches());
+            delegate = delegate.and(c -> c.getEmail() != null && pattern.matcher(c.getEmail()).matches());
         }
 
-        private LocalDate toDate(final RevCommit c) {
-            final var base = ofNullable(c.getCommitterIdent()).orElseGet(c::getAuthorIdent);
-            return LocalDate.ofInstant(base.getWhen().toInstant(), base.getTimeZone().toZoneId());
+        private LocalDate toDate(final Commit c) {
+            return LocalDate.ofInstant(Instant.ofEpochMilli(c.getWhen()), ZoneId.of(c.getZone()));
         }
 
         private LocalDate parseDate(final String value) {
@@ -301,7 +476,7 @@ public class GitReportMojo extends AbstractMojo {
         }
 
         @Override
-        public boolean test(final RevCommit commit) {
+        public boolean test(final Commit commit) {
             return delegate.test(commit);
         }
     }
@@ -310,7 +485,7 @@ public class GitReportMojo extends AbstractMojo {
     public enum Renderer {
         DEFAULT {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) {
                 throw new UnsupportedOperationException("DEFAULT is an alias, shouldn't be executed.");
             }
 
@@ -321,7 +496,7 @@ public class GitReportMojo extends AbstractMojo {
         },
         REPOSITORY_METADATA {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
                 return git.remoteList().call().stream()
                         .filter(it -> !it.getURIs().isEmpty())
                         .min(comparing(i -> {
@@ -344,65 +519,60 @@ public class GitReportMojo extends AbstractMojo {
         },
         COMMITS {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                return logs.isEmpty() ? "" : ("== Commits (reverse order)\n\n" + renderCommits(logs, c -> formatCommit(c, renderer)));
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                return commits.isEmpty() ? "" : ("== Commits (reverse order)\n\n" + renderCommits(commits, c -> formatCommit(c, renderer)));
             }
         },
         COMMITS_CHRONOLOGICAL {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                logs.sort(reverseOrder());
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                final var logs = new ArrayList<>(commits);
+                Collections.reverse(logs); // log is in reverse order
                 return logs.isEmpty() ? "" : ("== Commits\n\n" + renderCommits(logs, c -> formatCommit(c, renderer)));
             }
         },
         COMMITS_PER_EMAIL_PREFIX {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                if (logs.isEmpty()) {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                if (commits.isEmpty()) {
                     return "";
                 }
-                return "== Commits Per Author (reverse order)\n\n" + renderPerGroup(groupByMail(logs), renderer);
+                return "== Commits Per Author (reverse order)\n\n" + renderPerGroup(groupByMail(commits), renderer);
             }
         },
         COMMITS_PER_EMAIL_PREFIX_CHRONOLOGICAL {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                if (logs.isEmpty()) {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                if (commits.isEmpty()) {
                     return "";
                 }
-                return "== Commits Per Author\n\n" + renderPerGroup(groupByMail(logs), renderer);
+                return "== Commits Per Author\n\n" + renderPerGroup(groupByMail(commits), renderer);
             }
         },
         COMMITS_PER_NAME_PREFIX {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                if (logs.isEmpty()) {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                if (commits.isEmpty()) {
                     return "";
                 }
-                return "== Commits Per Author (reverse order)\n\n" + renderPerGroup(groupByName(logs), renderer);
+                return "== Commits Per Author (reverse order)\n\n" + renderPerGroup(groupByName(commits), renderer);
             }
         },
         COMMITS_PER_NAME_PREFIX_CHRONOLOGICAL {
             @Override
-            public String render(final Git git, final Predicate<RevCommit> filters, final Function<RevCommit, String> renderer) throws GitAPIException {
-                final var logs = listCommits(git, filters);
-                if (logs.isEmpty()) {
+            public String render(final Git git, final List<Commit> commits, final Function<Commit, String> renderer) throws GitAPIException {
+                if (commits.isEmpty()) {
                     return "";
                 }
-                return "== Commits Per Author\n\n" + renderPerGroup(groupByName(logs), renderer);
+                return "== Commits Per Author\n\n" + renderPerGroup(groupByName(commits), renderer);
             }
         };
 
-        public abstract String render(Git git, Predicate<RevCommit> filters, Function<RevCommit, String> renderingOptions) throws GitAPIException, IOException;
+        public abstract String render(Git git, List<Commit> commits, Function<Commit, String> renderingOptions) throws GitAPIException, IOException;
 
-        protected Map<String, List<RevCommit>> groupByMail(final List<RevCommit> logs) {
+        protected Map<String, List<Commit>> groupByMail(final List<Commit> logs) {
             return logs.stream()
-                    .collect(groupingBy(i -> ofNullable(i.getCommitterIdent().getEmailAddress())
+                    .collect(groupingBy(i -> ofNullable(i.getEmail())
                             .map(m -> {
                                 final int sep = m.indexOf('@');
                                 return sep > 0 ? m.substring(0, sep) : m;
@@ -410,23 +580,22 @@ public class GitReportMojo extends AbstractMojo {
                             .orElse("unknown")));
         }
 
-        protected Map<String, List<RevCommit>> groupByName(final List<RevCommit> logs) {
+        protected Map<String, List<Commit>> groupByName(final List<Commit> logs) {
             return logs.stream()
-                    .collect(groupingBy(i -> ofNullable(i.getCommitterIdent())
-                            .map(PersonIdent::getName)
+                    .collect(groupingBy(i -> ofNullable(i.getName())
                             .map(n -> n.toLowerCase(ROOT))
                             .orElse("unknown")));
         }
 
-        protected String renderPerGroup(final Map<String, List<RevCommit>> perMail, final Function<RevCommit, String> renderer) {
+        protected String renderPerGroup(final Map<String, List<Commit>> perMail, final Function<Commit, String> renderer) {
             return perMail.entrySet().stream()
                     .sorted(Map.Entry.comparingByKey())
                     .map(e -> {
-                        final var name = e.getValue().get(0).getCommitterIdent().getName();
+                        final var name = e.getValue().get(0).getName();
                         return "" +
                                 "=== " +
                                 // use email if it is the key, else use the name
-                                (e.getKey().contains("@") ? e.getKey() : e.getValue().get(0).getCommitterIdent().getName()) +
+                                (e.getKey().contains("@") ? e.getKey() : e.getValue().get(0).getName()) +
                                 // if we used the email show the name and commit counter, else just the commit counter
                                 (!e.getKey().equalsIgnoreCase(name) ?
                                         " (" + name + ", #" + e.getValue().size() + ")" :
@@ -437,22 +606,18 @@ public class GitReportMojo extends AbstractMojo {
                     .collect(joining("\n\n"));
         }
 
-        protected String renderCommits(final List<RevCommit> logs, final Function<RevCommit, String> formatter) {
+        protected String renderCommits(final List<Commit> logs, final Function<Commit, String> formatter) {
             return logs.stream()
                     .map(formatter)
                     .collect(joining("\n", "", "\n"));
         }
 
-        protected List<RevCommit> listCommits(final Git git, final Predicate<RevCommit> filter) throws GitAPIException {
-            return stream(git.log().call().spliterator(), false).filter(filter).collect(toList());
-        }
-
-        protected String formatCommit(final RevCommit commit, final Function<RevCommit, String> renderer) {
+        protected String formatCommit(final Commit commit, final Function<Commit, String> renderer) {
             return renderer.apply(commit);
         }
 
-        protected String toShortHash(final RevCommit commit) {
-            return commit.getId().abbreviate(7).name();
+        protected String toShortHash(final Commit commit) {
+            return commit.getId().substring(0, 7);
         }
 
         public Stream<Renderer> flatten() {
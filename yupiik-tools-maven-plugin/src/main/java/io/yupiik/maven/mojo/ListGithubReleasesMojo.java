@@ -15,12 +15,9 @@
  */
 package io.yupiik.maven.mojo;
 
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
-import jakarta.json.bind.JsonbConfig;
+import io.yupiik.maven.service.github.GithubClient;
 import jakarta.json.bind.annotation.JsonbProperty;
 import lombok.Data;
-import org.apache.johnzon.mapper.reflection.JohnzonParameterizedType;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -31,11 +28,8 @@ import org.apache.maven.settings.Server;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecrypter;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.time.Year;
 import java.util.Base64;
@@ -46,12 +40,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 import static java.time.LocalTime.MIN;
 import static java.time.Month.JANUARY;
@@ -61,7 +49,7 @@ import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.CompletableFuture.allOf;
-import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
@@ -87,6 +75,12 @@ public class ListGithubReleasesMojo extends AbstractMojo {
     @Parameter(property = "yupiik.list-github-releases.threads", defaultValue = "16")
     private int threads;
 
+    /**
+     * Where GitHub responses are cached (with their ETag) to use conditional requests, empty to disable the cache.
+     */
+    @Parameter(property = "yupiik.list-github-releases.githubCache", defaultValue = "${user.home}/.yupiik/tools/github-cache")
+    private String githubCache;
+
     @Parameter(property = "yupiik.list-github-releases.from", defaultValue = "auto")
     private String fromDate;
 
@@ -108,30 +102,18 @@ public class ListGithubReleasesMojo extends AbstractMojo {
             return;
         }
 
-        final var threadPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
-            private final AtomicInteger counter = new AtomicInteger();
-
-            @Override
-            public Thread newThread(final Runnable r) {
-                final var thread = new Thread(r, ListGithubReleasesMojo.class.getSimpleName() + '-' + counter.incrementAndGet());
-                thread.setContextClassLoader(ListGithubReleasesMojo.class.getClassLoader());
-                return thread;
-            }
-        });
-        final var httpClientBuilder = HttpClient.newBuilder();
-        if (forceHttpV1) {
-            httpClientBuilder.version(HttpClient.Version.HTTP_1_1);
-        }
-        final var httpClient = httpClientBuilder
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .executor(threadPool)
-                .build();
-
         final var base = githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/");
         final List<GithubRelease> releases;
-        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
+        try (final var github = new GithubClient(GithubClient.Configuration.builder()
+                .name(ListGithubReleasesMojo.class.getSimpleName())
+                .forceHttpV1(forceHttpV1)
+                .threads(threads)
+                .authorization(findServer(githubServerId).map(this::toAuthorizationHeaderValue).orElse(null))
+                .cache(githubCache == null || githubCache.isBlank() ? null : Paths.get(githubCache))
+                .build(), getLog())) {
             final var all = projects.stream()
-                    .map(project -> safe(() -> findExistingReleases(httpClient, jsonb, base + "repos/" + project + "/releases?per_page=100")))
+                    .map(project -> supplyAsync(() -> github.list(base + "repos/" + project + "/releases?per_page=100", GithubRelease.class)
+                            .collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b)), github.getExecutor()))
                     .collect(toList());
             releases = allOf(all.toArray(new CompletableFuture<?>[0]))
                     .thenApply(ok -> all.stream().map(i -> i.getNow(Map.of()))
@@ -170,15 +152,6 @@ public class ListGithubReleasesMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         } catch (final Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
-        } finally {
-            threadPool.shutdownNow();
-            try {
-                if (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
-                    getLog().warn("Thread pool didn't shut down fast enough, exiting with some hanging threads");
-                }
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
         }
     }
 
@@ -217,54 +190,6 @@ public class ListGithubReleasesMojo extends AbstractMojo {
         });
     }
 
-    private CompletableFuture<Map<String, GithubRelease>> findExistingReleases(
-            final HttpClient httpClient, final Jsonb jsonb, final String url) {
-        if (url == null) {
-            return CompletableFuture.completedFuture(Map.of());
-        }
-        final var reqBuilder = HttpRequest.newBuilder();
-        findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        final var uri = URI.create(url);
-        return httpClient.sendAsync(reqBuilder
-                                .GET()
-                                .uri(uri)
-                                .header("accept", "application/vnd.github.v3+json")
-                                .build(),
-                        HttpResponse.BodyHandlers.ofString())
-                .thenCompose(r -> {
-                    ensure200(uri, r);
-                    final List<GithubRelease> releases = jsonb.fromJson(r.body().trim(), new JohnzonParameterizedType(List.class, GithubRelease.class));
-                    final var releaseNames = releases.stream().collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b));
-                    return findNextLink(r.headers().firstValue("Link").orElse(null))
-                            .map(next -> findExistingReleases(httpClient, jsonb, next)
-                                    .thenApply(added -> Stream.concat(releaseNames.entrySet().stream(), added.entrySet().stream())
-                                            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a))))
-                            .orElseGet(() -> completedFuture(releaseNames));
-                });
-    }
-
-    private Optional<String> findNextLink(final String link) {
-        return ofNullable(link)
-                .flatMap(l -> Stream.of(l.split(","))
-                        .map(String::trim)
-                        .filter(it -> it.contains("rel=\"next\""))
-                        .flatMap(next -> Stream.of(next.split(";")))
-                        .map(String::trim)
-                        .filter(it -> it.startsWith("<") && it.endsWith(">"))
-                        .map(it -> it.substring(1, it.length() - 1))
-                        .findFirst());
-    }
-
-    private <T> CompletableFuture<T> safe(final Supplier<CompletableFuture<T>> provider) {
-        try {
-            return provider.get();
-        } catch (final RuntimeException re) {
-            final CompletableFuture<T> future = new CompletableFuture<>();
-            future.completeExceptionally(re);
-            return future;
-        }
-    }
-
     private Optional<Server> findServer(final String id) {
         return servers.computeIfAbsent(id, k -> {
             final Server server = session.getSettings().getServer(k);
@@ -278,12 +203,6 @@ public class ListGithubReleasesMojo extends AbstractMojo {
         });
     }
 
-    private void ensure200(final URI url, final HttpResponse<?> response) {
-        if (response.statusCode() != 200) {
-            throw new IllegalArgumentException("Invalid response from " + url + ": " + response + "\n" + response.body());
-        }
-    }
-
     private String toAuthorizationHeaderValue(final Server server) {
         return server.getUsername() == null ?
                 server.getPassword() : // assumed raw header value, enables "Token xxx" cases
@@ -16,6 +16,7 @@
 package io.yupiik.maven.mojo;
 
 import io.yupiik.maven.service.AsciidoctorInstance;
+import io.yupiik.maven.service.UpToDate;
 import io.yupiik.maven.service.confluence.Confluence;
 import io.yupiik.maven.service.confluence.ConfluenceService;
 import io.yupiik.maven.service.ftp.configuration.Ftp;
@@ -46,10 +47,14 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 
 import static java.lang.ClassLoader.getSystemClassLoader;
 import static java.util.Collections.emptyList;
@@ -229,6 +234,13 @@ public class MiniSiteMojo extends BaseMojo {
     @Parameter(property = "yupiik.minisite.blogPageSize", defaultValue = "10")
     private int blogPageSize;
 
+    /**
+     * Number of threads used to render blog pages (posts and listings), {@code 1} means no parallelism.
+     * Each thread borrows its own asciidoctor instance from the pool (see {@code yupiik.asciidoctor.pool.max}).
+     */
+    @Parameter(property = "yupiik.minisite.blogRenderingThreads", defaultValue = "1")
+    private int blogRenderingThreads;
+
     /**
      * Max date until when posts are published.
      * {@code today} and {@code infinite} are supported as dynamic alias.
@@ -255,6 +267,13 @@ public class MiniSiteMojo extends BaseMojo {
     @Parameter(property = "yupiik.minisite.generateSiteMap", defaultValue = "true")
     private boolean generateSiteMap;
 
+    /**
+     * Max number of urls in a sitemap, if there are more pages, {@code sitemap.xml} is a sitemap index
+     * referencing {@code sitemap-<index>.xml} files.
+     */
+    @Parameter(property = "yupiik.minisite.siteMapMaxUrls", defaultValue = "50000")
+    private int siteMapMaxUrls;
+
     /**
      * Template file name added before the content.
      */
@@ -280,6 +299,36 @@ public class MiniSiteMojo extends BaseMojo {
     @Parameter
     private List<PreAction> preActions;
 
+    /**
+     * How many threads can be used to execute pre-actions.
+     * Independent actions - based on their inputs and outputs, declared or inferred for built-in ones - are executed concurrently,
+     * an action without known inputs/outputs waits for all previous ones.
+     */
+    @Parameter(property = "yupiik.minisite.preActionsThreads", defaultValue = "1")
+    private int preActionsThreads;
+
+    /**
+     * File storing the fingerprints of pre-actions inputs and outputs, enables to skip an action when its inputs and configuration
+     * did not change and its outputs were not modified since its last execution.
+     * Set it to an empty value to always execute the pre-actions.
+     */
+    @Parameter(property = "yupiik.minisite.preActionsState", defaultValue = "${project.build.directory}/yupiik-minisite/pre-actions.state")
+    private File preActionsState;
+
+    /**
+     * Folder where {@code timings.json} and {@code timings.csv} are written, they contain the duration of each build phase
+     * and of each page (parse, asciidoc rendering, templating and write durations as well as the output size).
+     * Set it to an empty value to disable the report.
+     */
+    @Parameter(property = "yupiik.minisite.timingReport", defaultValue = "${project.build.directory}/yupiik-minisite")
+    private File timingReport;
+
+    /**
+     * How many of the slowest pages are logged when {@code timingReport} is set.
+     */
+    @Parameter(property = "yupiik.minisite.timingReportTopN", defaultValue = "10")
+    private int timingReportTopN;
+
     /**
      * Asciidoctor extensions to register in Asciidoctor instance.
      * Can be in target/classes.
@@ -419,6 +468,91 @@ public class MiniSiteMojo extends BaseMojo {
         }
     }
 
+    @Override
+    protected UpToDate.UpToDateBuilder upToDate() {
+        // deployments are side effects which must always happen
+        if (skip || (ftp != null && !ftp.isIgnore()) || (git != null && !git.isIgnore()) || (confluence != null && !confluence.isIgnore())) {
+            return null;
+        }
+        final var builder = withRequires(UpToDate.builder())
+                .input(source.toPath())
+                .input(classes == null ? null : classes.toPath())
+                .output(target.toPath())
+                .parameter("dependencies", project == null || project.getArtifacts() == null ? null : project.getArtifacts().stream()
+                        .map(it -> it.getId() + ':' + (it.getFile() == null ? "" : it.getFile().length() + ":" + it.getFile().lastModified()))
+                        .sorted()
+                        .collect(toList()))
+                .parameter("preferYupiikAsciidoc", preferYupiikAsciidoc)
+                .parameter("attributes", attributes == null ? null : new TreeMap<>(attributes))
+                .parameter("title", title)
+                .parameter("rssFeedFile", rssFeedFile)
+                .parameter("description", description)
+                .parameter("logoText", logoText)
+                .parameter("logo", logo)
+                .parameter("indexText", indexText)
+                .parameter("indexSubTitle", indexSubTitle)
+                .parameter("copyright", copyright)
+                .parameter("linkedInCompany", linkedInCompany)
+                .parameter("customHead", customHead)
+                .parameter("customScripts", customScripts)
+                .parameter("customMenu", customMenu)
+                .parameter("siteBase", siteBase)
+                .parameter("useDefaultAssets", useDefaultAssets)
+                .parameter("addCodeCopyButton", addCodeCopyButton)
+                .parameter("injectYupiikTemplateExtensionPoints", injectYupiikTemplateExtensionPoints)
+                .parameter("templateExtensionPoints", templateExtensionPoints == null ? null : new TreeMap<>(templateExtensionPoints))
+                .parameter("searchIndexName", searchIndexName)
+                .parameter("generateBlog", generateBlog)
+                .parameter("blogPageSize", blogPageSize)
+                .parameter("blogPublicationDate", "default".equals(blogPublicationDate) ? getDefaultPublicationDate() : blogPublicationDate)
+                .parameter("injectBlogMeta", injectBlogMeta)
+                .parameter("generateIndex", generateIndex)
+                .parameter("generateSiteMap", generateSiteMap)
+                .parameter("siteMapMaxUrls", siteMapMaxUrls)
+                .parameter("templatePrefixes", templatePrefixes)
+                .parameter("templateAddLeftMenu", templateAddLeftMenu)
+                .parameter("templateSuffixes", templateSuffixes)
+                .parameter("preActions", preActions)
+                .parameter("asciidoctorExtensions", asciidoctorExtensions)
+                .parameter("skipRendering", skipRendering)
+                .parameter("reverseBlogOrder", reverseBlogOrder)
+                .parameter("addIndexRegistrationPerCategory", addIndexRegistrationPerCategory)
+                .parameter("skipIndexTitleDocumentationText", skipIndexTitleDocumentationText)
+                .parameter("logoSideText", logoSideText)
+                .parameter("gravatar", gravatar)
+                .parameter("blogCategoriesCustomizations", blogCategoriesCustomizations == null ? null : new TreeMap<>(blogCategoriesCustomizations))
+                .parameter("notIndexedPages", notIndexedPages)
+                .parameter("projectVersion", project == null ? null : project.getVersion())
+                .parameter("projectName", project == null ? null : project.getName())
+                .parameter("projectArtifactId", project == null ? null : project.getArtifactId());
+        if (templateDirs != null) {
+            templateDirs.forEach(it -> builder.input(it.toPath()));
+        }
+        if (preActions != null) { // declared inputs or, by default, configuration values which are local files or folders
+            for (final var action : preActions) {
+                if (action.getInputs() != null) {
+                    action.getInputs().forEach(it -> builder.input(Path.of(it)));
+                } else if (action.getConfiguration() != null) {
+                    action.getConfiguration().values().stream()
+                            .filter(it -> it != null && !it.isBlank())
+                            .map(this::toExistingPath)
+                            .filter(Objects::nonNull)
+                            .forEach(builder::input);
+                }
+            }
+        }
+        return builder;
+    }
+
+    private Path toExistingPath(final String value) {
+        try {
+            final var path = Path.of(value.trim());
+            return Files.exists(path) ? path : null;
+        } catch (final InvalidPathException ipe) {
+            return null;
+        }
+    }
+
     private ClassLoader getParentClassLoader() {
         return "true".equalsIgnoreCase(usePluginAsParentClassLoader) ||
                 ("auto".equalsIgnoreCase(usePluginAsParentClassLoader) && asciidoctorExtensions != null && !asciidoctorExtensions.isEmpty()) ?
@@ -444,6 +578,7 @@ public class MiniSiteMojo extends BaseMojo {
                 .indexSubTitle(indexSubTitle)
                 .copyright(copyright)
                 .blogPageSize(blogPageSize)
+                .blogRenderingThreads(blogRenderingThreads)
                 .rssFeedFile(rssFeedFile)
                 .blogPublicationDate("default".equals(blogPublicationDate) ? getDefaultPublicationDate() : blogPublicationDate)
                 .injectBlogMeta(injectBlogMeta)
@@ -458,10 +593,15 @@ public class MiniSiteMojo extends BaseMojo {
                 .notIndexedPages(notIndexedPages)
                 .generateIndex(generateIndex)
                 .generateSiteMap(generateSiteMap)
+                .siteMapMaxUrls(siteMapMaxUrls)
                 .templatePrefixes(templatePrefixes)
                 .templateAddLeftMenu(templateAddLeftMenu)
                 .templateSuffixes(templateSuffixes)
                 .preActions(preActions)
+                .preActionsThreads(preActionsThreads)
+                .preActionsState(preActionsState == null ? null : preActionsState.toPath())
+                .timingReport(timingReport == null ? null : timingReport.toPath())
+                .timingReportTopN(timingReportTopN)
                 .skipRendering(skipRendering)
                 .customGems(customGems)
                 .requires(requires)
@@ -502,6 +642,7 @@ public class MiniSiteMojo extends BaseMojo {
                         " </dependencies>", cnfe);
             }
         }
+        asciidoctor.prewarm(this, asciidoctorExtensions); // boot JRuby while pre-actions and pages lookup run
         return new AsciidoctorAsciidoc((conf, fn) -> asciidoctor.withAsciidoc(conf, fn, asciidoctorExtensions));
     }
 
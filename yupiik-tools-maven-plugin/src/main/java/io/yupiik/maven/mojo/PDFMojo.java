@@ -16,6 +16,8 @@
 package io.yupiik.maven.mojo;
 
 import io.yupiik.maven.service.AsciidoctorInstance;
+import io.yupiik.maven.service.UpToDate;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -33,10 +35,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 @Setter
 @Mojo(name = "pdf", requiresProject = false, threadSafe = true)
@@ -65,17 +75,46 @@ public class PDFMojo extends BaseMojo {
     @Parameter
     protected Map<String, Object> attributes;
 
+    /**
+     * How many documents can be rendered concurrently (each one with its own asciidoctor instance).
+     * Note that the asciidoctor instance pool is bounded by {@code yupiik.asciidoctor.pool.max} system property.
+     * Logs are kept grouped per document and in the documents order.
+     */
+    @Parameter(property = "yupiik.pdf.threads", defaultValue = "1")
+    protected int threads;
+
     @Inject
     protected AsciidoctorInstance asciidoctor;
 
+    private final ThreadLocal<List<Runnable>> bufferedLogs = new ThreadLocal<>();
+
     @Override
     public void doExecute() throws MojoExecutionException {
+        asciidoctor.prewarm(this, List.of()); // boot JRuby while preparing the rendering
         final Path theme = prepare();
         final Path src = sourceDirectory.toPath();
         final Options options = createOptions(theme, Files.isDirectory(src) ? src : src.getParent());
         doRender(src, options);
     }
 
+    @Override
+    protected UpToDate.UpToDateBuilder upToDate() {
+        final var src = sourceDirectory.toPath();
+        final var builder = withRequires(UpToDate.builder())
+                .output(targetDirectory.toPath())
+                .parameter("attributes", attributes)
+                .parameter("customGems", customGems);
+        if (Files.isDirectory(src) || src.getParent() == null) {
+            builder.input(src);
+        } else { // default partialsdir and imagesdir
+            builder.input(src).input(src.resolveSibling("_partials")).input(src.resolveSibling("images"));
+        }
+        if (themeDir != null) {
+            builder.input(themeDir.toPath());
+        }
+        return builder;
+    }
+
     protected Path prepare() throws MojoExecutionException {
         final Path theme;
         if (themeDir == null) {
@@ -88,10 +127,74 @@ public class PDFMojo extends BaseMojo {
     }
 
     protected void doRender(final Path src, final Options options) {
-        asciidoctor.withAsciidoc(this, adoc -> {
-            visit(src, f -> doRender(f, options, adoc), true);
-            return null;
+        final var files = new ArrayList<Path>();
+        visit(src, files::add, true);
+        if (threads <= 1 || files.size() <= 1) {
+            asciidoctor.withAsciidoc(this, adoc -> {
+                files.forEach(f -> doRender(f, options, adoc));
+                return null;
+            });
+            return;
+        }
+        doRenderConcurrently(files, options);
+    }
+
+    private void doRenderConcurrently(final List<Path> files, final Options options) {
+        final var loader = Thread.currentThread().getContextClassLoader();
+        final var counter = new AtomicInteger();
+        final var pool = Executors.newFixedThreadPool(Math.min(threads, files.size()), r -> {
+            final var thread = new Thread(r, "yupiik-pdf-" + counter.incrementAndGet());
+            thread.setContextClassLoader(loader);
+            return thread;
         });
+        try {
+            final var results = files.stream()
+                    .map(file -> pool.submit(() -> {
+                        final var logs = new ArrayList<Runnable>();
+                        bufferedLogs.set(logs);
+                        try {
+                            // options are mutable (output file) so each document gets its own copy
+                            final var documentOptions = new Options(new HashMap<>(options.map()));
+                            asciidoctor.withAsciidoc(this, adoc -> {
+                                doRender(file, documentOptions, adoc);
+                                return null;
+                            });
+                            return new DocumentRendering(file, logs, null);
+                        } catch (final RuntimeException re) {
+                            return new DocumentRendering(file, logs, re);
+                        } finally {
+                            bufferedLogs.remove();
+                        }
+                    }))
+                    .collect(toList());
+
+            final var errors = new ArrayList<DocumentRendering>();
+            for (final var result : results) { // replay logs in the documents order
+                final DocumentRendering rendering;
+                try {
+                    rendering = result.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                rendering.logs.forEach(Runnable::run);
+                if (rendering.error != null) {
+                    getLog().error("Can't render '" + rendering.file.getFileName() + "': " + rendering.error.getMessage());
+                    errors.add(rendering);
+                }
+            }
+            if (!errors.isEmpty()) {
+                final var error = new IllegalStateException("Can't render " + errors.stream()
+                        .map(it -> "'" + it.file.getFileName() + "'")
+                        .collect(joining(", ")), errors.get(0).error);
+                errors.stream().skip(1).forEach(it -> error.addSuppressed(it.error));
+                throw error;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     protected void visit(final Path src, final Consumer<Path> onFile, final boolean adocOnly) {
@@ -129,12 +232,44 @@ public class PDFMojo extends BaseMojo {
                     .resolve(src.getFileName().toString().replaceFirst(".adoc$", ".pdf"))
                     .toString());
             adoc.convert(String.join("\n", Files.readAllLines(src)), options);
-            getLog().info("Rendered '" + src.getFileName() + "'");
+            info().accept("Rendered '" + src.getFileName() + "'");
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
     }
 
+    @Override
+    public Consumer<String> info() {
+        return buffered(super.info());
+    }
+
+    @Override
+    public Consumer<String> debug() {
+        return buffered(super.debug());
+    }
+
+    @Override
+    public Consumer<String> warn() {
+        return buffered(super.warn());
+    }
+
+    @Override
+    public Consumer<String> error() {
+        return buffered(super.error());
+    }
+
+    // when rendering concurrently, logs are kept per document to be able to replay them in order
+    private Consumer<String> buffered(final Consumer<String> delegate) {
+        return message -> {
+            final var buffer = bufferedLogs.get();
+            if (buffer == null) {
+                delegate.accept(message);
+            } else {
+                buffer.add(() -> delegate.accept(message));
+            }
+        };
+    }
+
     protected Options createOptions(final Path theme, final Path src) {
         return Options.builder()
                 .safe(SafeMode.UNSAFE)
@@ -161,4 +296,11 @@ public class PDFMojo extends BaseMojo {
                         .build())
                 .build();
     }
+
+    @RequiredArgsConstructor
+    private static class DocumentRendering {
+        private final Path file;
+        private final List<Runnable> logs;
+        private final RuntimeException error;
+    }
 }
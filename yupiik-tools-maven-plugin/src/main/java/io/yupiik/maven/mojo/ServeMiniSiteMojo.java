@@ -15,17 +15,28 @@
  */
 package io.yupiik.maven.mojo;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.yupiik.maven.service.UpToDate;
 import io.yupiik.tools.common.http.StaticHttpServer;
 import io.yupiik.tools.common.watch.Watch;
+import io.yupiik.tools.minisite.DevMiniSite;
 import io.yupiik.tools.minisite.MiniSite;
 import io.yupiik.tools.minisite.language.Asciidoc;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE_PLUS_RUNTIME;
 
 /**
@@ -48,15 +59,34 @@ public class ServeMiniSiteMojo extends MiniSiteMojo {
     @Parameter(property = "yupiik.slides.watchDelay", defaultValue = "150")
     private int watchDelay;
 
+    /**
+     * If {@code true}, after the first rendering, an edited page is re-rendered in memory when requested instead of
+     * re-rendering the whole website and opened browsers are notified to reload the page (Server-Sent Events).
+     * Changes impacting multiple pages (templates, assets, partials, blog posts, titles or {@code minisite-*} attributes)
+     * still trigger a full rendering.
+     */
+    @Parameter(property = "yupiik.minisite.devServer", defaultValue = "false")
+    private boolean devServer;
+
+    @Override // keeps running
+    protected UpToDate.UpToDateBuilder upToDate() {
+        return null;
+    }
+
     @Override
     public void doExecute() {
         // adjust config
         siteBase = "http://localhost:" + port;
         fixConfig();
         try (final var loader = createProjectLoader()) {
-            final var miniSite = new MiniSite(createMiniSiteConfiguration(loader));
+            final var configuration = createMiniSiteConfiguration(loader);
+            final var miniSite = devServer ? new DevMiniSite(configuration) : new MiniSite(configuration);
             miniSite.executePreActions();
-            doWatch(createAsciidoc(preferYupiikAsciidoc), miniSite.createOptions(), miniSite);
+            if (devServer) {
+                doServeInMemory(createAsciidoc(preferYupiikAsciidoc), miniSite.createOptions(), (DevMiniSite) miniSite);
+            } else {
+                doWatch(createAsciidoc(preferYupiikAsciidoc), miniSite.createOptions(), miniSite);
+            }
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
@@ -87,7 +117,116 @@ public class ServeMiniSiteMojo extends MiniSiteMojo {
         staticHttpServer.run();
     }
 
+    private void doServeInMemory(final Asciidoc adoc, final Object options, final DevMiniSite miniSite) {
+        final var liveReload = new LiveReload();
+        final var server = new AtomicReference<StaticHttpServer>();
+        final var rendered = new AtomicBoolean();
+        final var watch = new Watch<>(
+                getLog()::info, getLog()::debug, getLog()::debug, getLog()::error,
+                List.of(source.toPath()), options, adoc, watchDelay,
+                (opts, a, files) -> miniSite.executeInMinisiteClassLoader(() -> adoc.withInstance(this, instance -> {
+                    if (rendered.compareAndSet(false, true)) {
+                        miniSite.doRender(instance, opts);
+                        getLog().info("Minisite rendered");
+                        return null;
+                    }
+                    final Collection<String> changed = miniSite.refresh(instance, opts, files);
+                    if (changed == null) {
+                        getLog().info("Minisite re-rendered");
+                        liveReload.reload("*");
+                    } else if (!changed.isEmpty()) {
+                        getLog().info("Updated " + changed);
+                        changed.forEach(liveReload::reload);
+                    }
+                    return null;
+                })),
+                () -> {
+                    try {
+                        server.get().open(openBrowser);
+                    } catch (final RuntimeException re) {
+                        getLog().error("Can't open browser, ignoring", re);
+                    }
+                });
+        final var docBase = target.toPath();
+        final var staticHttpServer = new StaticHttpServer(
+                getLog()::info, getLog()::error, port, docBase, "index.html", watch) {
+            @Override
+            protected void onStart(final HttpServer server) {
+                server.createContext(LiveReload.PATH).setHandler(liveReload);
+            }
+
+            @Override
+            protected byte[] load(final Path file) throws IOException {
+                final var path = '/' + docBase.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!path.endsWith(".html")) { // assets are served from the disk
+                    return null;
+                }
+
+                // only borrow an asciidoctor instance when the page must be re-rendered
+                final var inMemory = new AtomicReference<>(miniSite.get(path));
+                if (inMemory.get() == null && miniSite.isDirty(path)) {
+                    miniSite.executeInMinisiteClassLoader(() -> inMemory.set(adoc.withInstance(
+                            ServeMiniSiteMojo.this, instance -> miniSite.get(path, instance, options))));
+                }
+                if (inMemory.get() == null) { // read once, then kept in memory until next full rendering
+                    inMemory.set(miniSite.read(path, file));
+                }
+                return inMemory.get() == null ? null : liveReload.inject(inMemory.get());
+            }
+        };
+        server.set(staticHttpServer);
+        staticHttpServer.run();
+    }
+
     protected String getDefaultPublicationDate() {
         return "infinite";
     }
+
+    private static class LiveReload implements HttpHandler {
+        private static final String PATH = "/__yupiik_minisite_livereload";
+        private static final String SCRIPT = "" +
+                "<script>(function () {\n" +
+                "  var source = new EventSource('" + PATH + "');\n" +
+                "  source.addEventListener('reload', function (e) {\n" +
+                "    var path = location.pathname === '/' ? '/index.html' : location.pathname;\n" +
+                "    if (e.data === '*' || e.data === path) {\n" +
+                "      location.reload();\n" +
+                "    }\n" +
+                "  });\n" +
+                "})();</script>\n";
+
+        private final Collection<HttpExchange> clients = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("retry: 1000\n\n".getBytes(UTF_8));
+            exchange.getResponseBody().flush();
+            clients.add(exchange); // kept open, events are pushed by reload()
+        }
+
+        private void reload(final String page) {
+            final var event = ("event: reload\ndata: " + page + "\n\n").getBytes(UTF_8);
+            for (final var client : clients) {
+                try {
+                    client.getResponseBody().write(event);
+                    client.getResponseBody().flush();
+                } catch (final IOException | RuntimeException e) { // browser left
+                    clients.remove(client);
+                    client.close();
+                }
+            }
+        }
+
+        private byte[] inject(final byte[] html) {
+            final var content = new String(html, UTF_8);
+            final int end = content.lastIndexOf("</body>");
+            if (end < 0) {
+                return (content + SCRIPT).getBytes(UTF_8);
+            }
+            return (content.substring(0, end) + SCRIPT + content.substring(end)).getBytes(UTF_8);
+        }
+    }
 }
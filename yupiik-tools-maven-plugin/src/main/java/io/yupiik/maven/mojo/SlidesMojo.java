@@ -16,6 +16,7 @@
 package io.yupiik.maven.mojo;
 
 import io.yupiik.maven.service.AsciidoctorInstance;
+import io.yupiik.maven.service.UpToDate;
 import io.yupiik.tools.common.http.StaticHttpServer;
 import io.yupiik.tools.slides.Slides;
 import io.yupiik.tools.slides.SlidesConfiguration;
@@ -122,6 +123,31 @@ public class SlidesMojo extends BaseMojo {
         });
     }
 
+    @Override
+    protected UpToDate.UpToDateBuilder upToDate() {
+        if (getMode() != SlidesConfiguration.Mode.DEFAULT) { // dev modes keep running
+            return null;
+        }
+        final var src = source.toPath().toAbsolutePath();
+        final var builder = withRequires(UpToDate.builder())
+                .input(src.getParent()) // images and includes are generally next to the deck
+                .input(customCss == null ? null : customCss.toPath())
+                .input(templateDirs == null ? null : templateDirs.toPath())
+                .output(targetDirectory.toPath())
+                .parameter("source", src)
+                .parameter("slider", slider)
+                .parameter("customScripts", customScripts)
+                .parameter("attributes", attributes)
+                .parameter("preferYupiikAsciidoc", preferYupiikAsciidoc)
+                .parameter("customGems", customGems);
+        if (synchronizationFolders != null) {
+            synchronizationFolders.forEach(it -> builder
+                    .input(it.getSource().toPath())
+                    .parameter("synchronization." + it.getSource(), it.getTarget()));
+        }
+        return builder;
+    }
+
     protected SlidesConfiguration.SlidesConfigurationBuilder createBaseConfiguration() {
         return SlidesConfiguration.builder()
                 .workDir(workDir.toPath())
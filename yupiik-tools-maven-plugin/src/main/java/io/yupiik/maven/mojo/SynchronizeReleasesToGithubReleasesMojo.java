@@ -15,6 +15,7 @@
  */
 package io.yupiik.maven.mojo;
 
+import io.yupiik.maven.service.github.GithubClient;
 import jakarta.json.bind.Jsonb;
 import jakarta.json.bind.JsonbBuilder;
 import jakarta.json.bind.JsonbConfig;
@@ -38,6 +39,7 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -47,6 +49,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
 import java.util.Base64;
 import java.util.Collection;
@@ -57,11 +62,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -73,11 +74,11 @@ import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.CompletableFuture.allOf;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
-import static java.util.stream.Collectors.toSet;
 
 /**
  * Fetch versions of the defined artifacts on a nexus and ensures it is set as github release artifacts.
@@ -116,6 +117,24 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
     @Parameter(property = "yupiik.synchronize-github-releases.threads", defaultValue = "16")
     private int threads;
 
+    /**
+     * Where GitHub responses are cached (with their ETag) to use conditional requests, empty to disable the cache.
+     */
+    @Parameter(property = "yupiik.synchronize-github-releases.githubCache", defaultValue = "${user.home}/.yupiik/tools/github-cache")
+    private String githubCache;
+
+    /**
+     * Maximum number of assets uploaded concurrently.
+     */
+    @Parameter(property = "yupiik.synchronize-github-releases.uploadThreads", defaultValue = "4")
+    private int uploadThreads;
+
+    /**
+     * How many times an asset upload is attempted before failing.
+     */
+    @Parameter(property = "yupiik.synchronize-github-releases.uploadRetries", defaultValue = "3")
+    private int uploadRetries;
+
     @Parameter(property = "yupiik.synchronize-github-releases.workdir", defaultValue = "${project.build.directory}/synchronize-github-releases-workdir")
     private String workdir;
 
@@ -139,6 +158,8 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
 
     private final Map<String, Optional<Server>> servers = new ConcurrentHashMap<>();
 
+    private Semaphore uploads;
+
     @Override
     public void execute() throws MojoExecutionException {
         if (artifacts == null || artifacts.isEmpty()) {
@@ -146,30 +167,20 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
             return;
         }
 
-        final var threadPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
-            private final AtomicInteger counter = new AtomicInteger();
-
-            @Override
-            public Thread newThread(final Runnable r) {
-                final var thread = new Thread(r, SynchronizeReleasesToGithubReleasesMojo.class.getSimpleName() + '-' + counter.incrementAndGet());
-                thread.setContextClassLoader(SynchronizeReleasesToGithubReleasesMojo.class.getClassLoader());
-                return thread;
-            }
-        });
-        final var httpClientBuilder = HttpClient.newBuilder();
-        if (forceHttpV1) {
-            httpClientBuilder.version(HttpClient.Version.HTTP_1_1);
-        }
-        final var httpClient = httpClientBuilder
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .executor(threadPool)
-                .build();
-        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
+        uploads = new Semaphore(Math.max(1, uploadThreads));
+        try (final var github = new GithubClient(GithubClient.Configuration.builder()
+                .name(SynchronizeReleasesToGithubReleasesMojo.class.getSimpleName())
+                .forceHttpV1(forceHttpV1)
+                .threads(threads)
+                .authorization(findServer(githubServerId).map(this::toAuthorizationHeaderValue).orElse(null))
+                .cache(githubCache == null || githubCache.isBlank() ? null : Paths.get(githubCache))
+                .build(), getLog());
+             final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
             final var workDir = Files.createDirectories(Paths.get(workdir));
-            findTags(httpClient, jsonb, "")
-                    .thenCompose(tags -> findExistingReleases(httpClient, jsonb, "")
+            findTags(github)
+                    .thenCompose(tags -> findExistingReleases(github)
                             .thenCompose(releases -> allOf(artifacts.stream()
-                                    .map(spec -> safe(() -> updateArtifact(httpClient, threadPool, jsonb, spec, workDir, tags, releases)))
+                                    .map(spec -> safe(() -> updateArtifact(github, jsonb, spec, workDir, tags, releases)))
                                     .toArray(CompletableFuture<?>[]::new))
                                     .whenComplete((r, e) -> {
                                         if (e != null) {
@@ -182,19 +193,10 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         } catch (final Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
-        } finally {
-            threadPool.shutdownNow();
-            try {
-                if (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
-                    getLog().warn("Thread pool didn't shut down fast enough, exiting with some hanging threads");
-                }
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
         }
     }
 
-    private CompletableFuture<?> synchronizeReleases(final HttpClient httpClient, final Jsonb jsonb,
+    private CompletableFuture<?> synchronizeReleases(final GithubClient github, final Jsonb jsonb,
                                                      final ReleaseSpec spec, final String version,
                                                      final Map<String, GithubRelease> githubExistingReleases,
                                                      final Map<String, GithubTag> tags, final Path workDir) {
@@ -235,12 +237,9 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
             final var url = URI.create(
                     githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases" +
                             (existing != null ? "/" + existing.getId() : ""));
-            final var reqBuilder = HttpRequest.newBuilder();
-            findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-
             ghRelease = ofNullable(tags.get(tagName))
                     // concatenate to release version the list of commits
-                    .map(tag -> fetchTagCommits(httpClient, jsonb, tags, spec, tag)
+                    .map(tag -> fetchTagCommits(github, tags, spec, tag)
                             .thenApply(commits -> commits.stream()
                                     // todo: config?
                                     .filter(c -> !c.getCommit().getMessage().startsWith("[maven-release-plugin]") &&
@@ -263,32 +262,26 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
                             return completedFuture(release);
                         }
                         if (existing != null) {
-                            return httpClient.sendAsync(reqBuilder
-                                                    .method("PATCH", HttpRequest.BodyPublishers.ofString(jsonb.toJson(release), StandardCharsets.UTF_8))
-                                                    .uri(url)
-                                                    .header("accept", "application/vnd.github.v3+json")
-                                                    .build(),
-                                            HttpResponse.BodyHandlers.ofString())
+                            return supplyAsync(() -> github.send(HttpRequest.newBuilder()
+                                            .method("PATCH", HttpRequest.BodyPublishers.ofString(jsonb.toJson(release), StandardCharsets.UTF_8))
+                                            .uri(url)), github.getExecutor())
                                     .thenApply(response -> {
-                                        if (response.statusCode() != 200) {
-                                            throw new IllegalArgumentException("Invalid response from " + url + ": " + response + "\n" + response.body());
+                                        if (response.getStatus() != 200) {
+                                            throw new IllegalArgumentException("Invalid response from " + url + ": HTTP " + response.getStatus() + "\n" + response.getBody());
                                         }
-                                        final var created = jsonb.fromJson(response.body(), GithubRelease.class);
+                                        final var created = jsonb.fromJson(response.getBody(), GithubRelease.class);
                                         getLog().info("Updated release " + version);
                                         return created;
                                     });
                         }
-                        return httpClient.sendAsync(reqBuilder
-                                                .POST(HttpRequest.BodyPublishers.ofString(jsonb.toJson(release), StandardCharsets.UTF_8))
-                                                .uri(url)
-                                                .header("accept", "application/vnd.github.v3+json")
-                                                .build(),
-                                        HttpResponse.BodyHandlers.ofString())
+                        return supplyAsync(() -> github.send(HttpRequest.newBuilder()
+                                        .POST(HttpRequest.BodyPublishers.ofString(jsonb.toJson(release), StandardCharsets.UTF_8))
+                                        .uri(url)), github.getExecutor())
                                 .thenApply(response -> {
-                                    if (response.statusCode() != 201) {
-                                        throw new IllegalArgumentException("Invalid response from " + url + ": " + response + "\n" + response.body());
+                                    if (response.getStatus() != 201) {
+                                        throw new IllegalArgumentException("Invalid response from " + url + ": HTTP " + response.getStatus() + "\n" + response.getBody());
                                     }
-                                    final var created = jsonb.fromJson(response.body(), GithubRelease.class);
+                                    final var created = jsonb.fromJson(response.getBody(), GithubRelease.class);
                                     getLog().info("Created release " + version + ", will now upload assets");
                                     return created;
                                 });
@@ -310,16 +303,15 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
 
         return ghRelease.thenCompose(release -> {
             final var existingAssets = ofNullable(release.getAssets()).stream().flatMap(Collection::stream)
-                    .map(GithubAsset::getName)
-                    .collect(toSet());
+                    .collect(toMap(GithubAsset::getName, identity(), (a, b) -> a));
             return allOf(ofNullable(spec.getArtifacts()).stream().flatMap(Collection::stream)
-                    .filter(a -> !existingAssets.contains(toFilename(spec, a, version)))
-                    .map(artifact -> attachArtifactToRelease(httpClient, release, spec, artifact, workDir))
+                    .map(artifact -> attachArtifactToRelease(
+                            github, release, spec, artifact, workDir, existingAssets.get(toFilename(spec, artifact, version))))
                     .toArray(CompletableFuture<?>[]::new));
         });
     }
 
-    private CompletableFuture<Collection<GithubCommit>> fetchTagCommits(final HttpClient httpClient, final Jsonb jsonb,
+    private CompletableFuture<Collection<GithubCommit>> fetchTagCommits(final GithubClient github,
                                                                         final Map<String, GithubTag> tags,
                                                                         final ReleaseSpec spec, final GithubTag tag) {
         final Function<String, String> versionExtractor = tagPattern == null || tagPattern.isBlank() ?
@@ -330,56 +322,29 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
                 .collect(toList());
         final int idx = sorted.indexOf(tag);
         if (idx == 0) {
-            return fetchCommits(httpClient, jsonb, null, tag.getCommit());
+            return fetchCommits(github, null, tag.getCommit());
         }
-        return fetchCommits(httpClient, jsonb, sorted.get(idx - 1).getCommit(), tag.getCommit());
+        return fetchCommits(github, sorted.get(idx - 1).getCommit(), tag.getCommit());
     }
 
-    private CompletableFuture<Collection<GithubCommit>> fetchCommits(final HttpClient httpClient, final Jsonb jsonb,
+    private CompletableFuture<Collection<GithubCommit>> fetchCommits(final GithubClient github,
                                                                      final GithubTagCommit from, final GithubTagCommit to) {
         return ofNullable(from)
-                .map(c -> fetchCommit(httpClient, jsonb, c).thenApply(it -> "since=" + it.getCommitter().getDate()))
+                .map(c -> fetchCommit(github, c).thenApply(it -> "since=" + it.getCommitter().getDate()))
                 .orElseGet(() -> completedFuture(""))
                 .thenCompose(since -> ofNullable(to)
-                        .map(c -> fetchCommit(httpClient, jsonb, c).thenApply(it -> "until=" + it.getCommitter().getDate()))
+                        .map(c -> fetchCommit(github, c).thenApply(it -> "until=" + it.getCommitter().getDate()))
                         .orElseGet(() -> completedFuture(""))
-                        .thenApply(until -> URI.create(githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/commits?" +
-                                String.join("&", Stream.of(since, until).filter(Objects::nonNull).collect(toList())))))
-                .thenCompose(uri -> {
-                    final var reqBuilder = HttpRequest.newBuilder();
-                    findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-                    return httpClient.sendAsync(reqBuilder
-                                            .GET()
-                                            .uri(uri)
-                                            .header("accept", "application/vnd.github.v3+json")
-                                            .build(),
-                                    HttpResponse.BodyHandlers.ofString())
-                            .thenApply(response -> {
-                                if (response.statusCode() != 200) {
-                                    throw new IllegalArgumentException("Invalid response from " + uri + ": " + response + "\n" + response.body());
-                                }
-                                return jsonb.<List<GithubCommit>>fromJson(response.body(), new JohnzonParameterizedType(List.class, GithubCommit.class));
-                            });
-                });
+                        .thenApply(until -> githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/commits?" +
+                                String.join("&", Stream.of(since, until).filter(Objects::nonNull).collect(toList()))))
+                .thenCompose(uri -> supplyAsync(
+                        () -> github.get(uri, new JohnzonParameterizedType(List.class, GithubCommit.class)),
+                        github.getExecutor()));
     }
 
-    private CompletableFuture<GithubCommitCommit> fetchCommit(final HttpClient httpClient, final Jsonb jsonb,
-                                                              final GithubTagCommit commit) {
-        final var reqBuilder = HttpRequest.newBuilder();
-        findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        final var uri = URI.create(githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/git/commits/" + commit.getSha());
-        return httpClient.sendAsync(reqBuilder
-                                .GET()
-                                .uri(uri)
-                                .header("accept", "application/vnd.github.v3+json")
-                                .build(),
-                        HttpResponse.BodyHandlers.ofString())
-                .thenApply(response -> {
-                    if (response.statusCode() != 200) {
-                        throw new IllegalArgumentException("Invalid response from " + uri + ": " + response + "\n" + response.body());
-                    }
-                    return jsonb.fromJson(response.body(), GithubCommitCommit.class);
-                });
+    private CompletableFuture<GithubCommitCommit> fetchCommit(final GithubClient github, final GithubTagCommit commit) {
+        final var uri = githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/git/commits/" + commit.getSha();
+        return supplyAsync(() -> github.get(uri, GithubCommitCommit.class), github.getExecutor());
     }
 
     private int compareVersions(final String n1, final String n2) {
@@ -455,37 +420,132 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
         }
     }
 
-    private CompletableFuture<?> attachArtifactToRelease(final HttpClient httpClient, final GithubRelease release,
-                                                         final ReleaseSpec spec, final Artifact artifact, final Path workDir) {
-        return download(httpClient, spec, artifact, release.getName(), workDir).thenCompose(file -> {
-            if (file == null) {
-                getLog().info(spec + ":" + artifact + " does not exist in version " + release.getName() + ", skipping");
+    private CompletableFuture<?> attachArtifactToRelease(final GithubClient github, final GithubRelease release,
+                                                         final ReleaseSpec spec, final Artifact artifact, final Path workDir,
+                                                         final GithubAsset existing) {
+        final var version = release.getName();
+        final var local = findLocalArtifact(spec, artifact, version);
+        final CompletableFuture<Boolean> identical;
+        if (existing == null) {
+            identical = completedFuture(false);
+        } else if (local.isPresent()) {
+            identical = completedFuture(isSameAsset(existing, local.orElseThrow()));
+        } else { // avoid to download it just to compare the size
+            identical = findRemoteSize(github.getHttpClient(), spec, artifact, version)
+                    .thenApply(size -> "uploaded".equals(existing.getState()) && size == existing.getSize());
+        }
+        return identical.thenCompose(skip -> {
+            if (skip) {
+                getLog().info(spec + ":" + artifact + " is already attached to release " + version + ", skipping");
                 return completedFuture(null);
             }
+            return local
+                    .map(CompletableFuture::completedFuture)
+                    .orElseGet(() -> download(github.getHttpClient(), spec, artifact, version, workDir))
+                    .thenCompose(file -> {
+                        if (file == null) {
+                            getLog().info(spec + ":" + artifact + " does not exist in version " + version + ", skipping");
+                            return completedFuture(null);
+                        }
+                        return supplyAsync(() -> upload(github, release, spec, artifact, file, existing), github.getExecutor());
+                    });
+        });
+    }
+
+    // blocking, uploads are bounded by uploadThreads and retried individually
+    private boolean upload(final GithubClient github, final GithubRelease release, final ReleaseSpec spec,
+                           final Artifact artifact, final Path file, final GithubAsset existing) {
+        try {
+            uploads.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        try {
+            final var name = file.getFileName().toString();
+            if (existing != null) { // github does not support overwriting an asset
+                deleteAsset(github, existing);
+            }
             final var url = URI.create(release.getUploadUrl().replaceAll("\\{[^}]+}", "") + "?" +
-                    "name=" + URLEncoder.encode(file.getFileName().toString(), StandardCharsets.UTF_8) + "&" +
-                    "label=" + URLEncoder.encode(file.getFileName().toString(), StandardCharsets.UTF_8));
-            final var reqBuilder = HttpRequest.newBuilder();
-            findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-            try {
-                return httpClient.sendAsync(reqBuilder
-                                        .POST(HttpRequest.BodyPublishers.ofFile(file))
-                                        .uri(url)
-                                        .header("content-type", findContentType(file))
-                                        .header("accept", "application/vnd.github.v3+json")
-                                        .build(),
-                                HttpResponse.BodyHandlers.ofString())
-                        .thenApply(response -> {
-                            if (response.statusCode() != 201) {
-                                throw new IllegalArgumentException("Invalid response from " + url + ": " + response + "\n" + response.body());
-                            }
-                            getLog().info("Attached " + spec + ':' + release.getName() + ':' + artifact + " to release " + release.getName());
-                            return true;
-                        });
-            } catch (final FileNotFoundException e) {
-                throw new IllegalStateException(e);
+                    "name=" + URLEncoder.encode(name, StandardCharsets.UTF_8) + "&" +
+                    "label=" + URLEncoder.encode(name, StandardCharsets.UTF_8));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    final var response = github.send(HttpRequest.newBuilder()
+                            .POST(HttpRequest.BodyPublishers.ofFile(file))
+                            .uri(url)
+                            .header("content-type", findContentType(file)));
+                    if (response.getStatus() == 201) {
+                        getLog().info("Attached " + spec + ':' + release.getName() + ':' + artifact + " to release " + release.getName());
+                        return true;
+                    }
+                    if (attempt >= uploadRetries || (response.getStatus() < 500 && response.getStatus() != 422)) {
+                        throw new IllegalArgumentException("Invalid response from " + url + ": HTTP " + response.getStatus() + "\n" + response.getBody());
+                    }
+                    if (response.getStatus() == 422) { // a previous attempt left a partial asset
+                        findAssets(github, release).filter(it -> name.equals(it.getName())).findFirst().ifPresent(it -> deleteAsset(github, it));
+                    }
+                } catch (final FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                } catch (final IllegalStateException ise) { // I/O error
+                    if (attempt >= uploadRetries) {
+                        throw ise;
+                    }
+                }
+                getLog().warn("Upload of " + name + " failed, retrying (" + attempt + "/" + uploadRetries + ")");
             }
-        });
+        } finally {
+            uploads.release();
+        }
+    }
+
+    private Stream<GithubAsset> findAssets(final GithubClient github, final GithubRelease release) {
+        return github.list(
+                githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases/" + release.getId() + "/assets?per_page=100",
+                GithubAsset.class);
+    }
+
+    private void deleteAsset(final GithubClient github, final GithubAsset asset) {
+        final var url = URI.create(githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases/assets/" + asset.getId());
+        final var response = github.send(HttpRequest.newBuilder().DELETE().uri(url));
+        if (response.getStatus() != 204 && response.getStatus() != 404) {
+            throw new IllegalArgumentException("Invalid response from " + url + ": HTTP " + response.getStatus() + "\n" + response.getBody());
+        }
+        getLog().info("Deleted outdated asset " + asset.getName());
+    }
+
+    private boolean isSameAsset(final GithubAsset asset, final Path file) {
+        try {
+            if (!"uploaded".equals(asset.getState()) || asset.getSize() != Files.size(file)) {
+                return false;
+            }
+            if (asset.getDigest() == null || !asset.getDigest().startsWith("sha256:")) { // not always available, size is all we have
+                return true;
+            }
+            final var digest = MessageDigest.getInstance("SHA-256");
+            try (final var stream = new DigestInputStream(Files.newInputStream(file), digest)) {
+                stream.transferTo(OutputStream.nullOutputStream());
+            }
+            final var hex = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return asset.getDigest().substring("sha256:".length()).equalsIgnoreCase(hex.toString());
+        } catch (final IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Optional<Path> findLocalArtifact(final ReleaseSpec spec, final Artifact artifact, final String version) {
+        if (localRepository == null || localRepository.getBasedir() == null) {
+            return empty();
+        }
+        final var file = Paths.get(localRepository.getBasedir())
+                .resolve(spec.getGroupId().replace('.', '/'))
+                .resolve(spec.getArtifactId())
+                .resolve(version)
+                .resolve(toFilename(spec, artifact, version));
+        return Files.isRegularFile(file) ? of(file) : empty();
     }
 
     private String findContentType(final Path file) {
@@ -514,17 +574,10 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
     private CompletableFuture<Path> download(final HttpClient httpClient,
                                              final ReleaseSpec spec, final Artifact artifact, final String version,
                                              final Path workDir) {
-        final var filename = toFilename(spec, artifact, version);
-        final var url = URI.create(mavenRepositoryBaseUrl + (mavenRepositoryBaseUrl.endsWith("/") ? "" : "/") +
-                spec.getGroupId().replace('.', '/') + '/' + spec.getArtifactId() + '/' +
-                version + '/' + filename);
+        final var url = toRepositoryUri(spec, artifact, version);
         getLog().info("Fetching " + url);
-        final var reqBuilder = HttpRequest.newBuilder();
-        if (nexusServerId != null && !CENTRAL.equals(mavenRepositoryBaseUrl)) {
-            findServer(nexusServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        }
-        final var output = workDir.resolve(filename);
-        return httpClient.sendAsync(reqBuilder.GET().uri(url).build(), HttpResponse.BodyHandlers.ofFile(output))
+        final var output = workDir.resolve(toFilename(spec, artifact, version));
+        return httpClient.sendAsync(newRepositoryRequest().GET().uri(url).build(), HttpResponse.BodyHandlers.ofFile(output))
                 .thenApply(r -> {
                     if (r.statusCode() == 404) {
                         return null;
@@ -534,97 +587,56 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
                 });
     }
 
+    // -1 if unknown
+    private CompletableFuture<Long> findRemoteSize(final HttpClient httpClient,
+                                                   final ReleaseSpec spec, final Artifact artifact, final String version) {
+        final var url = toRepositoryUri(spec, artifact, version);
+        return httpClient.sendAsync(
+                        newRepositoryRequest().method("HEAD", HttpRequest.BodyPublishers.noBody()).uri(url).build(),
+                        HttpResponse.BodyHandlers.discarding())
+                .thenApply(r -> r.statusCode() == 200 ? r.headers().firstValueAsLong("Content-Length").orElse(-1) : -1L);
+    }
+
+    private URI toRepositoryUri(final ReleaseSpec spec, final Artifact artifact, final String version) {
+        return URI.create(mavenRepositoryBaseUrl + (mavenRepositoryBaseUrl.endsWith("/") ? "" : "/") +
+                spec.getGroupId().replace('.', '/') + '/' + spec.getArtifactId() + '/' +
+                version + '/' + toFilename(spec, artifact, version));
+    }
+
+    private HttpRequest.Builder newRepositoryRequest() {
+        final var reqBuilder = HttpRequest.newBuilder();
+        if (nexusServerId != null && !CENTRAL.equals(mavenRepositoryBaseUrl)) {
+            findServer(nexusServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
+        }
+        return reqBuilder;
+    }
+
     private String toFilename(final ReleaseSpec spec, final Artifact artifact, final String version) {
         return spec.getArtifactId() + '-' + version + (artifact.getClassifier().isBlank() ? "" :
                 ('-' + artifact.getClassifier())) + '.' + artifact.getType();
     }
 
-    private CompletableFuture<?> updateArtifact(final HttpClient httpClient, final ExecutorService executorService, final Jsonb jsonb,
+    private CompletableFuture<?> updateArtifact(final GithubClient github, final Jsonb jsonb,
                                                 final ReleaseSpec spec, final Path workDir,
                                                 final Map<String, GithubTag> tags, final Map<String, GithubRelease> ghReleases) {
-        final var availableVersions = findAvailableVersions(httpClient, spec);
+        final var availableVersions = findAvailableVersions(github.getHttpClient(), spec);
         return availableVersions
                 .thenComposeAsync(versions -> allOf(versions.stream()
-                                .map(it -> synchronizeReleases(httpClient, jsonb, spec, it, ghReleases, tags, workDir))
+                                .map(it -> synchronizeReleases(github, jsonb, spec, it, ghReleases, tags, workDir))
                                 .toArray(CompletableFuture<?>[]::new)),
-                        executorService);
+                        github.getExecutor());
     }
 
-    private CompletableFuture<Map<String, GithubRelease>> findExistingReleases(final HttpClient httpClient, final Jsonb jsonb, final String nextUrl) {
-        if (nextUrl == null) {
-            return CompletableFuture.completedFuture(Map.of());
-        }
-        final var url = URI.create(nextUrl.isBlank() ?
-                githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases?per_page=100" :
-                nextUrl);
-        final var reqBuilder = HttpRequest.newBuilder();
-        findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        return httpClient.sendAsync(reqBuilder
-                                .GET()
-                                .uri(url)
-                                .header("accept", "application/vnd.github.v3+json")
-                                .build(),
-                        HttpResponse.BodyHandlers.ofString())
-                .thenCompose(r -> {
-                    ensure200(url, r);
-                    final List<GithubRelease> releases = jsonb.fromJson(r.body().trim(), new JohnzonParameterizedType(List.class, GithubRelease.class));
-                    final var releaseNames = releases.stream().collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b));
-                    return findNextLink(r.headers().firstValue("Link").orElse(null))
-                            .map(next -> findExistingReleases(httpClient, jsonb, next)
-                                    .thenApply(added -> Stream.concat(releaseNames.entrySet().stream(), added.entrySet().stream())
-                                            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a))))
-                            .orElseGet(() -> completedFuture(releaseNames));
-                });
+    private CompletableFuture<Map<String, GithubRelease>> findExistingReleases(final GithubClient github) {
+        final var url = githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/releases?per_page=100";
+        return supplyAsync(() -> github.list(url, GithubRelease.class)
+                .collect(toMap(GithubRelease::getName, identity(), (a, b) -> a.id < b.id ? a : b)), github.getExecutor());
     }
 
-    private CompletableFuture<Map<String, GithubTag>> findTags(final HttpClient httpClient, final Jsonb jsonb, final String nextUrl) {
-        if (nextUrl == null) {
-            return CompletableFuture.completedFuture(Map.of());
-        }
-        final var url = URI.create(nextUrl.isBlank() ?
-                githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/tags?per_page=100" :
-                nextUrl);
-        final var reqBuilder = HttpRequest.newBuilder();
-        findServer(githubServerId).ifPresent(s -> reqBuilder.header("Authorization", toAuthorizationHeaderValue(s)));
-        return httpClient.sendAsync(reqBuilder
-                                .GET()
-                                .uri(url)
-                                .header("accept", "application/vnd.github.v3+json")
-                                .build(),
-                        HttpResponse.BodyHandlers.ofString())
-                .thenCompose(r -> {
-                    ensure200(url, r);
-                    final List<GithubTag> releases = jsonb.fromJson(r.body().trim(), new JohnzonParameterizedType(List.class, GithubTag.class));
-                    final var tags = releases.stream().collect(toMap(GithubTag::getName, identity()));
-                    return findNextLink(r.headers().firstValue("Link").orElse(null))
-                            .map(next -> findTags(httpClient, jsonb, next)
-                                    .thenApply(added -> Stream.concat(tags.entrySet().stream(), added.entrySet().stream())
-                                            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a))))
-                            .orElseGet(() -> completedFuture(tags));
-                });
-    }
-
-    /**
-     * Example Link value:
-     * <p>
-     * {@code Link: <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=15>; rel="next",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=34>; rel="last",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=1>; rel="first",
-     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=13>; rel="prev"}
-     *
-     * @param link the raw header value.
-     * @return the first next link.
-     */
-    private Optional<String> findNextLink(final String link) {
-        return ofNullable(link)
-                .flatMap(l -> Stream.of(l.split(","))
-                        .map(String::trim)
-                        .filter(it -> it.contains("rel=\"next\""))
-                        .flatMap(next -> Stream.of(next.split(";")))
-                        .map(String::trim)
-                        .filter(it -> it.startsWith("<") && it.endsWith(">"))
-                        .map(it -> it.substring(1, it.length() - 1))
-                        .findFirst());
+    private CompletableFuture<Map<String, GithubTag>> findTags(final GithubClient github) {
+        final var url = githubBaseApi + (githubBaseApi.endsWith("/") ? "" : "/") + "repos/" + githubRepository + "/tags?per_page=100";
+        return supplyAsync(() -> github.list(url, GithubTag.class)
+                .collect(toMap(GithubTag::getName, identity(), (a, b) -> a)), github.getExecutor());
     }
 
     private CompletableFuture<List<String>> findAvailableVersions(final HttpClient httpClient, final ReleaseSpec spec) {
@@ -746,6 +758,11 @@ public class SynchronizeReleasesToGithubReleasesMojo extends AbstractMojo {
 
         @JsonbProperty("content_type")
         private String contentType;
+
+        private String state;
+
+        // sha256:<hex>, only available for recent assets
+        private String digest;
     }
 
     @Data
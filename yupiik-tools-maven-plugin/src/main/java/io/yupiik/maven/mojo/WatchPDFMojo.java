@@ -15,6 +15,7 @@
  */
 package io.yupiik.maven.mojo;
 
+import io.yupiik.maven.service.UpToDate;
 import lombok.Setter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -39,6 +40,11 @@ public class WatchPDFMojo extends PDFMojo {
     @Parameter(property = "yupiik.pdf.pauseBetweenChecks", defaultValue = "1000")
     private long pauseBetweenChecks;
 
+    @Override // always watch the sources
+    protected UpToDate.UpToDateBuilder upToDate() {
+        return null;
+    }
+
     @Override
     public void doExecute() throws MojoExecutionException {
         final Path theme = super.prepare();
@@ -23,6 +23,9 @@ import io.yupiik.maven.service.extension.JLatexMath;
 import io.yupiik.maven.service.extension.XsltMacro;
 import io.yupiik.tools.common.asciidoctor.AsciidoctorConfiguration;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.Value;
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.extension.BlockMacroProcessor;
 import org.asciidoctor.extension.BlockProcessor;
@@ -41,24 +44,66 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Pool of asciidoctor (JRuby) instances shared by all the executions of the plugin in the build
+ * (this is a singleton in the plugin realm).
+ * <p>
+ * Pool is bounded (per configuration) and instances idle for too long are released (keeping the minimum size).
+ * It can be configured with system properties:
+ * <ul>
+ *     <li>{@code yupiik.asciidoctor.pool.min}: instances to keep and pre-warm, default to 1,</li>
+ *     <li>{@code yupiik.asciidoctor.pool.max}: max instances per configuration, default to the number of processors (at least 2),</li>
+ *     <li>{@code yupiik.asciidoctor.pool.idleTimeout}: how long (ms) an instance can stay unused before being released, default to 5mn.</li>
+ * </ul>
+ */
 @Named
 @Singleton
 public class AsciidoctorInstance {
     // for concurrent builds
-    private final Map<List<AsciidoctorExtension>, Queue<Asciidoctor>> instances = new ConcurrentHashMap<>();
+    private final Map<PoolKey, Pool> instances = new ConcurrentHashMap<>();
     private final ThreadLocal<AsciidoctorConfiguration> mojo = new ThreadLocal<>();
+    private final ThreadLocal<Map<PoolKey, Asciidoctor>> acquired = ThreadLocal.withInitial(HashMap::new);
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0);
+    private volatile AsciidoctorConfiguration lastConfiguration; // to report the metrics at the end of the build
+
+    @Setter
+    private int minSize = Integer.getInteger("yupiik.asciidoctor.pool.min", 1);
+
+    @Setter
+    private int maxSize = Integer.getInteger("yupiik.asciidoctor.pool.max", Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    @Setter
+    private long idleTimeout = Long.getLong("yupiik.asciidoctor.pool.idleTimeout", TimeUnit.MINUTES.toMillis(5));
+
+    private volatile ScheduledExecutorService background;
 
     public <T> T withAsciidoc(final AsciidoctorConfiguration base, final Function<Asciidoctor, T> task) {
         return withAsciidoc(base, task, List.of());
@@ -66,21 +111,80 @@ public class AsciidoctorInstance {
 
     public <T> T withAsciidoc(final AsciidoctorConfiguration base, final Function<Asciidoctor, T> task,
                               final List<AsciidoctorExtension> extensions) {
-        final var map = instances.computeIfAbsent(extensions == null ? List.of() : extensions, k -> new ConcurrentLinkedQueue<>());
-        var poll = map.poll();
-        if (poll == null) {
-            poll = newInstance(base, base.gems(), base.customGems(), base.requires(), extensions);
+        final var key = new PoolKey(base, extensions);
+        final var current = acquired.get().get(key);
+        if (current != null) { // nested call, reuse the instance of the thread, avoids to lock ourself
+            return task.apply(current);
         }
+
+        final var pool = instances.computeIfAbsent(key, k -> new Pool());
+        lastConfiguration = base;
+        final var instance = pool.acquire(base, extensions);
+        final var previous = mojo.get();
         mojo.set(base);
+        acquired.get().put(key, instance.asciidoctor);
         try {
-            return task.apply(poll);
+            return task.apply(instance.asciidoctor);
         } finally {
-            mojo.remove();
-            map.add(poll);
+            acquired.get().remove(key);
+            if (previous == null) {
+                mojo.remove();
+            } else {
+                mojo.set(previous);
+            }
+            pool.release(instance);
+        }
+    }
+
+    /**
+     * Starts in background the instances of the pool for this configuration (up to the min size)
+     * to let the caller do something else while JRuby boots.
+     *
+     * @param base       configuration.
+     * @param extensions custom extensions.
+     */
+    public void prewarm(final AsciidoctorConfiguration base, final List<AsciidoctorExtension> extensions) {
+        instances.computeIfAbsent(new PoolKey(base, extensions), k -> new Pool()).prewarm(base, extensions);
+    }
+
+    /**
+     * @return pool statistics (cumulated for all configurations).
+     */
+    public Metrics getMetrics() {
+        return new Metrics(
+                created.sum(), evicted.sum(), acquisitions.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitTime.sum()), TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get()),
+                instances.values().stream().mapToInt(Pool::size).sum());
+    }
+
+    private ScheduledExecutorService background() {
+        if (background == null) {
+            synchronized (this) {
+                if (background == null) {
+                    final var counter = new AtomicInteger();
+                    final var executor = new ScheduledThreadPoolExecutor(Math.max(1, minSize), r -> {
+                        final var thread = new Thread(r, "yupiik-asciidoctor-pool-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    if (idleTimeout > 0) {
+                        final long period = Math.max(1_000, idleTimeout / 2);
+                        executor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+                    }
+                    background = executor;
+                }
+            }
         }
+        return background;
     }
 
-    private Asciidoctor newInstance(final AsciidoctorConfiguration log, final Path path, final String customGems,
+    private void evict() {
+        final long now = System.nanoTime();
+        instances.values().forEach(pool -> pool.evict(now));
+    }
+
+    private Asciidoctor newInstance(final Supplier<AsciidoctorConfiguration> log, final Path path, final String customGems,
                                     final List<String> requires, final List<AsciidoctorExtension> extensions) {
         final var thread = Thread.currentThread();
         final var oldLoader = thread.getContextClassLoader();
@@ -130,18 +234,18 @@ public class AsciidoctorInstance {
             switch (logRecord.getSeverity()) {
                 case UNKNOWN:
                 case INFO:
-                    log.info().accept(logRecord.getMessage());
+                    log.get().info().accept(logRecord.getMessage());
                     break;
                 case ERROR:
                 case FATAL:
-                    log.error().accept(logRecord.getMessage());
+                    log.get().error().accept(logRecord.getMessage());
                     break;
                 case WARN:
-                    log.warn().accept(logRecord.getMessage());
+                    log.get().warn().accept(logRecord.getMessage());
                     break;
                 case DEBUG:
                 default:
-                    log.debug().accept(logRecord.getMessage());
+                    log.get().debug().accept(logRecord.getMessage());
             }
         });
         if (requires != null) {
@@ -221,13 +325,222 @@ public class AsciidoctorInstance {
 
     @PreDestroy
     public void destroy() {
-        instances.values().stream().flatMap(Collection::stream).forEach(a -> {
+        if (background != null) {
+            background.shutdownNow();
+        }
+        instances.values().forEach(Pool::destroy);
+
+        final var configuration = lastConfiguration;
+        final var metrics = getMetrics();
+        if (configuration != null && metrics.getAcquisitions() > 0) {
             try {
-                a.shutdown();
-            } catch (final NoClassDefFoundError e) {
-                // no-op
+                configuration.info().accept("Asciidoctor pool: " +
+                        metrics.getCreated() + " instance(s) created, " +
+                        metrics.getEvicted() + " evicted, " +
+                        metrics.getAcquisitions() + " acquisition(s), " +
+                        "waited " + metrics.getWaitTimeMs() + "ms (max " + metrics.getMaxWaitTimeMs() + "ms)");
+            } catch (final RuntimeException re) {
+                // logger no more usable, ignore
             }
-        });
+        }
+    }
+
+    private static void shutdown(final Asciidoctor asciidoctor) {
+        try {
+            asciidoctor.shutdown();
+        } catch (final NoClassDefFoundError e) {
+            // no-op
+        }
+    }
+
+    @Value
+    public static class Metrics {
+        long created;
+        long evicted;
+        long acquisitions;
+        long waitTimeMs;
+        long maxWaitTimeMs;
+        int size;
+    }
+
+    @EqualsAndHashCode
+    private static class PoolKey {
+        // default gems are the ones extracted from the plugin (same for all modules) so do not use the path to share instances
+        private final String customGems;
+        private final List<String> requires;
+        private final List<AsciidoctorExtension> extensions;
+
+        private PoolKey(final AsciidoctorConfiguration configuration, final List<AsciidoctorExtension> extensions) {
+            this.customGems = configuration.customGems();
+            this.requires = configuration.requires() == null ? null : List.copyOf(configuration.requires());
+            this.extensions = extensions == null ? List.of() : List.copyOf(extensions);
+        }
+    }
+
+    private static class PooledInstance {
+        private volatile AsciidoctorConfiguration owner;
+        private volatile Asciidoctor asciidoctor;
+        private volatile long lastUsed;
+
+        private PooledInstance(final AsciidoctorConfiguration owner) {
+            this.owner = owner;
+        }
+    }
+
+    private class Pool {
+        private final Lock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private final Deque<PooledInstance> idle = new ArrayDeque<>(); // most recently used first
+        private int size; // idle + used + being created
+        private int prewarming;
+        private int waiting;
+
+        private int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private PooledInstance acquire(final AsciidoctorConfiguration base, final List<AsciidoctorExtension> extensions) {
+            acquisitions.increment();
+            final long start = System.nanoTime();
+            lock.lock();
+            try {
+                while (true) {
+                    final var instance = idle.pollFirst();
+                    if (instance != null) {
+                        instance.owner = base;
+                        return instance;
+                    }
+                    if (prewarming <= waiting && size < Math.max(1, maxSize)) { // no pre-warmed instance to wait for
+                        size++;
+                        break;
+                    }
+                    waiting++;
+                    try {
+                        available.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+                final long duration = System.nanoTime() - start;
+                waitTime.add(duration);
+                maxWaitTime.accumulate(duration);
+                if (duration > TimeUnit.MILLISECONDS.toNanos(100)) {
+                    base.debug().accept("Waited " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms for an asciidoctor instance");
+                }
+            }
+            return create(base, extensions);
+        }
+
+        private void release(final PooledInstance instance) {
+            instance.lastUsed = System.nanoTime();
+            lock.lock();
+            try {
+                idle.addFirst(instance);
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void prewarm(final AsciidoctorConfiguration base, final List<AsciidoctorExtension> extensions) {
+            final int toCreate;
+            lock.lock();
+            try {
+                toCreate = Math.max(0, Math.min(minSize, maxSize) - size);
+                size += toCreate;
+                prewarming += toCreate;
+            } finally {
+                lock.unlock();
+            }
+            final var loader = Thread.currentThread().getContextClassLoader();
+            for (int i = 0; i < toCreate; i++) {
+                background().execute(() -> {
+                    final var thread = Thread.currentThread();
+                    final var oldLoader = thread.getContextClassLoader();
+                    thread.setContextClassLoader(loader);
+                    PooledInstance instance = null;
+                    try {
+                        instance = create(base, extensions);
+                        instance.lastUsed = System.nanoTime();
+                    } catch (final RuntimeException | Error e) { // next acquire() will retry
+                        base.debug().accept("Can't pre-warm asciidoctor: " + e.getMessage());
+                    } finally {
+                        thread.setContextClassLoader(oldLoader);
+                        lock.lock();
+                        try {
+                            prewarming--;
+                            if (instance != null) {
+                                idle.addFirst(instance);
+                            }
+                            available.signalAll();
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                });
+            }
+        }
+
+        private PooledInstance create(final AsciidoctorConfiguration base, final List<AsciidoctorExtension> extensions) {
+            final var instance = new PooledInstance(base);
+            try {
+                final long start = System.nanoTime();
+                instance.asciidoctor = newInstance(() -> instance.owner, base.gems(), base.customGems(), base.requires(), extensions);
+                created.increment();
+                base.debug().accept("Created asciidoctor instance in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+                return instance;
+            } catch (final RuntimeException | Error e) {
+                lock.lock();
+                try {
+                    size--;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+
+        private void evict(final long now) {
+            final var toShutdown = new ArrayList<Asciidoctor>();
+            lock.lock();
+            try {
+                final var it = idle.descendingIterator(); // least recently used first
+                while (it.hasNext() && size > minSize) {
+                    final var instance = it.next();
+                    if (now - instance.lastUsed >= TimeUnit.MILLISECONDS.toNanos(idleTimeout)) {
+                        it.remove();
+                        size--;
+                        toShutdown.add(instance.asciidoctor);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            toShutdown.forEach(AsciidoctorInstance::shutdown);
+            evicted.add(toShutdown.size());
+        }
+
+        private void destroy() {
+            lock.lock();
+            try {
+                idle.forEach(it -> shutdown(it.asciidoctor));
+                size -= idle.size();
+                idle.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     @Data
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service;
+
+import lombok.Builder;
+import lombok.Singular;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Fingerprint of the inputs, parameters and outputs of an execution, enables to skip it when nothing changed since the last one.
+ * Input contents are hashed (in parallel) only when their size or last modified time changed.
+ */
+@Builder
+public class UpToDate {
+    private static final String INPUT = "input.";
+    private static final String OUTPUT = "output.";
+    private static final String PARAMETER = "parameter.";
+
+    private final Path state;
+    private final String version;
+    private final Consumer<String> debug;
+
+    @Singular
+    private final List<Path> inputs;
+
+    @Singular
+    private final List<Path> outputs;
+
+    @Singular
+    private final Map<String, Object> parameters;
+
+    private final Map<String, String> current = new TreeMap<>();
+
+    /**
+     * @return {@code true} if the inputs and parameters have the same fingerprint than for the last execution and the outputs were not modified since.
+     */
+    public boolean isUpToDate() {
+        final var previous = load();
+        current.clear();
+        current.put("version", String.valueOf(version));
+        // hashed since the state is a plain file and parameters can hold credentials (pre-actions headers for ex)
+        parameters.forEach((k, v) -> current.put(PARAMETER + k, hash(v instanceof Object[] ? Arrays.deepToString((Object[]) v) : String.valueOf(v))));
+        current.putAll(fingerprintInputs(previous));
+        if (previous.isEmpty()) {
+            log("No previous execution state in '" + state + "'");
+            return false;
+        }
+
+        final var previousInputs = new TreeMap<>(previous);
+        previousInputs.keySet().removeIf(it -> it.startsWith(OUTPUT));
+        if (!contentOf(previousInputs).equals(contentOf(current))) { // touched but identical files are up to date
+            log("Inputs changed since last execution");
+            return false;
+        }
+
+        final var previousOutputs = new TreeMap<>(previous);
+        previousOutputs.keySet().removeIf(it -> !it.startsWith(OUTPUT));
+        if (previousOutputs.isEmpty() && !outputs.isEmpty() || !previousOutputs.equals(snapshotOutputs())) {
+            log("Outputs changed since last execution");
+            return false;
+        }
+        if (!previousInputs.equals(current)) { // refresh last modified times to avoid hashing again next time
+            save();
+        }
+        return true;
+    }
+
+    /**
+     * Stores the state of the inputs (as seen by {@link #isUpToDate()}) and outputs to skip next execution if nothing changes.
+     */
+    public void save() {
+        final var properties = new Properties();
+        properties.putAll(current);
+        properties.putAll(snapshotOutputs());
+        try {
+            Files.createDirectories(state.getParent());
+            final var tmp = state.resolveSibling(state.getFileName() + ".tmp");
+            try (final OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "yupiik up to date state");
+            }
+            Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't save '" + state + "'", e);
+        }
+    }
+
+    private Map<String, String> fingerprintInputs(final Map<String, String> previous) {
+        return files(inputs).parallelStream()
+                .map(file -> {
+                    final var key = INPUT + file;
+                    if (!Files.exists(file)) {
+                        return Map.entry(key, "missing");
+                    }
+                    try {
+                        final var meta = Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+                        final var old = previous.get(key);
+                        if (old != null && old.startsWith(meta + ':')) { // no need to read the content
+                            return Map.entry(key, old);
+                        }
+                        return Map.entry(key, meta + ':' + hash(file));
+                    } catch (final IOException e) {
+                        throw new IllegalStateException("Can't fingerprint '" + file + "'", e);
+                    }
+                })
+                .collect(TreeMap::new, (m, e) -> m.put(e.getKey(), e.getValue()), Map::putAll);
+    }
+
+    // drop size and last modified time of inputs to only compare their hash
+    private Map<String, String> contentOf(final Map<String, String> state) {
+        final var content = new TreeMap<String, String>();
+        state.forEach((k, v) -> content.put(k, k.startsWith(INPUT) ? v.substring(v.lastIndexOf(':') + 1) : v));
+        return content;
+    }
+
+    private Map<String, String> snapshotOutputs() {
+        final var snapshot = new TreeMap<String, String>();
+        for (final var file : files(outputs)) {
+            try {
+                snapshot.put(OUTPUT + file, !Files.exists(file) ?
+                        "missing" : (Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis()));
+            } catch (final IOException e) {
+                throw new IllegalStateException("Can't read '" + file + "'", e);
+            }
+        }
+        return snapshot;
+    }
+
+    private List<Path> files(final List<Path> roots) {
+        final var files = new ArrayList<Path>();
+        for (final var root : roots.stream().filter(Objects::nonNull).map(it -> it.toAbsolutePath().normalize()).collect(toList())) {
+            if (Files.isDirectory(root)) {
+                try (final Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+                } catch (final IOException e) {
+                    throw new IllegalStateException("Can't list '" + root + "'", e);
+                }
+            } else {
+                files.add(root);
+            }
+        }
+        return files;
+    }
+
+    private Map<String, String> load() {
+        if (!Files.exists(state)) {
+            return Map.of();
+        }
+        final var properties = new Properties();
+        try (final InputStream in = Files.newInputStream(state)) {
+            properties.load(in);
+        } catch (final IOException e) {
+            log("Can't read '" + state + "': " + e.getMessage());
+            return Map.of();
+        }
+        return properties.stringPropertyNames().stream()
+                .collect(TreeMap::new, (m, k) -> m.put(k, properties.getProperty(k)), Map::putAll);
+    }
+
+    private String hash(final String value) {
+        final var digest = newDigest();
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    private String hash(final Path file) throws IOException {
+        final var digest = newDigest();
+        final var buffer = new byte[8192];
+        try (final InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void log(final String message) {
+        if (debug != null) {
+            debug.accept(message);
+        }
+    }
+}
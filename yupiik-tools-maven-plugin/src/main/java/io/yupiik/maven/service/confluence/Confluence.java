@@ -38,4 +38,12 @@ public class Confluence {
 
     @Parameter(property = "yupiik.minisite.confluence.skipIndex")
     private boolean skipIndex;
+
+    // number of pages created/updated concurrently
+    @Parameter(property = "yupiik.minisite.confluence.threads", defaultValue = "1")
+    private int threads = 1;
+
+    // how many times a request is retried when confluence throttles it (HTTP 429 or 503)
+    @Parameter(property = "yupiik.minisite.confluence.maxRetries", defaultValue = "5")
+    private int maxRetries = 5;
 }
@@ -23,6 +23,7 @@ import jakarta.json.bind.annotation.JsonbProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import org.apache.maven.plugin.logging.Log;
 
 import javax.inject.Named;
@@ -38,7 +39,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashSet;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -46,8 +50,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static java.util.function.Function.identity;
@@ -58,12 +66,14 @@ import static java.util.stream.Collectors.toMap;
 @Named
 @Singleton
 public class ConfluenceService {
+    private static final String HASH_PREFIX = "yupiik-sha256:";
+
     private final Urlifier urlifier = new Urlifier();
 
     public void upload(final Confluence confluence, final Path path,
                        final Consumer<String> info, final String base,
                        final Log log) {
-        final var httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        final var http = new Http(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), Math.max(0, confluence.getMaxRetries()));
         final var uri = URI.create(confluence.getUrl());
         final var uriSep = confluence.getUrl().endsWith("/") ? "" : "/";
         final var createContent = uri.resolve(uriSep + "rest/api/content");
@@ -71,9 +81,11 @@ public class ConfluenceService {
         final var auth = confluence.getAuthorization();
         final var baseWikiLink = uri.getPath().endsWith("/") ? uri.getPath().substring(0, uri.getPath().length() - 1) : uri.getPath();
         final var state = new State();
+        final var pool = confluence.getThreads() > 1 ? newPool(confluence.getThreads()) : null;
         try (final var jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
-            final var contents = findAllPages(httpClient, createContent, auth, space, jsonb);
+            final var contents = findAllPages(http, createContent, auth, space, jsonb);
             final var hrefReplacements = toHrefReplacements(contents);
+            final var pages = new ArrayList<Path>();
             Files.walkFileTree(path, new SimpleFileVisitor<>() {
                 @Override
                 public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
@@ -84,29 +96,22 @@ public class ConfluenceService {
                     if (confluence.isSkipIndex() && "index.html".equals(name)) {
                         return FileVisitResult.CONTINUE;
                     }
-
-                    final var relative = path.relativize(file).toString();
-                    final var relativeLink = createOrUpdate(
-                            httpClient, createContent, auth, space, jsonb, file, base,
-                            baseWikiLink, contents, hrefReplacements, state);
-                    info.accept("Saved '" + relative + "' on " + uri.resolve(uriSep + (uriSep.isBlank() ? relativeLink.substring(1) : relativeLink)));
-
+                    pages.add(file);
                     return super.visitFile(file, attrs);
                 }
             });
+            forEach(pool, pages, file -> onSaved(info, uri, uriSep, path, file, createOrUpdate(
+                    http, createContent, auth, space, jsonb, file, base,
+                    baseWikiLink, contents, hrefReplacements, state)));
 
             // recompute links after having created all files - so new files can be linked too
             if (!state.needsRecomputation.isEmpty()) {
-                final var updatedContent = findAllPages(httpClient, createContent, auth, space, jsonb);
+                final var updatedContent = findAllPages(http, createContent, auth, space, jsonb);
                 final var updatedHrefReplacements = toHrefReplacements(updatedContent);
                 final var newState = new State();
-                state.needsRecomputation.forEach(file -> {
-                    final var relative = path.relativize(file).toString();
-                    final var relativeLink = createOrUpdate(
-                            httpClient, createContent, auth, space, jsonb, file, base,
-                            baseWikiLink, updatedContent, updatedHrefReplacements, newState);
-                    info.accept("Saved '" + relative + "' on " + uri.resolve(uriSep + (uriSep.isBlank() ? relativeLink.substring(1) : relativeLink)));
-                });
+                forEach(pool, new ArrayList<>(state.needsRecomputation), file -> onSaved(info, uri, uriSep, path, file, createOrUpdate(
+                        http, createContent, auth, space, jsonb, file, base,
+                        baseWikiLink, updatedContent, updatedHrefReplacements, newState)));
 
                 // if the set is not empty it means some links were not rewritten properly so log it
                 if (!newState.needsRecomputation.isEmpty()) {
@@ -121,27 +126,82 @@ public class ConfluenceService {
             throw ex;
         } catch (final Exception ex) {
             throw new IllegalStateException(ex);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void onSaved(final Consumer<String> info, final URI uri, final String uriSep,
+                         final Path root, final Path file, final Optional<String> relativeLink) {
+        final var relative = root.relativize(file).toString();
+        if (relativeLink.isEmpty()) {
+            info.accept("'" + relative + "' is up to date");
+            return;
         }
+        final var link = relativeLink.orElseThrow();
+        info.accept("Saved '" + relative + "' on " + uri.resolve(uriSep + (uriSep.isBlank() ? link.substring(1) : link)));
     }
 
-    private Map<Pattern, String> toHrefReplacements(final Map<String, Content> contents) {
+    private ExecutorService newPool(final int threads) {
+        final var counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            final var thread = new Thread(r, "yupiik-confluence-" + counter.incrementAndGet());
+            thread.setContextClassLoader(ConfluenceService.class.getClassLoader());
+            return thread;
+        });
+    }
+
+    // pages are independent (links are resolved against the snapshot fetched before) so they can be saved concurrently
+    private void forEach(final ExecutorService pool, final List<Path> files, final Consumer<Path> task) {
+        if (pool == null) {
+            files.forEach(task);
+            return;
+        }
+        final var results = files.stream()
+                .map(file -> pool.submit(() -> task.accept(file)))
+                .collect(toList());
+        IllegalStateException error = null;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (final ExecutionException e) {
+                if (error == null) {
+                    error = new IllegalStateException("Can't save '" + files.get(i).getFileName() + "'", e.getCause());
+                } else {
+                    error.addSuppressed(e.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // single pass rewriting: each href value is normalized the same way than page ids and looked up in a map,
+    // this avoids to apply one pattern per page to each page content
+    private Map<String, String> toHrefReplacements(final Map<String, Content> contents) {
         return contents.entrySet().stream()
-                .collect(toMap( // replace - by . since the reverse process converts foo.html in foo-html so we must use "any char" matching since we don't know if it is a dot or not
-                        it -> Pattern.compile("href=\"" + urlifier.toUrlName(it.getKey()).replace('-', '.') + "\""),
-                        e -> e.getValue().getLinks().get("webui")));
+                .collect(toMap(
+                        it -> urlifier.toUrlName(it.getKey()),
+                        e -> e.getValue().getLinks().get("webui"),
+                        (a, b) -> a));
     }
 
-    private Map<String, Content> findAllPages(final HttpClient httpClient, final URI getContent, final String auth, final Space space, final Jsonb jsonb) {
+    private Map<String, Content> findAllPages(final Http http, final URI getContent, final String auth, final Space space, final Jsonb jsonb) {
         try {
-            final var fetch = httpClient.send(
+            final var fetch = http.send(
                     HttpRequest.newBuilder()
                             .GET()
-                            .uri(URI.create(getContent.toASCIIString() + "/search?cql=space=" + space.getKey() + "%20AND%20type=page&expand=body.storage,version.number"))
+                            .uri(URI.create(getContent.toASCIIString() + "/search?cql=space=" + space.getKey() + "%20AND%20type=page&expand=body.storage,version"))
                             .header("Authorization", auth)
                             .header("Accept", "application/json")
                             .header("Content-Type", "application/json")
-                            .build(),
-                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                            .build());
             if (fetch.statusCode() != 200) {
                 throw new IllegalStateException("Invalid content fetch: " + fetch + "\n" + fetch.body());
             }
@@ -149,7 +209,7 @@ public class ConfluenceService {
             return (contents.getLinks().containsKey("next") ?
                     Stream.concat(
                             contents.getResults().stream(),
-                            fetchContents(httpClient, contents.getLinks().get("base") + contents.getLinks().get("next"), auth, jsonb).stream()) :
+                            fetchContents(http, contents.getLinks().get("base") + contents.getLinks().get("next"), auth, jsonb).stream()) :
                     contents.getResults().stream())
                     .filter(it -> {
                         if (it.getBody() != null && it.getBody().getStorage() != null && it.getBody().getStorage().getValue() != null) {
@@ -167,17 +227,16 @@ public class ConfluenceService {
         }
     }
 
-    private List<Content> fetchContents(final HttpClient httpClient, final String uri, final String auth, final Jsonb jsonb) {
+    private List<Content> fetchContents(final Http http, final String uri, final String auth, final Jsonb jsonb) {
         try {
-            final var fetch = httpClient.send(
+            final var fetch = http.send(
                     HttpRequest.newBuilder()
                             .GET()
                             .uri(URI.create(uri))
                             .header("Authorization", auth)
                             .header("Accept", "application/json")
                             .header("Content-Type", "application/json")
-                            .build(),
-                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                            .build());
             if (fetch.statusCode() != 200) {
                 throw new IllegalStateException("Invalid content fetch: " + fetch + "\n" + fetch.body());
             }
@@ -185,7 +244,7 @@ public class ConfluenceService {
             return (current.getLinks().containsKey("next") ?
                     Stream.concat(
                                     current.getResults().stream(),
-                                    fetchContents(httpClient, current.getLinks().get("base") + current.getLinks().get("next"), auth, jsonb).stream())
+                                    fetchContents(http, current.getLinks().get("base") + current.getLinks().get("next"), auth, jsonb).stream())
                             .collect(toList()) :
                     current.getResults());
         } catch (final IOException e) {
@@ -196,22 +255,27 @@ public class ConfluenceService {
         }
     }
 
-    private String createOrUpdate(final HttpClient httpClient, final URI createContent, final String auth, final Space space,
-                                  final Jsonb jsonb, final Path path, final String base, final String baseWikiLink,
-                                  final Map<String, Content> contents, final Map<Pattern, String> hrefReplacements, final State state) {
+    // returns an empty optional when the page is up to date
+    private Optional<String> createOrUpdate(final Http http, final URI createContent, final String auth, final Space space,
+                                            final Jsonb jsonb, final Path path, final String base, final String baseWikiLink,
+                                            final Map<String, Content> contents, final Map<String, String> hrefReplacements, final State state) {
         try {
             final var content = toContent(Files.readString(path, StandardCharsets.UTF_8), base, baseWikiLink, contents, hrefReplacements, state, path);
             final var title = findTitle(content).orElseGet(() -> path.getFileName().toString());
             final var id = extractId(content).orElseThrow(() -> new IllegalArgumentException("No id in " + path));
             final var existing = contents.get(id);
-            if (existing != null && ( // only update if needed
-                    existing.getBody() == null ||
-                            existing.getBody().getStorage() == null ||
-                            existing.getBody().getStorage().getValue() == null ||
-                            !Objects.equals(content, existing.getBody().getStorage().getValue()))) {
-                return doUpdate(httpClient, createContent, auth, space, existing, jsonb, title, content);
+            if (existing == null) {
+                return Optional.of(doCreate(http, createContent, auth, space, jsonb, content, title));
             }
-            return doCreate(httpClient, createContent, auth, space, jsonb, content, title);
+
+            // confluence normalizes the storage value so we also compare the hash we stored as version message
+            final var hash = HASH_PREFIX + hash(content);
+            if ((existing.getVersion() != null && hash.equals(existing.getVersion().getMessage())) ||
+                    (existing.getBody() != null && existing.getBody().getStorage() != null &&
+                            Objects.equals(content, existing.getBody().getStorage().getValue()))) {
+                return Optional.empty();
+            }
+            return Optional.of(doUpdate(http, createContent, auth, space, existing, jsonb, title, content, hash));
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         } catch (final InterruptedException e) {
@@ -220,9 +284,18 @@ public class ConfluenceService {
         }
     }
 
-    private String doCreate(final HttpClient httpClient, final URI createContent, final String auth, final Space space,
+    private String hash(final String content) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String doCreate(final Http http, final URI createContent, final String auth, final Space space,
                             final Jsonb jsonb, final String content, final String title) throws IOException, InterruptedException {
-        final var createResponse = httpClient.send(
+        final var createResponse = http.send(
                 HttpRequest.newBuilder()
                         .POST(HttpRequest.BodyPublishers.ofString(jsonb.toJson(
                                 new Content(
@@ -239,8 +312,7 @@ public class ConfluenceService {
                         .header("Authorization", auth)
                         .header("Accept", "application/json")
                         .header("Content-Type", "application/json")
-                        .build(),
-                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                        .build());
         if (createResponse.statusCode() > 299) {
             throw new IllegalStateException("Invalid content creation for '" + title + "': " + createResponse + "\n" + createResponse.body());
         }
@@ -248,10 +320,10 @@ public class ConfluenceService {
         return created.getLinks().get("webui");
     }
 
-    private String doUpdate(final HttpClient httpClient, final URI createContent, final String auth, final Space space, final Content existing,
-                            final Jsonb jsonb, final String title, final String content) {
+    private String doUpdate(final Http http, final URI createContent, final String auth, final Space space, final Content existing,
+                            final Jsonb jsonb, final String title, final String content, final String hash) {
         try {
-            final var response = httpClient.send(
+            final var response = http.send(
                     HttpRequest.newBuilder()
                             .PUT(HttpRequest.BodyPublishers.ofString(jsonb.toJson(
                                     new Content(
@@ -260,7 +332,7 @@ public class ConfluenceService {
                                             title,
                                             space,
                                             new Body(new Storage("storage", content)),
-                                            new Version(existing.getVersion().getNumber() + 1),
+                                            new Version(existing.getVersion().getNumber() + 1, hash),
                                             null
                                     )
                             ), StandardCharsets.UTF_8))
@@ -268,8 +340,7 @@ public class ConfluenceService {
                             .header("Authorization", auth)
                             .header("Accept", "application/json")
                             .header("Content-Type", "application/json")
-                            .build(),
-                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                            .build());
             if (response.statusCode() > 299) {
                 throw new IllegalStateException("Invalid content update: " + response + "\n" + response.body());
             }
@@ -306,7 +377,7 @@ public class ConfluenceService {
 
     // todo: disable template upfront, this way no post processing needed? IMPORTANT: only works with default template
     private String toContent(final String html, final String base, final String baseWikiLink,
-                             final Map<String, Content> existingPages, final Map<Pattern, String> hrefReplacements,
+                             final Map<String, Content> existingPages, final Map<String, String> hrefReplacements,
                              final State state, final Path path) {
         final int start = html.indexOf("<div class=\"page");
         if (start < 0) {
@@ -334,12 +405,36 @@ public class ConfluenceService {
 
     // this one is a bit blind but for the case you use link:mydoc.html[...] kind of syntax or xref:mydoc.adoc[...]
     // WARNING: can need 2 builds/updates to be relevant
-    private String rewriteLinksFromPages(final Map<Pattern, String> replacements, final String baseWikiLink, final String content) {
-        var output = content;
-        for (final var ctx : replacements.entrySet()) {
-            output = ctx.getKey().matcher(output).replaceAll("href=\"" + baseWikiLink + ctx.getValue() + '"');
+    private String rewriteLinksFromPages(final Map<String, String> replacements, final String baseWikiLink, final String content) {
+        final var output = new StringBuilder(content.length());
+        int from = 0;
+        int href;
+        while ((href = content.indexOf("href=\"", from)) >= 0) {
+            final int valueStart = href + "href=\"".length();
+            final int valueEnd = content.indexOf('"', valueStart);
+            if (valueEnd < 0) {
+                break;
+            }
+            output.append(content, from, valueStart);
+            final var replacement = replacements.get(toHrefKey(content, valueStart, valueEnd));
+            if (replacement != null) {
+                output.append(baseWikiLink).append(replacement);
+            } else {
+                output.append(content, valueStart, valueEnd);
+            }
+            from = valueEnd;
         }
-        return output;
+        return output.append(content, from, content.length()).toString();
+    }
+
+    // page keys are url names where '-' can also be a '.' (foo.html is converted to foo-html) so align the href on that
+    private String toHrefKey(final String content, final int start, final int end) {
+        final var key = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = content.charAt(i);
+            key.append(Character.isJavaIdentifierPart(c) ? c : '-');
+        }
+        return key.toString();
     }
 
     private String simplifyAdmonition(final String content) { // makes the title appearing since confluence does not show icons until you tune the css
@@ -348,27 +443,31 @@ public class ConfluenceService {
 
     private String rewriteLinks(final State state, final String content, final String siteBase, final String baseWikiLink,
                                 final Map<String, Content> existingPages, final Path path) {
-        int nextLink = content.indexOf("<a ");
-        if (nextLink < 0) {
-            return content;
-        }
-        final int end = content.indexOf("</a>", nextLink);
-        if (end < 0) {
-            return content;
-        }
         final var matchingHref = "href=\"" + siteBase;
-        final int startHref = content.indexOf(matchingHref, nextLink);
-        if (startHref < 0) {
-            return content;
-        }
-        final int endHref = content.indexOf("\"", startHref + matchingHref.length() + 1);
-        if (endHref < 0) {
-            return content;
+        final var output = new StringBuilder(content.length());
+        int from = 0;
+        while (true) {
+            final int nextLink = content.indexOf("<a ", from);
+            if (nextLink < 0) {
+                break;
+            }
+            final int end = content.indexOf("</a>", nextLink);
+            if (end < 0) {
+                break;
+            }
+            final int startHref = content.indexOf(matchingHref, nextLink);
+            if (startHref < 0) {
+                break;
+            }
+            final int endHref = content.indexOf("\"", startHref + matchingHref.length() + 1);
+            if (endHref < 0) {
+                break;
+            }
+            final var link = content.substring(startHref + matchingHref.length(), endHref);
+            output.append(content, from, startHref).append("href=\"").append(relink(state, existingPages, siteBase, link, baseWikiLink, path));
+            from = endHref;
         }
-        final var link = content.substring(startHref + matchingHref.length(), endHref);
-        final var rewritten = relink(state, existingPages, siteBase, link, baseWikiLink, path);
-        return content.substring(0, startHref) + "href=\"" + rewritten + rewriteLinks(
-                state, content.substring(endHref), siteBase, baseWikiLink, existingPages, path);
+        return output.append(content, from, content.length()).toString();
     }
 
     private String relink(final State state, final Map<String, Content> existingPages,
@@ -378,7 +477,9 @@ public class ConfluenceService {
         final var found = existingPages.get(id);
         if (found == null) { // keep the link to rewrite it with next iteration
             state.needsRecomputation.add(path);
-            state.badLinks.computeIfAbsent(path.getFileName().toString(), p -> new TreeSet<>(String.CASE_INSENSITIVE_ORDER)).add(id);
+            synchronized (state.badLinks) {
+                state.badLinks.computeIfAbsent(path.getFileName().toString(), p -> new TreeSet<>(String.CASE_INSENSITIVE_ORDER)).add(id);
+            }
             return siteBase + link;
         }
         return baseWikiLink + found.getLinks().get("webui");
@@ -439,6 +540,11 @@ public class ConfluenceService {
     @AllArgsConstructor
     public static class Version {
         private int number;
+        private String message;
+
+        public Version(final int number) {
+            this(number, null);
+        }
     }
 
     @Data
@@ -475,8 +581,38 @@ public class ConfluenceService {
         private Map<String, String> links;
     }
 
+    @RequiredArgsConstructor
+    private static class Http {
+        private final HttpClient client;
+        private final int maxRetries;
+
+        private HttpResponse<String> send(final HttpRequest request) throws IOException, InterruptedException {
+            for (int attempt = 0; ; attempt++) {
+                final var response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                if ((response.statusCode() != 429 && response.statusCode() != 503) || attempt >= maxRetries) {
+                    return response;
+                }
+                Thread.sleep(retryDelay(response, attempt));
+            }
+        }
+
+        // Retry-After is generally in seconds for confluence, if missing (or a date) use an exponential backoff
+        private long retryDelay(final HttpResponse<?> response, final int attempt) {
+            return response.headers().firstValue("Retry-After")
+                    .map(value -> {
+                        try {
+                            return Long.parseLong(value.strip()) * 1000;
+                        } catch (final NumberFormatException nfe) {
+                            return -1L;
+                        }
+                    })
+                    .filter(it -> it >= 0)
+                    .orElseGet(() -> Math.min(30_000L, 500L << Math.min(attempt, 6)));
+        }
+    }
+
     private static class State {
-        private Set<Path> needsRecomputation = new HashSet<>();
+        private Set<Path> needsRecomputation = ConcurrentHashMap.newKeySet();
         private Map<String, Set<String>> badLinks = new TreeMap<>();
     }
 }
@@ -22,14 +22,30 @@ import org.asciidoctor.extension.Contexts;
 import org.asciidoctor.extension.Name;
 import org.asciidoctor.extension.Reader;
 
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.util.Arrays.asList;
+import static java.util.Locale.ROOT;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
 
@@ -38,6 +54,12 @@ import static java.util.stream.Collectors.joining;
 @Contexts(Contexts.OPEN)
 @ContentModel(ContentModel.COMPOUND)
 public class CodeEvalMacro extends BlockProcessor {
+    // factories are costly to discover so they are cached, engines are only pooled per language when requested (pool=true)
+    // since an engine keeps its global state (ruby globals for ex) between evaluations
+    private static final Map<String, ScriptEngineFactory> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<String, Queue<ScriptEngine>> ENGINES = new ConcurrentHashMap<>();
+    private static final Map<String, String> RESULTS = new ConcurrentHashMap<>();
+
     @Override
     public Object process(final StructuralNode parent, final Reader target, final Map<String, Object> attributes) {
         final var content = target.read();
@@ -48,33 +70,100 @@ public class CodeEvalMacro extends BlockProcessor {
                 "\n" +
                 "[source" + (ofNullable(attributes.get("result-lang")).map(String.class::cast).map(l -> "," + l).orElse("")) + "]\n" +
                 "----\n" +
-                eval(attributes, extractCode(content), extractLanguage(content, parent.getDocument().getAttribute("code-eval-language"))) + '\n' +
+                eval(
+                        attributes, parent.getDocument().getAttribute("code-eval-memoize"),
+                        parent.getDocument().getAttribute("code-eval-pool"), baseDir(parent),
+                        extractCode(content), extractLanguage(content, parent.getDocument().getAttribute("code-eval-language"))) + '\n' +
                 "----\n" +
                 "\n").split("\n")));
         return null;
     }
 
-    private String eval(final Map<String, Object> attributes, final String code, final String language) {
-        final var mgr = new ScriptEngineManager();
-        final var tested = ofNullable(attributes.get("engine")).map(String.class::cast).orElse(language);
-        return mgr.getEngineFactories().stream()
-                .filter(it -> it.getEngineName().equalsIgnoreCase(tested) || it.getExtensions().contains(tested) || it.getMimeTypes().contains(tested))
+    private String eval(final Map<String, Object> attributes, final Object memoizeByDefault, final Object poolByDefault,
+                        final Path baseDir, final String code, final String language) {
+        // normalized once, used for the factory lookup and the pool
+        final var tested = ofNullable(attributes.get("engine")).map(String.class::cast).orElse(language).strip().toLowerCase(ROOT);
+        final var memoize = isEnabled(attributes.get("memoize"), memoizeByDefault);
+        final var pooled = isEnabled(attributes.get("pool"), poolByDefault);
+        if (!memoize) {
+            return doEval(tested, code, pooled);
+        }
+        final var key = hash(baseDir, tested, code, ofNullable(attributes.get("inputs")).map(String::valueOf).orElse(""));
+        final var cached = RESULTS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final var result = doEval(tested, code, pooled);
+        RESULTS.putIfAbsent(key, result);
+        return result;
+    }
+
+    private boolean isEnabled(final Object value, final Object defaultValue) {
+        return ofNullable(value).or(() -> ofNullable(defaultValue))
+                .map(String::valueOf)
+                .map(it -> it.isBlank() || Boolean.parseBoolean(it))
+                .orElse(false);
+    }
+
+    private String doEval(final String tested, final String code, final boolean pooled) {
+        final var pool = pooled ? ENGINES.computeIfAbsent(tested, k -> new ConcurrentLinkedQueue<>()) : null;
+        final var engine = ofNullable(pool).map(Queue::poll).orElseGet(() -> findFactory(tested).getScriptEngine());
+        try {
+            // fresh scope per evaluation, only the (costly) engine is reused
+            final var context = new SimpleScriptContext();
+            context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+            final var writer = new StringWriter();
+            context.setWriter(writer);
+            final var eval = engine.eval(code, context);
+            final var result = ofNullable(eval)
+                    .map(String::valueOf)
+                    .map(r -> writer + "\n\nReturned value: " + r + ".")
+                    .orElseGet(writer::toString);
+            if (pool != null) { // a failed evaluation can leave the engine in an unknown state so it is dropped
+                pool.offer(engine);
+            }
+            return result;
+        } catch (final ScriptException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ScriptEngineFactory findFactory(final String tested) {
+        return FACTORIES.computeIfAbsent(tested, t -> new ScriptEngineManager().getEngineFactories().stream()
+                .filter(it -> it.getEngineName().equalsIgnoreCase(t) ||
+                        it.getExtensions().stream().anyMatch(t::equalsIgnoreCase) ||
+                        it.getMimeTypes().stream().anyMatch(t::equalsIgnoreCase))
                 .findFirst()
-                .map(it -> {
-                    try {
-                        final var scriptEngine = it.getScriptEngine();
-                        final var writer = new StringWriter();
-                        scriptEngine.getContext().setWriter(writer);
-                        final var eval = scriptEngine.eval(code);
-                        return ofNullable(eval)
-                                .map(String::valueOf)
-                                .map(r -> writer + "\n\nReturned value: " + r + ".")
-                                .orElseGet(writer::toString);
-                    } catch (final ScriptException e) {
-                        throw new IllegalStateException(e);
-                    }
-                })
-                .orElseThrow(() -> new IllegalStateException("No engine for language=" + language));
+                .orElseThrow(() -> new IllegalStateException("No engine for language=" + t)));
+    }
+
+    // inputs are relative to the document directory when known
+    private Path baseDir(final StructuralNode node) {
+        return ofNullable(node.getDocument().getAttribute("docdir"))
+                .map(String::valueOf)
+                .filter(it -> !it.isBlank())
+                .or(() -> ofNullable(node.getDocument().getOptions().get("base_dir")).map(String::valueOf).filter(it -> !it.isBlank()))
+                .map(Paths::get)
+                .orElseGet(() -> Paths.get(""));
+    }
+
+    // declared inputs are files the snippet depends on, their content is part of the key
+    private String hash(final Path baseDir, final String engine, final String code, final String inputs) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((engine + '\n' + code).getBytes(StandardCharsets.UTF_8));
+            for (final var input : inputs.split(",")) {
+                if (input.isBlank()) {
+                    continue;
+                }
+                final var file = baseDir.resolve(input.strip()).toAbsolutePath().normalize();
+                digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (final NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     private String extractCode(final String content) {
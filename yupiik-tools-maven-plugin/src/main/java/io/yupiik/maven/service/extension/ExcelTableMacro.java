@@ -15,42 +15,52 @@
  */
 package io.yupiik.maven.service.extension;
 
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.asciidoctor.ast.ContentModel;
 import org.asciidoctor.ast.StructuralNode;
 import org.asciidoctor.extension.BlockProcessor;
 import org.asciidoctor.extension.Contexts;
 import org.asciidoctor.extension.Name;
 import org.asciidoctor.extension.Reader;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
-import java.io.File;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.joining;
 
 @Name("excel")
 @Contexts(Contexts.OPEN)
 @ContentModel(ContentModel.COMPOUND)
 public class ExcelTableMacro extends BlockProcessor {
+    // extracted tables are shared by all the asciidoctor instances of the build, key is the file and the sheet
+    private static final Map<String, CachedTable> TABLES = new ConcurrentHashMap<>();
+
     @Override
     public Object process(final StructuralNode parent, final Reader target, final Map<String, Object> attributes) {
-        try (final XSSFWorkbook wb = new XSSFWorkbook(new File(target.readLine().replace("{partialsdir}", String.valueOf(parent.getDocument().getAttribute("partialsdir"))))) ){
-            final DataFormatter formatter = new DataFormatter();
-            final FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
-            final String sheetName = String.class.cast(attributes.get("sheet"));
-            final Sheet sheet = sheetName == null ? wb.iterator().next() : wb.getSheet(sheetName);
-            final String tableContent = StreamSupport.stream(sheet.spliterator(), false)
-                    .map(row -> StreamSupport.stream(row.spliterator(), false)
-                            .map(cell -> formatter.formatCellValue(cell, evaluator))
-                            .collect(joining(";")))
-                    .collect(joining("\n"));
+        final Path file = Paths.get(target.readLine().replace("{partialsdir}", String.valueOf(parent.getDocument().getAttribute("partialsdir"))));
+        final String sheetName = String.class.cast(attributes.get("sheet"));
+        try {
+            final String tableContent = findTable(file, sheetName);
             parseContent(parent, asList(("" +
                     "[opts=header,format=dsv,separator=;]\n" +
                     "|===\n" +
@@ -58,8 +68,74 @@ public class ExcelTableMacro extends BlockProcessor {
                     "|===\n" +
                     "\n").split("\n")));
             return null;
-        } catch (final IOException | InvalidFormatException e) {
+        } catch (final IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
             throw new IllegalStateException(e);
         }
     }
+
+    private String findTable(final Path file, final String sheetName) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        final String key = file.toAbsolutePath().normalize() + "#" + (sheetName == null ? "" : sheetName);
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        final CachedTable cached = TABLES.get(key);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.content;
+        }
+        final String content = readTable(file, sheetName);
+        TABLES.put(key, new CachedTable(lastModified, content));
+        return content;
+    }
+
+    // SAX (event) reading, only the requested sheet is parsed and the workbook is never loaded in memory
+    private String readTable(final Path file, final String sheetName) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        try (final OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            final XSSFReader reader = new XSSFReader(pkg);
+            final XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (final InputStream sheet = sheets.next()) {
+                    if (sheetName != null && !sheetName.equalsIgnoreCase(sheets.getSheetName())) {
+                        continue;
+                    }
+                    final TableHandler handler = new TableHandler();
+                    final XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            reader.getStylesTable(), null, new ReadOnlySharedStringsTable(pkg), handler, new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                    return String.join("\n", handler.rows);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No sheet " + (sheetName == null ? "" : "'" + sheetName + "' ") + "in '" + file + "'");
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedTable {
+        private final long lastModified;
+        private final String content;
+    }
+
+    private static class TableHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final List<String> rows = new ArrayList<>();
+        private StringBuilder row;
+        private boolean firstCell;
+
+        @Override
+        public void startRow(final int rowNum) {
+            row = new StringBuilder();
+            firstCell = true;
+        }
+
+        @Override
+        public void endRow(final int rowNum) {
+            rows.add(row.toString());
+        }
+
+        @Override
+        public void cell(final String cellReference, final String formattedValue, final XSSFComment comment) {
+            if (!firstCell) {
+                row.append(';');
+            }
+            firstCell = false;
+            row.append(formattedValue == null ? "" : formattedValue);
+        }
+    }
 }
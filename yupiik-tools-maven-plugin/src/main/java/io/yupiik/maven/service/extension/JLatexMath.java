@@ -18,6 +18,7 @@ package io.yupiik.maven.service.extension;
 import lombok.NoArgsConstructor;
 import org.asciidoctor.ast.ContentModel;
 import org.asciidoctor.ast.ContentNode;
+import org.asciidoctor.ast.Document;
 import org.asciidoctor.ast.StructuralNode;
 import org.asciidoctor.extension.BlockProcessor;
 import org.asciidoctor.extension.Contexts;
@@ -38,22 +39,147 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.AbstractMap;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static java.util.Collections.singletonMap;
+import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toMap;
 import static lombok.AccessLevel.PRIVATE;
 
 @NoArgsConstructor(access = PRIVATE)
 class Render {
-    static String render(final String latex, final int size, final int style) {
+    // bump it when the rendering changes to invalidate the cached images
+    private static final String VERSION = "1-" + jlatexmathVersion();
+
+    private static final Logger LOGGER = Logger.getLogger(JLatexMath.class.getName());
+
+    static {
         DefaultTeXFont.registerAlphabet(new CyrillicRegistration());
         DefaultTeXFont.registerAlphabet(new GreekRegistration());
+    }
+
+    /**
+     * @return the image target, inline data or a file name (relative to {@code imagesdir})
+     * if {@code jlatexmath-imagesoutdir} document attribute is set.
+     */
+    static String render(final Document document, final String latex, final int size, final int style) {
+        final String hash = hash(latex, size, style);
+        final Object imagesOutDir = document.getAttribute("jlatexmath-imagesoutdir");
+        if (imagesOutDir != null) {
+            final String name = "jlatexmath-" + hash + ".png";
+            final Path image = Paths.get(String.valueOf(imagesOutDir)).resolve(name);
+            if (!Files.exists(image)) {
+                try {
+                    write(image, findOrRender(hash, latex, size, style));
+                } catch (final IOException e) {
+                    throw new IllegalStateException("Can't write '" + image + "'", e);
+                }
+            }
+            return name;
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(findOrRender(hash, latex, size, style));
+    }
+
+    // the cache is best effort (read-only home in CI for ex), any error just leads to render the formula
+    private static byte[] findOrRender(final String hash, final String latex, final int size, final int style) {
+        final Path cache = cache();
+        if (cache == null) {
+            return render(latex, size, style);
+        }
+        final Path cached = cache.resolve(hash.substring(0, 2)).resolve(hash + ".png");
+        if (Files.exists(cached)) {
+            try {
+                return Files.readAllBytes(cached);
+            } catch (final IOException e) {
+                LOGGER.log(Level.FINE, e, () -> "Can't read '" + cached + "', ignoring");
+            }
+        }
+        final byte[] png = render(latex, size, style);
+        try {
+            write(cached, png);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, e, () -> "Can't cache '" + cached + "', ignoring");
+        }
+        return png;
+    }
+
+    /**
+     * @return where rendered formulas are cached (keyed by the hash of the formula and rendering options),
+     * {@code yupiik.jlatexmath.cache} system property set to {@code none} disables it.
+     */
+    private static Path cache() {
+        return ofNullable(System.getProperty("yupiik.jlatexmath.cache", System.getProperty("user.home") + "/.yupiik/tools/jlatexmath-cache"))
+                .filter(it -> !"none".equals(it))
+                .map(Paths::get)
+                .orElse(null);
+    }
+
+    // atomic since documents can be rendered concurrently
+    private static void write(final Path target, final byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        final Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // the manifest can miss the version (shaded or repackaged jar), then the jar itself identifies it
+    private static String jlatexmathVersion() {
+        final String version = TeXFormula.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try {
+            final CodeSource source = TeXFormula.class.getProtectionDomain().getCodeSource();
+            if (source == null || source.getLocation() == null) {
+                return "unknown";
+            }
+            final String location = source.getLocation().toExternalForm();
+            if ("file".equals(source.getLocation().getProtocol())) {
+                final Path file = Paths.get(source.getLocation().toURI());
+                if (Files.isRegularFile(file)) {
+                    return location + ':' + Files.size(file) + ':' + Files.getLastModifiedTime(file).toMillis();
+                }
+            }
+            return location;
+        } catch (final IOException | URISyntaxException | RuntimeException e) {
+            return "unknown";
+        }
+    }
+
+    private static String hash(final String latex, final int size, final int style) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((VERSION + '\n' + size + '\n' + style + '\n' + Color.BLACK.getRGB() + '\n' + latex).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder out = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                out.append(String.format("%02x", b));
+            }
+            return out.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
+    private static byte[] render(final String latex, final int size, final int style) {
         final TeXIcon icon = new TeXFormula(latex).createTeXIcon(style, size);
         icon.setInsets(new Insets(0, 0, 0, 0));
 
@@ -78,7 +204,7 @@ class Render {
         }
 
         graphics.dispose();
-        return "data:image/png;base64," + Base64.getEncoder().encodeToString(buffer.toByteArray());
+        return buffer.toByteArray();
     }
 }
 
@@ -91,7 +217,7 @@ public interface JLatexMath {
         public Object process(final StructuralNode parent, final Reader reader, final Map<String, Object> attributes) {
             return createBlock(parent, "open", "" +
                     "image::" +
-                    Render.render(String.join("\n", reader.lines()).trim(),
+                    Render.render(parent.getDocument(), String.join("\n", reader.lines()).trim(),
                             Integer.parseInt(String.valueOf(attributes.getOrDefault("size", "30"))),
                             Integer.parseInt(String.valueOf(attributes.getOrDefault("style", "0")))) +
                     "[" + attributes.entrySet().stream()
@@ -105,7 +231,7 @@ public interface JLatexMath {
     class Inline extends InlineMacroProcessor {
         @Override
         public Object process(final ContentNode parent, final String target, final Map<String, Object> attributes) {
-            final String image = Render.render(extractString(attributes),
+            final String image = Render.render(parent.getDocument(), extractString(attributes),
                     Integer.parseInt(String.valueOf(attributes.getOrDefault("size", "30"))),
                     Integer.parseInt(String.valueOf(attributes.getOrDefault("style", "2"))));
             final Map<String, Object> newAttributes = attributes.entrySet().stream()
@@ -25,12 +25,13 @@ import org.asciidoctor.extension.Contexts;
 import org.asciidoctor.extension.Name;
 import org.asciidoctor.extension.Reader;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -39,9 +40,17 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
@@ -53,6 +62,9 @@ import static java.util.stream.Collectors.toList;
 @Contexts(Contexts.OPEN)
 @ContentModel(ContentModel.COMPOUND)
 public class XsltMacro extends BlockProcessor {
+    // compiled stylesheets are shared by all the asciidoctor instances of the build (templates are thread safe)
+    private static final Map<String, CachedTemplates> TEMPLATES = new ConcurrentHashMap<>();
+
     private final Supplier<BaseMojo> mojoSupplier;
 
     @Override
@@ -61,25 +73,22 @@ public class XsltMacro extends BlockProcessor {
                 parent, "open",
                 apply(
                         ofNullable(attributes.get("xslt")).map(String::valueOf).orElseThrow(() -> new IllegalArgumentException("Missing xslt attribute")),
-                        ofNullable(attributes.get("from")).map(String::valueOf).orElse(null)));
+                        ofNullable(attributes.get("from")).map(String::valueOf).orElse(null),
+                        ofNullable(attributes.get("threads")).map(String::valueOf).map(Integer::parseInt)
+                                .orElseGet(() -> Integer.getInteger("yupiik.xslt.threads", Math.min(4, Runtime.getRuntime().availableProcessors())))));
     }
 
-    private String apply(final String xslt, final String from) {
+    private String apply(final String xslt, final String from, final int threads) {
         final MavenProject project = mojoSupplier.get().getProject();
         if (project == null) {
             throw new IllegalArgumentException("Can't use " + getClass().getAnnotation(Name.class).value() + " since there is no project attached");
         }
-        final TransformerFactory transformerFactory = TransformerFactory.newInstance();
         try {
             switch (xslt) {
                 case "surefire":
-                    try (final InputStream stream = Thread.currentThread().getContextClassLoader()
-                            .getResourceAsStream("yupiik-tools-maven-plugin/xslt/" + xslt + ".xslt")) {
-                        return builtIn(xslt, transformerFactory.newTransformer(new StreamSource(stream)), project);
-                    }
+                    return builtIn(xslt, findBuiltInTemplates(xslt), project, threads);
                 default:
-                    final Transformer transformer = transformerFactory.newTransformer(new StreamSource(
-                            new ByteArrayInputStream(String.join("\n", Files.readAllLines(Paths.get(xslt))).getBytes(StandardCharsets.UTF_8))));
+                    final Transformer transformer = findTemplates(Paths.get(xslt)).newTransformer();
                     return doTransform(Files.newInputStream(Paths.get(requireNonNull(from, "No from attribute, missing for custom xslt"))), transformer);
             }
         } catch (final TransformerException | IOException tce) {
@@ -87,23 +96,43 @@ public class XsltMacro extends BlockProcessor {
         }
     }
 
-    private String builtIn(final String xslt, final Transformer transformer, final MavenProject project) throws IOException {
+    private Templates findBuiltInTemplates(final String xslt) throws IOException, TransformerException {
+        final CachedTemplates cached = TEMPLATES.get(xslt);
+        if (cached != null) { // built-in stylesheets can't change during the build
+            return cached.templates;
+        }
+        try (final InputStream stream = Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream("yupiik-tools-maven-plugin/xslt/" + xslt + ".xslt")) {
+            final Templates templates = TransformerFactory.newInstance().newTemplates(new StreamSource(stream));
+            TEMPLATES.put(xslt, new CachedTemplates(-1, templates));
+            return templates;
+        }
+    }
+
+    private Templates findTemplates(final Path xslt) throws IOException, TransformerException {
+        final String key = xslt.toAbsolutePath().normalize().toString();
+        final long lastModified = Files.getLastModifiedTime(xslt).toMillis();
+        final CachedTemplates cached = TEMPLATES.get(key);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.templates;
+        }
+        final Templates templates = TransformerFactory.newInstance().newTemplates(new StreamSource(xslt.toFile()));
+        TEMPLATES.put(key, new CachedTemplates(lastModified, templates));
+        return templates;
+    }
+
+    private String builtIn(final String xslt, final Templates templates, final MavenProject project, final int threads) throws IOException {
         switch (xslt) {
             case "surefire":
-                final Collection<Path> files = Files.list(Paths.get(project.getBuild().getDirectory())
-                        .resolve("surefire-reports"))
-                        .filter(it -> it.getFileName().toString().endsWith(".xml"))
-                        .filter(it -> it.getFileName().toString().startsWith("TEST-"))
-                        .sorted(Path::compareTo)
-                        .collect(toList());
-                return files.stream()
-                        .map(f -> {
-                            try {
-                                return doTransform(Files.newInputStream(f), transformer);
-                            } catch (final IOException e) {
-                                throw new IllegalStateException(e);
-                            }
-                        })
+                final List<Path> files;
+                try (final Stream<Path> list = Files.list(Paths.get(project.getBuild().getDirectory()).resolve("surefire-reports"))) {
+                    files = list
+                            .filter(it -> it.getFileName().toString().endsWith(".xml"))
+                            .filter(it -> it.getFileName().toString().startsWith("TEST-"))
+                            .sorted(Path::compareTo)
+                            .collect(toList());
+                }
+                return transformAll(files, templates, threads).stream()
                         .map(String::trim)
                         .collect(joining("\n"));
             default:
@@ -111,6 +140,55 @@ public class XsltMacro extends BlockProcessor {
         }
     }
 
+    // transformers are not thread safe but cheap to create from the compiled templates,
+    // a dedicated pool avoids to block the common pool and keeps the loader of the build (for the xslt extensions)
+    private List<String> transformAll(final List<Path> files, final Templates templates, final int threads) {
+        final int poolSize = Math.min(Math.max(1, threads), files.size());
+        if (poolSize <= 1) {
+            return files.stream().map(f -> transform(f, templates)).collect(toList());
+        }
+
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(poolSize, r -> {
+            final Thread thread = new Thread(r, "yupiik-xslt-" + counter.incrementAndGet());
+            thread.setContextClassLoader(loader);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<String>> futures = files.stream()
+                    .map(f -> pool.submit(() -> transform(f, templates)))
+                    .collect(toList());
+            final List<String> results = new ArrayList<>(futures.size());
+            for (final Future<String> future : futures) { // keeps the files order
+                try {
+                    results.add(future.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private String transform(final Path file, final Templates templates) {
+        try {
+            return doTransform(Files.newInputStream(file), templates.newTransformer());
+        } catch (final IOException | TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private String doTransform(final InputStream from, Transformer transformer) {
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         try (final OutputStream s = outputStream; final InputStream i = from) {
@@ -120,4 +198,10 @@ public class XsltMacro extends BlockProcessor {
         }
         return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
     }
+
+    @RequiredArgsConstructor
+    private static class CachedTemplates {
+        private final long lastModified;
+        private final Templates templates;
+    }
 }
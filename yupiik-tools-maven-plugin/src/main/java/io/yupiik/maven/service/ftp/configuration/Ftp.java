@@ -34,4 +34,23 @@ public class Ftp {
 
     @Parameter(property = "yupiik.minisite.ftp.password")
     private String password;
+
+    /**
+     * How many connections to use to upload files.
+     */
+    @Parameter(property = "yupiik.minisite.ftp.threads")
+    private int threads = 1;
+
+    /**
+     * Remote manifest (relative to the url) storing the hash and size of uploaded files.
+     * It enables to only upload added or changed files, if empty all files are always uploaded.
+     */
+    @Parameter(property = "yupiik.minisite.ftp.manifest")
+    private String manifest = ".yupiik-ftp-manifest.properties";
+
+    /**
+     * Should files uploaded by a previous deployment (listed in the manifest) but no more in the site be deleted.
+     */
+    @Parameter(property = "yupiik.minisite.ftp.deleteStaleFiles")
+    private boolean deleteStaleFiles;
 }
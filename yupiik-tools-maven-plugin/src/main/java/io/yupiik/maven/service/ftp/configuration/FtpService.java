@@ -20,6 +20,9 @@ import org.apache.commons.net.ftp.FTPClient;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -28,72 +31,219 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+import static java.util.stream.Collectors.toList;
+
 @Named
 @Singleton
 public class FtpService {
     public void upload(final Ftp ftp, final Path path,
                        final Consumer<String> info) {
-        final FTPClient ftpClient = new FTPClient();
         final URI uri = URI.create(ftp.getUrl());
+        final boolean hasParent = uri.getPath() != null && !uri.getPath().isEmpty() && !"/".equals(uri.getPath());
+        final String base = hasParent ? uri.getPath().substring(1) : "";
+        final boolean incremental = ftp.getManifest() != null && !ftp.getManifest().isBlank();
+
+        final Properties manifest = createManifest(path);
+        final FTPClient ftpClient = new FTPClient();
         try {
-            ftpClient.connect(uri.getHost(), uri.getPort() < 0 ? 21 : uri.getPort());
-            if (ftp.getUsername() != null) {
-                ftpClient.login(ftp.getUsername(), ftp.getPassword());
-            }
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            connect(ftp, uri, ftpClient);
+
+            final Properties remoteManifest = incremental ? readManifest(ftpClient, toRemote(base, ftp.getManifest())) : new Properties();
+            final List<String> toUpload = manifest.stringPropertyNames().stream()
+                    .filter(it -> !manifest.getProperty(it).equals(remoteManifest.getProperty(it)))
+                    .sorted()
+                    .collect(toList());
+            info.accept("Uploading " + toUpload.size() + " files (" + (manifest.size() - toUpload.size()) + " unchanged) on " + uri);
 
             final Set<String> existingFolders = new HashSet<>();
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                    final String relative = path.relativize(file).toString();
-                    final boolean hasParent = uri.getPath() != null && !uri.getPath().isEmpty() && !"/".equals(uri.getPath());
-                    final String target = !hasParent ? relative : String.join("/", uri.getPath().substring(1), relative);
-
-                    final String[] segments = relative.split("/");
-                    final StringBuilder current = new StringBuilder(hasParent ? uri.getPath().substring(1) : "");
-                    for (int i = 0; i < segments.length - 1 /* last is the file */; i++) {
-                        if (current.length() > 0) {
-                            current.append('/');
-                        }
-                        current.append(segments[i]);
-                        final String test = current.toString();
-                        final boolean shouldCreate = existingFolders.add(test) && !existDir(ftpClient, test);
-                        if (shouldCreate && !ftpClient.makeDirectory(test)) {
-                            throw new IllegalArgumentException("Can't create folder '" + test + "'");
-                        }
-                        if (shouldCreate) {
-                            info.accept("Created directory '" + relative + "' on " + uri);
-                        }
+            for (final String relative : toUpload) {
+                final String[] segments = relative.split("/");
+                final StringBuilder current = new StringBuilder(base);
+                for (int i = 0; i < segments.length - 1 /* last is the file */; i++) {
+                    if (current.length() > 0) {
+                        current.append('/');
+                    }
+                    current.append(segments[i]);
+                    final String test = current.toString();
+                    final boolean shouldCreate = existingFolders.add(test) && !existDir(ftpClient, test);
+                    if (shouldCreate && !ftpClient.makeDirectory(test)) {
+                        throw new IllegalArgumentException("Can't create folder '" + test + "'");
                     }
+                    if (shouldCreate) {
+                        info.accept("Created directory '" + test + "' on " + uri);
+                    }
+                }
+            }
 
-                    try (final InputStream stream = Files.newInputStream(file)) {
-                        if (!ftpClient.storeFile(target, stream)) {
-                            throw new IllegalStateException("Can't upload " + file);
+            if (ftp.getThreads() <= 1 || toUpload.size() <= 1) {
+                for (final String relative : toUpload) {
+                    store(ftpClient, path, base, relative, uri, info);
+                }
+            } else {
+                uploadConcurrently(ftp, uri, path, base, toUpload, info);
+            }
+
+            if (ftp.isDeleteStaleFiles()) {
+                for (final String stale : remoteManifest.stringPropertyNames()) {
+                    if (!manifest.containsKey(stale)) {
+                        if (ftpClient.deleteFile(toRemote(base, stale))) {
+                            info.accept("Deleted stale file '" + stale + "' on " + uri);
+                        } else {
+                            info.accept("Can't delete stale file '" + stale + "' on " + uri + ", ignoring");
                         }
                     }
-                    info.accept("Uploaded file '" + relative + "' on " + uri);
+                }
+            }
 
-                    return super.visitFile(file, attrs);
+            if (incremental) { // last to ensure a failed upload is retried next time
+                final Properties uploaded = new Properties();
+                if (!ftp.isDeleteStaleFiles()) { // keep tracking them to be able to delete them later
+                    remoteManifest.stringPropertyNames().forEach(it -> uploaded.setProperty(it, remoteManifest.getProperty(it)));
                 }
-            });
+                manifest.stringPropertyNames().forEach(it -> uploaded.setProperty(it, manifest.getProperty(it)));
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                uploaded.store(out, "yupiik minisite ftp manifest (path=size-sha256)");
+                if (!ftpClient.storeFile(toRemote(base, ftp.getManifest()), new ByteArrayInputStream(out.toByteArray()))) {
+                    throw new IllegalStateException("Can't upload manifest " + ftp.getManifest());
+                }
+            }
         } catch (final IOException ex) {
             throw new IllegalStateException(ex);
         } finally {
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
+            disconnect(ftpClient);
+        }
+    }
+
+    private void uploadConcurrently(final Ftp ftp, final URI uri, final Path path, final String base,
+                                    final List<String> files, final Consumer<String> info) {
+        final Queue<String> queue = new ConcurrentLinkedQueue<>(files);
+        final int threads = Math.min(ftp.getThreads(), files.size());
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "yupiik-ftp-" + counter.incrementAndGet()));
+        try {
+            final List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) { // one connection per worker
+                workers.add(pool.submit(() -> {
+                    final FTPClient client = new FTPClient();
+                    try {
+                        connect(ftp, uri, client);
+                        String relative;
+                        while (!Thread.currentThread().isInterrupted() && (relative = queue.poll()) != null) {
+                            store(client, path, base, relative, uri, info);
+                        }
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        disconnect(client);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (final ExecutionException e) {
+                    queue.clear(); // stop other workers asap
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
                 }
-            } catch (final IOException ex) {
-                // no-op
             }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void store(final FTPClient client, final Path path, final String base, final String relative,
+                       final URI uri, final Consumer<String> info) throws IOException {
+        try (final InputStream stream = Files.newInputStream(path.resolve(relative))) {
+            if (!client.storeFile(toRemote(base, relative), stream)) {
+                throw new IllegalStateException("Can't upload " + relative);
+            }
+        }
+        info.accept("Uploaded file '" + relative + "' on " + uri);
+    }
+
+    private void connect(final Ftp ftp, final URI uri, final FTPClient ftpClient) throws IOException {
+        ftpClient.connect(uri.getHost(), uri.getPort() < 0 ? 21 : uri.getPort());
+        if (ftp.getUsername() != null) {
+            ftpClient.login(ftp.getUsername(), ftp.getPassword());
+        }
+        ftpClient.enterLocalPassiveMode();
+        ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+    }
+
+    private void disconnect(final FTPClient ftpClient) {
+        try {
+            if (ftpClient.isConnected()) {
+                ftpClient.logout();
+                ftpClient.disconnect();
+            }
+        } catch (final IOException ex) {
+            // no-op
+        }
+    }
+
+    private Properties readManifest(final FTPClient ftpClient, final String remote) throws IOException {
+        final Properties properties = new Properties();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (ftpClient.retrieveFile(remote, out)) {
+            properties.load(new ByteArrayInputStream(out.toByteArray()));
+        } // else first upload or no manifest
+        return properties;
+    }
+
+    private Properties createManifest(final Path path) {
+        final Properties manifest = new Properties();
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[8192];
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    digest.reset();
+                    try (final InputStream stream = Files.newInputStream(file)) {
+                        int read;
+                        while ((read = stream.read(buffer)) >= 0) {
+                            digest.update(buffer, 0, read);
+                        }
+                    }
+                    manifest.setProperty(
+                            path.relativize(file).toString().replace(File.separatorChar, '/'),
+                            attrs.size() + "-" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()));
+                    return super.visitFile(file, attrs);
+                }
+            });
+        } catch (final IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
+        return manifest;
+    }
+
+    private String toRemote(final String base, final String relative) {
+        return base.isEmpty() ? relative : String.join("/", base, relative);
     }
 
     private boolean existDir(final FTPClient ftpClient, final String dir) throws IOException {
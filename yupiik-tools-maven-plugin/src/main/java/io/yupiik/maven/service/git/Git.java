@@ -46,4 +46,24 @@ public class Git {
 
     @Parameter(property = "yupiik.minisite.git.envBase64SshKey")
     private String envBase64SshKey = "YUPIIK_MINISITE_DEPLOY_KEY";
+
+    /**
+     * Clone depth, 0 means the whole history. The site only needs the last commit so it is a shallow clone by default.
+     */
+    @Parameter(property = "yupiik.minisite.git.depth")
+    private int depth = 1;
+
+    /**
+     * Where to keep the local clone between deployments, it is then fetched and reset instead of being cloned again.
+     * If not set the clone is done in the build directory.
+     */
+    @Parameter(property = "yupiik.minisite.git.cloneCache")
+    private String cloneCache;
+
+    /**
+     * Should files not in the site anymore be deleted from the branch (or prefix folder if set).
+     * {@code .git}, {@code .nojekyll} and {@code CNAME} files are always kept.
+     */
+    @Parameter(property = "yupiik.minisite.git.deleteRemovedFiles")
+    private boolean deleteRemovedFiles;
 }
@@ -19,9 +19,16 @@ import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import org.apache.maven.settings.Server;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.RmCommand;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.TransportConfigCallback;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.SshTransport;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.transport.ssh.jsch.JschConfigSessionFactory;
@@ -29,7 +36,10 @@ import org.eclipse.jgit.transport.ssh.jsch.OpenSshConfig;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -40,9 +50,15 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static java.util.Collections.singleton;
 import static java.util.Optional.ofNullable;
@@ -50,43 +66,73 @@ import static java.util.Optional.ofNullable;
 @Named
 @Singleton
 public class GitService {
+    // marks the clones created by this service, only those can be deleted
+    private static final String CLONE_MARKER = "yupiik-tools-clone";
+
     public void update(final Git git, final Path path,
                        final Consumer<String> info,
                        final Path workDir, final String version,
                        final Function<String, Server> decryptServer) throws Exception {
         final CredentialsProvider credentialsProvider = getCredentialsProvider(git);
-        try (final org.eclipse.jgit.api.Git repo = org.eclipse.jgit.api.Git.cloneRepository()
-                .setTransportConfigCallback(newTransportConfigCallback(decryptServer, git))
-                .setCredentialsProvider(credentialsProvider)
-                .setURI(git.getUrl())
-                .setDirectory(workDir.toFile())
-                .setBranchesToClone(singleton(git.getBranch()))
-                .setBranch(git.getBranch())
-                .call()) {
+        final Path repoDir = ofNullable(git.getCloneCache())
+                .filter(it -> !it.isBlank())
+                .map(Paths::get)
+                .orElse(workDir);
+        try (final org.eclipse.jgit.api.Git repo = openRepository(git, repoDir, info, decryptServer, credentialsProvider)) {
             final String prefix = ofNullable(git.getPrefix())
                     .filter(it -> !it.isEmpty())
                     .orElse("");
-            final Path workTarget = prefix.isEmpty() ? workDir : workDir.resolve(prefix);
+            final Path workTarget = prefix.isEmpty() ? repoDir : repoDir.resolve(prefix);
+
+            // only touch files with a different content to only commit the delta
+            final Set<String> siteFiles = new HashSet<>();
+            final List<String> changed = new ArrayList<>();
             Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
                 @Override
                 public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                    final Path target = workTarget.resolve(path.relativize(file));
+                    final Path target = workTarget.resolve(path.relativize(file).toString());
+                    final String relative = toGitPath(repoDir, target);
+                    siteFiles.add(relative);
+                    if (Files.exists(target) && Files.size(target) == attrs.size() && sameContent(file, target)) {
+                        return super.visitFile(file, attrs);
+                    }
                     Files.createDirectories(target.getParent());
                     Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    changed.add(relative);
                     return super.visitFile(file, attrs);
                 }
             });
 
             if (git.isNoJekyll()) {
-                final Path noJekyll = workDir.resolve(".nojekyll");
+                final Path noJekyll = repoDir.resolve(".nojekyll");
                 if (!Files.exists(noJekyll)) {
                     Files.write(noJekyll, new byte[0]);
+                    changed.add(".nojekyll");
                 }
             }
 
+            final List<String> deleted = git.isDeleteRemovedFiles() && Files.isDirectory(workTarget) ?
+                    findRemovedFiles(repoDir, workTarget, siteFiles) : List.of();
+            if (changed.isEmpty() && deleted.isEmpty()) {
+                info.accept("Website is up to date, nothing to push");
+                return;
+            }
+            for (final String file : deleted) {
+                Files.delete(repoDir.resolve(file));
+            }
+
             final OffsetDateTime now = OffsetDateTime.now();
             final String message = "Updating the website with version " + version + " // " + now;
-            repo.add().addFilepattern(".").call();
+            if (!changed.isEmpty()) {
+                final AddCommand add = repo.add();
+                changed.forEach(add::addFilepattern);
+                add.call();
+            }
+            if (!deleted.isEmpty()) {
+                final RmCommand rm = repo.rm().setCached(true);
+                deleted.forEach(rm::addFilepattern);
+                rm.call();
+            }
             if (Boolean.getBoolean("yupiik.minisite.git.debug")) {
                 final Status status = repo.status().call();
                 info.accept("Status:" +
@@ -94,13 +140,133 @@ public class GitService {
                         "\n  Added: " + status.getAdded() +
                         "\n  Removed: " + status.getRemoved());
             }
-            repo.commit().setAll(true).setMessage(message).call();
-            repo.status().call();
+            repo.commit().setMessage(message).call();
             repo.push()
                     .setTransportConfigCallback(newTransportConfigCallback(decryptServer, git))
                     .setCredentialsProvider(credentialsProvider)
                     .add(git.getBranch()).call();
-            info.accept("Updated the website at " + now);
+            info.accept("Updated the website at " + now + " (" + changed.size() + " updated files, " + deleted.size() + " deleted files)");
+        }
+    }
+
+    // reuse an existing clone (fetch + reset) when possible, else clone
+    // note: repoDir can be user provided (cloneCache) so only a clone created by this service is ever deleted
+    private org.eclipse.jgit.api.Git openRepository(final Git git, final Path repoDir, final Consumer<String> info,
+                                                    final Function<String, Server> decryptServer,
+                                                    final CredentialsProvider credentialsProvider) throws Exception {
+        if (Files.isDirectory(repoDir.resolve(".git"))) {
+            final org.eclipse.jgit.api.Git repo = org.eclipse.jgit.api.Git.open(repoDir.toFile());
+            if (git.getUrl().equals(repo.getRepository().getConfig().getString("remote", "origin", "url"))) {
+                try {
+                    final String branch = Repository.shortenRefName(git.getBranch());
+                    final String remoteRef = "refs/remotes/origin/" + branch;
+                    final FetchCommand fetch = repo.fetch()
+                            .setTransportConfigCallback(newTransportConfigCallback(decryptServer, git))
+                            .setCredentialsProvider(credentialsProvider)
+                            .setRemote("origin")
+                            .setRefSpecs(new RefSpec("+" + git.getBranch() + ":" + remoteRef));
+                    if (git.getDepth() > 0) {
+                        fetch.setDepth(git.getDepth());
+                    }
+                    fetch.call();
+                    if (repo.getRepository().findRef(git.getBranch()) == null) {
+                        repo.checkout().setCreateBranch(true).setName(branch).setStartPoint(remoteRef).call();
+                    } else {
+                        repo.checkout().setName(branch).call();
+                    }
+                    repo.reset().setMode(ResetCommand.ResetType.HARD).setRef(remoteRef).call();
+                    repo.clean().setCleanDirectories(true).setIgnore(false).call();
+                    info.accept("Reusing git clone " + repoDir);
+                    return repo;
+                } catch (final Exception e) { // never delete a valid clone, it can be a transient network error
+                    repo.close();
+                    throw new IllegalStateException("Can't update git clone " + repoDir + ": " + e.getMessage(), e);
+                }
+            }
+            repo.close();
+            if (!Files.exists(repoDir.resolve(".git").resolve(CLONE_MARKER))) {
+                throw new IllegalStateException("" +
+                        repoDir + " is a git repository not cloned from " + git.getUrl() + " by the plugin, " +
+                        "refusing to delete it, please check the clone cache location");
+            }
+            info.accept("Existing clone " + repoDir + " does not match " + git.getUrl() + ", cloning again");
+            delete(repoDir);
+        } else if (Files.exists(repoDir) && !isEmptyDirectory(repoDir)) {
+            throw new IllegalStateException("" +
+                    repoDir + " exists and is not a git clone created by the plugin, " +
+                    "refusing to delete it, please check the clone cache location or delete it manually");
+        }
+
+        final CloneCommand clone = org.eclipse.jgit.api.Git.cloneRepository()
+                .setTransportConfigCallback(newTransportConfigCallback(decryptServer, git))
+                .setCredentialsProvider(credentialsProvider)
+                .setURI(git.getUrl())
+                .setDirectory(repoDir.toFile())
+                .setBranchesToClone(singleton(git.getBranch()))
+                .setBranch(git.getBranch());
+        if (git.getDepth() > 0) {
+            clone.setDepth(git.getDepth());
+        }
+        final org.eclipse.jgit.api.Git repo = clone.call();
+        Files.write(repoDir.resolve(".git").resolve(CLONE_MARKER), new byte[0]);
+        return repo;
+    }
+
+    private boolean isEmptyDirectory(final Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (final Stream<Path> list = Files.list(dir)) {
+            return list.findFirst().isEmpty();
+        }
+    }
+
+    private List<String> findRemovedFiles(final Path repoDir, final Path workTarget, final Set<String> siteFiles) throws IOException {
+        final Path gitDir = repoDir.resolve(".git");
+        final List<String> deleted = new ArrayList<>();
+        Files.walkFileTree(workTarget, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                if (gitDir.equals(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return super.preVisitDirectory(dir, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                final String relative = toGitPath(repoDir, file);
+                if (!siteFiles.contains(relative) && !".nojekyll".equals(relative) && !"CNAME".equals(relative)) {
+                    deleted.add(relative);
+                }
+                return super.visitFile(file, attrs);
+            }
+        });
+        return deleted;
+    }
+
+    private boolean sameContent(final Path file1, final Path file2) throws IOException {
+        try (final InputStream in1 = new BufferedInputStream(Files.newInputStream(file1));
+             final InputStream in2 = new BufferedInputStream(Files.newInputStream(file2))) {
+            int b;
+            while ((b = in1.read()) >= 0) {
+                if (b != in2.read()) {
+                    return false;
+                }
+            }
+            return in2.read() < 0;
+        }
+    }
+
+    private String toGitPath(final Path repoDir, final Path file) {
+        return repoDir.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private void delete(final Path folder) throws IOException {
+        try (final Stream<Path> walk = Files.walk(folder)) {
+            for (final Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
         }
     }
 
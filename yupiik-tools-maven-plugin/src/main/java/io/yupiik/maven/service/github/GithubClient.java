@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service.github;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.bind.JsonbConfig;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import org.apache.johnzon.mapper.reflection.JohnzonParameterizedType;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Optional.ofNullable;
+import static java.util.Spliterator.ORDERED;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * GitHub REST API client shared by the github related mojos.
+ * <p>
+ * It uses a single HTTP client and thread pool and:
+ * <ul>
+ *     <li>caches GET responses on disk with their {@code ETag} to send conditional requests (a {@code 304} does not consume the rate limit),</li>
+ *     <li>exposes paginated endpoints as lazy streams (next page is fetched when consumed),</li>
+ *     <li>reduces the number of concurrent requests when the remaining quota ({@code X-RateLimit-Remaining}) gets low
+ *     and waits for the reset when it is exhausted,</li>
+ *     <li>retries throttled requests honoring {@code Retry-After}.</li>
+ * </ul>
+ */
+public class GithubClient implements AutoCloseable {
+    private static final String ACCEPT = "application/vnd.github.v3+json";
+
+    // remaining requests we keep per concurrent request, below threads * this value the concurrency is reduced
+    private static final int QUOTA_PER_REQUEST = 10;
+
+    private final Configuration configuration;
+    private final Log log;
+    private final Gate gate;
+    private final Jsonb jsonb;
+
+    @Getter
+    private final HttpClient httpClient;
+
+    /**
+     * Pool the callers can use to run their github related tasks.
+     * Requests themselves are blocking (bounded by the quota) so tasks must not wait for each other on this pool.
+     */
+    @Getter
+    private final ExecutorService executor;
+
+    public GithubClient(final Configuration configuration, final Log log) {
+        this.configuration = configuration;
+        this.log = log;
+        this.gate = new Gate(Math.max(1, configuration.getThreads()));
+        this.jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true));
+
+        final var counter = new AtomicInteger();
+        final var name = ofNullable(configuration.getName()).orElse(GithubClient.class.getSimpleName());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, configuration.getThreads()), r -> {
+            final var thread = new Thread(r, name + '-' + counter.incrementAndGet());
+            thread.setContextClassLoader(GithubClient.class.getClassLoader());
+            return thread;
+        });
+
+        final var httpClientBuilder = HttpClient.newBuilder();
+        if (configuration.isForceHttpV1()) {
+            httpClientBuilder.version(HttpClient.Version.HTTP_1_1);
+        }
+        this.httpClient = httpClientBuilder
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Fetches all the pages of a list endpoint lazily.
+     *
+     * @param url      first page URL, generally with {@code per_page=100}.
+     * @param itemType the type of the list items.
+     * @param <T>      the type of the items.
+     * @return the items of all pages, a page is only fetched when the stream reaches it.
+     */
+    public <T> Stream<T> list(final String url, final Class<T> itemType) {
+        final var type = new JohnzonParameterizedType(List.class, itemType);
+        final var pages = new Iterator<List<T>>() {
+            private String next = url;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public List<T> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final var response = ensure200(URI.create(next), get(next));
+                next = findNextLink(response.header("Link").orElse(null)).orElse(null);
+                return jsonb.fromJson(response.getBody().trim(), type);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, ORDERED), false)
+                .flatMap(List::stream);
+    }
+
+    public <T> T get(final String url, final Type type) {
+        return jsonb.fromJson(ensure200(URI.create(url), get(url)).getBody(), type);
+    }
+
+    /**
+     * Executes a GET request using the ETag cache if enabled.
+     *
+     * @param url the URL to fetch.
+     * @return the response, a {@code 304} is returned as a {@code 200} with the cached body.
+     */
+    public Response get(final String url) {
+        final var cache = ofNullable(configuration.getCache()).map(it -> it.resolve(cacheKey(url))).orElse(null);
+        final var cached = cache == null ? null : loadCache(cache);
+
+        final var request = HttpRequest.newBuilder().GET().uri(URI.create(url));
+        if (cached != null) {
+            request.header("If-None-Match", cached.getProperty("etag"));
+        }
+        final var response = send(request);
+        if (cached != null && response.getStatus() == 304) {
+            log.debug("Using cached response for " + url);
+            final var link = cached.getProperty("link");
+            return new Response(200, link == null || link.isBlank() ? Map.of() : Map.of("link", List.of(link)), cached.getProperty("body"));
+        }
+        if (cache != null && response.getStatus() == 200) {
+            response.header("ETag").ifPresent(etag -> saveCache(cache, etag, response));
+        }
+        return response;
+    }
+
+    /**
+     * Executes a request (authorization and accept headers are added), respecting the rate limit.
+     *
+     * @param request the request to send.
+     * @return the response.
+     */
+    public Response send(final HttpRequest.Builder request) {
+        ofNullable(configuration.getAuthorization()).ifPresent(it -> request.setHeader("Authorization", it));
+        final var built = request.setHeader("accept", ACCEPT).build();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                gate.acquire();
+                final HttpResponse<String> response;
+                try {
+                    response = httpClient.send(built, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                } finally {
+                    gate.release();
+                }
+                onRateLimit(response);
+
+                final var wait = attempt < configuration.getMaxRetries() ? retryDelay(response, attempt) : -1;
+                if (wait < 0) {
+                    return new Response(response.statusCode(), response.headers().map(), response.body());
+                }
+                if (wait > configuration.getMaxWait()) {
+                    throw new IllegalStateException("Rate limited by " + built.uri() + " for " + wait + "ms which is more than the allowed " +
+                            configuration.getMaxWait() + "ms: " + response + "\n" + response.body());
+                }
+                log.info("Rate limited by " + built.uri() + ", retrying in " + wait + "ms");
+                gate.pause(wait);
+                Thread.sleep(wait);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.warn("Thread pool didn't shut down fast enough, exiting with some hanging threads");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            jsonb.close();
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int getConcurrency() { // for tests
+        return gate.getLimit();
+    }
+
+    private Response ensure200(final URI url, final Response response) {
+        if (response.getStatus() != 200) {
+            throw new IllegalArgumentException("Invalid response from " + url + ": HTTP " + response.getStatus() + "\n" + response.getBody());
+        }
+        return response;
+    }
+
+    private void onRateLimit(final HttpResponse<?> response) {
+        final var remaining = response.headers().firstValue("X-RateLimit-Remaining");
+        if (remaining.isEmpty()) {
+            return;
+        }
+        try {
+            final var value = Long.parseLong(remaining.orElseThrow().strip());
+            if (value <= 0) {
+                response.headers().firstValue("X-RateLimit-Reset")
+                        .map(it -> Long.parseLong(it.strip()) * 1000 - System.currentTimeMillis())
+                        .filter(it -> it > 0)
+                        .ifPresent(wait -> gate.pause(Math.min(wait, configuration.getMaxWait())));
+            }
+            gate.setLimit((int) Math.max(1, Math.min(gate.getMaxConcurrency(), value / QUOTA_PER_REQUEST)));
+        } catch (final NumberFormatException nfe) {
+            // ignore, not a github response
+        }
+    }
+
+    // -1 if the request must not be retried
+    private long retryDelay(final HttpResponse<?> response, final int attempt) {
+        final var status = response.statusCode();
+        final var retryAfter = response.headers().firstValue("Retry-After");
+        final var remaining = response.headers().firstValue("X-RateLimit-Remaining");
+        final boolean rateLimited = status == 429 ||
+                (status == 403 && (retryAfter.isPresent() || remaining.filter("0"::equals).isPresent()));
+        if (!rateLimited && status != 502 && status != 503) {
+            return -1;
+        }
+        try {
+            if (retryAfter.isPresent()) { // secondary rate limit
+                return Long.parseLong(retryAfter.orElseThrow().strip()) * 1000;
+            }
+            if (remaining.filter("0"::equals).isPresent()) { // primary rate limit, wait for the reset
+                final var reset = response.headers().firstValue("X-RateLimit-Reset");
+                if (reset.isPresent()) {
+                    return Math.max(0, Long.parseLong(reset.orElseThrow().strip()) * 1000 - System.currentTimeMillis());
+                }
+            }
+        } catch (final NumberFormatException nfe) {
+            // use the backoff
+        }
+        return Math.min(60_000L, 1000L << Math.min(attempt, 6));
+    }
+
+    /**
+     * Example Link value:
+     * <p>
+     * {@code Link: <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=15>; rel="next",
+     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=34>; rel="last",
+     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=1>; rel="first",
+     * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=13>; rel="prev"}
+     *
+     * @param link the raw header value.
+     * @return the first next link.
+     */
+    private Optional<String> findNextLink(final String link) {
+        return ofNullable(link)
+                .flatMap(l -> Stream.of(l.split(","))
+                        .map(String::trim)
+                        .filter(it -> it.contains("rel=\"next\""))
+                        .flatMap(next -> Stream.of(next.split(";")))
+                        .map(String::trim)
+                        .filter(it -> it.startsWith("<") && it.endsWith(">"))
+                        .map(it -> it.substring(1, it.length() - 1))
+                        .findFirst());
+    }
+
+    // the authorization is part of the key since responses depend on the user (private repositories)
+    private String cacheKey(final String url) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(configuration.getAuthorization()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + ".properties";
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Properties loadCache(final Path cache) {
+        if (!Files.exists(cache)) {
+            return null;
+        }
+        final var properties = new Properties();
+        try (final Reader reader = Files.newBufferedReader(cache, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (final IOException e) {
+            log.debug("Can't read " + cache + ", ignoring: " + e.getMessage());
+            return null;
+        }
+        return properties.getProperty("etag") != null && properties.getProperty("body") != null ? properties : null;
+    }
+
+    private void saveCache(final Path cache, final String etag, final Response response) {
+        final var properties = new Properties();
+        properties.setProperty("etag", etag);
+        properties.setProperty("body", response.getBody());
+        response.header("Link").ifPresent(link -> properties.setProperty("link", link));
+        try {
+            Files.createDirectories(cache.getParent());
+            final var tmp = Files.createTempFile(cache.getParent(), cache.getFileName().toString(), ".tmp");
+            try (final Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) { // cache is an optimization, don't fail the build
+            log.debug("Can't cache " + cache + ": " + e.getMessage());
+        }
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor(access = PRIVATE)
+    public static class Configuration {
+        /**
+         * Thread names prefix.
+         */
+        private String name;
+
+        /**
+         * Raw {@code Authorization} header value if any.
+         */
+        private String authorization;
+
+        /**
+         * Directory where GET responses are cached with their ETag, {@code null} to disable the cache.
+         */
+        private Path cache;
+
+        @Builder.Default
+        private boolean forceHttpV1 = true;
+
+        /**
+         * Maximum number of concurrent requests (and pool size), reduced when the rate limit quota gets low.
+         */
+        @Builder.Default
+        private int threads = 16;
+
+        @Builder.Default
+        private int maxRetries = 5;
+
+        /**
+         * Maximum time to wait for a rate limit reset in milliseconds, if it is longer the request fails.
+         */
+        @Builder.Default
+        private long maxWait = TimeUnit.MINUTES.toMillis(5);
+    }
+
+    @Value
+    public static class Response {
+        int status;
+        Map<String, List<String>> headers;
+        String body;
+
+        public Optional<String> header(final String name) {
+            return headers.entrySet().stream()
+                    .filter(it -> it.getKey().equalsIgnoreCase(name))
+                    .flatMap(it -> it.getValue().stream())
+                    .findFirst();
+        }
+    }
+
+    private static class Gate {
+        @Getter
+        private final int maxConcurrency;
+
+        private int inFlight;
+        private int limit;
+        private long pausedUntil;
+
+        private Gate(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            this.limit = maxConcurrency;
+        }
+
+        private synchronized void acquire() throws InterruptedException {
+            while (true) {
+                final long pause = pausedUntil - System.currentTimeMillis();
+                if (pause > 0) {
+                    wait(pause);
+                } else if (inFlight < limit) {
+                    inFlight++;
+                    return;
+                } else {
+                    wait();
+                }
+            }
+        }
+
+        private synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        private synchronized void pause(final long duration) {
+            pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + duration);
+        }
+
+        private synchronized int getLimit() {
+            return limit;
+        }
+
+        private synchronized void setLimit(final int limit) {
+            this.limit = limit;
+            notifyAll();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CucumberReport2AsciidocTest {
     @Test
@@ -237,6 +239,36 @@ class CucumberReport2AsciidocTest {
                 Files.readString(output, StandardCharsets.UTF_8));
     }
 
+    @Test
+    void skipEmbeddingsAndConvertConcurrently(@TempDir final Path dir) throws IOException, MojoExecutionException, MojoFailureException {
+        final var input = dir.resolve("input");
+        final var output = dir.resolve("output.adoc");
+        Files.createDirectories(input);
+        for (final var name : List.of("a", "b", "c")) {
+            Files.writeString(input.resolve(name + ".json"), "" +
+                    "[{\"id\":\"feature-" + name + "\",\"name\":\"Feature " + name + "\",\"elements\":[{" +
+                    "\"id\":\"feature-" + name + ";scenario\",\"name\":\"Scenario " + name + "\"," +
+                    "\"steps\":[{\"name\":\"step\",\"result\":{\"status\":\"passed\",\"duration\":1}," +
+                    "\"output\":[\"some logs\"]," +
+                    "\"embeddings\":[{\"mime_type\":\"image/png\",\"data\":\"" + "iVBORw0KGgo".repeat(1024) + "\"}]}]}]}]");
+        }
+        new CucumberReport2Asciidoc() {{
+            source = input.toFile();
+            target = output.toFile();
+            threads = 2;
+        }}.execute();
+
+        final var adoc = Files.readString(output, StandardCharsets.UTF_8);
+        assertFalse(adoc.contains("iVBORw0KGgo"), adoc);
+        assertFalse(adoc.contains("some logs"), adoc);
+        // reports are kept in the files order
+        final var a = adoc.indexOf("=== Scenario a");
+        final var b = adoc.indexOf("=== Scenario b");
+        final var c = adoc.indexOf("=== Scenario c");
+        assertTrue(a >= 0 && a < b && b < c, adoc);
+        assertEquals(3, adoc.split("== Test Runs", -1).length - 1);
+    }
+
     private void renderDebugPDF(final Path output) throws MojoExecutionException {
         final PDFMojo mojo = new PDFMojo();
         final AsciidoctorInstance asciidoctor = new AsciidoctorInstance();
@@ -19,6 +19,8 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -26,10 +28,16 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
 
+import static io.yupiik.maven.mojo.GitReportMojo.Renderer.COMMITS;
 import static io.yupiik.maven.mojo.GitReportMojo.Renderer.DEFAULT;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GitReportMojoTest {
     @Test
@@ -72,4 +80,99 @@ class GitReportMojoTest {
                         .replaceFirst("\\* \\[`[^`]+`]\\[\\p{Digit}{4}-\\p{Digit}{2}-\\p{Digit}{2}T\\p{Digit}{2}:\\p{Digit}{2}(:\\p{Digit}{2})?] initial import$",
                                 "* [<sha>][<year>-<month>-<day>T<hour>:<minutes>:<seconds>] initial import"));
     }
+
+    @Test
+    void incrementalCache(@TempDir final Path tmp) throws MojoExecutionException, MojoFailureException, IOException, GitAPIException {
+        final var repository = tmp.resolve("fake-git");
+        final var cacheFile = tmp.resolve("commits.cache");
+        final var output = tmp.resolve("output.adoc");
+        try (final var git = Git.init()
+                .setDirectory(repository.toFile())
+                .call()) {
+            commit(git, repository, "first");
+            assertEquals(List.of("first"), report(repository, cacheFile, output));
+            assertTrue(Files.exists(cacheFile));
+
+            // only the new commit is walked, the first one comes from the cache
+            commit(git, repository, "second");
+            assertEquals(List.of("second", "first"), report(repository, cacheFile, output));
+
+            // history rewritten, the cache is not reused
+            git.commit()
+                    .setCommitter("Test", "test@yupiik.com")
+                    .setAmend(true)
+                    .setMessage("amended")
+                    .call();
+            assertEquals(List.of("amended", "first"), report(repository, cacheFile, output));
+        }
+    }
+
+    @Test
+    void incrementalCacheWithMerge(@TempDir final Path tmp) throws MojoExecutionException, MojoFailureException, IOException, GitAPIException {
+        final var repository = tmp.resolve("fake-git");
+        final var cacheFile = tmp.resolve("commits.cache");
+        final var output = tmp.resolve("output.adoc");
+        try (final var git = Git.init()
+                .setDirectory(repository.toFile())
+                .setInitialBranch("main")
+                .call()) {
+            final var first = commit(git, repository, "first", "first", 1);
+            git.checkout().setCreateBranch(true).setName("feature").setStartPoint(first).call();
+            final var feature = commit(git, repository, "feature", "feature", 2);
+            git.checkout().setName("main").call();
+            commit(git, repository, "second", "second", 3);
+            assertEquals(List.of("second", "first"), report(repository, cacheFile, output));
+
+            // merged commit is older than the cached head, it must be at the same place than with a full walk
+            git.merge().include(feature).setCommit(false).call();
+            git.commit()
+                    .setCommitter(new PersonIdent("Test", "test@yupiik.com", new Date(4_000_000), TimeZone.getTimeZone("UTC")))
+                    .setMessage("merge")
+                    .call();
+            final var incremental = report(repository, cacheFile, output);
+            assertEquals(List.of("merge", "second", "feature", "first"), incremental);
+            assertEquals(incremental, report(repository, null, output));
+        }
+    }
+
+    private List<String> report(final Path repository, final Path cacheFile, final Path output) throws MojoExecutionException, MojoFailureException, IOException {
+        new GitReportMojo() {{
+            dotGit = repository.resolve(".git").toFile();
+            target = output.toFile();
+            renderers = new Renderer[]{COMMITS};
+            title = "Report";
+            cache = cacheFile == null ? null : cacheFile.toFile();
+            useCache = cacheFile != null;
+            overwrite = true;
+            logFormat = new GitLogFormat();
+            logFormat.setEntries(List.of(GitLogFormat.Entry.MESSAGE));
+        }}.execute();
+        return Files.readAllLines(output, StandardCharsets.UTF_8).stream()
+                .filter(it -> !it.isBlank())
+                .skip(3) // header + section title
+                .collect(toList());
+    }
+
+    private void commit(final Git git, final Path repository, final String message) throws IOException, GitAPIException {
+        Files.writeString(repository.resolve("file"), message);
+        git.add()
+                .addFilepattern("file")
+                .call();
+        git.commit()
+                .setCommitter("Test", "test@yupiik.com")
+                .setMessage(message)
+                .call();
+    }
+
+    private RevCommit commit(final Git git, final Path repository, final String file, final String message,
+                             final int time) throws IOException, GitAPIException {
+        Files.writeString(repository.resolve(file), message);
+        git.add()
+                .addFilepattern(file)
+                .call();
+        return git.commit()
+                .setCommitter(new PersonIdent("Test", "test@yupiik.com", new Date(time * 1_000_000L), TimeZone.getTimeZone("UTC")))
+                .setMessage(message)
+                .call();
+    }
 }
@@ -24,8 +24,11 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -47,4 +50,45 @@ class PDFMojoTest {
         asciidoctor.destroy();
         assertTrue(Files.exists(output.resolve("index.pdf")));
     }
+
+    @Test
+    void renderConcurrently(@TempDir final Path temp) throws Exception {
+        final Path source = Files.createDirectories(temp.resolve("src"));
+        for (final String name : List.of("a", "b", "c", "d")) {
+            Files.writeString(source.resolve(name + ".adoc"), "= Document " + name + "\n\nJust for tests.\n");
+        }
+
+        final Path output = temp.resolve("output");
+        final List<String> rendered = new CopyOnWriteArrayList<>();
+        final PDFMojo mojo = new PDFMojo();
+        final AsciidoctorInstance asciidoctor = new AsciidoctorInstance();
+        mojo.setSourceDirectory(source.toFile());
+        mojo.setTargetDirectory(output.toFile());
+        mojo.setRequires(List.of());
+        mojo.setWorkDir(new File("target/classes/yupiik-tools-maven-plugin"));
+        mojo.setAsciidoctor(asciidoctor);
+        mojo.setThreads(2);
+        mojo.setLog(new SystemStreamLog() {
+            @Override
+            public void info(final CharSequence content) {
+                if (content.toString().startsWith("Rendered ")) {
+                    rendered.add(content.toString());
+                }
+                super.info(content);
+            }
+        });
+
+        final List<String> expectedOrder = new ArrayList<>();
+        mojo.visit(source, f -> expectedOrder.add("Rendered '" + f.getFileName() + "'"), true);
+
+        try {
+            mojo.execute();
+        } finally {
+            asciidoctor.destroy();
+        }
+        for (final String name : List.of("a", "b", "c", "d")) {
+            assertTrue(Files.exists(output.resolve(name + ".pdf")), name);
+        }
+        assertEquals(expectedOrder, rendered);
+    }
 }
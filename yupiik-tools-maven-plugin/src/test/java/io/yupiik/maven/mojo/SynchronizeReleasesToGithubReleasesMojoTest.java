@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.mojo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SynchronizeReleasesToGithubReleasesMojoTest {
+    @Test
+    void skipIdenticalAssetsAndRetryUploads(@TempDir final Path work) throws Exception {
+        final var requests = new CopyOnWriteArrayList<String>();
+        final var uploadFailures = new AtomicInteger(1);
+        final var server = HttpServer.create(new InetSocketAddress("localhost", 0), 16);
+        server.createContext("/").setHandler(exchange -> {
+            try (exchange) {
+                final var request = exchange.getRequestMethod() + " " + exchange.getRequestURI();
+                requests.add(request);
+                exchange.getRequestBody().readAllBytes();
+                final var base = "http://localhost:" + server.getAddress().getPort() + "/";
+                switch (request) {
+                    case "GET /repos/test/repo/tags?per_page=100":
+                        send(exchange, 200, "[]");
+                        break;
+                    case "GET /repos/test/repo/releases?per_page=100":
+                        send(exchange, 200, "[{\"id\":1,\"name\":\"1.0.0\",\"tag_name\":\"app-1.0.0\"," +
+                                "\"upload_url\":\"" + base + "upload/1{?name,label}\",\"assets\":[" +
+                                "{\"id\":10,\"name\":\"app-1.0.0.jar\",\"size\":3,\"state\":\"uploaded\"}," +
+                                "{\"id\":11,\"name\":\"app-1.0.0.pom\",\"size\":2,\"state\":\"uploaded\"}]}]");
+                        break;
+                    case "GET /maven/com/test/app/maven-metadata.xml":
+                        send(exchange, 200, "<metadata><versioning><versions><version>1.0.0</version></versions></versioning></metadata>");
+                        break;
+                    case "HEAD /maven/com/test/app/1.0.0/app-1.0.0.jar":
+                        exchange.getResponseHeaders().add("Content-Length", "3");
+                        exchange.sendResponseHeaders(200, -1);
+                        break;
+                    case "GET /maven/com/test/app/1.0.0/app-1.0.0-sources.jar":
+                        exchange.sendResponseHeaders(404, -1);
+                        break;
+                    case "GET /maven/com/test/app/1.0.0/app-1.0.0.pom":
+                        send(exchange, 200, "<pom/>");
+                        break;
+                    case "DELETE /repos/test/repo/releases/assets/11":
+                        exchange.sendResponseHeaders(204, -1);
+                        break;
+                    case "POST /upload/1?name=app-1.0.0.pom&label=app-1.0.0.pom":
+                        if (uploadFailures.getAndDecrement() > 0) {
+                            exchange.sendResponseHeaders(500, -1);
+                        } else {
+                            send(exchange, 201, "{\"id\":12,\"name\":\"app-1.0.0.pom\"}");
+                        }
+                        break;
+                    default:
+                        exchange.sendResponseHeaders(404, -1);
+                }
+            }
+        });
+        server.start();
+        try {
+            final var base = "http://localhost:" + server.getAddress().getPort() + "/";
+            final var spec = new SynchronizeReleasesToGithubReleasesMojo.ReleaseSpec();
+            spec.setGroupId("com.test");
+            spec.setArtifactId("app");
+            spec.setArtifacts(List.of(artifact("jar", ""), artifact("pom", ""), artifact("jar", "sources")));
+
+            final var mojo = new SynchronizeReleasesToGithubReleasesMojo();
+            configure(mojo, Map.ofEntries(
+                    Map.entry("artifacts", List.of(spec)),
+                    Map.entry("attachIfExists", true),
+                    Map.entry("githubServerId", "github.com"),
+                    Map.entry("githubBaseApi", base),
+                    Map.entry("githubRepository", "test/repo"),
+                    Map.entry("githubCache", ""),
+                    Map.entry("mavenRepositoryBaseUrl", base + "maven/"),
+                    Map.entry("threads", 4),
+                    Map.entry("uploadThreads", 2),
+                    Map.entry("uploadRetries", 3),
+                    Map.entry("workdir", work.toString()),
+                    Map.entry("session", new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(), List.of()))));
+            mojo.execute();
+        } finally {
+            server.stop(0);
+        }
+
+        // jar has the same size so is not downloaded, pom differs so is replaced and its upload is retried
+        assertEquals(
+                List.of(
+                        "DELETE /repos/test/repo/releases/assets/11",
+                        "GET /maven/com/test/app/1.0.0/app-1.0.0-sources.jar",
+                        "GET /maven/com/test/app/1.0.0/app-1.0.0.pom",
+                        "GET /maven/com/test/app/maven-metadata.xml",
+                        "GET /repos/test/repo/releases?per_page=100",
+                        "GET /repos/test/repo/tags?per_page=100",
+                        "HEAD /maven/com/test/app/1.0.0/app-1.0.0.jar",
+                        "HEAD /maven/com/test/app/1.0.0/app-1.0.0.pom",
+                        "POST /upload/1?name=app-1.0.0.pom&label=app-1.0.0.pom",
+                        "POST /upload/1?name=app-1.0.0.pom&label=app-1.0.0.pom"),
+                requests.stream().sorted().collect(toList()));
+    }
+
+    private static SynchronizeReleasesToGithubReleasesMojo.Artifact artifact(final String type, final String classifier) {
+        final var artifact = new SynchronizeReleasesToGithubReleasesMojo.Artifact();
+        artifact.setType(type);
+        artifact.setClassifier(classifier);
+        return artifact;
+    }
+
+    private static void configure(final Object mojo, final Map<String, Object> values) throws ReflectiveOperationException {
+        for (final var entry : values.entrySet()) {
+            final var field = mojo.getClass().getDeclaredField(entry.getKey());
+            field.setAccessible(true);
+            field.set(mojo, entry.getValue());
+        }
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
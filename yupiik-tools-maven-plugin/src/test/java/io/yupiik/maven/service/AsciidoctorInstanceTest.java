@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service;
+
+import io.yupiik.maven.mojo.BaseMojo;
+import io.yupiik.maven.test.MavenTest;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.Options;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsciidoctorInstanceTest {
+    @MavenTest
+    void boundedAndReentrant(final BaseMojo mojo, final AsciidoctorInstance instance) throws Exception {
+        instance.setMinSize(1);
+        instance.setMaxSize(1);
+        try {
+            instance.prewarm(mojo, List.of());
+
+            final var firstStarted = new CountDownLatch(1);
+            final var release = new CountDownLatch(1);
+            final var first = CompletableFuture.supplyAsync(() -> instance.withAsciidoc(mojo, a -> {
+                firstStarted.countDown();
+                try {
+                    assertTrue(release.await(1, TimeUnit.MINUTES));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // nested call must not lock (pool is full) and must reuse the same instance
+                return instance.withAsciidoc(mojo, nested -> {
+                    assertSame(a, nested);
+                    return nested.convert("*nested*", Options.builder().build());
+                });
+            }));
+            assertTrue(firstStarted.await(1, TimeUnit.MINUTES));
+
+            final var second = CompletableFuture.supplyAsync(() -> instance.withAsciidoc(mojo, Asciidoctor::toString));
+            Thread.sleep(200);
+            release.countDown();
+
+            assertEquals("<div class=\"paragraph\">\n<p><strong>nested</strong></p>\n</div>", first.get(1, TimeUnit.MINUTES));
+            second.get(1, TimeUnit.MINUTES);
+
+            final var metrics = instance.getMetrics();
+            assertEquals(1, metrics.getCreated());
+            assertEquals(1, metrics.getSize());
+            assertEquals(2, metrics.getAcquisitions());
+            assertTrue(metrics.getMaxWaitTimeMs() <= metrics.getWaitTimeMs(), metrics::toString);
+        } finally {
+            instance.destroy();
+        }
+    }
+}
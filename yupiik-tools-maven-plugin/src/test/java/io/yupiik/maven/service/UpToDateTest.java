@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpToDateTest {
+    @Test
+    void fingerprint(@TempDir final Path work) throws IOException {
+        final var input = Files.createDirectories(work.resolve("src"));
+        final var output = work.resolve("target");
+        Files.writeString(input.resolve("index.adoc"), "= Doc");
+
+        assertFalse(execute(work, "v1"), "first execution");
+        assertFalse(Files.readString(work.resolve("state/test.properties")).contains("parameter.param=v1"), "parameters are hashed");
+        assertTrue(execute(work, "v1"), "nothing changed");
+
+        // same content with a new timestamp is still up to date
+        touch(input.resolve("index.adoc"));
+        assertTrue(execute(work, "v1"), "touched");
+
+        Files.writeString(input.resolve("index.adoc"), "= Updated");
+        assertFalse(execute(work, "v1"), "input changed");
+        assertTrue(execute(work, "v1"), "nothing changed");
+
+        assertFalse(execute(work, "v2"), "parameter changed");
+        assertTrue(execute(work, "v2"), "nothing changed");
+
+        Files.delete(output.resolve("index.html"));
+        assertFalse(execute(work, "v2"), "output deleted");
+        assertTrue(execute(work, "v2"), "nothing changed");
+    }
+
+    // mimics a mojo execution, returns true if it was skipped
+    private boolean execute(final Path work, final String parameter) throws IOException {
+        final var output = work.resolve("target");
+        final var upToDate = UpToDate.builder()
+                .state(work.resolve("state/test.properties"))
+                .version("1.0.0")
+                .input(work.resolve("src"))
+                .output(output)
+                .parameter("param", parameter)
+                .build();
+        if (upToDate.isUpToDate()) {
+            return true;
+        }
+        Files.createDirectories(output);
+        Files.writeString(output.resolve("index.html"), Files.readString(work.resolve("src/index.adoc")));
+        upToDate.save();
+        return false;
+    }
+
+    private void touch(final Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+    }
+}
@@ -30,8 +30,11 @@ import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.stream.Collectors.toMap;
@@ -95,6 +98,51 @@ class ConfluenceServiceTest {
         );
     }
 
+    @Test
+    void skipUnchangedPagesAndRetryThrottledRequests(@TempDir final Path tmp) throws Exception {
+        final var html = Files.createDirectories(tmp.resolve("html"));
+        createRenderedHtmlWebSite(html);
+
+        final var confluence = new Confluence();
+        confluence.setIgnore(false);
+        confluence.setServerId("ignored");
+        confluence.setSpace("MYSPACE");
+        confluence.setAuthorization("Foo");
+        confluence.setThreads(4);
+
+        final var http = HttpServer.create(new InetSocketAddress(0), 64);
+        final var pool = Executors.newFixedThreadPool(4);
+        try (final var jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.skip-cdi", true))) {
+            final var server = new ConfluenceStub(jsonb);
+            server.throttled.set(2);
+            http.setExecutor(pool);
+            http.createContext("/").setHandler(server::onRequest);
+            http.start();
+            confluence.setUrl("http://localhost:" + http.getAddress().getPort() + "/wiki/");
+
+            final var service = new ConfluenceService();
+            final Runnable upload = () -> service.upload(confluence, html, info -> {
+            }, "//yupiik.github.io/uship", new SystemStreamLog());
+
+            // creates both pages then updates the index to link the http client page, first writes are throttled
+            upload.run();
+            assertEquals(3, server.writes.getAndSet(0));
+            assertEquals(0, server.throttled.get());
+
+            // index was updated with its hash so is skipped, http client page was created so is updated once to store it
+            upload.run();
+            assertEquals(1, server.writes.getAndSet(0));
+
+            // nothing changed
+            upload.run();
+            assertEquals(0, server.writes.get());
+            assertEquals(2, server.pages.size());
+        } finally {
+            http.stop(0);
+            pool.shutdownNow();
+        }
+    }
+
     private void createRenderedHtmlWebSite(final Path html) throws IOException {
         Files.writeString(html.resolve("index.html"), "" +
                 "<!DOCTYPE html>\n" +
@@ -159,6 +207,78 @@ class ConfluenceServiceTest {
                 "");
     }
 
+    // mimics confluence: it stores pages, normalizes their body and can throttle writes
+    private static class ConfluenceStub {
+        private final Jsonb jsonb;
+        private final Map<String, ConfluenceService.Content> pages = new ConcurrentHashMap<>();
+        private final AtomicInteger writes = new AtomicInteger();
+        private final AtomicInteger throttled = new AtomicInteger();
+        private final AtomicInteger ids = new AtomicInteger();
+
+        private ConfluenceStub(final Jsonb jsonb) {
+            this.jsonb = jsonb;
+        }
+
+        private void onRequest(final HttpExchange exchange) throws IOException {
+            try (exchange) {
+                final var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                final var path = exchange.getRequestURI().getPath();
+                if ("GET".equals(exchange.getRequestMethod()) && "/wiki/rest/api/content/search".equals(path)) {
+                    final var contents = new ConfluenceService.Contents();
+                    contents.setResults(new ArrayList<>(pages.values()));
+                    contents.setLinks(Map.of());
+                    send(exchange, 200, jsonb.toJson(contents));
+                    return;
+                }
+                if (!path.startsWith("/wiki/rest/api/content")) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (throttled.getAndUpdate(it -> Math.max(0, it - 1)) > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    exchange.sendResponseHeaders(429, -1);
+                    return;
+                }
+
+                final var content = jsonb.fromJson(body, ConfluenceService.Content.class);
+                final String id;
+                switch (exchange.getRequestMethod()) {
+                    case "POST":
+                        id = "page-" + ids.incrementAndGet();
+                        content.setVersion(new ConfluenceService.Version(1));
+                        break;
+                    case "PUT":
+                        id = path.substring(path.lastIndexOf('/') + 1);
+                        if (content.getVersion().getNumber() != pages.get(id).getVersion().getNumber() + 1) {
+                            exchange.sendResponseHeaders(409, -1);
+                            return;
+                        }
+                        break;
+                    default:
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                }
+                writes.incrementAndGet();
+                content.setId(id);
+                content.setLinks(Map.of("webui", "/spaces/MYSPACE/pages/" + id));
+                content.getBody().getStorage().setValue(normalize(content.getBody().getStorage().getValue()));
+                pages.put(id, content);
+                send(exchange, 200, jsonb.toJson(content));
+            }
+        }
+
+        // confluence drops id attributes and reformats the storage value
+        private String normalize(final String value) {
+            return value.replaceAll(" id=\"[^\"]*\"", "") + '\n';
+        }
+
+        private void send(final HttpExchange exchange, final int status, final String json) throws IOException {
+            final var bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
     private void onConfluenceRequest(final Map<String, ConfluenceService.Content> captures, final Jsonb jsonb,
                                      final HttpExchange exchange, final AtomicInteger searchCount) throws IOException {
         switch (exchange.getRequestURI().getPath()) {
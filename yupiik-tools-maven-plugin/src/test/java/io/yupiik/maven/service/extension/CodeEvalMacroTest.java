@@ -19,8 +19,26 @@ import io.yupiik.maven.mojo.BaseMojo;
 import io.yupiik.maven.service.AsciidoctorInstance;
 import io.yupiik.maven.test.MavenTest;
 import org.asciidoctor.Options;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 class CodeEvalMacroTest {
     @MavenTest
@@ -51,4 +69,190 @@ class CodeEvalMacroTest {
                         "----\n" +
                         "--", Options.builder().build())));
     }
+
+    @MavenTest
+    void memoize(final BaseMojo mojo, final AsciidoctorInstance instance) {
+        final var block = "" +
+                "[code-eval,result-lang=text,engine=rb%s]\n" +
+                "--\n" +
+                "[source,ruby]\n" +
+                "----\n" +
+                "print(Process.clock_gettime(Process::CLOCK_MONOTONIC, :nanosecond))\n" +
+                "----\n" +
+                "--\n\n";
+        final var html = instance.withAsciidoc(mojo, a -> a.convert("" +
+                "= Title\n" +
+                "\n" +
+                String.format(block, ",memoize=true") +
+                String.format(block, ",memoize=true") +
+                String.format(block, ""), Options.builder().build()));
+        final var results = results(html);
+        assertEquals(3, results.size(), html);
+        assertEquals(results.get(0), results.get(1)); // memoized
+        assertNotEquals(results.get(0), results.get(2)); // evaluated again
+    }
+
+    @MavenTest
+    void enginesAreOnlyPooledWhenRequested(final BaseMojo mojo, final AsciidoctorInstance instance) {
+        final var block = "" +
+                "[code-eval,result-lang=text,engine=counting%s]\n" +
+                "--\n" +
+                "[source,counting]\n" +
+                "----\n" +
+                "count\n" +
+                "----\n" +
+                "--\n\n";
+        assertEquals(List.of("1", "1"), results(instance.withAsciidoc(mojo, a -> a.convert("" +
+                "= Title\n" +
+                "\n" +
+                String.format(block, "") +
+                String.format(block, ""), Options.builder().build()))));
+
+        final var pooled = results(instance.withAsciidoc(mojo, a -> a.convert("" +
+                "= Title\n" +
+                "\n" +
+                String.format(block, ",pool=true") +
+                String.format(block, ",pool=true"), Options.builder().build())));
+        assertEquals(2, pooled.size(), pooled::toString);
+        assertEquals(Integer.parseInt(pooled.get(0)) + 1, Integer.parseInt(pooled.get(1))); // same engine
+    }
+
+    @MavenTest
+    void engineIsCaseInsensitive(final BaseMojo mojo, final AsciidoctorInstance instance) {
+        final var html = instance.withAsciidoc(mojo, a -> a.convert("" +
+                "= Title\n" +
+                "\n" +
+                "[code-eval,result-lang=text,engine=RB]\n" +
+                "--\n" +
+                "[source,ruby]\n" +
+                "----\n" +
+                "print(\"upper\")\n" +
+                "----\n" +
+                "--", Options.builder().build()));
+        assertEquals(List.of("upper"), results(html));
+    }
+
+    @MavenTest
+    void memoizeInputsAreRelativeToDocDir(final BaseMojo mojo, final AsciidoctorInstance instance,
+                                          @TempDir final Path docDir) throws IOException {
+        final var adoc = "" +
+                "= Title\n" +
+                "\n" +
+                "[code-eval,result-lang=text,engine=rb,memoize=true,inputs=data.txt]\n" +
+                "--\n" +
+                "[source,ruby]\n" +
+                "----\n" +
+                "print(Process.clock_gettime(Process::CLOCK_MONOTONIC, :nanosecond))\n" +
+                "----\n" +
+                "--";
+        final var options = Options.builder()
+                .baseDir(docDir.toFile())
+                .build();
+
+        Files.writeString(docDir.resolve("data.txt"), "v1");
+        final var first = results(instance.withAsciidoc(mojo, a -> a.convert(adoc, options)));
+        assertEquals(first, results(instance.withAsciidoc(mojo, a -> a.convert(adoc, options))));
+
+        Files.writeString(docDir.resolve("data.txt"), "v2");
+        assertNotEquals(first, results(instance.withAsciidoc(mojo, a -> a.convert(adoc, options))));
+    }
+
+    private static List<String> results(final String html) {
+        final var matcher = Pattern.compile("data-lang=\"text\">([^<]+)</code>").matcher(html);
+        final var results = new ArrayList<String>();
+        while (matcher.find()) {
+            results.add(matcher.group(1));
+        }
+        return results;
+    }
+
+    // keeps a per engine state to check how engines are reused
+    public static class CountingEngineFactory implements ScriptEngineFactory {
+        @Override
+        public String getEngineName() {
+            return "counting";
+        }
+
+        @Override
+        public String getEngineVersion() {
+            return "1";
+        }
+
+        @Override
+        public List<String> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public List<String> getMimeTypes() {
+            return List.of();
+        }
+
+        @Override
+        public List<String> getNames() {
+            return List.of(getEngineName());
+        }
+
+        @Override
+        public String getLanguageName() {
+            return getEngineName();
+        }
+
+        @Override
+        public String getLanguageVersion() {
+            return getEngineVersion();
+        }
+
+        @Override
+        public Object getParameter(final String key) {
+            return null;
+        }
+
+        @Override
+        public String getMethodCallSyntax(final String obj, final String m, final String... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getOutputStatement(final String toDisplay) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProgram(final String... statements) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScriptEngine getScriptEngine() {
+            return new AbstractScriptEngine() {
+                private int evaluations;
+
+                @Override
+                public Object eval(final String script, final ScriptContext context) throws ScriptException {
+                    try {
+                        context.getWriter().write(Integer.toString(++evaluations));
+                    } catch (final IOException e) {
+                        throw new ScriptException(e);
+                    }
+                    return null;
+                }
+
+                @Override
+                public Object eval(final Reader reader, final ScriptContext context) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Bindings createBindings() {
+                    return new SimpleBindings();
+                }
+
+                @Override
+                public ScriptEngineFactory getFactory() {
+                    return CountingEngineFactory.this;
+                }
+            };
+        }
+    }
 }
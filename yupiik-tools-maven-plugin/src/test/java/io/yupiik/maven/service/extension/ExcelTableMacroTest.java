@@ -18,15 +18,22 @@ package io.yupiik.maven.service.extension;
 import io.yupiik.maven.mojo.BaseMojo;
 import io.yupiik.maven.service.AsciidoctorInstance;
 import io.yupiik.maven.test.MavenTest;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.asciidoctor.OptionsBuilder;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 interface Excel {
     byte[] SAMPLE = new byte[]{
@@ -4881,4 +4888,36 @@ class ExcelTableMacroTest {
                         "</table>",
                 instance.withAsciidoc(mojo, a -> a.convert("= Result\n\n[excel]\n--\n" + xls + "\n--", OptionsBuilder.options())));
     }
+
+    @MavenTest
+    void sheetIsReloadedWhenUpdated(final BaseMojo mojo, final AsciidoctorInstance instance,
+                                    @TempDir final Path tmp) throws IOException {
+        final Path xls = tmp.resolve("sheets.xlsx");
+        final String adoc = "= Result\n\n[excel,sheet=second]\n--\n" + xls + "\n--";
+
+        writeWorkbook(xls, "v1");
+        assertTrue(instance.withAsciidoc(mojo, a -> a.convert(adoc, OptionsBuilder.options())).contains(">v1<"));
+
+        writeWorkbook(xls, "v2");
+        Files.setLastModifiedTime(xls, FileTime.fromMillis(Files.getLastModifiedTime(xls).toMillis() + 10_000));
+        final String html = instance.withAsciidoc(mojo, a -> a.convert(adoc, OptionsBuilder.options()));
+        assertTrue(html.contains(">v2<"), html);
+        assertFalse(html.contains(">ignored<"), html);
+    }
+
+    private void writeWorkbook(final Path file, final String value) throws IOException {
+        try (final XSSFWorkbook workbook = new XSSFWorkbook();
+             final OutputStream out = Files.newOutputStream(file)) {
+            final XSSFSheet first = workbook.createSheet("first");
+            first.createRow(0).createCell(0).setCellValue("ignored");
+            final XSSFSheet second = workbook.createSheet("second");
+            final XSSFRow header = second.createRow(0);
+            header.createCell(0).setCellValue("Name");
+            header.createCell(1).setCellValue("Value");
+            final XSSFRow row = second.createRow(1);
+            row.createCell(0).setCellValue("version");
+            row.createCell(1).setCellValue(value);
+            workbook.write(out);
+        }
+    }
 }
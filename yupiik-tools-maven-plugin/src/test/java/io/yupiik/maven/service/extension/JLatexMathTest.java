@@ -19,10 +19,35 @@ import io.yupiik.maven.mojo.BaseMojo;
 import io.yupiik.maven.service.AsciidoctorInstance;
 import io.yupiik.maven.test.MavenTest;
 import org.asciidoctor.OptionsBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JLatexMathTest {
+    @TempDir
+    Path cache;
+
+    @BeforeEach
+    void useTemporaryCache() {
+        System.setProperty("yupiik.jlatexmath.cache", cache.toString());
+    }
+
+    @AfterEach
+    void resetCache() {
+        System.clearProperty("yupiik.jlatexmath.cache");
+    }
+
     @MavenTest
     void block(final BaseMojo mojo, final AsciidoctorInstance instance) {
         assertTrue(
@@ -43,4 +68,32 @@ class JLatexMathTest {
                         "<div class=\"paragraph\">\n" +
                         "<p>Some image: <span class=\"image\"><img src=\"data:image/png;base64"));
     }
+
+    @MavenTest
+    void externalImage(final BaseMojo mojo, final AsciidoctorInstance instance, @TempDir final Path images) throws IOException {
+        final String adoc = "= Result\n:jlatexmath-imagesoutdir: " + images + "\n\n[jlatexmath]\n--\nx^n + y^n = z^n\n--";
+        final String html = instance.withAsciidoc(mojo, a -> a.convert(adoc, OptionsBuilder.options()));
+        final Matcher matcher = Pattern.compile("<img src=\"(jlatexmath-\\p{XDigit}{64}\\.png)\"").matcher(html);
+        assertTrue(matcher.find(), html);
+
+        final Path image = images.resolve(matcher.group(1));
+        assertTrue(Files.exists(image));
+        assertTrue(Files.size(image) > 0);
+
+        // same formula, same image
+        assertEquals(html, instance.withAsciidoc(mojo, a -> a.convert(adoc, OptionsBuilder.options())));
+        try (final Stream<Path> list = Files.list(images)) {
+            assertEquals(1, list.count());
+        }
+    }
+
+    @MavenTest
+    void unwritableCacheIsIgnored(final BaseMojo mojo, final AsciidoctorInstance instance) throws IOException {
+        final Path file = Files.writeString(cache.resolve("file"), "not a directory");
+        System.setProperty("yupiik.jlatexmath.cache", file.toString());
+        assertTrue(
+                instance.withAsciidoc(mojo, a ->
+                        a.convert("= Result\n\nSome image: jmath:_[x^2]", OptionsBuilder.options())).contains("data:image/png;base64,"));
+        assertFalse(Files.isDirectory(file));
+    }
 }
@@ -30,6 +30,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -62,23 +63,54 @@ class XsltMacroTest {
                 "  time=\"2.022\" tests=\"1\" errors=\"0\" skipped=\"0\" failures=\"0\">\n" +
                 "  <testcase name=\"render(Path)\" classname=\"com.foo.MyTest2\" time=\"2.012\"/>\n" +
                 "</testsuite>").getBytes(StandardCharsets.UTF_8));
+        for (final String threads : List.of("threads=1", "threads=2")) { // same order whatever the pool is
+                assertEquals(
+                    "<div class=\"openblock\">\n" +
+                            "<div class=\"content\">\n" +
+                            "<div class=\"ulist\">\n" +
+                            "<ul>\n" +
+                            "<li>\n" +
+                            "<p>com.foo.MyTest1.render(Path) lasted 9.034s</p>\n" +
+                            "</li>\n" +
+                            "<li>\n" +
+                            "<p>com.foo.MyTest2.render(Path) lasted 2.012s</p>\n" +
+                            "</li>\n" +
+                            "</ul>\n" +
+                            "</div>\n" +
+                            "</div>\n" +
+                            "</div>",
+                    instance.withAsciidoc(newFakeMojo(fakeProject), a ->
+                            a.convert("= Result\n\n[maven_xslt,xslt=surefire," + threads + "]\n--\n--", OptionsBuilder.options())));
+        }
+    }
+
+    @Test
+    void customStylesheetIsRecompiledWhenUpdated(@TempDir final Path path) throws IOException {
+        final MavenProject fakeProject = new MavenProject();
+        fakeProject.setBuild(new Build());
+        fakeProject.getBuild().setDirectory(path.toString());
+        final Path xml = Files.writeString(path.resolve("data.xml"), "<data>yupiik</data>");
+        final Path xslt = path.resolve("custom.xslt");
+        final String adoc = "= Result\n\n[maven_xslt,xslt=" + xslt + ",from=" + xml + "]\n--\n--";
+
+        Files.writeString(xslt, stylesheet("first"));
+        assertEquals(
+                "<div class=\"openblock\">\n<div class=\"content\">\n<div class=\"paragraph\">\n<p>first yupiik</p>\n</div>\n</div>\n</div>",
+                instance.withAsciidoc(newFakeMojo(fakeProject), a -> a.convert(adoc, OptionsBuilder.options())));
+
+        Files.writeString(xslt, stylesheet("second"));
+        Files.setLastModifiedTime(xslt, FileTime.fromMillis(Files.getLastModifiedTime(xslt).toMillis() + 10_000));
         assertEquals(
-                "<div class=\"openblock\">\n" +
-                        "<div class=\"content\">\n" +
-                        "<div class=\"ulist\">\n" +
-                        "<ul>\n" +
-                        "<li>\n" +
-                        "<p>com.foo.MyTest1.render(Path) lasted 9.034s</p>\n" +
-                        "</li>\n" +
-                        "<li>\n" +
-                        "<p>com.foo.MyTest2.render(Path) lasted 2.012s</p>\n" +
-                        "</li>\n" +
-                        "</ul>\n" +
-                        "</div>\n" +
-                        "</div>\n" +
-                        "</div>",
-                instance.withAsciidoc(newFakeMojo(fakeProject), a ->
-                        a.convert("= Result\n\n[maven_xslt,xslt=surefire]\n--\n--", OptionsBuilder.options())));
+                "<div class=\"openblock\">\n<div class=\"content\">\n<div class=\"paragraph\">\n<p>second yupiik</p>\n</div>\n</div>\n</div>",
+                instance.withAsciidoc(newFakeMojo(fakeProject), a -> a.convert(adoc, OptionsBuilder.options())));
+    }
+
+    private String stylesheet(final String prefix) {
+        return "" +
+                "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+                "  <xsl:output method=\"text\"/>\n" +
+                "  <xsl:template match=\"/data\">" + prefix + " <xsl:value-of select=\".\"/></xsl:template>\n" +
+                "</xsl:stylesheet>\n";
     }
 
     private BaseMojo newFakeMojo(final MavenProject fakeProject) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service.ftp.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FtpServiceTest {
+    @Test
+    void incrementalUpload(@TempDir final Path site) throws IOException {
+        final var fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/htdocs"));
+        final var server = new FakeFtpServer();
+        server.setServerControlPort(0);
+        server.addUserAccount(new UserAccount("test", "pwd", "/"));
+        server.setFileSystem(fileSystem);
+        server.start();
+        try {
+            Files.createDirectories(site.resolve("css"));
+            Files.writeString(site.resolve("index.html"), "index");
+            Files.writeString(site.resolve("old.html"), "old");
+            Files.writeString(site.resolve("css/site.css"), "body {}");
+            Files.writeString(site.resolve("css/other.css"), "a {}");
+
+            final var ftp = new Ftp();
+            ftp.setUrl("ftp://localhost:" + server.getServerControlPort() + "/htdocs");
+            ftp.setUsername("test");
+            ftp.setPassword("pwd");
+            ftp.setThreads(3);
+            ftp.setDeleteStaleFiles(true);
+
+            final var service = new FtpService();
+            assertEquals(
+                    List.of("css/other.css", "css/site.css", "index.html", "old.html"),
+                    upload(service, ftp, site));
+            assertEquals("body {}", read(fileSystem, "/htdocs/css/site.css"));
+            assertTrue(fileSystem.exists("/htdocs/.yupiik-ftp-manifest.properties"));
+
+            // nothing changed
+            assertEquals(List.of(), upload(service, ftp, site));
+
+            // one update, one new file, one deletion
+            Files.writeString(site.resolve("index.html"), "index v2");
+            Files.writeString(site.resolve("new.html"), "new");
+            Files.delete(site.resolve("old.html"));
+            assertEquals(List.of("index.html", "new.html"), upload(service, ftp, site));
+            assertEquals("index v2", read(fileSystem, "/htdocs/index.html"));
+            assertEquals("new", read(fileSystem, "/htdocs/new.html"));
+            assertFalse(fileSystem.exists("/htdocs/old.html"));
+            assertTrue(fileSystem.exists("/htdocs/css/other.css"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private List<String> upload(final FtpService service, final Ftp ftp, final Path site) {
+        final var logs = new CopyOnWriteArrayList<String>();
+        service.upload(ftp, site, logs::add);
+        return logs.stream()
+                .filter(it -> it.startsWith("Uploaded file '"))
+                .map(it -> it.substring("Uploaded file '".length(), it.indexOf("' on ")))
+                .sorted()
+                .collect(toList());
+    }
+
+    private String read(final UnixFakeFileSystem fileSystem, final String path) throws IOException {
+        try (final var stream = ((FileEntry) fileSystem.getEntry(path)).createInputStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitServiceTest {
+    @Test
+    void deltaOnlyWithShallowPersistentClone(@TempDir final Path work) throws Exception {
+        final var remote = work.resolve("remote.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("gh-pages").call().close();
+        try (final var seed = Git.init().setDirectory(work.resolve("seed").toFile()).setInitialBranch("gh-pages").call()) {
+            final var dir = seed.getRepository().getWorkTree().toPath();
+            for (int i = 0; i < 5; i++) { // some history
+                Files.writeString(dir.resolve("a.html"), "a" + i);
+                Files.writeString(dir.resolve("b.html"), "b");
+                Files.writeString(dir.resolve("CNAME"), "site.test");
+                seed.add().addFilepattern(".").call();
+                seed.commit().setMessage("v" + i).call();
+            }
+            seed.push().setRemote(remote.toUri().toString()).setRefSpecs(new RefSpec("refs/heads/gh-pages:refs/heads/gh-pages")).call();
+        }
+
+        final var site = Files.createDirectories(work.resolve("site"));
+        Files.writeString(site.resolve("a.html"), "a4"); // unchanged
+        Files.writeString(site.resolve("c.html"), "c"); // added, b.html removed
+
+        final var config = new io.yupiik.maven.service.git.Git();
+        config.setUrl(remote.toUri().toString());
+        config.setBranch("refs/heads/gh-pages");
+        config.setNoJekyll(false);
+        config.setDeleteRemovedFiles(true);
+        config.setCloneCache(work.resolve("clone").toString());
+
+        final var logs = new ArrayList<String>();
+        final var service = new GitService();
+        service.update(config, site, logs::add, work.resolve("unused"), "1.0", id -> null);
+
+        assertTrue(Files.exists(work.resolve("clone/.git/shallow")), "shallow clone");
+        assertEquals(List.of("ADD c.html", "DELETE b.html"), lastCommitChanges(remote));
+
+        // no change -> no commit, clone is reused
+        final var head = head(remote);
+        service.update(config, site, logs::add, work.resolve("unused"), "1.0", id -> null);
+        assertEquals(head, head(remote));
+        assertTrue(logs.contains("Reusing git clone " + work.resolve("clone")), logs::toString);
+        assertTrue(logs.contains("Website is up to date, nothing to push"), logs::toString);
+
+        Files.writeString(site.resolve("a.html"), "a5");
+        service.update(config, site, logs::add, work.resolve("unused"), "1.1", id -> null);
+        assertEquals(List.of("MODIFY a.html"), lastCommitChanges(remote));
+    }
+
+    @Test
+    void neverDeleteUnknownDirectories(@TempDir final Path work) throws Exception {
+        final var site = Files.createDirectories(work.resolve("site"));
+        Files.writeString(site.resolve("a.html"), "a");
+
+        final var config = new io.yupiik.maven.service.git.Git();
+        config.setUrl(work.resolve("remote.git").toUri().toString());
+        config.setBranch("refs/heads/gh-pages");
+
+        // not a git repository
+        final var userDir = Files.createDirectories(work.resolve("user"));
+        Files.writeString(userDir.resolve("important.txt"), "keep me");
+        config.setCloneCache(userDir.toString());
+        assertThrows(IllegalStateException.class, () -> new GitService().update(config, site, s -> {
+        }, work.resolve("unused"), "1.0", id -> null));
+        assertTrue(Files.exists(userDir.resolve("important.txt")));
+
+        // another repository
+        final var otherRepo = work.resolve("other");
+        Git.init().setDirectory(otherRepo.toFile()).call().close();
+        Files.writeString(otherRepo.resolve("important.txt"), "keep me");
+        config.setCloneCache(otherRepo.toString());
+        assertThrows(IllegalStateException.class, () -> new GitService().update(config, site, s -> {
+        }, work.resolve("unused"), "1.0", id -> null));
+        assertTrue(Files.exists(otherRepo.resolve("important.txt")));
+    }
+
+    private ObjectId head(final Path remote) throws Exception {
+        try (final var git = Git.open(remote.toFile())) {
+            return git.getRepository().resolve("refs/heads/gh-pages");
+        }
+    }
+
+    private List<String> lastCommitChanges(final Path remote) throws Exception {
+        try (final var git = Git.open(remote.toFile());
+             final var walk = new RevWalk(git.getRepository());
+             final ObjectReader reader = git.getRepository().newObjectReader()) {
+            final RevCommit commit = walk.parseCommit(git.getRepository().resolve("refs/heads/gh-pages"));
+            final var parent = walk.parseCommit(commit.getParent(0));
+            final var newTree = new CanonicalTreeParser();
+            newTree.reset(reader, commit.getTree());
+            final var oldTree = new CanonicalTreeParser();
+            oldTree.reset(reader, parent.getTree());
+            return git.diff().setOldTree(oldTree).setNewTree(newTree).call().stream()
+                    .map(it -> it.getChangeType() + " " + (it.getChangeType() == DiffEntry.ChangeType.DELETE ? it.getOldPath() : it.getNewPath()))
+                    .sorted()
+                    .collect(toList());
+        }
+    }
+}
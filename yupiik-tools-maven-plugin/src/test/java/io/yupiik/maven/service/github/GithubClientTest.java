@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.maven.service.github;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GithubClientTest {
+    private HttpServer server;
+    private String base;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private volatile int remaining = 5000;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 16);
+        server.createContext("/").setHandler(this::onRequest);
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void lazyPagination() {
+        try (final var client = newClient(null)) {
+            assertEquals(
+                    List.of(new Item("1"), new Item("2")),
+                    client.list(base + "repos/test/releases?page=1", Item.class).limit(2).collect(toList()));
+            assertEquals(1, requests.size());
+
+            assertEquals(
+                    List.of(new Item("1"), new Item("2"), new Item("3"), new Item("4"), new Item("5")),
+                    client.list(base + "repos/test/releases?page=1", Item.class).collect(toList()));
+            assertEquals(4, requests.size());
+        }
+    }
+
+    @Test
+    void etagCache(@TempDir final Path cache) {
+        try (final var client = newClient(cache)) {
+            assertEquals(5, client.list(base + "repos/test/releases?page=1", Item.class).count());
+        }
+        assertEquals(0, notModified.get());
+
+        // new client, responses are read from the disk cache (server returns 304 without body)
+        try (final var client = newClient(cache)) {
+            assertEquals(
+                    List.of(new Item("1"), new Item("2"), new Item("3"), new Item("4"), new Item("5")),
+                    client.list(base + "repos/test/releases?page=1", Item.class).collect(toList()));
+        }
+        assertEquals(3, notModified.get());
+        assertEquals(6, requests.size());
+    }
+
+    @Test
+    void retryAfter() {
+        throttled.set(2);
+        try (final var client = newClient(null)) {
+            final Item[] items = client.get(base + "repos/test/releases?page=2", Item[].class);
+            assertEquals(List.of(new Item("3"), new Item("4")), List.of(items));
+        }
+        assertEquals(0, throttled.get());
+        assertEquals(3, requests.size()); // 2 throttled + 1 successful
+    }
+
+    @Test
+    void concurrencyFollowsQuota() {
+        try (final var client = newClient(null)) {
+            assertEquals(4, client.getConcurrency());
+
+            remaining = 25;
+            client.get(base + "repos/test/releases?page=3");
+            assertEquals(2, client.getConcurrency());
+
+            remaining = 3;
+            client.get(base + "repos/test/releases?page=3");
+            assertEquals(1, client.getConcurrency());
+
+            remaining = 4000;
+            client.get(base + "repos/test/releases?page=3");
+            assertEquals(4, client.getConcurrency());
+        }
+    }
+
+    private GithubClient newClient(final Path cache) {
+        return new GithubClient(GithubClient.Configuration.builder()
+                .threads(4)
+                .authorization("token test")
+                .cache(cache)
+                .build(), new SystemStreamLog());
+    }
+
+    private void onRequest(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.add(exchange.getRequestURI().toASCIIString());
+            assertEquals("token test", exchange.getRequestHeaders().getFirst("Authorization"));
+
+            if (throttled.getAndUpdate(it -> Math.max(0, it - 1)) > 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            final var page = Integer.parseInt(exchange.getRequestURI().getQuery().substring("page=".length()));
+            final var etag = "\"page-" + page + "\"";
+            exchange.getResponseHeaders().add("X-RateLimit-Remaining", Integer.toString(remaining));
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (page < 3) {
+                exchange.getResponseHeaders().add("Link", "" +
+                        "<" + base + "repos/test/releases?page=" + (page + 1) + ">; rel=\"next\", " +
+                        "<" + base + "repos/test/releases?page=3>; rel=\"last\"");
+            }
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            final var json = Map.of(
+                    1, "[{\"name\":\"1\"},{\"name\":\"2\"}]",
+                    2, "[{\"name\":\"3\"},{\"name\":\"4\"}]",
+                    3, "[{\"name\":\"5\"}]").get(page).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, json.length);
+            exchange.getResponseBody().write(json);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String name;
+    }
+}